@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.io.Serializable;
+
+import org.jacis.plugin.dirtycheck.object.AbstractReadOnlyModeAndDirtyCheckSupportingObject;
+import org.jacis.plugin.objectadapter.cloning.JacisCloneable;
+
+/**
+ * Value object stored in the benchmark stores. It is cloneable (for the cloning adapter) and serializable (for the serialization adapters).
+ *
+ * @author Jan Wiemer
+ */
+public class BenchmarkObject extends AbstractReadOnlyModeAndDirtyCheckSupportingObject implements JacisCloneable<BenchmarkObject>, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private String name;
+  private long value;
+  private String payload;
+
+  public BenchmarkObject(String name, long value, String payload) {
+    this.name = name;
+    this.value = value;
+    this.payload = payload;
+  }
+
+  @Override
+  public BenchmarkObject clone() {
+    return (BenchmarkObject) super.clone();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getValue() {
+    return value;
+  }
+
+  public BenchmarkObject setValue(long value) {
+    checkWritable();
+    this.value = value;
+    return this;
+  }
+
+  public String getPayload() {
+    return payload;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(" + name + ":" + value + ")";
+  }
+
+}
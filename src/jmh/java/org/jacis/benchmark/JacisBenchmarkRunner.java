@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JACIS benchmarks once for each configured number of threads and writes the results of all runs to one JSON file.
+ * The runner is started by the gradle task `jmh`. It is configured by the following system properties:
+ *
+ * - `jacis.benchmark.include`: regular expression selecting the benchmarks to run (default: all JACIS benchmarks)
+ * - `jacis.benchmark.threads`: comma separated list of the thread counts (default: {@value #DEFAULT_THREADS})
+ * - `jacis.benchmark.jvmArgs`: space separated additional arguments for the forked benchmark JVM (e.g. `-Xmx16g`)
+ * - `jacis.benchmark.result`: the JSON result file (default: {@value #DEFAULT_RESULT_FILE})
+ *
+ * Further JMH command line options (e.g. `-p storeSize=1000 -prof gc`) can be passed as program arguments.
+ * Since the benchmark parameters, the fork and iteration settings and the seeds for the key choice are fixed,
+ * the JSON results of different releases can be compared.
+ *
+ * @author Jan Wiemer
+ */
+public class JacisBenchmarkRunner {
+
+  /** Default thread counts the benchmarks are executed with */
+  static final String DEFAULT_THREADS = "1,2,4,8,16,32,64";
+  /** Default file the JSON results are written to */
+  static final String DEFAULT_RESULT_FILE = "build/reports/jmh/results.json";
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    String include = System.getProperty("jacis.benchmark.include", JacisBenchmarkRunner.class.getPackage().getName() + ".*");
+    String jvmArgs = System.getProperty("jacis.benchmark.jvmArgs", "").trim();
+    File resultFile = new File(System.getProperty("jacis.benchmark.result", DEFAULT_RESULT_FILE));
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    List<RunResult> results = new ArrayList<>();
+    for (String threads : System.getProperty("jacis.benchmark.threads", DEFAULT_THREADS).split(",")) {
+      ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions).include(include).threads(Integer.parseInt(threads.trim()));
+      if (!jvmArgs.isEmpty()) {
+        options.jvmArgsAppend(jvmArgs.split("\\s+"));
+      }
+      Collection<RunResult> runResults = new Runner(options.build()).run();
+      results.addAll(runResults);
+    }
+    File resultDir = resultFile.getAbsoluteFile().getParentFile();
+    if (!resultDir.exists() && !resultDir.mkdirs()) {
+      throw new IllegalStateException("Failed to create the directory for the benchmark results: " + resultDir);
+    }
+    ResultFormatFactory.getInstance(ResultFormatType.JSON, resultFile.getPath()).writeOut(results);
+    System.out.println("Benchmark results written to " + resultFile.getAbsolutePath());
+  }
+
+}
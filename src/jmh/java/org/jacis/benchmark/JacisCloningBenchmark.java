@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.objectadapter.cloning.JacisDeepCopyCloner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the ways to clone an object (without a store). The way is selected by the `cloner` parameter:
+ * - `reflective`: looking up the clone method on every call (as done before the method handles were cached)
+ * - `methodHandle`: the {@link JacisCloningObjectAdapter} calling the cached method handle of the clone method
+ * - `deepCopy`: the {@link JacisCloningObjectAdapter} in deep copy mode
+ * - `deepCopyDirect`: calling {@link JacisDeepCopyCloner#deepCopy(Object)} directly
+ *
+ * @author Jan Wiemer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JacisCloningBenchmark {
+
+  @Param({ "reflective", "methodHandle", "deepCopy", "deepCopyDirect" })
+  public String cloner;
+
+  private UnaryOperator<ClonedObject> cloneFunction;
+  private ClonedObject value;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    switch (cloner) {
+      case "reflective":
+        cloneFunction = JacisCloningBenchmark::cloneByReflection;
+        break;
+      case "methodHandle":
+        cloneFunction = new JacisCloningObjectAdapter<ClonedObject>(null)::cloneCommitted2WritableTxView;
+        break;
+      case "deepCopy":
+        cloneFunction = new JacisCloningObjectAdapter<ClonedObject>(null).setUseDeepCopy(true)::cloneCommitted2WritableTxView;
+        break;
+      case "deepCopyDirect":
+        cloneFunction = JacisDeepCopyCloner::deepCopy;
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown cloner: " + cloner + " (expected reflective, methodHandle, deepCopy or deepCopyDirect)");
+    }
+    value = new ClonedObject();
+  }
+
+  @Benchmark
+  public ClonedObject cloneObject() {
+    return cloneFunction.apply(value);
+  }
+
+  private static ClonedObject cloneByReflection(ClonedObject obj) {
+    try {
+      Method cloneMethod = obj.getClass().getDeclaredMethod("clone");
+      return (ClonedObject) cloneMethod.invoke(obj);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("Failed to clone object " + obj + "!", e);
+    }
+  }
+
+  /** Object with some primitive fields and a list (shared by the shallow clone, copied by the deep copy). */
+  public static class ClonedObject implements Cloneable {
+
+    private String name = "benchmark-object";
+    private long value = 1;
+    private int count = 2;
+    private double ratio = 0.5;
+    private final List<String> tags = new ArrayList<>();
+
+    public ClonedObject() {
+      tags.add("a");
+      tags.add("b");
+    }
+
+    @Override
+    public ClonedObject clone() {
+      try {
+        return (ClonedObject) super.clone(); // shallow clone (the list is shared)
+      } catch (CloneNotSupportedException e) {
+        throw new InternalError("Could not clone " + this.getClass().getName());
+      }
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "(" + name + ":" + value + "/" + count + "/" + ratio + ")";
+    }
+
+  } // END OF:  public static class ClonedObject
+
+}
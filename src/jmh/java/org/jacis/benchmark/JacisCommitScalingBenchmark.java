@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.store.JacisStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Benchmark for the scaling of commits of threads working on disjoint stores.
+ *
+ * The container has {@value ContainerState#NUMBER_OF_STORES} stores (stores are identified by key and value class, therefore they use different key classes),
+ * each thread commits transactions updating one object of its own store.
+ * The `storeLevelCommitLocking` parameter selects if the commits are synchronized by the container lock
+ * or by the locks of the stores (see {@link JacisContainer#setStoreLevelCommitLocking(boolean)}).
+ * With store level locking the throughput should scale up to the number of stores.
+ *
+ * @author Jan Wiemer
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JacisCommitScalingBenchmark {
+
+  @Benchmark
+  public void commit(ContainerState container, StoreChooser chooser) {
+    String key = chooser.nextKey();
+    container.container.withLocalTx(() -> chooser.store.update(key, new BenchmarkObject(key, 1, "payload")));
+  }
+
+  /** Container with the disjoint stores (shared by all threads of a trial). */
+  @State(Scope.Benchmark)
+  public static class ContainerState {
+
+    /** Number of disjoint stores (each thread updates the store with the index of the thread modulo this number) */
+    static final int NUMBER_OF_STORES = 8;
+    /** The different key classes of the stores */
+    private static final Class<?>[] KEY_CLASSES = { String.class, Integer.class, Long.class, Short.class, Byte.class, Character.class, Double.class, Float.class };
+
+    @Param({ "false", "true" })
+    public boolean storeLevelCommitLocking;
+
+    JacisContainer container;
+    List<JacisStore<Object, BenchmarkObject>> stores;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      container = new JacisContainer().setStoreLevelCommitLocking(storeLevelCommitLocking);
+      stores = new ArrayList<>(NUMBER_OF_STORES);
+      for (int i = 0; i < NUMBER_OF_STORES; i++) {
+        @SuppressWarnings("unchecked")
+        Class<Object> keyClass = (Class<Object>) KEY_CLASSES[i];
+        JacisObjectTypeSpec<Object, BenchmarkObject, BenchmarkObject> spec = new JacisObjectTypeSpec<>(keyClass, BenchmarkObject.class, new JacisCloningObjectAdapter<>());
+        spec.setSyncStoreOnContainerTransaction(!storeLevelCommitLocking);
+        stores.add(container.createStore(spec).getStore());
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      container.clearAllStores();
+    }
+
+  } // END OF:  public static class ContainerState
+
+  /** The store of a thread and the keys it updates. */
+  @State(Scope.Thread)
+  public static class StoreChooser {
+
+    /** Number of different keys updated by a thread */
+    private static final int NUMBER_OF_KEYS = 100;
+
+    JacisStore<Object, BenchmarkObject> store;
+    private String[] keys;
+    private int nextKey;
+
+    @Setup(Level.Trial)
+    public void setUp(ContainerState container, ThreadParams threadParams) {
+      store = container.stores.get(threadParams.getThreadIndex() % ContainerState.NUMBER_OF_STORES);
+      keys = new String[NUMBER_OF_KEYS];
+      for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+        keys[i] = "obj-" + i;
+      }
+    }
+
+    String nextKey() {
+      String key = keys[nextKey];
+      nextKey = (nextKey + 1) % NUMBER_OF_KEYS;
+      return key;
+    }
+
+  } // END OF:  public static class StoreChooser
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.persistent.JacisPersistentMap;
+import org.jacis.plugin.objectadapter.cloning.JacisCloneable;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.objectadapter.copyonwrite.JacisCopyOnWriteObjectAdapter;
+import org.jacis.store.JacisStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for a transaction updating one item of a large value (a value containing a map with `numberOfItems` items).
+ *
+ * - `cloning`: the value keeps the items in a {@link HashMap} copied by the {@link JacisCloningObjectAdapter}.
+ * - `copyOnWrite`: the value keeps the items in a {@link JacisPersistentMap} shared by the {@link JacisCopyOnWriteObjectAdapter}.
+ *
+ * The benchmarks are intended to be run with a single thread (all transactions update the same value).
+ *
+ * @author Jan Wiemer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JacisCopyOnWriteBenchmark {
+
+  @Benchmark
+  public void cloning(CloningState state) {
+    String key = state.nextItemKey();
+    state.container.withLocalTx(() -> {
+      HashMapValue value = state.store.get("v");
+      value.items.put(key, value.items.get(key) + 1);
+      state.store.update("v", value);
+    });
+  }
+
+  @Benchmark
+  public void copyOnWrite(CopyOnWriteState state) {
+    String key = state.nextItemKey();
+    state.container.withLocalTx(() -> {
+      PersistentMapValue value = state.store.get("v");
+      value.items = value.items.with(key, value.items.get(key) + 1);
+      state.store.update("v", value);
+    });
+  }
+
+  /** Base class of the states holding the store with the single large value. */
+  @State(Scope.Benchmark)
+  public abstract static class LargeValueState {
+
+    @Param({ "10000" })
+    public int numberOfItems;
+
+    JacisContainer container;
+    private String[] itemKeys;
+    private int nextItem;
+
+    void initItemKeys() {
+      itemKeys = new String[numberOfItems];
+      for (int i = 0; i < numberOfItems; i++) {
+        itemKeys[i] = "item-" + i;
+      }
+    }
+
+    String nextItemKey() {
+      String key = itemKeys[nextItem];
+      nextItem = (nextItem + 1) % itemKeys.length;
+      return key;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      container.clearAllStores();
+    }
+
+  } // END OF:  public abstract static class LargeValueState
+
+  /** Store with a value keeping the items in a hash map (cloning object adapter). */
+  @State(Scope.Benchmark)
+  public static class CloningState extends LargeValueState {
+
+    JacisStore<String, HashMapValue> store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      initItemKeys();
+      container = new JacisContainer();
+      store = container.createStore(new JacisObjectTypeSpec<>(String.class, HashMapValue.class, new JacisCloningObjectAdapter<HashMapValue>())).getStore();
+      HashMapValue initial = new HashMapValue();
+      for (int i = 0; i < numberOfItems; i++) {
+        initial.items.put(nextItemKey(), (long) i);
+      }
+      container.withLocalTx(() -> store.update("v", initial));
+    }
+
+  } // END OF:  public static class CloningState
+
+  /** Store with a value keeping the items in a persistent map (copy on write object adapter). */
+  @State(Scope.Benchmark)
+  public static class CopyOnWriteState extends LargeValueState {
+
+    JacisStore<String, PersistentMapValue> store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      initItemKeys();
+      container = new JacisContainer();
+      store = container.createStore(new JacisObjectTypeSpec<>(String.class, PersistentMapValue.class, new JacisCopyOnWriteObjectAdapter<PersistentMapValue>())).getStore();
+      PersistentMapValue initial = new PersistentMapValue();
+      for (int i = 0; i < numberOfItems; i++) {
+        initial.items = initial.items.with(nextItemKey(), (long) i);
+      }
+      container.withLocalTx(() -> store.update("v", initial));
+    }
+
+  } // END OF:  public static class CopyOnWriteState
+
+  /** Value keeping the items in a hash map (deep copied on clone). */
+  public static class HashMapValue implements JacisCloneable<HashMapValue> {
+
+    private Map<String, Long> items = new HashMap<>();
+
+    @Override
+    public HashMapValue clone() {
+      try {
+        HashMapValue clone = (HashMapValue) super.clone();
+        clone.items = new HashMap<>(items); // deep copy of the mutable map
+        return clone;
+      } catch (CloneNotSupportedException e) {
+        throw new InternalError("Could not clone " + this.getClass().getName());
+      }
+    }
+
+  } // END OF:  public static class HashMapValue
+
+  /** Value keeping the items in a persistent map (shared on clone). */
+  public static class PersistentMapValue implements JacisCloneable<PersistentMapValue> {
+
+    private JacisPersistentMap<String, Long> items = JacisPersistentMap.empty();
+
+    @Override
+    public PersistentMapValue clone() {
+      try {
+        return (PersistentMapValue) super.clone(); // shallow copy sharing the persistent map
+      } catch (CloneNotSupportedException e) {
+        throw new InternalError("Could not clone " + this.getClass().getName());
+      }
+    }
+
+  } // END OF:  public static class PersistentMapValue
+
+}
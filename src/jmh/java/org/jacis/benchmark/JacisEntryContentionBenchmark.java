@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.exception.JacisStaleObjectException;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.store.JacisStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for readers and writers contending for the few ({@value ContentionState#NUMBER_OF_KEYS}) entries of a store
+ * with entry level commit locking (see {@link JacisObjectTypeSpec#setEntryLevelCommitLocking(boolean)}).
+ *
+ * - `readOnly` / `readInTx`: readers only, reading a value read only (outside a transaction) respectively inside a transaction.
+ * - `mixed`: six threads reading values read only, two threads reading values inside a transaction and two threads committing updates.
+ *   Concurrent updates of the same object fail with a {@link JacisStaleObjectException} (only the throughput is measured).
+ *
+ * @author Jan Wiemer
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JacisEntryContentionBenchmark {
+
+  @Benchmark
+  public long readOnly(ContentionState state) {
+    return state.store.getReadOnly(state.nextKey()).getValue();
+  }
+
+  @Benchmark
+  public void readInTx(ContentionState state, Blackhole blackhole) {
+    readInTx(state, state.nextKey(), blackhole);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(6)
+  public long mixedReadOnly(ContentionState state) {
+    return state.store.getReadOnly(state.nextKey()).getValue();
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(2)
+  public void mixedReadInTx(ContentionState state, Blackhole blackhole) {
+    readInTx(state, state.nextKey(), blackhole);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(2)
+  public void mixedCommit(ContentionState state) {
+    String key = state.nextKey();
+    try {
+      state.container.withLocalTx(() -> {
+        BenchmarkObject obj = state.store.get(key);
+        state.store.update(key, obj.setValue(obj.getValue() + 1));
+      });
+    } catch (JacisStaleObjectException e) {
+      // only measuring throughput
+    }
+  }
+
+  private void readInTx(ContentionState state, String key, Blackhole blackhole) { // creates the transactional view of the entry
+    state.container.withLocalTx(() -> blackhole.consume(state.store.get(key).getValue()));
+  }
+
+  /** Store with entry level commit locking and only few entries (shared by all threads of a trial). */
+  @State(Scope.Benchmark)
+  public static class ContentionState {
+
+    /** Number of objects in the store */
+    static final int NUMBER_OF_KEYS = 16;
+
+    JacisContainer container;
+    JacisStore<String, BenchmarkObject> store;
+    /** The keys of the store (precomputed to keep the key creation out of the measurement) */
+    String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      container = new JacisContainer();
+      JacisObjectTypeSpec<String, BenchmarkObject, BenchmarkObject> spec = new JacisObjectTypeSpec<>(String.class, BenchmarkObject.class, new JacisCloningObjectAdapter<>());
+      store = container.createStore(spec.setEntryLevelCommitLocking(true)).getStore();
+      keys = new String[NUMBER_OF_KEYS];
+      for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+        keys[i] = "obj-" + i;
+      }
+      container.withLocalTx(() -> {
+        for (String key : keys) {
+          store.update(key, new BenchmarkObject(key, 0, "payload"));
+        }
+      });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      container.clearAllStores();
+    }
+
+    String nextKey() {
+      return keys[ThreadLocalRandom.current().nextInt(NUMBER_OF_KEYS)];
+    }
+
+  } // END OF:  public static class ContentionState
+
+}
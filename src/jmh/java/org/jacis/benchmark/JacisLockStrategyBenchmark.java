@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisLockStrategy;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.exception.JacisStaleObjectException;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.txadapter.local.JacisTransactionAdapterLocal;
+import org.jacis.store.JacisStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks comparing the lock strategies (see {@link JacisLockStrategy}) for the lock of a store.
+ *
+ * The store uses an own lock (not synchronized on the container transaction) with the strategy selected by the `lockStrategy` parameter
+ * (the transaction demarcation lock of the container uses the same strategy).
+ * The keys are uniformly distributed over the {@value LockStrategyState#STORE_SIZE} objects of the store.
+ *
+ * - `firstTouch`: a transaction reading {@value #READS_PER_TX} values by the `get` method (creating the transactional view of the entries).
+ * - `computeAtomic`: an atomic operation summing up {@value #READS_PER_TX} read only values (always holding the lock).
+ * - `computeAtomicOptimistic`: the same operation, first executed without locking (for the `STAMPED` strategy).
+ * - `mixed`: three threads running `firstTouch` transactions while one thread commits updates of single objects.
+ *
+ * @author Jan Wiemer
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JacisLockStrategyBenchmark {
+
+  /** Number of objects read inside one transaction respectively one atomic operation */
+  private static final int READS_PER_TX = 10;
+
+  @Benchmark
+  @OperationsPerInvocation(READS_PER_TX)
+  public void firstTouch(LockStrategyState state, Blackhole blackhole) {
+    readInTx(state, blackhole);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(READS_PER_TX)
+  public long computeAtomic(LockStrategyState state) {
+    return state.store.computeAtomic(() -> sumReadOnly(state));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(READS_PER_TX)
+  public long computeAtomicOptimistic(LockStrategyState state) {
+    return state.store.computeAtomicOptimistic(() -> sumReadOnly(state));
+  }
+
+  private long sumReadOnly(LockStrategyState state) {
+    long sum = 0;
+    for (int i = 0; i < READS_PER_TX; i++) {
+      sum += state.store.getReadOnly(state.nextKey()).getValue();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(3)
+  @OperationsPerInvocation(READS_PER_TX)
+  public void mixedFirstTouch(LockStrategyState state, Blackhole blackhole) {
+    readInTx(state, blackhole);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(1)
+  public void mixedCommit(LockStrategyState state) {
+    String key = state.nextKey();
+    try {
+      state.container.withLocalTx(() -> {
+        BenchmarkObject obj = state.store.get(key);
+        state.store.update(key, obj.setValue(obj.getValue() + 1));
+      });
+    } catch (JacisStaleObjectException e) {
+      // only measuring throughput
+    }
+  }
+
+  private void readInTx(LockStrategyState state, Blackhole blackhole) {
+    state.container.withLocalTx(() -> {
+      for (int i = 0; i < READS_PER_TX; i++) {
+        blackhole.consume(state.store.get(state.nextKey()).getValue());
+      }
+    });
+  }
+
+  /** Store with an own lock using the lock strategy to benchmark (shared by all threads of a trial). */
+  @State(Scope.Benchmark)
+  public static class LockStrategyState {
+
+    /** Number of objects in the store */
+    static final int STORE_SIZE = 10000;
+
+    @Param({ "FAIR", "NON_FAIR", "STAMPED" })
+    public JacisLockStrategy lockStrategy;
+
+    JacisContainer container;
+    JacisStore<String, BenchmarkObject> store;
+    /** The keys of the store (precomputed to keep the key creation out of the measurement) */
+    String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      container = new JacisContainer(new JacisTransactionAdapterLocal(), lockStrategy);
+      JacisObjectTypeSpec<String, BenchmarkObject, BenchmarkObject> spec = new JacisObjectTypeSpec<>(String.class, BenchmarkObject.class, new JacisCloningObjectAdapter<>());
+      store = container.createStore(spec.setSyncStoreOnContainerTransaction(false).setLockStrategy(lockStrategy)).getStore();
+      keys = new String[STORE_SIZE];
+      List<BenchmarkObject> values = new ArrayList<>(STORE_SIZE);
+      for (int i = 0; i < STORE_SIZE; i++) {
+        keys[i] = "obj-" + i;
+        values.add(new BenchmarkObject(keys[i], i, "payload"));
+      }
+      store.initStoreNonTransactional(values, BenchmarkObject::getName, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      container.clearAllStores();
+    }
+
+    String nextKey() {
+      return keys[ThreadLocalRandom.current().nextInt(STORE_SIZE)];
+    }
+
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jacis.plugin.objectadapter.JacisObjectAdapter;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.objectadapter.serialization.JacisBinarySerializationObjectAdapter;
+import org.jacis.plugin.objectadapter.serialization.JacisJavaSerializationObjectAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the object adapters alone (without a store):
+ * an object is copied from the transactional view to the committed values and back to a read only view
+ * (the round trip done for each object by a commit and a subsequent read).
+ * The `valueType` parameter selects the copied object:
+ * - `plain`: a {@link BenchmarkObject} (only primitive and string fields).
+ * - `jdkTypes`: a {@link JdkTypesObject} additionally referring boxed values, a big decimal and small collections.
+ *
+ * @author Jan Wiemer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JacisObjectAdapterBenchmark {
+
+  @Param({ "cloning", "serialization", "javaSerialization" })
+  public String adapter;
+
+  @Param({ "plain", "jdkTypes" })
+  public String valueType;
+
+  private JacisObjectAdapter<BenchmarkObject, Object> objectAdapter;
+  private BenchmarkObject value;
+
+  @SuppressWarnings("unchecked")
+  @Setup(Level.Trial)
+  public void setUp() {
+    Class<BenchmarkObject> valueClass = (Class<BenchmarkObject>) ("jdkTypes".equals(valueType) ? JdkTypesObject.class : BenchmarkObject.class);
+    switch (adapter) {
+      case "cloning":
+        objectAdapter = (JacisObjectAdapter<BenchmarkObject, Object>) (JacisObjectAdapter<BenchmarkObject, ?>) new JacisCloningObjectAdapter<BenchmarkObject>();
+        break;
+      case "serialization":
+        objectAdapter = (JacisObjectAdapter<BenchmarkObject, Object>) (JacisObjectAdapter<BenchmarkObject, ?>) new JacisBinarySerializationObjectAdapter<>(valueClass);
+        break;
+      case "javaSerialization":
+        objectAdapter = (JacisObjectAdapter<BenchmarkObject, Object>) (JacisObjectAdapter<BenchmarkObject, ?>) new JacisJavaSerializationObjectAdapter<BenchmarkObject>();
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown object adapter: " + adapter + " (expected cloning, serialization or javaSerialization)");
+    }
+    String payload = String.format("%064d", 0);
+    value = "jdkTypes".equals(valueType) ? new JdkTypesObject("obj-1", 1, payload) : new BenchmarkObject("obj-1", 1, payload);
+  }
+
+  @Benchmark
+  public BenchmarkObject roundTrip() {
+    return objectAdapter.cloneCommitted2ReadOnlyTxView(objectAdapter.cloneTxView2Committed(value));
+  }
+
+  /** Benchmark object additionally referring some commonly used JDK types (deep copied by the clone method). */
+  public static class JdkTypesObject extends BenchmarkObject {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer count;
+    private Long timestamp;
+    private BigDecimal amount;
+    private ArrayList<Integer> numbers;
+    private HashMap<String, Long> attributes;
+
+    public JdkTypesObject(String name, long value, String payload) {
+      super(name, value, payload);
+      count = 42;
+      timestamp = 1234567890123L;
+      amount = new BigDecimal("1234.56");
+      numbers = new ArrayList<>();
+      attributes = new HashMap<>();
+      for (int i = 0; i < 5; i++) {
+        numbers.add(i * 100);
+        attributes.put("attr-" + i, (long) i);
+      }
+    }
+
+    @Override
+    public JdkTypesObject clone() {
+      JdkTypesObject clone = (JdkTypesObject) super.clone();
+      clone.numbers = new ArrayList<>(numbers);
+      clone.attributes = new HashMap<>(attributes);
+      return clone;
+    }
+
+  } // END OF:  public static class JdkTypesObject
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.index.JacisSortedIndex;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.store.JacisStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for reading the page with the number `page` (of {@value PagingState#PAGE_SIZE} values sorted by their value)
+ * of a store with `storeSize` objects (the values are a permutation of the numbers from 0 to storeSize-1).
+ *
+ * - `fullSort`: sorting the stream of all values and skipping the values before the page.
+ * - `boundedHeap`: selecting the page with a bounded heap (see {@link JacisStore#getPageReadOnly}).
+ * - `sortedIndex`: reading the page from a sorted index (see {@link org.jacis.store.JacisIndexRegistry#getPageReadOnly}).
+ *
+ * @author Jan Wiemer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JacisPagingBenchmark {
+
+  @Benchmark
+  public List<BenchmarkObject> fullSort(PagingState state) {
+    return state.store.streamReadOnly().sorted(PagingState.BY_VALUE).skip(state.offset).limit(PagingState.PAGE_SIZE).collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<BenchmarkObject> boundedHeap(PagingState state) {
+    return state.store.getPageReadOnly(null, PagingState.BY_VALUE, state.offset, PagingState.PAGE_SIZE);
+  }
+
+  @Benchmark
+  public List<BenchmarkObject> sortedIndex(PagingState state) {
+    return state.store.getIndexRegistry().getPageReadOnly(state.index, null, null, state.offset, PagingState.PAGE_SIZE);
+  }
+
+  /** Store with a sorted index on the values (shared by all threads of a trial). */
+  @State(Scope.Benchmark)
+  public static class PagingState {
+
+    /** Number of values of a page */
+    static final int PAGE_SIZE = 20;
+    /** The order of the pages */
+    static final Comparator<BenchmarkObject> BY_VALUE = Comparator.comparingLong(BenchmarkObject::getValue);
+
+    @Param({ "1000000" })
+    public int storeSize;
+
+    @Param({ "1", "100" })
+    public int page;
+
+    JacisContainer container;
+    JacisStore<String, BenchmarkObject> store;
+    JacisSortedIndex<Long, String, BenchmarkObject> index;
+    long offset;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      container = new JacisContainer();
+      store = container.createStore(new JacisObjectTypeSpec<>(String.class, BenchmarkObject.class, new JacisCloningObjectAdapter<BenchmarkObject>())).getStore();
+      List<BenchmarkObject> values = new ArrayList<>(storeSize);
+      for (int i = 0; i < storeSize; i++) {
+        values.add(new BenchmarkObject("obj-" + i, (i * 7919L) % storeSize, "payload"));
+      }
+      store.initStoreNonTransactional(values, BenchmarkObject::getName, Runtime.getRuntime().availableProcessors());
+      index = store.getIndexRegistry().createSortedIndex("byValue", BenchmarkObject::getValue);
+      offset = (page - 1L) * PAGE_SIZE;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      container.clearAllStores();
+    }
+
+  } // END OF:  public static class PagingState
+
+}
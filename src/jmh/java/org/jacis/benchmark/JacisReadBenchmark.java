@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the read operations of a store.
+ *
+ * - `getReadOnly`: read only access to a committed value outside a transaction.
+ * - `get`: a transaction reading {@value #READS_PER_TX} values by the `get` method (creating the transactional view of the entries).
+ * - `getReadOnlyInTx`: a transaction reading {@value #READS_PER_TX} values read only (each read looks up the transactional view of the store).
+ * - `stream`: summing up the values of all objects by a read only stream (the key distribution is irrelevant for this benchmark).
+ * - `streamFiltered` / `parallelStreamFiltered`: summing up the values of every seventh object by a sequential respectively parallel read only stream.
+ *
+ * @author Jan Wiemer
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JacisReadBenchmark {
+
+  /** Number of objects read inside one transaction by the `get` benchmark */
+  private static final int READS_PER_TX = 10;
+
+  @Benchmark
+  public long getReadOnly(JacisStoreState state, KeyChooser keys) {
+    return state.store.getReadOnly(keys.nextKey()).getValue();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(READS_PER_TX)
+  public void get(JacisStoreState state, KeyChooser keys, Blackhole blackhole) {
+    state.container.withLocalTx(() -> {
+      for (int i = 0; i < READS_PER_TX; i++) {
+        blackhole.consume(state.store.get(keys.nextKey()).getValue());
+      }
+    });
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(READS_PER_TX)
+  public void getReadOnlyInTx(JacisStoreState state, KeyChooser keys, Blackhole blackhole) {
+    state.container.withLocalTx(() -> {
+      for (int i = 0; i < READS_PER_TX; i++) {
+        blackhole.consume(state.store.getReadOnly(keys.nextKey()).getValue());
+      }
+    });
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public long stream(JacisStoreState state) {
+    return state.store.streamReadOnly().mapToLong(BenchmarkObject::getValue).sum();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public long streamFiltered(JacisStoreState state) {
+    return state.store.streamReadOnly(o -> o.getValue() % 7 == 0).mapToLong(BenchmarkObject::getValue).sum();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public long parallelStreamFiltered(JacisStoreState state) {
+    return state.store.parallelStreamReadOnly(o -> o.getValue() % 7 == 0).mapToLong(BenchmarkObject::getValue).sum();
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.plugin.objectadapter.JacisObjectAdapter;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.objectadapter.serialization.JacisBinarySerializationObjectAdapter;
+import org.jacis.plugin.objectadapter.serialization.JacisJavaSerializationObjectAdapter;
+import org.jacis.plugin.objectadapter.serialization.JacisOffHeapObjectAdapter;
+import org.jacis.store.JacisStore;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Store shared by all threads of a benchmark trial.
+ *
+ * The store is filled once per trial with `storeSize` objects (keys `obj-0` ... `obj-<storeSize-1>`).
+ * The object adapter is selected by the `adapter` parameter:
+ * - `cloning`: {@link JacisCloningObjectAdapter}
+ * - `serialization`: {@link JacisBinarySerializationObjectAdapter}
+ * - `javaSerialization`: {@link JacisJavaSerializationObjectAdapter} (not run by default, select with `-p adapter=javaSerialization`)
+ * - `offHeap`: {@link JacisOffHeapObjectAdapter} (not run by default, select with `-p adapter=offHeap`)
+ *
+ * Note that the large store sizes need a big heap for the forked benchmark JVM (e.g. `-Pjmh.jvmArgs=-Xmx16g`).
+ *
+ * @author Jan Wiemer
+ */
+@State(Scope.Benchmark)
+public class JacisStoreState {
+
+  /** Size of the payload string of each object (the objects have a size of about 100 bytes) */
+  private static final int PAYLOAD_SIZE = 64;
+
+  @Param({ "cloning", "serialization" })
+  public String adapter;
+
+  @Param({ "1000", "100000", "1000000", "10000000" })
+  public int storeSize;
+
+  @Param({ "uniform", "hot" })
+  public String keyDistribution;
+
+  JacisContainer container;
+  JacisStore<String, BenchmarkObject> store;
+  /** The keys of the store (precomputed to keep the key creation out of the measurement) */
+  String[] keys;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    container = new JacisContainer();
+    store = container.createStore(new JacisObjectTypeSpec<>(String.class, BenchmarkObject.class, createObjectAdapter())).getStore();
+    keys = new String[storeSize];
+    String payload = String.format("%0" + PAYLOAD_SIZE + "d", 0);
+    List<BenchmarkObject> values = new ArrayList<>(storeSize);
+    for (int i = 0; i < storeSize; i++) {
+      keys[i] = "obj-" + i;
+      values.add(new BenchmarkObject(keys[i], i, payload));
+    }
+    store.initStoreNonTransactional(values, BenchmarkObject::getName, Runtime.getRuntime().availableProcessors());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    container.clearAllStores();
+  }
+
+  private JacisObjectAdapter<BenchmarkObject, ?> createObjectAdapter() {
+    switch (adapter) {
+      case "cloning":
+        return new JacisCloningObjectAdapter<>();
+      case "serialization":
+        return new JacisBinarySerializationObjectAdapter<>(BenchmarkObject.class);
+      case "javaSerialization":
+        return new JacisJavaSerializationObjectAdapter<>();
+      case "offHeap":
+        return new JacisOffHeapObjectAdapter<>(BenchmarkObject.class);
+      default:
+        throw new IllegalArgumentException("Unknown object adapter: " + adapter + " (expected cloning, serialization, javaSerialization or offHeap)");
+    }
+  }
+
+}
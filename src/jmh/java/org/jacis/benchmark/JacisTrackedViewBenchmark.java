@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.store.JacisStore;
+import org.jacis.store.TrackedViewRegistry;
+import org.jacis.trackedviews.TrackedView;
+import org.jacis.trackedviews.TrackedViewClustered;
+import org.jacis.trackedviews.TrackedViewKeyed;
+import org.jacis.trackedviews.TrackedViewVersionedClustered;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the maintenance of tracked views.
+ *
+ * - `transactionLocalTracking`: a transaction reading {@value TrackingState#NUMBER_OF_VIEWS} views and updating all
+ *   {@value TrackingState#NUMBER_OF_OBJECTS} objects (the modifications are tracked at the transaction local snapshots of the views).
+ *   The `viewType` parameter selects plain tracked views (cloning the last updated values) or keyed tracked views (keeping the contributions).
+ * - `clusteredViewSnapshot`: taking a snapshot of a clustered view with one sub view for each of the {@value SnapshotState#NUMBER_OF_OBJECTS} objects.
+ *   The `clusteredView` parameter selects a clustered view cloning all sub views or a versioned clustered view sharing the persistent state.
+ * - `commit`: a transaction updating {@value CommitState#NUMBER_OF_OBJECTS} objects with `numberOfViews` views doing some computation for each modification.
+ *   The `parallelUpdates` parameter selects if the views are updated sequentially or in parallel (see {@link TrackedViewRegistry#setParallelUpdateThreshold(int)}).
+ *
+ * The benchmarks are intended to be run with a single thread (all transactions update the same objects).
+ *
+ * @author Jan Wiemer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JacisTrackedViewBenchmark {
+
+  @Benchmark
+  public void transactionLocalTracking(TrackingState state) {
+    state.container.withLocalTx(() -> {
+      for (int v = 0; v < TrackingState.NUMBER_OF_VIEWS; v++) { // the TX tracks its modifications at the view snapshots
+        state.store.getTrackedViewRegistry().getView("view-" + v);
+      }
+      updateAll(state.store, state.keys);
+    });
+  }
+
+  @Benchmark
+  public TrackedView<BenchmarkObject> clusteredViewSnapshot(SnapshotState state) {
+    return state.store.getTrackedViewRegistry().getView(SnapshotState.VIEW_NAME);
+  }
+
+  @Benchmark
+  public void commit(CommitState state) {
+    state.container.withLocalTx(() -> updateAll(state.store, state.keys));
+  }
+
+  private static void updateAll(JacisStore<String, BenchmarkObject> store, String[] keys) {
+    for (String key : keys) {
+      BenchmarkObject obj = store.get(key);
+      store.update(key, obj.setValue(obj.getValue() + 1));
+    }
+  }
+
+  private static String[] initStore(JacisContainer container, JacisStore<String, BenchmarkObject> store, int numberOfObjects) {
+    String[] keys = new String[numberOfObjects];
+    for (int i = 0; i < numberOfObjects; i++) {
+      keys[i] = "obj-" + i;
+    }
+    container.withLocalTx(() -> {
+      for (int i = 0; i < keys.length; i++) {
+        store.update(keys[i], new BenchmarkObject(keys[i], i, "payload"));
+      }
+    });
+    return keys;
+  }
+
+  private static JacisStore<String, BenchmarkObject> createStore(JacisContainer container) {
+    return container.createStore(new JacisObjectTypeSpec<>(String.class, BenchmarkObject.class, new JacisCloningObjectAdapter<BenchmarkObject>())).getStore();
+  }
+
+  /** Store with the views tracking the modifications of a transaction. */
+  @State(Scope.Benchmark)
+  public static class TrackingState {
+
+    /** Number of objects in the store (all updated by each transaction) */
+    static final int NUMBER_OF_OBJECTS = 10000;
+    /** Number of registered views */
+    static final int NUMBER_OF_VIEWS = 5;
+
+    @Param({ "tracked", "keyed" })
+    public String viewType;
+
+    JacisContainer container;
+    JacisStore<String, BenchmarkObject> store;
+    String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      container = new JacisContainer();
+      store = createStore(container);
+      keys = initStore(container, store, NUMBER_OF_OBJECTS);
+      for (int v = 0; v < NUMBER_OF_VIEWS; v++) {
+        store.getTrackedViewRegistry().registerTrackedView("view-" + v, "keyed".equals(viewType) ? new SumViewKeyed() : new SumView());
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      container.clearAllStores();
+    }
+
+  } // END OF:  public static class TrackingState
+
+  /** Store with a clustered view having one sub view per object. */
+  @State(Scope.Benchmark)
+  public static class SnapshotState {
+
+    /** Number of objects in the store (and sub views of the clustered view) */
+    static final int NUMBER_OF_OBJECTS = 100000;
+    /** Name of the clustered view */
+    static final String VIEW_NAME = "clustered";
+
+    @Param({ "cloning", "versioned" })
+    public String clusteredView;
+
+    JacisContainer container;
+    JacisStore<String, BenchmarkObject> store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      container = new JacisContainer();
+      store = createStore(container);
+      initStore(container, store, NUMBER_OF_OBJECTS);
+      store.getTrackedViewRegistry().registerTrackedView(VIEW_NAME, "versioned".equals(clusteredView) ? new VersionedClusteredView() : new CloningClusteredView());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      container.clearAllStores();
+    }
+
+  } // END OF:  public static class SnapshotState
+
+  /** Store with views updated on commit. */
+  @State(Scope.Benchmark)
+  public static class CommitState {
+
+    /** Number of objects in the store (all updated by each transaction) */
+    static final int NUMBER_OF_OBJECTS = 10000;
+
+    @Param({ "1", "2", "4", "8" })
+    public int numberOfViews;
+
+    @Param({ "false", "true" })
+    public boolean parallelUpdates;
+
+    JacisContainer container;
+    JacisStore<String, BenchmarkObject> store;
+    String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      container = new JacisContainer();
+      store = createStore(container);
+      keys = initStore(container, store, NUMBER_OF_OBJECTS);
+      store.getTrackedViewRegistry().setParallelUpdateThreshold(parallelUpdates ? TrackedViewRegistry.DEFAULT_PARALLEL_UPDATE_THRESHOLD : Integer.MAX_VALUE);
+      for (int v = 0; v < numberOfViews; v++) {
+        store.getTrackedViewRegistry().registerTrackedView("view-" + v, new ExpensiveView());
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      container.clearAllStores();
+    }
+
+  } // END OF:  public static class CommitState
+
+  /** Tracked view counting the objects and summing up their values. */
+  public static class SumView implements TrackedView<BenchmarkObject> {
+
+    private int count = 0;
+    private long sum = 0;
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public TrackedView<BenchmarkObject> clone() {
+      try {
+        return (TrackedView<BenchmarkObject>) super.clone();
+      } catch (CloneNotSupportedException e) {
+        throw new InternalError("Could not clone " + this.getClass().getName());
+      }
+    }
+
+    @Override
+    public void trackModification(BenchmarkObject oldValue, BenchmarkObject newValue) {
+      sum += (newValue == null ? 0 : newValue.getValue()) - (oldValue == null ? 0 : oldValue.getValue());
+      if (oldValue == null && newValue != null) {
+        count++;
+      } else if (oldValue != null && newValue == null) {
+        count--;
+      }
+    }
+
+    @Override
+    public void checkView(List<BenchmarkObject> values) {
+      // not checked
+    }
+
+    @Override
+    public void clear() {
+      count = 0;
+      sum = 0;
+    }
+
+  } // END OF:  public static class SumView
+
+  /** Keyed tracked view counting the objects and summing up their values (the contribution of an object is its value). */
+  public static class SumViewKeyed implements TrackedViewKeyed<String, BenchmarkObject, Long> {
+
+    private int count = 0;
+    private long sum = 0;
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public TrackedViewKeyed<String, BenchmarkObject, Long> clone() {
+      try {
+        return (TrackedViewKeyed<String, BenchmarkObject, Long>) super.clone();
+      } catch (CloneNotSupportedException e) {
+        throw new InternalError("Could not clone " + this.getClass().getName());
+      }
+    }
+
+    @Override
+    public Long getContribution(String key, BenchmarkObject value) {
+      return value == null ? null : value.getValue();
+    }
+
+    @Override
+    public void trackContributionChange(String key, Long oldContribution, Long newContribution) {
+      sum += (newContribution == null ? 0 : newContribution) - (oldContribution == null ? 0 : oldContribution);
+      if (oldContribution == null && newContribution != null) {
+        count++;
+      } else if (oldContribution != null && newContribution == null) {
+        count--;
+      }
+    }
+
+    @Override
+    public void checkView(List<BenchmarkObject> values) {
+      // not checked
+    }
+
+    @Override
+    public void clear() {
+      count = 0;
+      sum = 0;
+    }
+
+  } // END OF:  public static class SumViewKeyed
+
+  /** View doing some computation for each tracked modification. */
+  public static class ExpensiveView extends SumView {
+
+    private long hash;
+
+    @Override
+    public void trackModification(BenchmarkObject oldValue, BenchmarkObject newValue) {
+      super.trackModification(oldValue, newValue);
+      for (int i = 0; i < 200; i++) {
+        hash = 31 * hash + (newValue == null ? i : newValue.getName().hashCode() + i);
+      }
+    }
+
+  } // END OF:  public static class ExpensiveView
+
+  /** Clustered view (one sub view per object) cloning all sub views for a snapshot. */
+  public static class CloningClusteredView implements TrackedViewClustered<BenchmarkObject, String, SumView> {
+
+    private HashMap<String, SumView> subViews = new HashMap<>();
+
+    @Override
+    public SumView getSubView(String key) {
+      return subViews.computeIfAbsent(key, k -> new SumView());
+    }
+
+    @Override
+    public Collection<String> getSubViewKeys() {
+      return subViews.keySet();
+    }
+
+    @Override
+    public void trackModification(BenchmarkObject oldValue, BenchmarkObject newValue) {
+      if (oldValue != null) {
+        getSubView(oldValue.getName()).trackModification(oldValue, null);
+      }
+      if (newValue != null) {
+        getSubView(newValue.getName()).trackModification(null, newValue);
+      }
+    }
+
+    @Override
+    public void checkView(List<BenchmarkObject> values) {
+      // not checked
+    }
+
+    @Override
+    public void clear() {
+      subViews.clear();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CloningClusteredView clone() {
+      try {
+        CloningClusteredView clone = (CloningClusteredView) super.clone();
+        clone.subViews = new HashMap<>(subViews.size());
+        subViews.forEach((k, v) -> clone.subViews.put(k, (SumView) v.clone()));
+        return clone;
+      } catch (CloneNotSupportedException e) {
+        throw new InternalError("Could not clone " + this.getClass().getName());
+      }
+    }
+
+  } // END OF:  public static class CloningClusteredView
+
+  /** Versioned clustered view (one sub view per object) sharing the persistent state with the snapshot. */
+  public static class VersionedClusteredView extends TrackedViewVersionedClustered<BenchmarkObject, String, Long> {
+
+    public VersionedClusteredView() {
+      super(0L);
+    }
+
+    @Override
+    protected String getSubViewKey(BenchmarkObject value) {
+      return value.getName();
+    }
+
+    @Override
+    protected Long computeNextSubViewState(Long currentState, BenchmarkObject oldValue, BenchmarkObject newValue) {
+      return currentState + (newValue == null ? 0 : newValue.getValue()) - (oldValue == null ? 0 : oldValue.getValue());
+    }
+
+    @Override
+    public void checkView(List<BenchmarkObject> values) {
+      // not checked
+    }
+
+  } // END OF:  public static class VersionedClusteredView
+
+}
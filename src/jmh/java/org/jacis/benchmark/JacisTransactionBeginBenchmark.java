@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.container.JacisTransactionDescriptionMode;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.store.JacisStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the overhead of short local transactions started without an explicit description
+ * for each transaction description mode (see {@link JacisTransactionDescriptionMode}, selected by the `descriptionMode` parameter).
+ *
+ * - `emptyTx`: a transaction doing nothing.
+ * - `singleUpdateTx`: a transaction updating a single object.
+ *
+ * @author Jan Wiemer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JacisTransactionBeginBenchmark {
+
+  @Benchmark
+  public void emptyTx(TransactionState state) {
+    state.container.withLocalTx(() -> {
+      // empty transaction
+    });
+  }
+
+  @Benchmark
+  public void singleUpdateTx(TransactionState state) {
+    state.container.withLocalTx(() -> state.store.update("obj-1", new BenchmarkObject("obj-1", 1, "payload")));
+  }
+
+  /** Container using the transaction description mode to benchmark (shared by all threads of a trial). */
+  @State(Scope.Benchmark)
+  public static class TransactionState {
+
+    @Param
+    public JacisTransactionDescriptionMode descriptionMode;
+
+    JacisContainer container;
+    JacisStore<String, BenchmarkObject> store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      container = new JacisContainer().setTransactionDescriptionMode(descriptionMode);
+      store = container.createStore(new JacisObjectTypeSpec<>(String.class, BenchmarkObject.class, new JacisCloningObjectAdapter<BenchmarkObject>())).getStore();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      container.clearAllStores();
+    }
+
+  } // END OF:  public static class TransactionState
+
+}
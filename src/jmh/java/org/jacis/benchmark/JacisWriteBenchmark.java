@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jacis.exception.JacisStaleObjectException;
+import org.jacis.plugin.txadapter.local.JacisLocalTransaction;
+import org.jacis.store.JacisStore;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the write operations of a store.
+ *
+ * - `update`: a transaction updating one object that is rolled back afterwards (measuring the cost of the transactional view without commit).
+ * - `commit`: a transaction updating one object that is committed.
+ *   Concurrent commits of the same object (likely for the `hot` key distribution) fail with a {@link JacisStaleObjectException}.
+ *   The number of successful commits and of the conflicts are reported as secondary results.
+ *
+ * @author Jan Wiemer
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JacisWriteBenchmark {
+
+  @Benchmark
+  public void update(JacisStoreState state, KeyChooser keys) {
+    JacisLocalTransaction tx = state.container.beginLocalTransaction("update");
+    try {
+      increment(state.store, keys.nextKey());
+    } finally {
+      tx.rollback();
+    }
+  }
+
+  @Benchmark
+  public void commit(JacisStoreState state, KeyChooser keys, CommitCounters counters) {
+    try {
+      state.container.withLocalTx(() -> increment(state.store, keys.nextKey()));
+      counters.commits++;
+    } catch (JacisStaleObjectException e) {
+      counters.conflicts++;
+    }
+  }
+
+  private void increment(JacisStore<String, BenchmarkObject> store, String key) {
+    BenchmarkObject obj = store.get(key);
+    store.update(key, obj.setValue(obj.getValue() + 1));
+  }
+
+  /** Counters for the outcome of the commits of a thread (reported as secondary results of the `commit` benchmark). */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class CommitCounters {
+
+    public long commits;
+    public long conflicts;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      commits = 0;
+      conflicts = 0;
+    }
+
+  } // END OF:  public static class CommitCounters
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.benchmark;
+
+import java.util.SplittableRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Thread local chooser of the keys accessed by a benchmark thread.
+ *
+ * Depending on the `keyDistribution` parameter of the store state the keys are chosen:
+ * - `uniform`: uniformly distributed over all keys of the store
+ * - `hot`: {@value #HOT_KEY_PERCENTAGE}% of the accesses go to the first {@value #NUMBER_OF_HOT_KEYS} keys, the remaining accesses are uniformly distributed.
+ *
+ * The random generator of each thread is seeded with a fixed seed (derived from the thread index),
+ * therefore repeated runs access the same sequence of keys.
+ *
+ * @author Jan Wiemer
+ */
+@State(Scope.Thread)
+public class KeyChooser {
+
+  /** Number of hot keys for the `hot` key distribution */
+  static final int NUMBER_OF_HOT_KEYS = 16;
+  /** Percentage of accesses to the hot keys for the `hot` key distribution */
+  static final int HOT_KEY_PERCENTAGE = 90;
+  /** Base seed for the random generators of the threads */
+  private static final long SEED = 4711;
+
+  private SplittableRandom random;
+  private String[] keys;
+  private boolean hot;
+
+  @Setup(Level.Trial)
+  public void setUp(JacisStoreState state, ThreadParams threadParams) {
+    random = new SplittableRandom(SEED + threadParams.getThreadIndex());
+    keys = state.keys;
+    hot = "hot".equals(state.keyDistribution);
+  }
+
+  String nextKey() {
+    if (hot && random.nextInt(100) < HOT_KEY_PERCENTAGE) {
+      return keys[random.nextInt(Math.min(NUMBER_OF_HOT_KEYS, keys.length))];
+    }
+    return keys[random.nextInt(keys.length)];
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.container;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The global commit sequence of a container used by the stores in snapshot isolation mode
+ * (see {@link JacisObjectTypeSpec#setSnapshotIsolation(boolean)}).
+ *
+ * Each transaction committing updates of a store in snapshot isolation mode gets the next sequence number of the container.
+ * The committed versions of the entries are tagged with this number.
+ * A committed sequence number becomes visible (see {@link #getLastVisible()}) when the commit of the transaction
+ * and the commits of all lower numbers are completed (see {@link #complete(long)}).
+ * Commits are published in the order of their sequence numbers, therefore a snapshot never sees a part of a commit.
+ * Completing a commit never waits, the committing transaction waits until its commit is visible (see {@link #awaitVisible(long, long)})
+ * after it has released its locks.
+ * A transaction reads the stores as of the last visible sequence number at its first access to a store in snapshot isolation mode (its snapshot).
+ * The snapshots of the active transactions are registered, the oldest active snapshot
+ * (see {@link #getOldestActiveSnapshot()}) defines which older versions of the entries can be reclaimed.
+ * A registration only weakly refers the transaction handle, the snapshot of a transaction that is never completed
+ * (and whose handle is no longer referenced) is deregistered after the handle is garbage collected.
+ *
+ * @author Jan Wiemer
+ */
+class CommitSequence {
+
+  /** The maximum time a committing transaction waits until the commits with lower numbers are completed and its commit is visible */
+  static final long PUBLISH_WAIT_MILLIS = 10000;
+
+  /** The last sequence number assigned to a commit */
+  private final AtomicLong lastAssigned = new AtomicLong(0);
+  /** The last sequence number whose commit (and the commits of all lower numbers) is completed */
+  private volatile long lastVisible = 0;
+  /** The completed sequence numbers waiting for the completion of the commits with lower numbers (guarded by this) */
+  private final NavigableSet<Long> completedNotVisible = new TreeSet<>();
+  /** The number of active transactions reading as of a snapshot (keys: the sequence number of the snapshot) (guarded by this) */
+  private final NavigableMap<Long, Integer> activeSnapshots = new TreeMap<>();
+  /** The registrations of the active snapshots (guarded by this) */
+  private final Set<SnapshotRegistration> snapshotRegistrations = new HashSet<>();
+  /** queue of the registrations whose transaction handles are already garbage collected */
+  private final ReferenceQueue<JacisTransactionHandle> collectedHandles = new ReferenceQueue<>();
+
+  long assign() {
+    return lastAssigned.incrementAndGet();
+  }
+
+  synchronized void complete(long sequence) {
+    completedNotVisible.add(sequence);
+    long visible = lastVisible;
+    while (!completedNotVisible.isEmpty() && completedNotVisible.first() == visible + 1) {
+      visible = completedNotVisible.pollFirst();
+    }
+    if (visible != lastVisible) {
+      lastVisible = visible;
+      notifyAll(); // wake up the transactions waiting until their commits are visible
+    }
+  }
+
+  synchronized boolean awaitVisible(long sequence, long maxWaitMillis) { // returns if the commit is visible (false if the wait timed out)
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    while (lastVisible < sequence) { // the commits with lower numbers are not yet completed (they are already executing)
+      long remainingNanos = deadline - System.nanoTime();
+      if (remainingNanos <= 0) {
+        return false;
+      }
+      try {
+        TimeUnit.NANOSECONDS.timedWait(this, remainingNanos); // <======= WAIT (releases the monitor) =====
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  long getLastVisible() {
+    return lastVisible;
+  }
+
+  synchronized SnapshotRegistration registerSnapshot(JacisTransactionHandle transaction) { // synchronized with the computation of the oldest snapshot (no newer version may be reclaimed meanwhile)
+    purgeCollected();
+    SnapshotRegistration registration = new SnapshotRegistration(transaction, lastVisible, collectedHandles);
+    snapshotRegistrations.add(registration);
+    activeSnapshots.merge(registration.snapshot, 1, Integer::sum);
+    return registration;
+  }
+
+  synchronized void deregisterSnapshot(SnapshotRegistration registration) {
+    if (snapshotRegistrations.remove(registration)) {
+      activeSnapshots.computeIfPresent(registration.snapshot, (s, count) -> count == 1 ? null : count - 1);
+    }
+  }
+
+  synchronized long getOldestActiveSnapshot() { // snapshots registered later are never older than the returned one
+    purgeCollected();
+    return activeSnapshots.isEmpty() ? lastVisible : activeSnapshots.firstKey();
+  }
+
+  synchronized int getNumberOfActiveSnapshots() {
+    purgeCollected();
+    return snapshotRegistrations.size();
+  }
+
+  private void purgeCollected() { // guarded by this
+    Reference<? extends JacisTransactionHandle> ref;
+    while ((ref = collectedHandles.poll()) != null) {
+      deregisterSnapshot((SnapshotRegistration) ref); // the transaction has never been completed (otherwise the snapshot would have been deregistered)
+    }
+  }
+
+  /**
+   * Registration of the snapshot of a transaction, weakly referring the transaction handle
+   * (the snapshot of an abandoned transaction is deregistered after its handle is collected).
+   */
+  static class SnapshotRegistration extends WeakReference<JacisTransactionHandle> {
+
+    /** The sequence number of the snapshot */
+    final long snapshot;
+
+    SnapshotRegistration(JacisTransactionHandle transaction, long snapshot, ReferenceQueue<JacisTransactionHandle> queue) {
+      super(transaction, queue);
+      this.snapshot = snapshot;
+    }
+
+  } // END OF:  static class SnapshotRegistration
+
+}
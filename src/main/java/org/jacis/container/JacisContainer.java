@@ -8,12 +8,15 @@ import java.util.AbstractMap;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -25,6 +28,11 @@ import org.jacis.exception.JacisStaleObjectException;
 import org.jacis.exception.JacisTxCommitException;
 import org.jacis.exception.JacisTxRollbackException;
 import org.jacis.plugin.JacisTransactionListener;
+import org.jacis.plugin.metrics.JacisLockProfiler;
+import org.jacis.plugin.metrics.JacisMetrics;
+import org.jacis.plugin.metrics.JacisMetrics.TxDemarcationPhase;
+import org.jacis.plugin.metrics.JacisNoOpMetrics;
+import org.jacis.plugin.metrics.JacisProfilingReadWriteLock;
 import org.jacis.plugin.txadapter.JacisTransactionAdapter;
 import org.jacis.plugin.txadapter.local.JacisLocalTransaction;
 import org.jacis.plugin.txadapter.local.JacisTransactionAdapterLocal;
@@ -32,6 +40,7 @@ import org.jacis.store.JacisStore;
 import org.jacis.store.JacisStoreAdminInterface;
 import org.jacis.store.JacisStoreImpl;
 import org.jacis.store.JacisTransactionInfo;
+import org.jacis.store.JacisTransactionInfoRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,10 +70,28 @@ public class JacisContainer {
   private final Map<StoreIdentifier, JacisStore<?, ?>> storeMap = new ConcurrentHashMap<>();
   /** List of transaction listeners / observers (type {@link JacisTransactionListener}) providing call-backs before / after prepare / internalCommit / rollback. */
   private final List<JacisTransactionListener> txListeners = new CopyOnWriteArrayList<>();
-  /** ThreadLocal storing the transaction info object for the last finished transaction */
-  private ThreadLocal<JacisTransactionInfo> lastFinishedTransactionInfo = new ThreadLocal<>();
+  /** ThreadLocal storing a (reused) record of the last finished transaction (the transaction info object is created from it on demand) */
+  private ThreadLocal<JacisTransactionInfoRecord> lastFinishedTransactionInfo = ThreadLocal.withInitial(JacisTransactionInfoRecord::new);
+  /** Profiler for the transaction demarcation lock and the store access locks (disabled by default, see {@link #setLockProfiling(boolean)}). */
+  private final JacisLockProfiler lockProfiler = new JacisLockProfiler();
   /** Lock object to synchronize the TX demarcation operations (prepare / commit / rollback) over all threads and stores. */
-  private final ReadWriteLock transactionDemarcationLock = new ReentrantReadWriteLock(true);
+  private final ReadWriteLock transactionDemarcationLock;
+  /** List of the stores ordered by their store index. The order defines the global order in which store locks are acquired (see {@link #storeLevelCommitLocking}). */
+  private final List<JacisStoreTransactionAdapter> storesInLockOrder = new CopyOnWriteArrayList<>();
+  /** Sequence to give each created store a unique index defining its position in the global lock order. */
+  private final AtomicInteger storeIndexSeq = new AtomicInteger(0);
+  /** Flag indicating if the TX demarcation only locks the stores touched by the transaction instead of the global {@link #transactionDemarcationLock} (default: 'false'). */
+  private volatile boolean storeLevelCommitLocking = false;
+  /** Mode defining how the default description of local transactions started without explicit description is computed (default: {@link JacisTransactionDescriptionMode#EAGER}). */
+  private volatile JacisTransactionDescriptionMode transactionDescriptionMode = JacisTransactionDescriptionMode.EAGER;
+  /** For the mode {@link JacisTransactionDescriptionMode#SAMPLED} only for every n-th transaction a description is computed (default: 100). */
+  private volatile int transactionDescriptionSampleRate = 100;
+  /** Counter of the local transactions started without description (used to sample the transactions in mode {@link JacisTransactionDescriptionMode#SAMPLED}). */
+  private final AtomicLong transactionDescriptionSampleCounter = new AtomicLong(0);
+  /** The metrics recording the durations of the transaction demarcation and the lock waits (default: {@link JacisNoOpMetrics} recording nothing). */
+  private volatile JacisMetrics metrics = JacisNoOpMetrics.INSTANCE;
+  /** The global commit sequence used by the stores in snapshot isolation mode (see {@link JacisObjectTypeSpec#setSnapshotIsolation(boolean)}). */
+  private final CommitSequence commitSequence = new CommitSequence();
 
   /**
    * Create a container with the passed transaction adapter.
@@ -72,7 +99,19 @@ public class JacisContainer {
    * @param txAdapter The transaction adapter binding the container to externally managed transactions
    */
   public JacisContainer(JacisTransactionAdapter txAdapter) {
+    this(txAdapter, JacisLockStrategy.FAIR);
+  }
+
+  /**
+   * Create a container with the passed transaction adapter and lock strategy.
+   * The lock strategy defines the implementation of the transaction demarcation lock (also shared by the stores synchronized on the container transaction).
+   *
+   * @param txAdapter The transaction adapter binding the container to externally managed transactions
+   * @param demarcationLockStrategy The lock implementation used for the transaction demarcation lock (default: {@link JacisLockStrategy#FAIR})
+   */
+  public JacisContainer(JacisTransactionAdapter txAdapter, JacisLockStrategy demarcationLockStrategy) {
     this.txAdapter = txAdapter;
+    this.transactionDemarcationLock = new JacisProfilingReadWriteLock("transactionDemarcationLock", demarcationLockStrategy.createLock(), lockProfiler);
   }
 
   /**
@@ -100,6 +139,121 @@ public class JacisContainer {
     return this;
   }
 
+  /**
+   * Sets if the transaction demarcation (prepare / commit / rollback) only locks the stores touched by the transaction
+   * instead of exclusively locking the global transaction demarcation lock of the container (default: 'false').
+   * If set, the commit locks of the touched stores are acquired in a deterministic global order (the order the stores have been created) to avoid deadlocks.
+   * Transactions touching disjoint stores can be committed in parallel then.
+   * Global atomic operations (see {@link #executeGlobalAtomic(Runnable)}) lock all stores in the same order and are therefore still atomic regarding all commits.
+   * Note that this only has an effect for stores not syncing their lock on the container transaction
+   * (see {@link JacisObjectTypeSpec#setSyncStoreOnContainerTransaction(boolean)}), since all other stores share the global lock.
+   * To commit transactions updating disjoint entries of the same store in parallel the store additionally has to lock the entries individually
+   * (see {@link JacisObjectTypeSpec#setEntryLevelCommitLocking(boolean)}).
+   * Further note that in this mode global atomic operations must not be called from inside an atomic operation of a single store.
+   *
+   * @param storeLevelCommitLocking Defining if the transaction demarcation only locks the stores touched by the transaction.
+   * @return This container itself for method chaining.
+   */
+  public JacisContainer setStoreLevelCommitLocking(boolean storeLevelCommitLocking) {
+    this.storeLevelCommitLocking = storeLevelCommitLocking;
+    return this;
+  }
+
+  /**
+   * Sets the mode defining how the default description of local transactions is computed
+   * if they are started without an explicit description (see {@link #beginLocalTransaction()}, {@link #withLocalTx(Runnable)}).
+   * Analyzing the call stack to determine the calling method is expensive compared to the costs of a short transaction.
+   * By default ({@link JacisTransactionDescriptionMode#EAGER}) the calling method is determined for each transaction.
+   * To reduce the costs use {@link JacisTransactionDescriptionMode#SAMPLED} (calling method only for some transactions),
+   * {@link JacisTransactionDescriptionMode#THREAD_NAME} (only the name of the starting thread) or {@link JacisTransactionDescriptionMode#NONE}.
+   *
+   * @param transactionDescriptionMode The mode defining how the default description of local transactions is computed.
+   * @return This container itself for method chaining.
+   */
+  public JacisContainer setTransactionDescriptionMode(JacisTransactionDescriptionMode transactionDescriptionMode) {
+    this.transactionDescriptionMode = transactionDescriptionMode;
+    return this;
+  }
+
+  /** @return The mode defining how the default description of local transactions started without explicit description is computed (default: {@link JacisTransactionDescriptionMode#EAGER}). */
+  public JacisTransactionDescriptionMode getTransactionDescriptionMode() {
+    return transactionDescriptionMode;
+  }
+
+  /**
+   * Sets the sample rate for the transaction description mode {@link JacisTransactionDescriptionMode#SAMPLED} (default: 100).
+   * In this mode only for every n-th local transaction started without explicit description the description is computed.
+   *
+   * @param transactionDescriptionSampleRate Only for every n-th transaction a description is computed.
+   * @return This container itself for method chaining.
+   */
+  public JacisContainer setTransactionDescriptionSampleRate(int transactionDescriptionSampleRate) {
+    if (transactionDescriptionSampleRate < 1) {
+      throw new IllegalArgumentException("Sample rate has to be positive but is: " + transactionDescriptionSampleRate);
+    }
+    this.transactionDescriptionSampleRate = transactionDescriptionSampleRate;
+    return this;
+  }
+
+  /** @return The sample rate for the transaction description mode {@link JacisTransactionDescriptionMode#SAMPLED} (default: 100). */
+  public int getTransactionDescriptionSampleRate() {
+    return transactionDescriptionSampleRate;
+  }
+
+  /** @return if the transaction demarcation (prepare / commit / rollback) only locks the stores touched by the transaction (default: 'false'). */
+  public boolean isStoreLevelCommitLocking() {
+    return storeLevelCommitLocking;
+  }
+
+  /**
+   * Sets the metrics (type {@link JacisMetrics}) recording the performance of the container and its stores (default: {@link JacisNoOpMetrics} recording nothing).
+   * The container records the durations of the transaction demarcation and the time waiting for the transaction demarcation lock.
+   * Stores obtain the object recording their metrics on creation, therefore the metrics should be set before the stores are created.
+   * Note that if metrics are recorded for a store its object adapter is wrapped by a {@link org.jacis.plugin.metrics.JacisMeasuringObjectAdapter}.
+   *
+   * @param metrics The metrics recording the performance of the container and its stores.
+   * @return This container itself for method chaining.
+   */
+  public JacisContainer setMetrics(JacisMetrics metrics) {
+    this.metrics = metrics == null ? JacisNoOpMetrics.INSTANCE : metrics;
+    return this;
+  }
+
+  /** @return The metrics recording the performance of the container and its stores (default: {@link JacisNoOpMetrics} recording nothing). */
+  public JacisMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Enables or disables the profiling of the transaction demarcation lock and the store access locks (default: 'false').
+   * If enabled the wait and hold times for the locks are recorded for each call site, the longest holds are kept
+   * together with the description of the transaction holding the lock, and the number of threads waiting for the locks is recorded.
+   * The profiling is a diagnostic mode and considerably slows down locking (see {@link JacisLockProfiler}).
+   * The recorded statistics are reported by the method {@link #getLockProfilingReport()}.
+   *
+   * @param lockProfiling If the locks should be profiled.
+   * @return This container itself for method chaining.
+   */
+  public JacisContainer setLockProfiling(boolean lockProfiling) {
+    lockProfiler.setEnabled(lockProfiling);
+    return this;
+  }
+
+  /** @return if the transaction demarcation lock and the store access locks are profiled (default: 'false'). */
+  public boolean isLockProfiling() {
+    return lockProfiler.isEnabled();
+  }
+
+  /** @return The profiler for the transaction demarcation lock and the store access locks (e.g. to access or reset the recorded statistics). */
+  public JacisLockProfiler getLockProfiler() {
+    return lockProfiler;
+  }
+
+  /** @return A report of the statistics recorded by the lock profiler ranked by the time waiting for the locks (see {@link JacisLockProfiler#getReport()}). */
+  public String getLockProfilingReport() {
+    return lockProfiler.getReport();
+  }
+
   /**
    * Create a store for the passed object type specification (type {@link JacisObjectTypeSpec}).
    * The passed specification determines the type of the keys and the type of the values stored in the created store.
@@ -113,7 +267,12 @@ public class JacisContainer {
   public <K, TV, CV> JacisStoreAdminInterface<K, TV, CV> createStore(JacisObjectTypeSpec<K, TV, CV> objectTypeSpec) {
     StoreIdentifier storeIdentifier = new StoreIdentifier(objectTypeSpec.getKeyClass(), objectTypeSpec.getValueClass());
     JacisStoreImpl<K, TV, CV> store = new JacisStoreImpl<>(this, storeIdentifier, objectTypeSpec);
-    storeMap.put(storeIdentifier, store);
+    ((JacisStoreTransactionAdapter) store).storeIndex = storeIndexSeq.getAndIncrement();
+    JacisStore<?, ?> replacedStore = storeMap.put(storeIdentifier, store);
+    if (replacedStore != null) {
+      storesInLockOrder.remove(replacedStore);
+    }
+    storesInLockOrder.add(store);
     return store;
   }
 
@@ -202,16 +361,44 @@ public class JacisContainer {
    * The returned object represents the started transaction and provides method to internalCommit or rollback the transaction.
    * Note that each transaction is started with a description for logging and monitoring.
    * It is recommended to pass an explicit description by calling the method {@link #beginLocalTransaction(String)} ).
-   * This convenience method tries to compute a default description by analyzing the call stack to determine the calling method.
+   * This convenience method computes a default description as defined by the transaction description mode
+   * (see {@link #setTransactionDescriptionMode(JacisTransactionDescriptionMode)}), e.g. the calling method determined by analyzing the call stack.
    *
    * @return An object representing the stated transaction (type {@link JacisLocalTransaction})
    * @throws IllegalStateException if the container was not initialized with transaction adapter for locally managed transactions.
    */
   public JacisLocalTransaction beginLocalTransaction() throws IllegalStateException {
-    String description = Stream.of(new Exception("-").getStackTrace()) // go through the stack trace elements
+    switch (transactionDescriptionMode) {
+      case NONE:
+        return beginLocalTransaction("-");
+      case SAMPLED:
+        if (transactionDescriptionSampleCounter.getAndIncrement() % transactionDescriptionSampleRate != 0) {
+          return beginLocalTransaction("-");
+        }
+        Exception callStack = new Exception("-"); // only capture the stack, the stack trace elements are computed on demand
+        return beginLocalTransaction(() -> computeCallerDescription(callStack));
+      case THREAD_NAME:
+        return beginLocalTransaction(Thread.currentThread().getName()); // no call stack is captured
+      case EAGER:
+      default:
+        return beginLocalTransaction(computeCallerDescription(new Exception("-")));
+    }
+  }
+
+  private String computeCallerDescription(Exception callStack) {
+    return Stream.of(callStack.getStackTrace()) // go through the stack trace elements
         .filter(se -> !getClass().getName().equals(se.getClassName())) // ignore all stack trace elements for this class
         .map(StackTraceElement::toString).findFirst().orElse("-"); // use the first from outside (the calling method) as description
-    return beginLocalTransaction(description);
+  }
+
+  private JacisLocalTransaction beginLocalTransaction(Supplier<String> descriptionSupplier) throws IllegalStateException {
+    if (txAdapter instanceof JacisTransactionAdapterLocal) {
+      JacisTransactionAdapterLocal txAdapterLocal = (JacisTransactionAdapterLocal) txAdapter;
+      lastFinishedTransactionInfo.get().clear();
+      return txAdapterLocal.startLocalTransaction(this, descriptionSupplier);
+    } else {
+      throw new IllegalStateException("Local transactions not supported! Local transactions need TX adapter " + JacisTransactionAdapterLocal.class.getSimpleName() + " but the configured is: " + txAdapter.getClass().getSimpleName());
+    }
   }
 
   /**
@@ -229,7 +416,7 @@ public class JacisContainer {
   public JacisLocalTransaction beginLocalTransaction(String description) throws IllegalStateException {
     if (txAdapter instanceof JacisTransactionAdapterLocal) {
       JacisTransactionAdapterLocal txAdapterLocal = (JacisTransactionAdapterLocal) txAdapter;
-      lastFinishedTransactionInfo.remove();
+      lastFinishedTransactionInfo.get().clear();
       return txAdapterLocal.startLocalTransaction(this, description);
     } else {
       throw new IllegalStateException("Local transactions not supported! Local transactions need TX adapter " + JacisTransactionAdapterLocal.class.getSimpleName() + " but the configured is: " + txAdapter.getClass().getSimpleName());
@@ -320,10 +507,10 @@ public class JacisContainer {
         handle = txAdapter.joinCurrentTransaction(this);
       }
     }
-    JacisTransactionInfo lastFinishedTxInfo = lastFinishedTransactionInfo.get();
-    if (lastFinishedTxInfo != null) {
-      if (handle != null && !lastFinishedTxInfo.getTxId().equals(handle.getTxId())) {
-        lastFinishedTransactionInfo.remove();
+    if (handle != null) {
+      JacisTransactionInfoRecord lastFinishedTxInfo = lastFinishedTransactionInfo.get();
+      if (!lastFinishedTxInfo.isEmpty() && !lastFinishedTxInfo.getTxId().equals(handle.getTxId())) {
+        lastFinishedTxInfo.clear();
       }
     }
     return handle;
@@ -335,13 +522,13 @@ public class JacisContainer {
     List<JacisTransactionInfo> res = new ArrayList<>(handles.size());
     long snapshotTimeMs = System.currentTimeMillis();
     for (JacisTransactionHandle txHandle : handles) {
-      res.add(new JacisTransactionInfo(txHandle, this, storeMap.values(), snapshotTimeMs));
+      res.add(new JacisTransactionInfo(txHandle, this, getEnlistedStores(txHandle), snapshotTimeMs));
     }
     return res;
   }
 
   public JacisTransactionInfo getLastFinishedTransactionInfo() {
-    return lastFinishedTransactionInfo.get();
+    return lastFinishedTransactionInfo.get().getTransactionInfo();
   }
 
   public JacisTransactionInfo getTransactionInfo(Object externalTransaction) {
@@ -350,7 +537,16 @@ public class JacisContainer {
   }
 
   public JacisTransactionInfo getTransactionInfo(JacisTransactionHandle txHandle) {
-    return txHandle == null ? null : new JacisTransactionInfo(txHandle, this, storeMap.values(), System.currentTimeMillis());
+    return txHandle == null ? null : new JacisTransactionInfo(txHandle, this, getEnlistedStores(txHandle), System.currentTimeMillis());
+  }
+
+  private List<JacisStore<?, ?>> getEnlistedStores(JacisTransactionHandle transaction) { // the stores touched by the TX in the global lock order
+    List<JacisStoreTransactionAdapter> enlistedStores = transaction.getEnlistedStores();
+    List<JacisStore<?, ?>> res = new ArrayList<>(enlistedStores.size());
+    for (JacisStoreTransactionAdapter store : enlistedStores) {
+      res.add((JacisStoreImpl<?, ?, ?>) store);
+    }
+    return res;
   }
 
   /**
@@ -381,20 +577,20 @@ public class JacisContainer {
     readOnlyTxContext.startReadOnlyTransactionWithContext();
   }
 
-  protected boolean hasAnyUpdatesPendingForTx() {
-    for (JacisStore<?, ?> store : storeMap.values()) {
-      if (((JacisStoreImpl<?, ?, ?>) store).hasObjectsUpdatedInCurrentTxView()) {
+  protected boolean hasAnyUpdatesPendingForTx(JacisTransactionHandle transaction, Collection<? extends JacisStore<?, ?>> stores) {
+    for (JacisStore<?, ?> store : stores) {
+      if (((JacisStoreImpl<?, ?, ?>) store).hasObjectsUpdatedInTxView(transaction)) {
         return true;
       }
     }
     return false;
   }
 
-  protected boolean hasStoreWithPendingDirtyCheck() {
-    for (JacisStore<?, ?> store : storeMap.values()) {
+  protected boolean hasStoreWithPendingDirtyCheck(JacisTransactionHandle transaction, Collection<? extends JacisStore<?, ?>> stores) {
+    for (JacisStore<?, ?> store : stores) {
       if (store.getObjectTypeSpec().getDirtyCheck() != null) {
         JacisStoreImpl<?, ?, ?> storeImpl = (JacisStoreImpl<?, ?, ?>) store;
-        if (!storeImpl.isInReadOnlyTransaction() && !storeImpl.isCommitPending()) { // read only or already prepared TXs will not do (another) dirty check
+        if (!storeImpl.isInReadOnlyTransaction(transaction) && !storeImpl.isCommitPending(transaction)) { // read only or already prepared TXs will not do (another) dirty check
           return true;
         }
       }
@@ -421,21 +617,24 @@ public class JacisContainer {
    * @param transaction The transaction handle representing the transaction to prepare.
    */
   public void internalPrepare(JacisTransactionHandle transaction) {
-    boolean executeSyncronized = hasAnyUpdatesPendingForTx() // if any store has updated entries  we need to synchronize
-        || hasStoreWithPendingDirtyCheck() // if any store has a dirty check pending (may causing updated entries) we need to synchronize
+    long startNanos = metrics.isEnabled() ? System.nanoTime() : 0;
+    boolean txBound = lockProfiler.bindTransaction(transaction); // lock holds are attributed to the TX
+    List<JacisStore<?, ?>> stores = getEnlistedStores(transaction); // only the stores touched by the TX have to be visited
+    boolean executeSyncronized = hasAnyUpdatesPendingForTx(transaction, stores) // if any store has updated entries  we need to synchronize
+        || hasStoreWithPendingDirtyCheck(transaction, stores) // if any store has a dirty check pending (may causing updated entries) we need to synchronize
         || hasAnyTransactionListenersNeedingSynchronousExecution(); // if any transaction listener requires sync. execution we need to synchronize
-    if (executeSyncronized) {
-      transactionDemarcationLock.writeLock().lock();
-    }
+    List<Lock> locks = executeSyncronized ? lockForDemarcation(stores) : null;
     try {
       txListeners.forEach(l -> l.beforePrepare(this, transaction));
-      for (JacisStore<?, ?> store : storeMap.values()) {
+      for (JacisStore<?, ?> store : stores) {
         ((JacisStoreTransactionAdapter) store).internalPrepare(transaction);
       }
       txListeners.forEach(l -> l.afterPrepare(this, transaction));
     } finally {
-      if (executeSyncronized) {
-        transactionDemarcationLock.writeLock().unlock();
+      unlock(locks);
+      recordTxDemarcation(TxDemarcationPhase.PREPARE, startNanos);
+      if (txBound) {
+        lockProfiler.unbindTransaction();
       }
     }
   }
@@ -456,6 +655,9 @@ public class JacisContainer {
   }
 
   private <R> R withReadLock(Supplier<R> task) {
+    if (storeLevelCommitLocking) {
+      return withGlobalAtomicStoreLocks(task);
+    }
     transactionDemarcationLock.readLock().lock(); // <======= **READ** LOCK =====
     try {
       return task.get();
@@ -464,6 +666,77 @@ public class JacisContainer {
     }
   }
 
+  private <R> R withGlobalAtomicStoreLocks(Supplier<R> task) {
+    List<Lock> locks = new ArrayList<>(storesInLockOrder.size() + 1);
+    Lock globalLock = transactionDemarcationLock.readLock();
+    locks.add(globalLock); // the global lock is always the first in the global lock order
+    for (JacisStoreTransactionAdapter store : storesInLockOrder) {
+      Lock storeLock = store.getAtomicOperationLock();
+      if (storeLock != globalLock) {
+        locks.add(storeLock);
+      }
+    }
+    lock(locks);
+    try {
+      return task.get();
+    } finally {
+      unlock(locks);
+    }
+  }
+
+
+  private List<Lock> lockForDemarcation(Collection<? extends JacisStore<?, ?>> stores) {
+    List<Lock> locks;
+    if (!storeLevelCommitLocking) {
+      locks = Collections.singletonList(transactionDemarcationLock.writeLock());
+    } else {
+      Lock globalLock = transactionDemarcationLock.writeLock();
+      boolean needsGlobalLock = hasAnyTransactionListenersNeedingSynchronousExecution();
+      locks = new ArrayList<>(stores.size() + 1);
+      for (JacisStore<?, ?> store : stores) { // stores are already sorted in the global lock order
+        Lock storeLock = ((JacisStoreTransactionAdapter) store).getCommitLock();
+        if (storeLock == globalLock) {
+          needsGlobalLock = true;
+        } else if (!locks.contains(storeLock)) {
+          locks.add(storeLock);
+        }
+      }
+      if (needsGlobalLock) {
+        locks.add(0, globalLock); // the global lock is always the first in the global lock order
+      }
+    }
+    lock(locks);
+    return locks;
+  }
+
+  private void lock(List<Lock> locks) {
+    JacisMetrics m = metrics;
+    long startNanos = m.isEnabled() ? System.nanoTime() : 0;
+    int locked = 0;
+    try {
+      for (Lock lock : locks) {
+        lock.lock(); // <======= LOCK =====
+        locked++;
+      }
+      if (startNanos != 0) {
+        m.recordDemarcationLockWait(System.nanoTime() - startNanos);
+      }
+    } finally {
+      if (locked < locks.size()) {
+        unlock(locks.subList(0, locked));
+      }
+    }
+  }
+
+  private void unlock(List<Lock> locks) {
+    if (locks == null) {
+      return;
+    }
+    for (int i = locks.size() - 1; i >= 0; i--) { // release in reverse order
+      locks.get(i).unlock(); // <======= UNLOCK =====
+    }
+  }
+
   /**
    * Execute the passed operation (without return value) as a global atomic operation (atomic over all stores).
    * The execution of global atomic operations can not overlap with the execution of a commit (changing the visible data) of another transaction (but normal operations on other transactions may overlap),
@@ -498,16 +771,17 @@ public class JacisContainer {
    * @param transaction The transaction handle representing the transaction to internalCommit.
    */
   public void internalCommit(JacisTransactionHandle transaction) {
-    boolean executeSyncronized = hasAnyUpdatesPendingForTx() // if any store has updated entries  we need to synchronize
-        || hasStoreWithPendingDirtyCheck() // if any store has a dirty check pending (may causing updated entries) we need to synchronize
+    long startNanos = metrics.isEnabled() ? System.nanoTime() : 0;
+    boolean txBound = lockProfiler.bindTransaction(transaction); // lock holds are attributed to the TX
+    List<JacisStore<?, ?>> stores = getEnlistedStores(transaction); // only the stores touched by the TX have to be visited
+    boolean executeSyncronized = hasAnyUpdatesPendingForTx(transaction, stores) // if any store has updated entries  we need to synchronize
+        || hasStoreWithPendingDirtyCheck(transaction, stores) // if any store has a dirty check pending (may causing updated entries) we need to synchronize
         || hasAnyTransactionListenersNeedingSynchronousExecution(); // if any transaction listener requires sync. execution we need to synchronize
-    if (executeSyncronized) {
-      transactionDemarcationLock.writeLock().lock();
-    }
+    List<Lock> locks = executeSyncronized ? lockForDemarcation(stores) : null;
     try {
       txListeners.forEach(l -> l.beforeCommit(this, transaction));
       List<AbstractMap.SimpleImmutableEntry<JacisStore<?, ?>, Throwable>> exceptions = null;
-      for (JacisStore<?, ?> store : storeMap.values()) {
+      for (JacisStore<?, ?> store : stores) {
         try {
           ((JacisStoreTransactionAdapter) store).internalCommit(transaction);
         } catch (Throwable e) {
@@ -515,11 +789,8 @@ public class JacisContainer {
           exceptions.add(new SimpleImmutableEntry<>(store, e));
         }
       }
-      JacisTransactionInfo txInfo = getTransactionInfo(transaction);
-      if (txInfo != null) {
-        lastFinishedTransactionInfo.set(txInfo);
-      }
-      for (JacisStore<?, ?> store : storeMap.values()) {
+      lastFinishedTransactionInfo.get().record(transaction, stores); // the info object is only created on demand
+      for (JacisStore<?, ?> store : stores) {
         try {
           ((JacisStoreTransactionAdapter) store).internalDestroy(transaction);
         } catch (Throwable e) {
@@ -533,8 +804,17 @@ public class JacisContainer {
         buildAndThrowException(transaction, true, exceptions);
       }
     } finally {
-      if (executeSyncronized) {
-        transactionDemarcationLock.writeLock().unlock();
+      long completedSequence = -1;
+      try {
+        completedSequence = transaction.completeCommitSequence(commitSequence); // complete the commit (even if it failed) before the locks are released
+      } finally {
+        unlock(locks);
+        finishSequences(transaction, completedSequence);
+        reclaimVersions(stores);
+        recordTxDemarcation(TxDemarcationPhase.COMMIT, startNanos);
+        if (txBound) {
+          lockProfiler.unbindTransaction();
+        }
       }
     }
   }
@@ -549,22 +829,20 @@ public class JacisContainer {
    * @param transaction The transaction handle representing the transaction to rollback.
    */
   public void internalRollback(JacisTransactionHandle transaction) {
-    boolean executeSyncronized = hasAnyUpdatesPendingForTx() // if any store has updated entries  we need to synchronize (dirty check can be ignored here)
+    long startNanos = metrics.isEnabled() ? System.nanoTime() : 0;
+    boolean txBound = lockProfiler.bindTransaction(transaction); // lock holds are attributed to the TX
+    List<JacisStore<?, ?>> stores = getEnlistedStores(transaction); // only the stores touched by the TX have to be visited
+    boolean executeSyncronized = hasAnyUpdatesPendingForTx(transaction, stores) // if any store has updated entries  we need to synchronize (dirty check can be ignored here)
         || hasAnyTransactionListenersNeedingSynchronousExecution(); // if any transaction listener requires sync. execution we need to synchronize
-    if (executeSyncronized) {
-      transactionDemarcationLock.writeLock().lock();
-    }
+    List<Lock> locks = executeSyncronized ? lockForDemarcation(stores) : null;
     try {
       txListeners.forEach(l -> l.beforeRollback(this, transaction));
-      for (JacisStore<?, ?> store : storeMap.values()) {
+      for (JacisStore<?, ?> store : stores) {
         ((JacisStoreTransactionAdapter) store).internalRollback(transaction);
       }
-      JacisTransactionInfo txInfo = getTransactionInfo(transaction);
-      if (txInfo != null) {
-        lastFinishedTransactionInfo.set(txInfo);
-      }
+      lastFinishedTransactionInfo.get().record(transaction, stores); // the info object is only created on demand
       List<AbstractMap.SimpleImmutableEntry<JacisStore<?, ?>, Throwable>> exceptions = null;
-      for (JacisStore<?, ?> store : storeMap.values()) {
+      for (JacisStore<?, ?> store : stores) {
         try {
           ((JacisStoreTransactionAdapter) store).internalDestroy(transaction);
         } catch (Throwable e) {
@@ -578,12 +856,78 @@ public class JacisContainer {
         buildAndThrowException(transaction, true, exceptions);
       }
     } finally {
-      if (executeSyncronized) {
-        transactionDemarcationLock.writeLock().unlock();
+      unlock(locks);
+      transaction.deregisterSnapshot(commitSequence); // a rolled back TX has no commit sequence to publish
+      reclaimVersions(stores);
+      recordTxDemarcation(TxDemarcationPhase.ROLLBACK, startNanos);
+      if (txBound) {
+        lockProfiler.unbindTransaction();
+      }
+    }
+  }
+
+  private void finishSequences(JacisTransactionHandle transaction, long completedSequence) {
+    transaction.deregisterSnapshot(commitSequence);
+    if (completedSequence >= 0 && !commitSequence.awaitVisible(completedSequence, CommitSequence.PUBLISH_WAIT_MILLIS)) { // the locks are already released (not blocking other commits)
+      log.warn("Commit of TX {} not yet visible after {} ms (waiting for the commits of other TXs to complete)", transaction, CommitSequence.PUBLISH_WAIT_MILLIS);
+    }
+  }
+
+  private void reclaimVersions(List<JacisStore<?, ?>> stores) {
+    for (JacisStore<?, ?> store : stores) {
+      if (store.getObjectTypeSpec().isSnapshotIsolation()) {
+        ((JacisStoreImpl<?, ?, ?>) store).reclaimVersions(); // the oldest active snapshot may have changed
       }
     }
   }
 
+  /**
+   * Returns the snapshot the passed transaction reads from the stores in snapshot isolation mode (see {@link JacisObjectTypeSpec#setSnapshotIsolation(boolean)}).
+   * The snapshot is the last visible commit sequence number (see {@link #getLastCommitSequence()}) at the first call for the transaction.
+   * It is registered as active snapshot (preventing the versions visible for the snapshot from being reclaimed) until the transaction is committed or rolled back.
+   * Note that this method usually is only called internally.
+   *
+   * @param transaction The transaction handle
+   * @return The commit sequence number of the snapshot the transaction reads.
+   */
+  public long getSnapshotSequence(JacisTransactionHandle transaction) {
+    return transaction.getOrRegisterSnapshotSequence(commitSequence);
+  }
+
+  /**
+   * Returns the commit sequence number assigned to the commit of the passed transaction (assigning the next number at the first call for the transaction).
+   * The number becomes visible for new snapshots when the commit is completed (after the commits of all lower numbers).
+   * Note that this method usually is only called internally (by stores in snapshot isolation mode committing updates).
+   *
+   * @param transaction The transaction handle
+   * @return The commit sequence number assigned to the commit of the transaction.
+   */
+  public long getCommitSequence(JacisTransactionHandle transaction) {
+    return transaction.getOrAssignCommitSequence(commitSequence);
+  }
+
+  /** @return The last commit sequence number visible for new snapshots (the commits of all lower numbers are completed as well). */
+  public long getLastCommitSequence() {
+    return commitSequence.getLastVisible();
+  }
+
+  /** @return The oldest snapshot read by an active transaction (the last visible commit sequence number if there is no active snapshot). Older versions of the entries are reclaimed. */
+  public long getOldestActiveSnapshotSequence() {
+    return commitSequence.getOldestActiveSnapshot();
+  }
+
+  /** @return The number of active transactions reading as of a snapshot (see {@link #getSnapshotSequence(JacisTransactionHandle)}). */
+  public int getNumberOfActiveSnapshots() {
+    return commitSequence.getNumberOfActiveSnapshots();
+  }
+
+  private void recordTxDemarcation(TxDemarcationPhase phase, long startNanos) {
+    JacisMetrics m = metrics;
+    if (m.isEnabled() && startNanos != 0) { // 0 if the metrics were disabled when the demarcation started
+      m.recordTxDemarcation(phase, System.nanoTime() - startNanos);
+    }
+  }
+
   protected void buildAndThrowException(JacisTransactionHandle transaction, boolean commit, List<AbstractMap.SimpleImmutableEntry<JacisStore<?, ?>, Throwable>> exceptions) {
     Throwable firstException = exceptions.get(0).getValue(); // use the first exception as master
     RuntimeException masterException;
@@ -677,6 +1021,49 @@ public class JacisContainer {
 
   public static abstract class JacisStoreTransactionAdapter {
 
+    /** The index of the store inside the container (assigned on creation). The index defines the position of the store in the global lock order. */
+    private int storeIndex = -1;
+
+    /** @return The index of the store inside the container (assigned on creation). The index defines the position of the store in the global lock order. */
+    protected int getStoreIndex() {
+      return storeIndex;
+    }
+
+    /**
+     * @param transaction The transaction handle
+     * @return The transactional view of this store attached to the passed transaction handle (null if the transaction has not touched the store).
+     */
+    protected Object getTxViewAttachedTo(JacisTransactionHandle transaction) {
+      return transaction.getStoreTxView(storeIndex);
+    }
+
+    /**
+     * Attach the passed transactional view of this store to the passed transaction handle.
+     * Thereby the store is enlisted in the transaction (only enlisted stores are visited on transaction demarcation).
+     *
+     * @param transaction The transaction handle
+     * @param txView      The transactional view of this store
+     */
+    protected void attachTxView(JacisTransactionHandle transaction, Object txView) {
+      transaction.setStoreTxView(this, txView);
+    }
+
+    /**
+     * Detach the passed transactional view of this store from the passed transaction handle (if it is still attached).
+     *
+     * @param transaction The transaction handle
+     * @param txView      The transactional view of this store
+     */
+    protected void detachTxView(JacisTransactionHandle transaction, Object txView) {
+      transaction.clearStoreTxView(storeIndex, txView);
+    }
+
+    /** @return The lock that has to be held exclusively to execute the transaction demarcation (prepare / commit / rollback) on the store. */
+    protected abstract Lock getCommitLock();
+
+    /** @return The lock that has to be held to execute an atomic operation on the store (no commit may interleave). */
+    protected abstract Lock getAtomicOperationLock();
+
     protected abstract void internalPrepare(JacisTransactionHandle transaction);
 
     protected abstract void internalCommit(JacisTransactionHandle transaction);
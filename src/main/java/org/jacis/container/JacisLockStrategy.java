@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.container;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Defines the lock implementation used to synchronize the accesses to a store (see {@link JacisObjectTypeSpec#setLockStrategy(JacisLockStrategy)})
+ * or the transaction demarcation of a container (see {@link JacisContainer#JacisContainer(org.jacis.plugin.txadapter.JacisTransactionAdapter, JacisLockStrategy)}).
+ * All strategies provide reentrant read and write locks (a thread holding the write lock may also acquire the read lock).
+ *
+ * @author Jan Wiemer
+ */
+public enum JacisLockStrategy {
+
+  /** A fair {@link ReentrantReadWriteLock} granting the lock in arrival order (the behavior of former versions). */
+  FAIR,
+
+  /** A non-fair {@link ReentrantReadWriteLock} providing a higher throughput, but waiting threads (especially writers) may starve. */
+  NON_FAIR,
+
+  /**
+   * A {@link java.util.concurrent.locks.StampedLock} (see {@link JacisStampedReadWriteLock}).
+   * Creating the transactional view of an entry (on the first access of a transaction)
+   * and the atomic operations of {@link org.jacis.store.JacisStore#computeAtomicOptimistic(java.util.function.Supplier)}
+   * first run without locking and validate afterwards that no writer acquired the lock in the meantime.
+   * If the validation fails the copy of the entry is discarded and created again respectively the atomic operation is executed again holding the lock.
+   * Therefore the atomic operations passed to <code>computeAtomicOptimistic</code> must not have side effects
+   * (all other atomic operations, e.g. <code>computeAtomic</code>, are always executed exactly once holding the lock).
+   * Note that with entry level commit locking commits do not take the write lock, therefore <code>computeAtomicOptimistic</code> always locks in this case.
+   */
+  STAMPED;
+
+  /** @return A new read write lock implementing the strategy. */
+  public ReadWriteLock createLock() {
+    switch (this) {
+      case NON_FAIR:
+        return new ReentrantReadWriteLock(false);
+      case STAMPED:
+        return new JacisStampedReadWriteLock();
+      default:
+        return new ReentrantReadWriteLock(true);
+    }
+  }
+
+}
@@ -50,6 +50,12 @@ public class JacisObjectTypeSpec<K, TV, CV> {
   private boolean checkViewsOnCommit = false;
   /** Defines if the read and write locks of the store sync on the global lock of the container synchronizing the whole prepare and commit phases for the container transaction. */
   private boolean syncStoreOnContainerTransaction = true;
+  /** Defines if prepare and commit only lock the touched entries of the store instead of exclusively locking the whole store (default: 'false'). */
+  private boolean entryLevelCommitLocking = false;
+  /** Defines the lock implementation used for the own lock of the store (default: {@link JacisLockStrategy#FAIR}). */
+  private JacisLockStrategy lockStrategy = JacisLockStrategy.FAIR;
+  /** Defines if transactions read the store as of a snapshot taken at their first access (multi-version concurrency control) (default: 'false'). */
+  private boolean snapshotIsolation = false;
 
   public JacisObjectTypeSpec(Class<K> keyClass, Class<TV> valueClass, JacisObjectAdapter<TV, CV> objectAdapter) {
     this.keyClass = keyClass;
@@ -117,9 +123,26 @@ public class JacisObjectTypeSpec<K, TV, CV> {
     return syncStoreOnContainerTransaction;
   }
 
+  /** @return if prepare and commit only lock the touched entries of the store instead of exclusively locking the whole store (default: 'false'). */
+  public boolean isEntryLevelCommitLocking() {
+    return entryLevelCommitLocking;
+  }
+
+  /** @return the lock implementation used for the own lock of the store (default: {@link JacisLockStrategy#FAIR}). */
+  public JacisLockStrategy getLockStrategy() {
+    return lockStrategy;
+  }
+
+  /** @return if transactions read the store as of a snapshot taken at their first access (multi-version concurrency control) (default: 'false'). */
+  public boolean isSnapshotIsolation() {
+    return snapshotIsolation;
+  }
+
   /**
    * Sets if all registered tracked views are checked for consistency on each internalCommit (default: 'false').
    * Note that the value should only be set before the corresponding store is used, otherwise the behavior is undefined.
+   * To check the views in production use the background checker of the tracked view registry instead
+   * (see {@link org.jacis.store.TrackedViewRegistry#getConsistencyChecker()}).
    * @param checkViewsOnCommit Defining if all registered tracked views are checked for consistency on each internalCommit.
    * @return The object type specification itself for method chaining.
    */
@@ -164,6 +187,70 @@ public class JacisObjectTypeSpec<K, TV, CV> {
     return this;
   }
 
+  /**
+   * Sets if prepare and commit only lock the touched entries of the store instead of exclusively locking the whole store (default: 'false').
+   * If set, the prepare phase locks the updated entries one by one (in the order of the hash codes of their keys)
+   * and the store lock is only held in shared mode during prepare and commit.
+   * Therefore transactions updating disjoint keys of the same store can be committed in parallel
+   * and a long running commit does not block other transactions reading entries from the store.
+   * Note that in this mode atomic operations on the store (e.g. {@link org.jacis.store.JacisStore#computeAtomic(java.util.function.Supplier)})
+   * exclusively lock the store (to prevent commits from interleaving) and the store always uses an own lock
+   * (independent of {@link #setSyncStoreOnContainerTransaction(boolean)}).
+   * Commits of different transactions are only executed in parallel if the container also only locks the stores touched by a transaction
+   * (see {@link JacisContainer#setStoreLevelCommitLocking(boolean)}). Otherwise the transaction demarcation is still serialized
+   * by the global lock of the container and only the readers of the store are no longer blocked by a commit.
+   * Since readers are not blocked the updated entries of a transaction become visible one by one during its commit.
+   * A transaction reading several entries may therefore see some entries of another transaction already committed and others not
+   * (each single entry is always read consistently). To read several entries consistently use an atomic operation
+   * (excluding all commits of the store) or snapshot isolation (see {@link #setSnapshotIsolation(boolean)}).
+   * Note that the value should only be set before the corresponding store is used, otherwise the behavior is undefined.
+   *
+   * @param entryLevelCommitLocking Defining if prepare and commit only lock the touched entries of the store.
+   * @return The object type specification itself for method chaining.
+   */
+  public JacisObjectTypeSpec<K, TV, CV> setEntryLevelCommitLocking(boolean entryLevelCommitLocking) {
+    this.entryLevelCommitLocking = entryLevelCommitLocking;
+    return this;
+  }
+
+  /**
+   * Sets the lock implementation used for the own lock of the store (default: {@link JacisLockStrategy#FAIR}).
+   * The strategy only applies if the store uses an own lock (see {@link #setSyncStoreOnContainerTransaction(boolean)} and {@link #setEntryLevelCommitLocking(boolean)}),
+   * otherwise the store shares the transaction demarcation lock of the container (whose strategy is passed to the constructor of the container).
+   * Note that the value should only be set before the corresponding store is created, otherwise it is ignored.
+   *
+   * @param lockStrategy The lock implementation used for the own lock of the store.
+   * @return The object type specification itself for method chaining.
+   */
+  public JacisObjectTypeSpec<K, TV, CV> setLockStrategy(JacisLockStrategy lockStrategy) {
+    this.lockStrategy = lockStrategy;
+    return this;
+  }
+
+  /**
+   * Sets if transactions read the store as of a snapshot taken at their first access (multi-version concurrency control) (default: 'false').
+   * Without snapshot isolation a transaction reads the value committed at the time it first touches an entry,
+   * therefore consistent reads of multiple entries require atomic operations (e.g. {@link org.jacis.store.JacisStore#computeAtomic(java.util.function.Supplier)}) blocking all commits.
+   * With snapshot isolation the committed entries keep a short chain of versions tagged with the global commit sequence of the container.
+   * A transaction reads all entries (also of other stores in this mode) as of the last completed commit at its first access to such a store
+   * (see {@link JacisContainer#getSnapshotSequence(JacisTransactionHandle)}) without locking the store.
+   * Therefore long running (reporting) transactions get a consistent view while other transactions commit concurrently.
+   * Updating an entry modified after the snapshot fails with a stale object exception on prepare (the first committer wins).
+   * Older versions are reclaimed when no active transaction reads a snapshot needing them any more.
+   * Note that reads outside of a transaction and the tracked views always reflect the latest committed values.
+   * The indexes track the latest committed values as well, therefore index lookups inside a transaction scan the values of its snapshot
+   * (see {@link org.jacis.store.JacisIndexRegistry}).
+   * Transactions which are never completed prevent the reclamation until their transaction handles are garbage collected.
+   * Note that the value should only be set before the corresponding store is created, otherwise the behavior is undefined.
+   *
+   * @param snapshotIsolation Defining if transactions read the store as of a snapshot taken at their first access.
+   * @return The object type specification itself for method chaining.
+   */
+  public JacisObjectTypeSpec<K, TV, CV> setSnapshotIsolation(boolean snapshotIsolation) {
+    this.snapshotIsolation = snapshotIsolation;
+    return this;
+  }
+
   /** @return The store identifier (containing key and value class) for this object type specification. */
   public StoreIdentifier getStoreIdentifier() {
     return new StoreIdentifier(keyClass, valueClass);
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.container;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Reentrant read write lock based on a {@link StampedLock} (used for the lock strategy {@link JacisLockStrategy#STAMPED}).
+ *
+ * The read and write views of a stamped lock (see {@link StampedLock#asReadWriteLock()}) are not reentrant,
+ * but the store relies on acquiring the read lock while already holding the read or the write lock (e.g. accessing an entry inside an atomic operation).
+ * Therefore this lock counts the holds of the current thread and only acquires the stamped lock for the outermost hold.
+ * Like for the {@link java.util.concurrent.locks.ReentrantReadWriteLock} a thread holding the write lock may acquire the read lock
+ * (if the write lock is released first the hold is converted to a read lock), but upgrading a read lock to a write lock is not supported.
+ * The underlying stamped lock (see {@link #getStampedLock()}) can be used for optimistic reads.
+ * Conditions are not supported.
+ *
+ * @author Jan Wiemer
+ */
+public class JacisStampedReadWriteLock implements ReadWriteLock {
+
+  /** The underlying stamped lock */
+  private final StampedLock stampedLock = new StampedLock();
+  /** The holds of the current thread */
+  private final ThreadLocal<Holds> holds = ThreadLocal.withInitial(Holds::new);
+  private final Lock readLock = new ReadLock();
+  private final Lock writeLock = new WriteLock();
+
+  @Override
+  public Lock readLock() {
+    return readLock;
+  }
+
+  @Override
+  public Lock writeLock() {
+    return writeLock;
+  }
+
+  /** @return The underlying stamped lock (e.g. to use optimistic reads). */
+  public StampedLock getStampedLock() {
+    return stampedLock;
+  }
+
+  /** @return If the current thread holds the write lock. */
+  public boolean isWriteLockedByCurrentThread() {
+    return holds.get().writes > 0;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(" + stampedLock + ")";
+  }
+
+  /** The holds of a thread (the stamp is only valid if the thread holds the stamped lock in read or write mode). */
+  private static class Holds {
+
+    private int reads;
+    private int writes;
+    private long stamp;
+    private boolean readLocked; // the stamped lock is held in read mode (not only a read hold nested in a write hold)
+
+  } // END OF:  private static class Holds
+
+  private class ReadLock implements Lock {
+
+    @Override
+    public void lock() {
+      Holds h = holds.get();
+      if (h.reads == 0 && h.writes == 0) {
+        h.stamp = stampedLock.readLock();
+        h.readLocked = true;
+      }
+      h.reads++;
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+      Holds h = holds.get();
+      if (h.reads == 0 && h.writes == 0) {
+        h.stamp = stampedLock.readLockInterruptibly();
+        h.readLocked = true;
+      }
+      h.reads++;
+    }
+
+    @Override
+    public boolean tryLock() {
+      Holds h = holds.get();
+      if (h.reads == 0 && h.writes == 0) {
+        long stamp = stampedLock.tryReadLock();
+        if (stamp == 0) {
+          return false;
+        }
+        h.stamp = stamp;
+        h.readLocked = true;
+      }
+      h.reads++;
+      return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+      Holds h = holds.get();
+      if (h.reads == 0 && h.writes == 0) {
+        long stamp = stampedLock.tryReadLock(time, unit);
+        if (stamp == 0) {
+          return false;
+        }
+        h.stamp = stamp;
+        h.readLocked = true;
+      }
+      h.reads++;
+      return true;
+    }
+
+    @Override
+    public void unlock() {
+      Holds h = holds.get();
+      if (h.reads == 0) {
+        throw new IllegalMonitorStateException("read lock not held by the current thread");
+      }
+      if (--h.reads == 0 && h.readLocked) {
+        h.readLocked = false;
+        stampedLock.unlockRead(h.stamp);
+      }
+    }
+
+    @Override
+    public Condition newCondition() {
+      throw new UnsupportedOperationException();
+    }
+
+  } // END OF:  private class ReadLock
+
+  private class WriteLock implements Lock {
+
+    private Holds checkNoUpgrade() {
+      Holds h = holds.get();
+      if (h.writes == 0 && h.reads > 0) {
+        throw new IllegalMonitorStateException("upgrading a read lock to a write lock is not supported");
+      }
+      return h;
+    }
+
+    @Override
+    public void lock() {
+      Holds h = checkNoUpgrade();
+      if (h.writes == 0) {
+        h.stamp = stampedLock.writeLock();
+      }
+      h.writes++;
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+      Holds h = checkNoUpgrade();
+      if (h.writes == 0) {
+        h.stamp = stampedLock.writeLockInterruptibly();
+      }
+      h.writes++;
+    }
+
+    @Override
+    public boolean tryLock() {
+      Holds h = checkNoUpgrade();
+      if (h.writes == 0) {
+        long stamp = stampedLock.tryWriteLock();
+        if (stamp == 0) {
+          return false;
+        }
+        h.stamp = stamp;
+      }
+      h.writes++;
+      return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+      Holds h = checkNoUpgrade();
+      if (h.writes == 0) {
+        long stamp = stampedLock.tryWriteLock(time, unit);
+        if (stamp == 0) {
+          return false;
+        }
+        h.stamp = stamp;
+      }
+      h.writes++;
+      return true;
+    }
+
+    @Override
+    public void unlock() {
+      Holds h = holds.get();
+      if (h.writes == 0) {
+        throw new IllegalMonitorStateException("write lock not held by the current thread");
+      }
+      if (--h.writes == 0) {
+        if (h.reads > 0) { // downgrade: the read holds acquired while holding the write lock remain
+          h.stamp = stampedLock.tryConvertToReadLock(h.stamp);
+          h.readLocked = true;
+        } else {
+          stampedLock.unlockWrite(h.stamp);
+        }
+      }
+    }
+
+    @Override
+    public Condition newCondition() {
+      throw new UnsupportedOperationException();
+    }
+
+  } // END OF:  private class WriteLock
+
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.container;
+
+/**
+ * Defines how the default description of a locally managed transaction is computed
+ * if the transaction is started without an explicit description (see {@link JacisContainer#beginLocalTransaction()}).
+ * The most useful description is the calling method determined by analyzing the call stack.
+ * Since capturing the call stack is expensive compared to a short transaction, the modes provide different trade offs.
+ *
+ * @author Jan Wiemer
+ */
+public enum JacisTransactionDescriptionMode {
+
+  /** No description is computed (the description is always "-"). */
+  NONE,
+
+  /** The call stack is not captured, the description is just the name of the thread starting the transaction (not the calling method). */
+  THREAD_NAME,
+
+  /** The call stack is captured and analyzed immediately on begin (default, the behavior of former versions). */
+  EAGER,
+
+  /** Only for every n-th transaction the call stack is captured (and analyzed if the description is needed), all other transactions get the description "-" (see {@link JacisContainer#setTransactionDescriptionSampleRate(int)}). */
+  SAMPLED
+
+}
@@ -4,6 +4,12 @@
 
 package org.jacis.container;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
 /**
  * = Jacis handle for an external transaction.
  *
@@ -16,11 +22,21 @@ public class JacisTransactionHandle {
   /** The id of the transaction */
   private final String txId;
   /** Description for the transaction giving some more information about the purpose of the transaction (for logging and debugging) */
-  private final String txDescription;
+  private volatile String txDescription;
+  /** Supplier computing the description on first access (null if the description is already known) */
+  private volatile Supplier<String> txDescriptionSupplier;
   /** A reference to the external (global) transaction (e.g. a JTA transaction) */
   private final Object externalTransaction;
   /** Creation timestamp in milliseconds (System.currentTimeMillis())*/
   private final long creationTimestampMs;
+  /** The transactional views of the stores touched by this transaction (indexed by the index of the store in the container) */
+  private volatile AtomicReferenceArray<Object> storeTxViews = new AtomicReferenceArray<>(0);
+  /** The stores enlisted in this transaction (the stores touched by the transaction) ordered by their store index (the global lock order) */
+  private volatile JacisContainer.JacisStoreTransactionAdapter[] enlistedStores = new JacisContainer.JacisStoreTransactionAdapter[0];
+  /** The registration of the snapshot the transaction reads from stores in snapshot isolation mode (null if not yet registered) */
+  private CommitSequence.SnapshotRegistration snapshotRegistration = null;
+  /** The commit sequence number assigned to the commit of the transaction if it updates stores in snapshot isolation mode (-1 if not assigned) */
+  private long commitSequence = -1;
 
   /**
    * Creates a transaction handle with the passed parameters.
@@ -36,6 +52,21 @@ public class JacisTransactionHandle {
     this.creationTimestampMs = System.currentTimeMillis();
   }
 
+  /**
+   * Creates a transaction handle with the passed parameters.
+   * The description of the transaction is only computed (by the passed supplier) when it is accessed the first time.
+   *
+   * @param txId                  The id of the transaction
+   * @param txDescriptionSupplier A supplier computing the description for the transaction (only called if the description is needed)
+   * @param externalTransaction   A reference to the external (global) transaction (e.g. a JTA transaction) this handle represents
+   */
+  public JacisTransactionHandle(String txId, Supplier<String> txDescriptionSupplier, Object externalTransaction) {
+    this.txId = txId;
+    this.txDescriptionSupplier = txDescriptionSupplier;
+    this.externalTransaction = externalTransaction;
+    this.creationTimestampMs = System.currentTimeMillis();
+  }
+
   /** @return The id of the transaction*/
   public String getTxId() {
     return txId;
@@ -43,9 +74,19 @@ public class JacisTransactionHandle {
 
   /** @return A description for the transaction giving some more information about the purpose of the transaction (for logging and debugging) */
   public String getTxDescription() {
+    Supplier<String> supplier = txDescriptionSupplier;
+    if (supplier != null) { // resolve lazily (concurrent resolution is harmless since the supplier always computes the same description)
+      txDescription = supplier.get();
+      txDescriptionSupplier = null;
+    }
     return txDescription;
   }
 
+  /** @return The supplier computing the description if the description is not yet computed (otherwise null, the description is returned by {@link #getTxDescription()}) */
+  public Supplier<String> getTxDescriptionSupplier() {
+    return txDescriptionSupplier;
+  }
+
   /** @return A reference to the external (global) transaction (e.g. a JTA transaction) this handle represents */
   public Object getExternalTransaction() {
     return externalTransaction;
@@ -56,6 +97,85 @@ public class JacisTransactionHandle {
     return creationTimestampMs;
   }
 
+  Object getStoreTxView(int storeIndex) { // lock free, called on every store access
+    AtomicReferenceArray<Object> views = storeTxViews;
+    return storeIndex < views.length() ? views.get(storeIndex) : null;
+  }
+
+  synchronized void setStoreTxView(JacisContainer.JacisStoreTransactionAdapter store, Object txView) {
+    enlist(store);
+    int storeIndex = store.getStoreIndex();
+    AtomicReferenceArray<Object> views = storeTxViews;
+    if (storeIndex >= views.length()) {
+      AtomicReferenceArray<Object> newViews = new AtomicReferenceArray<>(Math.max(storeIndex + 1, 2 * views.length()));
+      for (int i = 0; i < views.length(); i++) {
+        newViews.set(i, views.get(i));
+      }
+      views = newViews;
+      storeTxViews = newViews;
+    }
+    views.set(storeIndex, txView);
+  }
+
+  private void enlist(JacisContainer.JacisStoreTransactionAdapter store) {
+    JacisContainer.JacisStoreTransactionAdapter[] stores = enlistedStores;
+    int pos = 0;
+    while (pos < stores.length && stores[pos].getStoreIndex() <= store.getStoreIndex()) {
+      if (stores[pos] == store) {
+        return; // already enlisted
+      }
+      pos++;
+    }
+    JacisContainer.JacisStoreTransactionAdapter[] newStores = new JacisContainer.JacisStoreTransactionAdapter[stores.length + 1];
+    System.arraycopy(stores, 0, newStores, 0, pos);
+    newStores[pos] = store;
+    System.arraycopy(stores, pos, newStores, pos + 1, stores.length - pos);
+    enlistedStores = newStores;
+  }
+
+  /** @return The stores enlisted in this transaction (the stores touched by the transaction) ordered by their store index (the global lock order). */
+  List<JacisContainer.JacisStoreTransactionAdapter> getEnlistedStores() {
+    JacisContainer.JacisStoreTransactionAdapter[] stores = enlistedStores;
+    return stores.length == 0 ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(stores));
+  }
+
+  synchronized long getOrRegisterSnapshotSequence(CommitSequence sequence) {
+    if (snapshotRegistration == null) {
+      snapshotRegistration = sequence.registerSnapshot(this);
+    }
+    return snapshotRegistration.snapshot;
+  }
+
+  synchronized long getOrAssignCommitSequence(CommitSequence sequence) {
+    if (commitSequence < 0) {
+      commitSequence = sequence.assign();
+    }
+    return commitSequence;
+  }
+
+  synchronized long completeCommitSequence(CommitSequence sequence) { // called at the end of the commit, returns the completed number (-1 if not assigned)
+    long completed = commitSequence;
+    if (completed >= 0) {
+      sequence.complete(completed);
+      commitSequence = -1;
+    }
+    return completed;
+  }
+
+  synchronized void deregisterSnapshot(CommitSequence sequence) { // called at the end of the transaction
+    if (snapshotRegistration != null) {
+      sequence.deregisterSnapshot(snapshotRegistration);
+      snapshotRegistration = null;
+    }
+  }
+
+  synchronized void clearStoreTxView(int storeIndex, Object txView) {
+    AtomicReferenceArray<Object> views = storeTxViews;
+    if (storeIndex < views.length()) {
+      views.compareAndSet(storeIndex, txView, null);
+    }
+  }
+
   @Override
   public int hashCode() {
     return externalTransaction.hashCode();
@@ -76,7 +196,7 @@ public class JacisTransactionHandle {
 
   @Override
   public String toString() {
-    return "TX(" + txId + ": " + txDescription + ")";
+    return "TX(" + txId + ": " + getTxDescription() + ")";
   }
 
 }
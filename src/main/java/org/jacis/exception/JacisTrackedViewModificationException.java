@@ -7,7 +7,7 @@ package org.jacis.exception;
 import org.jacis.container.JacisContainer.StoreIdentifier;
 import org.jacis.container.JacisTransactionHandle;
 import org.jacis.store.JacisStoreImpl;
-import org.jacis.trackedviews.TrackedView;
+import org.jacis.trackedviews.TrackedViewBase;
 
 /**
  * Exception thrown in case the modification of a tracked view during commit causes an exception.
@@ -19,14 +19,14 @@ public class JacisTrackedViewModificationException extends RuntimeException {
   private static final long serialVersionUID = 1L;
 
   private final StoreIdentifier storeIdentifier;
-  private final TrackedView<?> view;
+  private final TrackedViewBase<?> view;
   private final String txId;
   private final String txDescription;
   private final Object key;
   private final Object oldValue;
   private final Object newValue;
 
-  public JacisTrackedViewModificationException(JacisStoreImpl<?, ?, ?> store, TrackedView<?> view, JacisTransactionHandle transaction, Object key, Object oldValue, Object newValue, Exception e) {
+  public JacisTrackedViewModificationException(JacisStoreImpl<?, ?, ?> store, TrackedViewBase<?> view, JacisTransactionHandle transaction, Object key, Object oldValue, Object newValue, Exception e) {
     super(computeMessage(store, view, transaction, key, oldValue, newValue, e), e);
     this.view = view;
     this.key = key;
@@ -37,7 +37,7 @@ public class JacisTrackedViewModificationException extends RuntimeException {
     txDescription = transaction.getTxDescription();
   }
 
-  private static String computeMessage(JacisStoreImpl<?, ?, ?> store, TrackedView<?> view, JacisTransactionHandle transaction, Object key, Object oldValue, Object newValue, Exception e) {
+  private static String computeMessage(JacisStoreImpl<?, ?, ?> store, TrackedViewBase<?> view, JacisTransactionHandle transaction, Object key, Object oldValue, Object newValue, Exception e) {
     return "Tracking modification for TX " + transaction.getTxId() + " on view " + view + " of store " + store.getStoreIdentifier() + " causes exception: >" + e.toString() + "<!" +//
         "(modifying object with key >" + key + "< from >" + oldValue + "< to >" + newValue + "<)";
   }
@@ -46,7 +46,7 @@ public class JacisTrackedViewModificationException extends RuntimeException {
     return storeIdentifier;
   }
 
-  public TrackedView<?> getView() {
+  public TrackedViewBase<?> getView() {
     return view;
   }
 
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.exception;
+
+/**
+ * Exception thrown if committing a transaction would violate a unique index of a store.
+ * This is the case if the transaction wants to commit an entry with an index key already used by another committed entry
+ * or by an entry of another (already prepared) transaction.
+ * The check is done when the transaction is prepared.
+ *
+ * @author Jan Wiemer
+ */
+public class JacisUniqueIndexViolationException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  /** the name of the violated index */
+  private final String indexName;
+  /** the index key used twice */
+  private final Object indexKey;
+
+  public JacisUniqueIndexViolationException(String indexName, Object indexKey, String message) {
+    super(message);
+    this.indexName = indexName;
+    this.indexKey = indexKey;
+  }
+
+  public String getIndexName() {
+    return indexName;
+  }
+
+  public Object getIndexKey() {
+    return indexKey;
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.index;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * = Base class for secondary indexes on the committed values of a store.
+ *
+ * An index maps an index key (computed from a value by the index key function) to the primary keys of the store entries.
+ * The index is registered at the index registry of a store (see {@link org.jacis.store.JacisIndexRegistry})
+ * and is kept up to date on each commit automatically (like a tracked view).
+ * Note that an index only reflects the committed values.
+ * The lookup methods of the index registry merge the modifications of the current transaction.
+ * Values with a `null` index key are not indexed.
+ *
+ * *Caution:* the index key function must only depend on the passed value and must not modify it!
+ *
+ * @param <IK> Type of the index keys
+ * @param <K> Key type of the store entry
+ * @param <TV> Value type of the store entry
+ * @author Jan Wiemer
+ */
+public abstract class JacisIndex<IK, K, TV> {
+
+  /** The name of the index (unique for the store) */
+  private final String name;
+  /** Function computing the index key from a value */
+  private final Function<TV, IK> indexKeyFunction;
+
+  protected JacisIndex(String name, Function<TV, IK> indexKeyFunction) {
+    this.name = name;
+    this.indexKeyFunction = indexKeyFunction;
+  }
+
+  /** @return The name of the index (unique for the store) */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @param value A value of the store (may be null)
+   * @return The index key for the passed value (null if the value is null or not indexed)
+   */
+  public IK getIndexKey(TV value) {
+    return value == null ? null : indexKeyFunction.apply(value);
+  }
+
+  /** @return if each index key refers to at most one store entry */
+  public abstract boolean isUnique();
+
+  /**
+   * @param indexKey The index key
+   * @return The primary keys of the committed entries with the passed index key (a snapshot that is not updated on later commits).
+   */
+  public abstract Collection<K> getCommittedPrimaryKeys(IK indexKey);
+
+  /**
+   * Track the modification of a committed value.
+   * The method is called during commit for each modified object (the old value is the original value of the committing transaction).
+   *
+   * @param key The primary key of the modified entry
+   * @param oldValue The old value (null if the entry is new)
+   * @param newValue The new value (null if the entry is deleted)
+   */
+  public void trackModification(K key, TV oldValue, TV newValue) {
+    IK oldIndexKey = getIndexKey(oldValue);
+    IK newIndexKey = getIndexKey(newValue);
+    if (Objects.equals(oldIndexKey, newIndexKey)) {
+      return;
+    }
+    if (oldIndexKey != null) {
+      remove(oldIndexKey, key);
+    }
+    if (newIndexKey != null) {
+      add(newIndexKey, key);
+    }
+  }
+
+  protected abstract void add(IK indexKey, K key);
+
+  protected abstract void remove(IK indexKey, K key);
+
+  /** Clear the index (after this it reflects a store without committed values). */
+  public abstract void clear();
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(" + name + ")";
+  }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * = Non unique hash index.
+ *
+ * Each index key may refer to several store entries.
+ * Lookups by index key are O(1) (plus the number of found entries).
+ *
+ * @param <IK> Type of the index keys
+ * @param <K> Key type of the store entry
+ * @param <TV> Value type of the store entry
+ * @author Jan Wiemer
+ */
+public class JacisNonUniqueIndex<IK, K, TV> extends JacisIndex<IK, K, TV> {
+
+  /** Map assigning the committed index keys the primary keys of the entries */
+  protected final ConcurrentMap<IK, Set<K>> indexMap;
+
+  public JacisNonUniqueIndex(String name, Function<TV, IK> indexKeyFunction) {
+    this(name, indexKeyFunction, new ConcurrentHashMap<>());
+  }
+
+  protected JacisNonUniqueIndex(String name, Function<TV, IK> indexKeyFunction, ConcurrentMap<IK, Set<K>> indexMap) {
+    super(name, indexKeyFunction);
+    this.indexMap = indexMap;
+  }
+
+  @Override
+  public boolean isUnique() {
+    return false;
+  }
+
+  @Override
+  public Collection<K> getCommittedPrimaryKeys(IK indexKey) {
+    Set<K> keys = indexKey == null ? null : indexMap.get(indexKey);
+    return keys == null ? Collections.emptyList() : new ArrayList<>(keys);
+  }
+
+  @Override
+  protected void add(IK indexKey, K key) {
+    indexMap.compute(indexKey, (ik, keys) -> {
+      Set<K> res = keys != null ? keys : ConcurrentHashMap.newKeySet();
+      res.add(key);
+      return res;
+    });
+  }
+
+  @Override
+  protected void remove(IK indexKey, K key) {
+    indexMap.computeIfPresent(indexKey, (ik, keys) -> {
+      keys.remove(key);
+      return keys.isEmpty() ? null : keys;
+    });
+  }
+
+  @Override
+  public void clear() {
+    indexMap.clear();
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * = Sorted (non unique) index.
+ *
+ * Each index key may refer to several store entries.
+ * Additionally to the lookup by index key the index supports range queries (in the order of the index keys).
+ * Lookups and range queries are O(log n) (plus the number of found entries).
+ *
+ * @param <IK> Type of the index keys
+ * @param <K> Key type of the store entry
+ * @param <TV> Value type of the store entry
+ * @author Jan Wiemer
+ */
+public class JacisSortedIndex<IK, K, TV> extends JacisNonUniqueIndex<IK, K, TV> {
+
+  /** Comparator defining the order of the index keys */
+  private final Comparator<? super IK> comparator;
+
+  public JacisSortedIndex(String name, Function<TV, IK> indexKeyFunction, Comparator<? super IK> comparator) {
+    super(name, indexKeyFunction, new ConcurrentSkipListMap<>(comparator));
+    this.comparator = comparator;
+  }
+
+  /** @return The comparator defining the order of the index keys */
+  public Comparator<? super IK> getComparator() {
+    return comparator;
+  }
+
+  /**
+   * Returns the primary keys of the committed entries with an index key in the passed range (ordered by the index keys).
+   *
+   * @param fromIndexKey The lower bound of the range (inclusive, null means unbounded)
+   * @param toIndexKey The upper bound of the range (exclusive, null means unbounded)
+   * @return The primary keys of the committed entries with an index key in the passed range (a snapshot that is not updated on later commits).
+   */
+  public Collection<K> getCommittedPrimaryKeys(IK fromIndexKey, IK toIndexKey) {
+    Collection<K> res = new ArrayList<>();
+    for (Set<K> keys : getCommittedRange(fromIndexKey, toIndexKey).values()) {
+      res.addAll(keys);
+    }
+    return res;
+  }
+
+  /**
+   * Returns a (read only) view of the committed index entries with an index key in the passed range.
+   * Seeking the start of the range is O(log n), iterating the view is weakly consistent (concurrent commits may be visible).
+   *
+   * @param fromIndexKey The lower bound of the range (inclusive, null means unbounded)
+   * @param toIndexKey The upper bound of the range (exclusive, null means unbounded)
+   * @return The view on the committed index entries (index key to primary keys) in the passed range
+   */
+  public NavigableMap<IK, Set<K>> getCommittedRange(IK fromIndexKey, IK toIndexKey) {
+    ConcurrentNavigableMap<IK, Set<K>> sortedMap = (ConcurrentNavigableMap<IK, Set<K>>) indexMap;
+    ConcurrentNavigableMap<IK, Set<K>> range;
+    if (fromIndexKey != null && toIndexKey != null) {
+      range = sortedMap.subMap(fromIndexKey, true, toIndexKey, false);
+    } else if (fromIndexKey != null) {
+      range = sortedMap.tailMap(fromIndexKey, true);
+    } else if (toIndexKey != null) {
+      range = sortedMap.headMap(toIndexKey, false);
+    } else {
+      range = sortedMap;
+    }
+    return Collections.unmodifiableNavigableMap(range);
+  }
+
+  /**
+   * @param indexKey An index key
+   * @param fromIndexKey The lower bound of the range (inclusive, null means unbounded)
+   * @param toIndexKey The upper bound of the range (exclusive, null means unbounded)
+   * @return if the passed index key is in the passed range
+   */
+  public boolean isInRange(IK indexKey, IK fromIndexKey, IK toIndexKey) {
+    if (indexKey == null) {
+      return false;
+    } else if (fromIndexKey != null && comparator.compare(indexKey, fromIndexKey) < 0) {
+      return false;
+    }
+    return toIndexKey == null || comparator.compare(indexKey, toIndexKey) < 0;
+  }
+
+}
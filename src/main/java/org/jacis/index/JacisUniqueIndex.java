@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.index;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * = Unique hash index.
+ *
+ * Each index key refers to at most one store entry.
+ * Lookups by index key are O(1). The uniqueness is checked when a transaction is prepared
+ * (see {@link org.jacis.exception.JacisUniqueIndexViolationException}).
+ * To detect conflicts between concurrently prepared transactions the index keys of the updated entries
+ * are reserved for the preparing transaction until it is committed or rolled back.
+ *
+ * @param <IK> Type of the index keys
+ * @param <K> Key type of the store entry
+ * @param <TV> Value type of the store entry
+ * @author Jan Wiemer
+ */
+public class JacisUniqueIndex<IK, K, TV> extends JacisIndex<IK, K, TV> {
+
+  /** Map assigning the committed index keys the primary key of the entry */
+  private final ConcurrentHashMap<IK, K> indexMap = new ConcurrentHashMap<>();
+  /** Map assigning the index keys reserved by prepared transactions the reserving transaction */
+  private final ConcurrentHashMap<IK, Object> reservations = new ConcurrentHashMap<>();
+
+  public JacisUniqueIndex(String name, Function<TV, IK> indexKeyFunction) {
+    super(name, indexKeyFunction);
+  }
+
+  @Override
+  public boolean isUnique() {
+    return true;
+  }
+
+  /**
+   * @param indexKey The index key
+   * @return The primary key of the committed entry with the passed index key (null if there is none).
+   */
+  public K getCommittedPrimaryKey(IK indexKey) {
+    return indexKey == null ? null : indexMap.get(indexKey);
+  }
+
+  @Override
+  public Collection<K> getCommittedPrimaryKeys(IK indexKey) {
+    K key = getCommittedPrimaryKey(indexKey);
+    return key == null ? Collections.emptyList() : Collections.singletonList(key);
+  }
+
+  @Override
+  protected void add(IK indexKey, K key) {
+    indexMap.put(indexKey, key);
+  }
+
+  @Override
+  protected void remove(IK indexKey, K key) {
+    indexMap.remove(indexKey, key);
+  }
+
+  /**
+   * Reserve the passed index key for the passed transaction (during prepare).
+   *
+   * @param indexKey The index key to reserve
+   * @param tx The reserving transaction
+   * @return The transaction already holding the reservation (null if the reservation succeeded).
+   */
+  public Object reserve(IK indexKey, Object tx) {
+    Object reservedBy = reservations.putIfAbsent(indexKey, tx);
+    return reservedBy == null || reservedBy == tx ? null : reservedBy;
+  }
+
+  /**
+   * Release all index keys reserved for the passed transaction (after commit or rollback).
+   *
+   * @param tx The transaction
+   */
+  public void releaseReservations(Object tx) {
+    if (!reservations.isEmpty()) {
+      reservations.values().removeIf(reservedBy -> reservedBy == tx);
+    }
+  }
+
+  @Override
+  public void clear() {
+    indexMap.clear();
+    reservations.clear();
+  }
+
+}
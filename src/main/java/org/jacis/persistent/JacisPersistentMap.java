@@ -0,0 +1,573 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.persistent;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Persistent (immutable) hash map implemented as hash array mapped trie (HAMT).
+ *
+ * The map can not be modified. Instead the methods {@link #with(Object, Object)} and {@link #without(Object)}
+ * return a new map containing the modification. The new map shares the whole structure with the original map
+ * except the path from the root to the modified entry. Therefore the modification as well as the lookup
+ * of an entry only need O(log32(n)) time (practically constant time).
+ * The trie uses the compressed layout (separate bitmaps for the entries and the sub nodes of a node)
+ * and keeps the trie canonical on removal (sub nodes with a single entry are inlined into the parent).
+ *
+ * The class implements the (read only) {@link Map} interface, the mutating methods of this interface
+ * throw an {@link UnsupportedOperationException}.
+ * Since the map is shared between different versions the keys and values stored in the map should be immutable as well.
+ *
+ * @param <K> Key type of the map
+ * @param <V> Value type of the map
+ * @author Jan Wiemer
+ */
+public final class JacisPersistentMap<K, V> extends AbstractMap<K, V> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+  private static final Object NOT_FOUND = new Object();
+  private static final JacisPersistentMap<?, ?> EMPTY = new JacisPersistentMap<>(BitmapNode.EMPTY_NODE, 0);
+
+  /**
+   * @param <K> Key type of the map
+   * @param <V> Value type of the map
+   * @return The empty persistent map.
+   */
+  @SuppressWarnings("unchecked")
+  public static <K, V> JacisPersistentMap<K, V> empty() {
+    return (JacisPersistentMap<K, V>) EMPTY;
+  }
+
+  /**
+   * @param map The map whose entries are copied to the persistent map
+   * @param <K> Key type of the map
+   * @param <V> Value type of the map
+   * @return A persistent map containing the entries of the passed map.
+   */
+  @SuppressWarnings("unchecked")
+  public static <K, V> JacisPersistentMap<K, V> from(Map<? extends K, ? extends V> map) {
+    if (map instanceof JacisPersistentMap) {
+      return (JacisPersistentMap<K, V>) map;
+    }
+    return JacisPersistentMap.<K, V> empty().withAll(map);
+  }
+
+  /** The root node of the trie */
+  private final transient Node root;
+  /** The number of entries in the map */
+  private final transient int size;
+  /** The cached entry set view (created on demand) */
+  private transient Set<Entry<K, V>> entrySet;
+
+  private JacisPersistentMap(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  private static int hash(Object key) {
+    int h = key == null ? 0 : key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+    Object value = root.find(key, hash(key), 0);
+    return value == NOT_FOUND ? null : (V) value;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V getOrDefault(Object key, V defaultValue) {
+    Object value = root.find(key, hash(key), 0);
+    return value == NOT_FOUND ? defaultValue : (V) value;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return root.find(key, hash(key), 0) != NOT_FOUND;
+  }
+
+  /**
+   * Returns a map containing the entries of this map and the passed entry.
+   * If the map already contains an entry for the passed key the value is replaced in the returned map.
+   * The current map is not modified.
+   *
+   * @param key The key of the entry
+   * @param value The value of the entry
+   * @return A map containing the passed entry (the current instance if it already contains the same value for the key)
+   */
+  public JacisPersistentMap<K, V> with(K key, V value) {
+    Change change = new Change();
+    Node newRoot = root.put(key, value, hash(key), 0, change);
+    if (newRoot == root) {
+      return this;
+    }
+    return new JacisPersistentMap<>(newRoot, change.sizeChanged ? size + 1 : size);
+  }
+
+  /**
+   * Returns a map containing the entries of this map and the passed map (the passed entries replace existing entries with the same key).
+   * The current map is not modified.
+   *
+   * @param map The map whose entries are added
+   * @return A map containing the entries of this map and the passed map
+   */
+  public JacisPersistentMap<K, V> withAll(Map<? extends K, ? extends V> map) {
+    JacisPersistentMap<K, V> res = this;
+    for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+      res = res.with(entry.getKey(), entry.getValue());
+    }
+    return res;
+  }
+
+  /**
+   * Returns a map containing the entries of this map without the entry for the passed key.
+   * The current map is not modified.
+   *
+   * @param key The key of the entry to remove
+   * @return A map without the entry for the passed key (the current instance if there is no such entry)
+   */
+  public JacisPersistentMap<K, V> without(Object key) {
+    Node newRoot = root.remove(key, hash(key), 0);
+    if (newRoot == root) {
+      return this;
+    }
+    return new JacisPersistentMap<>(newRoot, size - 1);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    root.forEach((BiConsumer<Object, Object>) action);
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    Set<Entry<K, V>> es = entrySet;
+    if (es == null) {
+      entrySet = es = new AbstractSet<Entry<K, V>>() {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+          return new EntryIterator<>(root);
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+          if (!(o instanceof Entry)) {
+            return false;
+          }
+          Entry<?, ?> entry = (Entry<?, ?>) o;
+          Object value = root.find(entry.getKey(), hash(entry.getKey()), 0);
+          return value != NOT_FOUND && Objects.equals(value, entry.getValue());
+        }
+      };
+    }
+    return es;
+  }
+
+  private Object writeReplace() {
+    return new SerializedForm(this);
+  }
+
+  private void readObject(ObjectInputStream in) throws InvalidObjectException {
+    throw new InvalidObjectException("Serialization proxy required");
+  }
+
+  /** Modification flags collected while changing the trie */
+  private static class Change {
+    /** flag indicating if an entry was added to the trie */
+    private boolean sizeChanged;
+  }
+
+  /** Base class for the nodes of the trie */
+  private abstract static class Node {
+
+    abstract Object find(Object key, int hash, int shift);
+
+    abstract Node put(Object key, Object value, int hash, int shift, Change change);
+
+    abstract Node remove(Object key, int hash, int shift);
+
+    /** @return if the node contains only one entry (and no sub nodes) and therefore can be inlined into the parent. */
+    abstract boolean isSingleEntry();
+
+    abstract int entryCount();
+
+    abstract Object keyAt(int idx);
+
+    abstract Object valueAt(int idx);
+
+    abstract int nodeCount();
+
+    abstract Node nodeAt(int idx);
+
+    final void forEach(BiConsumer<Object, Object> action) {
+      for (int i = 0, n = entryCount(); i < n; i++) {
+        action.accept(keyAt(i), valueAt(i));
+      }
+      for (int i = 0, n = nodeCount(); i < n; i++) {
+        nodeAt(i).forEach(action);
+      }
+    }
+
+  } // END OF:  private abstract static class Node
+
+  /**
+   * Node with a bitmap for the entries stored in the node and a bitmap for the sub nodes.
+   * The array contains the keys and values of the entries (alternating) followed by the sub nodes in reverse order.
+   */
+  private static final class BitmapNode extends Node {
+
+    private static final BitmapNode EMPTY_NODE = new BitmapNode(0, 0, new Object[0]);
+
+    private final int dataMap;
+    private final int nodeMap;
+    private final Object[] content;
+
+    BitmapNode(int dataMap, int nodeMap, Object[] content) {
+      this.dataMap = dataMap;
+      this.nodeMap = nodeMap;
+      this.content = content;
+    }
+
+    private static int bitpos(int hash, int shift) {
+      return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private int dataIndex(int bitpos) {
+      return Integer.bitCount(dataMap & (bitpos - 1));
+    }
+
+    private int nodeIndex(int bitpos) {
+      return content.length - 1 - Integer.bitCount(nodeMap & (bitpos - 1));
+    }
+
+    @Override
+    Object find(Object key, int hash, int shift) {
+      int bitpos = bitpos(hash, shift);
+      if ((dataMap & bitpos) != 0) {
+        int idx = 2 * dataIndex(bitpos);
+        return Objects.equals(key, content[idx]) ? content[idx + 1] : NOT_FOUND;
+      } else if ((nodeMap & bitpos) != 0) {
+        return ((Node) content[nodeIndex(bitpos)]).find(key, hash, shift + BITS);
+      }
+      return NOT_FOUND;
+    }
+
+    @Override
+    Node put(Object key, Object value, int hash, int shift, Change change) {
+      int bitpos = bitpos(hash, shift);
+      if ((dataMap & bitpos) != 0) {
+        int idx = 2 * dataIndex(bitpos);
+        Object currentKey = content[idx];
+        if (Objects.equals(key, currentKey)) {
+          if (content[idx + 1] == value) {
+            return this;
+          }
+          Object[] newContent = content.clone();
+          newContent[idx + 1] = value;
+          return new BitmapNode(dataMap, nodeMap, newContent);
+        }
+        change.sizeChanged = true;
+        Node subNode = merge(currentKey, content[idx + 1], hash(currentKey), key, value, hash, shift + BITS);
+        Object[] newContent = new Object[content.length - 1];
+        int nodeIdx = nodeIndex(bitpos) - 1; // position of the new node in the new array (after removing the entry)
+        System.arraycopy(content, 0, newContent, 0, idx);
+        System.arraycopy(content, idx + 2, newContent, idx, nodeIdx - idx);
+        newContent[nodeIdx] = subNode;
+        System.arraycopy(content, nodeIdx + 2, newContent, nodeIdx + 1, content.length - nodeIdx - 2);
+        return new BitmapNode(dataMap ^ bitpos, nodeMap | bitpos, newContent);
+      } else if ((nodeMap & bitpos) != 0) {
+        int nodeIdx = nodeIndex(bitpos);
+        Node subNode = (Node) content[nodeIdx];
+        Node newSubNode = subNode.put(key, value, hash, shift + BITS, change);
+        if (newSubNode == subNode) {
+          return this;
+        }
+        Object[] newContent = content.clone();
+        newContent[nodeIdx] = newSubNode;
+        return new BitmapNode(dataMap, nodeMap, newContent);
+      }
+      change.sizeChanged = true;
+      int idx = 2 * dataIndex(bitpos);
+      Object[] newContent = new Object[content.length + 2];
+      System.arraycopy(content, 0, newContent, 0, idx);
+      newContent[idx] = key;
+      newContent[idx + 1] = value;
+      System.arraycopy(content, idx, newContent, idx + 2, content.length - idx);
+      return new BitmapNode(dataMap | bitpos, nodeMap, newContent);
+    }
+
+    @Override
+    Node remove(Object key, int hash, int shift) {
+      int bitpos = bitpos(hash, shift);
+      if ((dataMap & bitpos) != 0) {
+        int idx = 2 * dataIndex(bitpos);
+        if (!Objects.equals(key, content[idx])) {
+          return this;
+        }
+        Object[] newContent = new Object[content.length - 2];
+        System.arraycopy(content, 0, newContent, 0, idx);
+        System.arraycopy(content, idx + 2, newContent, idx, content.length - idx - 2);
+        return new BitmapNode(dataMap ^ bitpos, nodeMap, newContent);
+      } else if ((nodeMap & bitpos) != 0) {
+        int nodeIdx = nodeIndex(bitpos);
+        Node subNode = (Node) content[nodeIdx];
+        Node newSubNode = subNode.remove(key, hash, shift + BITS);
+        if (newSubNode == subNode) {
+          return this;
+        } else if (!newSubNode.isSingleEntry()) {
+          Object[] newContent = content.clone();
+          newContent[nodeIdx] = newSubNode;
+          return new BitmapNode(dataMap, nodeMap, newContent);
+        }
+        // inline the remaining entry of the sub node
+        int idx = 2 * dataIndex(bitpos);
+        Object[] newContent = new Object[content.length + 1];
+        System.arraycopy(content, 0, newContent, 0, idx);
+        newContent[idx] = newSubNode.keyAt(0);
+        newContent[idx + 1] = newSubNode.valueAt(0);
+        System.arraycopy(content, idx, newContent, idx + 2, nodeIdx - idx);
+        System.arraycopy(content, nodeIdx + 1, newContent, nodeIdx + 2, content.length - nodeIdx - 1);
+        return new BitmapNode(dataMap | bitpos, nodeMap ^ bitpos, newContent);
+      }
+      return this;
+    }
+
+    private static Node merge(Object key0, Object value0, int hash0, Object key1, Object value1, int hash1, int shift) {
+      if (shift >= Integer.SIZE) {
+        return new CollisionNode(hash0, new Object[] { key0, value0, key1, value1 });
+      }
+      int mask0 = (hash0 >>> shift) & MASK;
+      int mask1 = (hash1 >>> shift) & MASK;
+      if (mask0 == mask1) {
+        return new BitmapNode(0, 1 << mask0, new Object[] { merge(key0, value0, hash0, key1, value1, hash1, shift + BITS) });
+      } else if (mask0 < mask1) {
+        return new BitmapNode((1 << mask0) | (1 << mask1), 0, new Object[] { key0, value0, key1, value1 });
+      }
+      return new BitmapNode((1 << mask0) | (1 << mask1), 0, new Object[] { key1, value1, key0, value0 });
+    }
+
+    @Override
+    boolean isSingleEntry() {
+      return nodeMap == 0 && Integer.bitCount(dataMap) == 1;
+    }
+
+    @Override
+    int entryCount() {
+      return Integer.bitCount(dataMap);
+    }
+
+    @Override
+    Object keyAt(int idx) {
+      return content[2 * idx];
+    }
+
+    @Override
+    Object valueAt(int idx) {
+      return content[2 * idx + 1];
+    }
+
+    @Override
+    int nodeCount() {
+      return Integer.bitCount(nodeMap);
+    }
+
+    @Override
+    Node nodeAt(int idx) {
+      return (Node) content[content.length - 1 - idx];
+    }
+
+  } // END OF:  private static final class BitmapNode
+
+  /** Node containing the entries whose keys have the same (full) hash code. */
+  private static final class CollisionNode extends Node {
+
+    private final int hash;
+    private final Object[] content;
+
+    CollisionNode(int hash, Object[] content) {
+      this.hash = hash;
+      this.content = content;
+    }
+
+    private int indexOf(Object key) {
+      for (int i = 0; i < content.length; i += 2) {
+        if (Objects.equals(key, content[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    Object find(Object key, int hash, int shift) {
+      int idx = indexOf(key);
+      return idx < 0 ? NOT_FOUND : content[idx + 1];
+    }
+
+    @Override
+    Node put(Object key, Object value, int hash, int shift, Change change) {
+      int idx = indexOf(key);
+      if (idx >= 0) {
+        if (content[idx + 1] == value) {
+          return this;
+        }
+        Object[] newContent = content.clone();
+        newContent[idx + 1] = value;
+        return new CollisionNode(this.hash, newContent);
+      }
+      change.sizeChanged = true;
+      Object[] newContent = Arrays.copyOf(content, content.length + 2);
+      newContent[content.length] = key;
+      newContent[content.length + 1] = value;
+      return new CollisionNode(this.hash, newContent);
+    }
+
+    @Override
+    Node remove(Object key, int hash, int shift) {
+      int idx = indexOf(key);
+      if (idx < 0) {
+        return this;
+      }
+      Object[] newContent = new Object[content.length - 2];
+      System.arraycopy(content, 0, newContent, 0, idx);
+      System.arraycopy(content, idx + 2, newContent, idx, content.length - idx - 2);
+      return new CollisionNode(this.hash, newContent);
+    }
+
+    @Override
+    boolean isSingleEntry() {
+      return content.length == 2;
+    }
+
+    @Override
+    int entryCount() {
+      return content.length / 2;
+    }
+
+    @Override
+    Object keyAt(int idx) {
+      return content[2 * idx];
+    }
+
+    @Override
+    Object valueAt(int idx) {
+      return content[2 * idx + 1];
+    }
+
+    @Override
+    int nodeCount() {
+      return 0;
+    }
+
+    @Override
+    Node nodeAt(int idx) {
+      throw new IndexOutOfBoundsException("Collision node has no sub nodes!");
+    }
+
+  } // END OF:  private static final class CollisionNode
+
+  /** Iterator over the entries of the trie (depth first, using an explicit stack of the pending nodes). */
+  private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+    private final ArrayDeque<Node> pendingNodes = new ArrayDeque<>();
+    private Node currentNode;
+    private int currentIdx;
+
+    EntryIterator(Node root) {
+      pendingNodes.push(root);
+      advance();
+    }
+
+    private void advance() {
+      while ((currentNode == null || currentIdx >= currentNode.entryCount()) && !pendingNodes.isEmpty()) {
+        currentNode = pendingNodes.pop();
+        currentIdx = 0;
+        for (int i = 0, n = currentNode.nodeCount(); i < n; i++) {
+          pendingNodes.push(currentNode.nodeAt(i));
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return currentNode != null && currentIdx < currentNode.entryCount();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Entry<K, V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Entry<K, V> entry = new SimpleImmutableEntry<>((K) currentNode.keyAt(currentIdx), (V) currentNode.valueAt(currentIdx));
+      currentIdx++;
+      advance();
+      return entry;
+    }
+
+  } // END OF:  private static final class EntryIterator
+
+  /** Serialization proxy storing the entries of the map. */
+  private static final class SerializedForm implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object[] keys;
+    private final Object[] values;
+
+    SerializedForm(JacisPersistentMap<?, ?> map) {
+      keys = new Object[map.size];
+      values = new Object[map.size];
+      int[] idx = { 0 };
+      map.forEach((k, v) -> {
+        keys[idx[0]] = k;
+        values[idx[0]++] = v;
+      });
+    }
+
+    private Object readResolve() {
+      JacisPersistentMap<Object, Object> map = empty();
+      for (int i = 0; i < keys.length; i++) {
+        map = map.with(keys[i], values[i]);
+      }
+      return map;
+    }
+
+  } // END OF:  private static final class SerializedForm
+
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.persistent;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Persistent (immutable) vector implemented as trie with a branching factor of 32 (and a separate tail array).
+ *
+ * The vector can not be modified. Instead the methods {@link #with(int, Object)}, {@link #append(Object)} and {@link #withoutLast()}
+ * return a new vector containing the modification. The new vector shares the whole structure with the original vector
+ * except the path from the root to the modified element. Therefore the modification as well as the access
+ * to an element only need O(log32(n)) time (practically constant time).
+ * Appending and removing elements at the end usually only copies the tail array (containing up to 32 elements).
+ *
+ * The class implements the (read only) {@link java.util.List} interface, the mutating methods of this interface
+ * throw an {@link UnsupportedOperationException}.
+ * Since the vector is shared between different versions the elements stored in the vector should be immutable as well.
+ *
+ * @param <E> Element type of the vector
+ * @author Jan Wiemer
+ */
+public final class JacisPersistentVector<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+  private static final Object[] EMPTY_NODE = new Object[WIDTH];
+  private static final JacisPersistentVector<?> EMPTY = new JacisPersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+  /**
+   * @param <E> Element type of the vector
+   * @return The empty persistent vector.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> JacisPersistentVector<E> empty() {
+    return (JacisPersistentVector<E>) EMPTY;
+  }
+
+  /**
+   * @param elements The elements copied to the persistent vector
+   * @param <E> Element type of the vector
+   * @return A persistent vector containing the passed elements (in the iteration order of the collection).
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> JacisPersistentVector<E> from(Collection<? extends E> elements) {
+    if (elements instanceof JacisPersistentVector) {
+      return (JacisPersistentVector<E>) elements;
+    }
+    return JacisPersistentVector.<E> empty().appendAll(elements);
+  }
+
+  /** The number of elements in the vector */
+  private final transient int size;
+  /** The shift of the root node (the number of bits of the index used below the root level) */
+  private final transient int shift;
+  /** The root node of the trie (inner nodes contain the child nodes, leaf nodes the elements) */
+  private final transient Object[] root;
+  /** The last elements of the vector (not yet stored in the trie) */
+  private final transient Object[] tail;
+
+  private JacisPersistentVector(int size, int shift, Object[] root, Object[] tail) {
+    this.size = size;
+    this.shift = shift;
+    this.root = root;
+    this.tail = tail;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private int tailOffset() {
+    return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+  }
+
+  private Object[] leafFor(int index) {
+    if (index >= tailOffset()) {
+      return tail;
+    }
+    Object[] node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Object[]) node[(index >>> level) & MASK];
+    }
+    return node;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(int index) {
+    checkIndex(index);
+    return (E) leafFor(index)[index & MASK];
+  }
+
+  /**
+   * Returns a vector where the element at the passed index is replaced by the passed element.
+   * If the index is equal to the size of the vector the element is appended.
+   * The current vector is not modified.
+   *
+   * @param index The index of the element to replace
+   * @param element The new element
+   * @return A vector containing the passed element at the passed index
+   */
+  public JacisPersistentVector<E> with(int index, E element) {
+    if (index == size) {
+      return append(element);
+    }
+    checkIndex(index);
+    if (index >= tailOffset()) {
+      Object[] newTail = tail.clone();
+      newTail[index & MASK] = element;
+      return new JacisPersistentVector<>(size, shift, root, newTail);
+    }
+    return new JacisPersistentVector<>(size, shift, replaceInNode(shift, root, index, element), tail);
+  }
+
+  private static Object[] replaceInNode(int level, Object[] node, int index, Object element) {
+    Object[] newNode = node.clone();
+    if (level == 0) {
+      newNode[index & MASK] = element;
+    } else {
+      int subIdx = (index >>> level) & MASK;
+      newNode[subIdx] = replaceInNode(level - BITS, (Object[]) node[subIdx], index, element);
+    }
+    return newNode;
+  }
+
+  /**
+   * Returns a vector containing the elements of this vector and the passed element at the end.
+   * The current vector is not modified.
+   *
+   * @param element The element to append
+   * @return A vector with the appended element
+   */
+  public JacisPersistentVector<E> append(E element) {
+    if (size - tailOffset() < WIDTH) { // room in the tail
+      Object[] newTail = new Object[tail.length + 1];
+      System.arraycopy(tail, 0, newTail, 0, tail.length);
+      newTail[tail.length] = element;
+      return new JacisPersistentVector<>(size + 1, shift, root, newTail);
+    }
+    // the full tail is pushed into the trie
+    Object[] newRoot;
+    int newShift = shift;
+    if ((size >>> BITS) > (1 << shift)) { // root overflow
+      newRoot = new Object[WIDTH];
+      newRoot[0] = root;
+      newRoot[1] = newPath(shift, tail);
+      newShift += BITS;
+    } else {
+      newRoot = pushTail(shift, root, tail);
+    }
+    return new JacisPersistentVector<>(size + 1, newShift, newRoot, new Object[] { element });
+  }
+
+  /**
+   * Returns a vector containing the elements of this vector and the passed elements at the end.
+   * The current vector is not modified.
+   *
+   * @param elements The elements to append
+   * @return A vector with the appended elements
+   */
+  public JacisPersistentVector<E> appendAll(Collection<? extends E> elements) {
+    JacisPersistentVector<E> res = this;
+    for (E element : elements) {
+      res = res.append(element);
+    }
+    return res;
+  }
+
+  private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+    int subIdx = ((size - 1) >>> level) & MASK;
+    Object[] newNode = parent.clone();
+    Object[] nodeToInsert;
+    if (level == BITS) {
+      nodeToInsert = tailNode;
+    } else {
+      Object[] child = (Object[]) parent[subIdx];
+      nodeToInsert = child != null ? pushTail(level - BITS, child, tailNode) : newPath(level - BITS, tailNode);
+    }
+    newNode[subIdx] = nodeToInsert;
+    return newNode;
+  }
+
+  private static Object[] newPath(int level, Object[] node) {
+    if (level == 0) {
+      return node;
+    }
+    Object[] newNode = new Object[WIDTH];
+    newNode[0] = newPath(level - BITS, node);
+    return newNode;
+  }
+
+  /**
+   * Returns a vector containing the elements of this vector without the last element.
+   * The current vector is not modified.
+   *
+   * @return A vector without the last element
+   * @throws IllegalStateException if the vector is empty
+   */
+  public JacisPersistentVector<E> withoutLast() {
+    if (size == 0) {
+      throw new IllegalStateException("Can not remove the last element of an empty vector!");
+    } else if (size == 1) {
+      return empty();
+    } else if (size - tailOffset() > 1) {
+      Object[] newTail = new Object[tail.length - 1];
+      System.arraycopy(tail, 0, newTail, 0, newTail.length);
+      return new JacisPersistentVector<>(size - 1, shift, root, newTail);
+    }
+    // the last leaf of the trie becomes the new tail
+    Object[] newTail = leafFor(size - 2);
+    Object[] newRoot = popTail(shift, root);
+    int newShift = shift;
+    if (newRoot == null) {
+      newRoot = EMPTY_NODE;
+    }
+    if (shift > BITS && newRoot[1] == null) {
+      newRoot = (Object[]) newRoot[0];
+      newShift -= BITS;
+    }
+    return new JacisPersistentVector<>(size - 1, newShift, newRoot, newTail);
+  }
+
+  private Object[] popTail(int level, Object[] node) {
+    int subIdx = ((size - 2) >>> level) & MASK;
+    if (level > BITS) {
+      Object[] newChild = popTail(level - BITS, (Object[]) node[subIdx]);
+      if (newChild == null && subIdx == 0) {
+        return null;
+      }
+      Object[] newNode = node.clone();
+      newNode[subIdx] = newChild;
+      return newNode;
+    } else if (subIdx == 0) {
+      return null;
+    }
+    Object[] newNode = node.clone();
+    newNode[subIdx] = null;
+    return newNode;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private int index = 0;
+      private Object[] leaf = size > 0 ? leafFor(0) : null;
+
+      @Override
+      public boolean hasNext() {
+        return index < size;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public E next() {
+        if (index >= size) {
+          throw new NoSuchElementException();
+        }
+        if (index > 0 && (index & MASK) == 0) {
+          leaf = leafFor(index);
+        }
+        return (E) leaf[index++ & MASK];
+      }
+    };
+  }
+
+  private Object writeReplace() {
+    return new SerializedForm(toArray());
+  }
+
+  private void readObject(ObjectInputStream in) throws InvalidObjectException {
+    throw new InvalidObjectException("Serialization proxy required");
+  }
+
+  /** Serialization proxy storing the elements of the vector. */
+  private static final class SerializedForm implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object[] elements;
+
+    SerializedForm(Object[] elements) {
+      this.elements = elements;
+    }
+
+    private Object readResolve() {
+      JacisPersistentVector<Object> vector = empty();
+      for (Object element : elements) {
+        vector = vector.append(element);
+      }
+      return vector;
+    }
+
+  } // END OF:  private static final class SerializedForm
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin;
+
+import java.util.List;
+
+import org.jacis.container.JacisTransactionHandle;
+
+/**
+ * Modification listener that gets notified once per committed transaction with all modifications of the transaction.
+ *
+ * During the commit phase of a transaction the store collects the modifications of the transaction
+ * and passes them to the method {@link #onModifications(List, JacisTransactionHandle)} after all modified values
+ * are written back to the store (but still inside the commit phase).
+ * The modified entries are still locked for the transaction while the listener is notified,
+ * therefore the modifications of the same key are always notified in the order they are committed.
+ * The method {@link #onModification(Object, Object, Object, JacisTransactionHandle)} is not called during commit for batch listeners.
+ * It is only called for single modifications outside a transaction (e.g. when initializing the store).
+ *
+ * @param <K> Key type of the store entry
+ * @param <V> Value type of the store entry
+ * @author Jan Wiemer
+ */
+public interface JacisBatchModificationListener<K, V> extends JacisModificationListener<K, V> {
+
+  /**
+   * Callback method called during the commit phase of a transaction with all modified values
+   * written back from the transactional view to the store of committed values.
+   * Note that implementing methods should not throw an exception since the original transaction could be broken by this.
+   *
+   * @param modifications The modifications of the transaction (in the order they are written back to the store)
+   * @param tx The transaction that is currently committed.
+   */
+  void onModifications(List<Modification<K, V>> modifications, JacisTransactionHandle tx);
+
+  /**
+   * A single modification of a committed value.
+   *
+   * @param <K> Key type of the store entry
+   * @param <V> Value type of the store entry
+   */
+  class Modification<K, V> {
+
+    private final K key;
+    private final V oldValue;
+    private final V newValue;
+
+    public Modification(K key, V oldValue, V newValue) {
+      this.key = key;
+      this.oldValue = oldValue;
+      this.newValue = newValue;
+    }
+
+    /** @return The key of the modified object */
+    public K getKey() {
+      return key;
+    }
+
+    /** @return The original value of the modified object when it was copied to the transactional view. */
+    public V getOldValue() {
+      return oldValue;
+    }
+
+    /** @return The new modified value that is written back to the committed values. */
+    public V getNewValue() {
+      return newValue;
+    }
+
+    @Override
+    public String toString() {
+      return key + ": " + oldValue + " -> " + newValue;
+    }
+
+  } // END OF:  class Modification
+
+}
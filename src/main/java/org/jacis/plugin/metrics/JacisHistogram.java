@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of non negative long values (e.g. durations in nanoseconds).
+ *
+ * Like an HDR histogram the values are counted in buckets with a logarithmic size:
+ * the values from 2^n^ to 2^n+1^-1 are split into {@value #SUB_BUCKETS} buckets of the same size.
+ * Therefore the value at a percentile is returned with a relative error of at most 1/{@value #SUB_BUCKETS}.
+ * The counts of the buckets are striped counters ({@link LongAdder}), recording a value is cheap even if many threads record values concurrently.
+ * The counts are read without synchronization, therefore values recorded concurrently to reading may be visible only partially.
+ *
+ * @author Jan Wiemer
+ */
+public class JacisHistogram {
+
+  /** Number of bits to determine the sub bucket of a value */
+  private static final int SUB_BUCKET_BITS = 3;
+  /** Number of buckets the values between two powers of two are divided into */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  /** Number of buckets (covering the values from 0 to Long.MAX_VALUE) */
+  private static final int NUMBER_OF_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final LongAdder[] buckets = new LongAdder[NUMBER_OF_BUCKETS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public JacisHistogram() {
+    for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Records the passed value (negative values are recorded as 0).
+   *
+   * @param value The value to record.
+   */
+  public void record(long value) {
+    long v = Math.max(0, value);
+    buckets[bucketIndex(v)].increment();
+    count.increment();
+    sum.add(v);
+    max.accumulate(v);
+  }
+
+  /** @return The number of recorded values. */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /** @return The sum of the recorded values. */
+  public long getSum() {
+    return sum.sum();
+  }
+
+  /** @return The maximum of the recorded values (0 if no value has been recorded). */
+  public long getMax() {
+    return max.get();
+  }
+
+  /** @return The mean of the recorded values (0 if no value has been recorded). */
+  public double getMean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  /**
+   * Returns the value at the passed percentile, e.g. the median for 50.
+   * The value is the upper bound of the bucket containing the value (at most the maximum of the recorded values).
+   *
+   * @param percentile The percentile (between 0 and 100).
+   * @return The value at the passed percentile (0 if no value has been recorded).
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile has to be between 0 and 100 but is: " + percentile);
+    }
+    long[] counts = new long[NUMBER_OF_BUCKETS];
+    long total = 0;
+    for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(bucketUpperBound(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /** Resets the histogram. Values recorded concurrently to the reset may be lost or partially reset. */
+  public void reset() {
+    for (LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    count.reset();
+    sum.reset();
+    max.reset();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(count=" + getCount() + ", mean=" + String.format("%.1f", getMean()) + ", p50=" + getValueAtPercentile(50) + ", p99=" + getValueAtPercentile(99) + ", max=" + getMax() + ")";
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS; // the leading one bit and the sub bucket bits remain
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowerBound + ((1L << shift) - 1);
+  }
+
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jacis.container.JacisTransactionHandle;
+
+/**
+ * = Profiler for the locks of a container and its stores.
+ *
+ * The transaction demarcation lock of a container and the store access locks of the stores are decorated by a {@link JacisProfilingReadWriteLock}
+ * recording the wait and hold times at the profiler of the container (see {@link org.jacis.container.JacisContainer#setLockProfiling(boolean)}).
+ * The profiler is a diagnostic tool to find the cause of contention and is disabled by default.
+ * If enabled, for each lock request the call stack is analyzed to determine the call site (the first method outside the locking helper methods),
+ * therefore profiling considerably slows down locking.
+ *
+ * The profiler records:
+ * - the wait and hold times for each call site (lock, lock mode and calling method),
+ * - the longest holds (including the description of the transaction holding the lock during the transaction demarcation),
+ * - the number of threads waiting for the read and the write lock when a lock is requested.
+ *
+ * A ranked report of the recorded values is returned by the {@link #getReport()} method.
+ *
+ * @author Jan Wiemer
+ */
+public class JacisLockProfiler {
+
+  /** The mode a read write lock is requested in. */
+  public enum LockMode {
+    READ, WRITE
+  }
+
+  /** Default number of longest holds that are kept */
+  public static final int DEFAULT_NUMBER_OF_LONGEST_HOLDS = 20;
+  /** Methods only acquiring or releasing locks on behalf of their caller (skipped when determining the call site) */
+  private static final Set<String> LOCK_HELPER_METHODS = new HashSet<>(Arrays.asList("lock", "unlock", "withLock", "withReadLock", "withWriteLock", "withGlobalAtomicStoreLocks", "lockForDemarcation"));
+
+  /** Flag if the locks are profiled */
+  private volatile boolean enabled = false;
+  /** Incremented each time the profiler is enabled (used to discard the holds acquired before the profiler was disabled) */
+  private volatile int epoch = 0;
+  /** Maximal number of longest holds that are kept */
+  private volatile int numberOfLongestHolds = DEFAULT_NUMBER_OF_LONGEST_HOLDS;
+  /** The statistics for the call sites */
+  private final Map<CallSite, CallSiteStatistics> callSiteStatistics = new ConcurrentHashMap<>();
+  /** The statistics of the queue lengths for the locks (by lock name) */
+  private final Map<String, QueueStatistics> queueStatistics = new ConcurrentHashMap<>();
+  /** The longest holds (the shortest of them first) */
+  private final PriorityQueue<LockHold> longestHolds = new PriorityQueue<>(Comparator.comparingLong(LockHold::getHoldNanos));
+  /** The duration of the shortest of the longest holds if the maximal number of holds is reached (to cheaply skip shorter holds) */
+  private volatile long longestHoldsThresholdNanos = 0;
+  /** The transaction the current thread executes the transaction demarcation for */
+  private final ThreadLocal<JacisTransactionHandle> boundTransaction = new ThreadLocal<>();
+  /** Time the profiler has been enabled or reset last time */
+  private volatile long startTimestamp = System.currentTimeMillis();
+
+  /**
+   * Enables or disables the profiling of the locks.
+   * Enabling the profiler does not reset the statistics recorded so far (see {@link #reset()}).
+   *
+   * @param enabled If the locks should be profiled.
+   * @return The profiler itself for method chaining.
+   */
+  public synchronized JacisLockProfiler setEnabled(boolean enabled) {
+    if (enabled && !this.enabled) {
+      epoch++;
+      startTimestamp = System.currentTimeMillis();
+    }
+    this.enabled = enabled;
+    return this;
+  }
+
+  /** @return If the locks are profiled. */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Sets the number of longest holds that are kept (default: {@value #DEFAULT_NUMBER_OF_LONGEST_HOLDS}).
+   *
+   * @param numberOfLongestHolds The number of longest holds that are kept.
+   * @return The profiler itself for method chaining.
+   */
+  public JacisLockProfiler setNumberOfLongestHolds(int numberOfLongestHolds) {
+    if (numberOfLongestHolds < 1) {
+      throw new IllegalArgumentException("Number of longest holds has to be positive but is: " + numberOfLongestHolds);
+    }
+    this.numberOfLongestHolds = numberOfLongestHolds;
+    return this;
+  }
+
+  int getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * Binds the passed transaction to the current thread (if the profiler is enabled).
+   * Holds of locks acquired while a transaction is bound are attributed to the transaction.
+   * The container binds the transaction during the transaction demarcation.
+   *
+   * @param transaction The transaction to bind.
+   * @return If the transaction has been bound (and has to be unbound by {@link #unbindTransaction()}).
+   */
+  public boolean bindTransaction(JacisTransactionHandle transaction) {
+    if (!enabled) {
+      return false;
+    }
+    boundTransaction.set(transaction);
+    return true;
+  }
+
+  /** Unbinds the transaction bound to the current thread. */
+  public void unbindTransaction() {
+    boundTransaction.remove();
+  }
+
+  JacisTransactionHandle getBoundTransaction() {
+    return boundTransaction.get();
+  }
+
+  void recordQueueLengths(String lockName, int waitingReaders, int waitingWriters) {
+    queueStatistics.computeIfAbsent(lockName, QueueStatistics::new).record(waitingReaders, waitingWriters);
+  }
+
+  void recordHold(String lockName, LockMode mode, String callSite, long waitNanos, long holdNanos, JacisTransactionHandle transaction) {
+    CallSite key = new CallSite(lockName, mode, callSite);
+    CallSiteStatistics statistics = callSiteStatistics.get(key);
+    if (statistics == null) {
+      statistics = callSiteStatistics.computeIfAbsent(key, CallSiteStatistics::new);
+    }
+    statistics.waits.record(waitNanos);
+    statistics.holds.record(holdNanos);
+    if (holdNanos > longestHoldsThresholdNanos) {
+      String txDescription = transaction == null ? null : transaction.getTxId() + ": " + transaction.getTxDescription();
+      LockHold hold = new LockHold(lockName, mode, callSite, Thread.currentThread().getName(), txDescription, waitNanos, holdNanos, System.currentTimeMillis());
+      synchronized (longestHolds) {
+        longestHolds.add(hold);
+        if (longestHolds.size() > numberOfLongestHolds) {
+          longestHolds.poll();
+        }
+        if (longestHolds.size() >= numberOfLongestHolds) {
+          longestHoldsThresholdNanos = longestHolds.peek().getHoldNanos();
+        }
+      }
+    }
+  }
+
+  static String determineCallSite() {
+    for (StackTraceElement element : new Throwable().getStackTrace()) {
+      String className = element.getClassName();
+      if (className.startsWith(JacisProfilingReadWriteLock.class.getName()) || className.equals(JacisLockProfiler.class.getName()) || LOCK_HELPER_METHODS.contains(element.getMethodName())) {
+        continue;
+      }
+      return className.substring(className.lastIndexOf('.') + 1) + "." + element.getMethodName();
+    }
+    return "unknown";
+  }
+
+  /** @return The statistics of all call sites ranked by the total wait time (the call site with the longest total wait time first). */
+  public List<CallSiteStatistics> getCallSiteStatistics() {
+    List<CallSiteStatistics> res = new ArrayList<>(callSiteStatistics.values());
+    res.sort(Comparator.comparingLong((CallSiteStatistics s) -> s.getWaits().getSum()).reversed());
+    return res;
+  }
+
+  /** @return The longest holds (the longest first). */
+  public List<LockHold> getLongestHolds() {
+    List<LockHold> res;
+    synchronized (longestHolds) {
+      res = new ArrayList<>(longestHolds);
+    }
+    res.sort(Comparator.comparingLong(LockHold::getHoldNanos).reversed());
+    return res;
+  }
+
+  /** @return The statistics of the queue lengths for all locks (sorted by the lock name). */
+  public List<QueueStatistics> getQueueStatistics() {
+    List<QueueStatistics> res = new ArrayList<>(queueStatistics.values());
+    res.sort(Comparator.comparing(QueueStatistics::getLockName));
+    return res;
+  }
+
+  /** Resets all recorded statistics. */
+  public void reset() {
+    callSiteStatistics.clear();
+    queueStatistics.clear();
+    synchronized (longestHolds) {
+      longestHolds.clear();
+      longestHoldsThresholdNanos = 0;
+    }
+    startTimestamp = System.currentTimeMillis();
+  }
+
+  /**
+   * Returns a report of the recorded statistics containing:
+   * - the call sites ranked by the total time waiting for the lock,
+   * - the longest holds,
+   * - the number of threads waiting for the read and write locks of each lock (on lock requests).
+   *
+   * @return A report of the recorded statistics.
+   */
+  public String getReport() {
+    StringBuilder b = new StringBuilder();
+    b.append("=== JACIS lock profile (enabled=").append(enabled).append(", recorded for ").append(System.currentTimeMillis() - startTimestamp).append(" ms) ===\n");
+    b.append("Call sites ranked by total wait time (times in microseconds):\n");
+    b.append(String.format("%4s %-40s %-5s %-50s %10s %12s %10s %10s %12s %10s %10s%n", "#", "lock", "mode", "call site", "count", "wait total", "wait p99", "wait max", "hold total", "hold p99", "hold max"));
+    int rank = 1;
+    for (CallSiteStatistics s : getCallSiteStatistics()) {
+      b.append(String.format("%4d %-40s %-5s %-50s %10d %12d %10d %10d %12d %10d %10d%n", rank++, s.getLockName(), s.getMode(), s.getCallSite(), s.getWaits().getCount(), //
+          micros(s.getWaits().getSum()), micros(s.getWaits().getValueAtPercentile(99)), micros(s.getWaits().getMax()), //
+          micros(s.getHolds().getSum()), micros(s.getHolds().getValueAtPercentile(99)), micros(s.getHolds().getMax())));
+    }
+    b.append("Longest holds (times in microseconds):\n");
+    b.append(String.format("%10s %10s %-40s %-5s %-50s %-30s %s%n", "hold", "wait", "lock", "mode", "call site", "thread", "transaction"));
+    for (LockHold h : getLongestHolds()) {
+      b.append(String.format("%10d %10d %-40s %-5s %-50s %-30s %s%n", micros(h.getHoldNanos()), micros(h.getWaitNanos()), h.getLockName(), h.getMode(), h.getCallSite(), h.getThreadName(), h.getTxDescription() == null ? "-" : h.getTxDescription()));
+    }
+    b.append("Threads waiting on lock requests:\n");
+    b.append(String.format("%-40s %10s %15s %15s %15s %15s%n", "lock", "requests", "readers mean", "readers max", "writers mean", "writers max"));
+    for (QueueStatistics q : getQueueStatistics()) {
+      b.append(String.format("%-40s %10d %15.2f %15d %15.2f %15d%n", q.getLockName(), q.getWaitingReaders().getCount(), q.getWaitingReaders().getMean(), q.getWaitingReaders().getMax(), q.getWaitingWriters().getMean(), q.getWaitingWriters().getMax()));
+    }
+    return b.toString();
+  }
+
+  private static long micros(long nanos) {
+    return nanos / 1000;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(enabled=" + enabled + ", #callSites=" + callSiteStatistics.size() + ")";
+  }
+
+  /** Key identifying a call site (the lock, the lock mode and the calling method). */
+  private static class CallSite {
+
+    private final String lockName;
+    private final LockMode mode;
+    private final String callSite;
+
+    private CallSite(String lockName, LockMode mode, String callSite) {
+      this.lockName = lockName;
+      this.mode = mode;
+      this.callSite = callSite;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(lockName, mode, callSite);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof CallSite)) {
+        return false;
+      }
+      CallSite that = (CallSite) obj;
+      return mode == that.mode && lockName.equals(that.lockName) && callSite.equals(that.callSite);
+    }
+
+  } // END OF:  private static class CallSite
+
+  /** The wait and hold times (in nanoseconds) recorded for a call site. */
+  public static class CallSiteStatistics {
+
+    private final CallSite callSite;
+    private final JacisHistogram waits = new JacisHistogram();
+    private final JacisHistogram holds = new JacisHistogram();
+
+    private CallSiteStatistics(CallSite callSite) {
+      this.callSite = callSite;
+    }
+
+    /** @return The name of the lock. */
+    public String getLockName() {
+      return callSite.lockName;
+    }
+
+    /** @return The mode the lock is requested in. */
+    public LockMode getMode() {
+      return callSite.mode;
+    }
+
+    /** @return The calling method (simple class name and method name). */
+    public String getCallSite() {
+      return callSite.callSite;
+    }
+
+    /** @return The histogram of the times waiting for the lock (in nanoseconds). */
+    public JacisHistogram getWaits() {
+      return waits;
+    }
+
+    /** @return The histogram of the times holding the lock (in nanoseconds). */
+    public JacisHistogram getHolds() {
+      return holds;
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "(" + getLockName() + " " + getMode() + " at " + getCallSite() + ": waits=" + waits + ", holds=" + holds + ")";
+    }
+
+  } // END OF:  public static class CallSiteStatistics
+
+  /** The number of threads waiting for the read and the write lock of a lock recorded on each lock request. */
+  public static class QueueStatistics {
+
+    private final String lockName;
+    private final JacisHistogram waitingReaders = new JacisHistogram();
+    private final JacisHistogram waitingWriters = new JacisHistogram();
+
+    private QueueStatistics(String lockName) {
+      this.lockName = lockName;
+    }
+
+    private void record(int readers, int writers) {
+      waitingReaders.record(readers);
+      waitingWriters.record(writers);
+    }
+
+    /** @return The name of the lock. */
+    public String getLockName() {
+      return lockName;
+    }
+
+    /** @return The histogram of the number of threads waiting for the read lock (recorded on each lock request). */
+    public JacisHistogram getWaitingReaders() {
+      return waitingReaders;
+    }
+
+    /** @return The histogram of the number of threads waiting for the write lock (recorded on each lock request). */
+    public JacisHistogram getWaitingWriters() {
+      return waitingWriters;
+    }
+
+  } // END OF:  public static class QueueStatistics
+
+  /** A (long) hold of a lock. */
+  public static class LockHold {
+
+    private final String lockName;
+    private final LockMode mode;
+    private final String callSite;
+    private final String threadName;
+    private final String txDescription;
+    private final long waitNanos;
+    private final long holdNanos;
+    private final long timestamp;
+
+    private LockHold(String lockName, LockMode mode, String callSite, String threadName, String txDescription, long waitNanos, long holdNanos, long timestamp) {
+      this.lockName = lockName;
+      this.mode = mode;
+      this.callSite = callSite;
+      this.threadName = threadName;
+      this.txDescription = txDescription;
+      this.waitNanos = waitNanos;
+      this.holdNanos = holdNanos;
+      this.timestamp = timestamp;
+    }
+
+    /** @return The name of the lock. */
+    public String getLockName() {
+      return lockName;
+    }
+
+    /** @return The mode the lock was held in. */
+    public LockMode getMode() {
+      return mode;
+    }
+
+    /** @return The calling method (simple class name and method name). */
+    public String getCallSite() {
+      return callSite;
+    }
+
+    /** @return The name of the thread holding the lock. */
+    public String getThreadName() {
+      return threadName;
+    }
+
+    /** @return The id and description of the transaction holding the lock (null if the lock was not held during the transaction demarcation). */
+    public String getTxDescription() {
+      return txDescription;
+    }
+
+    /** @return The time waiting for the lock (in nanoseconds). */
+    public long getWaitNanos() {
+      return waitNanos;
+    }
+
+    /** @return The time holding the lock (in nanoseconds). */
+    public long getHoldNanos() {
+      return holdNanos;
+    }
+
+    /** @return The time the lock was released (in milliseconds since 1970). */
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "(" + lockName + " " + mode + " at " + callSite + " held " + holdNanos + " ns by " + threadName + (txDescription == null ? "" : " for " + txDescription) + ")";
+    }
+
+  } // END OF:  public static class LockHold
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.metrics;
+
+import org.jacis.plugin.metrics.JacisStoreMetrics.CloneOperation;
+import org.jacis.plugin.objectadapter.JacisObjectAdapter;
+
+/**
+ * Object adapter decorating the object adapter of a store to record the number and duration of the clone operations.
+ * A store wraps its object adapter if metrics are recorded for the store (see {@link JacisStoreMetrics#isEnabled()}).
+ *
+ * @param <TV> Type of the objects in the transaction view. This is the type visible from the outside.
+ * @param <CV> Type of the objects as they are stored in the internal map of committed values. This type is not visible from the outside.
+ * @author Jan Wiemer
+ */
+public class JacisMeasuringObjectAdapter<TV, CV> implements JacisObjectAdapter<TV, CV> {
+
+  /** The decorated object adapter */
+  private final JacisObjectAdapter<TV, CV> delegate;
+  /** The metrics the clone operations are recorded at */
+  private final JacisStoreMetrics metrics;
+
+  public JacisMeasuringObjectAdapter(JacisObjectAdapter<TV, CV> delegate, JacisStoreMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  /** @return The decorated object adapter */
+  public JacisObjectAdapter<TV, CV> getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public TV cloneCommitted2WritableTxView(CV value) {
+    long t0 = System.nanoTime();
+    TV res = delegate.cloneCommitted2WritableTxView(value);
+    metrics.recordClone(CloneOperation.COMMITTED_TO_WRITABLE, System.nanoTime() - t0);
+    return res;
+  }
+
+  @Override
+  public CV cloneTxView2Committed(TV value) {
+    long t0 = System.nanoTime();
+    CV res = delegate.cloneTxView2Committed(value);
+    metrics.recordClone(CloneOperation.TX_VIEW_TO_COMMITTED, System.nanoTime() - t0);
+    return res;
+  }
+
+  @Override
+  public TV cloneCommitted2ReadOnlyTxView(CV value) {
+    long t0 = System.nanoTime();
+    TV res = delegate.cloneCommitted2ReadOnlyTxView(value);
+    metrics.recordClone(CloneOperation.COMMITTED_TO_READ_ONLY, System.nanoTime() - t0);
+    return res;
+  }
+
+  @Override
+  public TV cloneTxView2ReadOnlyTxView(TV value) {
+    long t0 = System.nanoTime();
+    TV res = delegate.cloneTxView2ReadOnlyTxView(value);
+    metrics.recordClone(CloneOperation.TX_VIEW_TO_READ_ONLY, System.nanoTime() - t0);
+    return res;
+  }
+
+  @Override
+  public TV accessCommittedUncloned(CV value) { // not a clone (unless the delegate clones, then the clone is not recorded)
+    return delegate.accessCommittedUncloned(value);
+  }
+
+  @Override
+  public void releaseCommitted(CV value, CV replacement) {
+    delegate.releaseCommitted(value, replacement);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(" + delegate + ")";
+  }
+
+}
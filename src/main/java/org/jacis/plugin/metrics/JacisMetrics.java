@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.metrics;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisContainer.StoreIdentifier;
+import org.jacis.plugin.objectadapter.JacisObjectAdapter;
+
+/**
+ * = Instrumentation SPI recording metrics for the hot paths of a container and its stores.
+ *
+ * An implementation can be registered at a JACIS container by the method {@link JacisContainer#setMetrics(JacisMetrics)}.
+ * The container records the duration of the transaction demarcation (prepare / commit / rollback)
+ * and the time waiting for the transaction demarcation lock.
+ * For each store created afterwards the container obtains a {@link JacisStoreMetrics} object by the method {@link #getStoreMetrics(StoreIdentifier, JacisObjectAdapter)}
+ * recording the metrics of the store.
+ *
+ * The record methods are called on the hot paths of the store, possibly concurrently by many threads.
+ * Therefore they have to be thread safe and should only do cheap updates (e.g. of striped counters like `LongAdder`).
+ * By default no metrics are recorded ({@link JacisNoOpMetrics}).
+ * The {@link JacisStatisticsMetrics} provide a dependency free implementation keeping histograms of the recorded values (accessible by JMX).
+ * To bind the metrics to a metrics library (e.g. Micrometer) this interface can be implemented delegating to the timers and counters of the library.
+ *
+ * @author Jan Wiemer
+ */
+public interface JacisMetrics {
+
+  /** The phases of the transaction demarcation. */
+  enum TxDemarcationPhase {
+    PREPARE, COMMIT, ROLLBACK
+  }
+
+  /**
+   * @return if metrics are recorded at all. If not the container and the stores skip measuring the durations passed to the record methods.
+   */
+  default boolean isEnabled() {
+    return true;
+  }
+
+  /**
+   * Records the duration of the transaction demarcation of a transaction on the container (including the time waiting for the locks).
+   *
+   * @param phase          The phase of the transaction demarcation.
+   * @param durationNanos The duration in nanoseconds.
+   */
+  void recordTxDemarcation(TxDemarcationPhase phase, long durationNanos);
+
+  /**
+   * Records the time waiting to acquire the transaction demarcation lock of the container (or the store locks if the container uses store level commit locking).
+   *
+   * @param waitNanos The time waiting for the lock in nanoseconds.
+   */
+  void recordDemarcationLockWait(long waitNanos);
+
+  /**
+   * Returns the object recording the metrics for a store. The method is called once when the store is created.
+   *
+   * @param storeIdentifier The identifier of the store.
+   * @param objectAdapter   The object adapter used by the store (e.g. to record the clone statistics per object adapter).
+   * @return The object recording the metrics for the store.
+   */
+  JacisStoreMetrics getStoreMetrics(StoreIdentifier storeIdentifier, JacisObjectAdapter<?, ?> objectAdapter);
+
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX interface of the {@link JacisStatisticsMetrics} (see {@link JacisStatisticsMetrics#registerMBean(String)}).
+ *
+ * @author Jan Wiemer
+ */
+public interface JacisMetricsMXBean {
+
+  /** @return The recorded statistics by their name (see {@link JacisStatisticsMetrics#getStatistics()}). */
+  Map<String, Long> getStatistics();
+
+  /** Resets all recorded statistics. */
+  void reset();
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.metrics;
+
+import org.jacis.container.JacisContainer.StoreIdentifier;
+import org.jacis.plugin.objectadapter.JacisObjectAdapter;
+
+/**
+ * Metrics implementation recording nothing (the default for a container).
+ *
+ * @author Jan Wiemer
+ */
+public class JacisNoOpMetrics implements JacisMetrics, JacisStoreMetrics {
+
+  /** The singleton instance */
+  public static final JacisNoOpMetrics INSTANCE = new JacisNoOpMetrics();
+
+  private JacisNoOpMetrics() {
+    // use the singleton instance
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return false;
+  }
+
+  @Override
+  public void recordTxDemarcation(TxDemarcationPhase phase, long durationNanos) {
+    // no-op
+  }
+
+  @Override
+  public void recordDemarcationLockWait(long waitNanos) {
+    // no-op
+  }
+
+  @Override
+  public JacisStoreMetrics getStoreMetrics(StoreIdentifier storeIdentifier, JacisObjectAdapter<?, ?> objectAdapter) {
+    return this;
+  }
+
+  @Override
+  public void recordStoreLockWait(long waitNanos) {
+    // no-op
+  }
+
+  @Override
+  public void recordClone(CloneOperation operation, long durationNanos) {
+    // no-op
+  }
+
+  @Override
+  public void recordTxViewSize(int numberOfEntries) {
+    // no-op
+  }
+
+  @Override
+  public void recordStaleObject() {
+    // no-op
+  }
+
+}
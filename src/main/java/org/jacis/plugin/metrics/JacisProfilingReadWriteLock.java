@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.metrics;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.jacis.container.JacisTransactionHandle;
+import org.jacis.plugin.metrics.JacisLockProfiler.LockMode;
+
+/**
+ * Read write lock decorating another read write lock to record the wait and hold times at the {@link JacisLockProfiler}.
+ *
+ * The locks are only profiled if the profiler is enabled (see {@link JacisLockProfiler#setEnabled(boolean)}),
+ * otherwise the decorator directly delegates to the decorated lock (only checking the enabled flag of the profiler).
+ * Holds acquired while the profiler is disabled are not recorded, even if they are released after enabling it.
+ * The condition objects of the decorated lock are not profiled.
+ *
+ * @author Jan Wiemer
+ */
+public class JacisProfilingReadWriteLock implements ReadWriteLock {
+
+  /** The name of the lock (used in the report of the profiler) */
+  private final String name;
+  /** The decorated lock */
+  private final ReadWriteLock delegate;
+  /** The profiler the wait and hold times are recorded at */
+  private final JacisLockProfiler profiler;
+  /** Number of profiled threads waiting for the read lock */
+  private final AtomicInteger waitingReaders = new AtomicInteger();
+  /** Number of profiled threads waiting for the write lock */
+  private final AtomicInteger waitingWriters = new AtomicInteger();
+  private final ProfilingLock readLock;
+  private final ProfilingLock writeLock;
+
+  public JacisProfilingReadWriteLock(String name, ReadWriteLock delegate, JacisLockProfiler profiler) {
+    this.name = name;
+    this.delegate = delegate;
+    this.profiler = profiler;
+    this.readLock = new ProfilingLock(delegate.readLock(), LockMode.READ, waitingReaders);
+    this.writeLock = new ProfilingLock(delegate.writeLock(), LockMode.WRITE, waitingWriters);
+  }
+
+  @Override
+  public Lock readLock() {
+    return readLock;
+  }
+
+  @Override
+  public Lock writeLock() {
+    return writeLock;
+  }
+
+  /** @return The name of the lock (used in the report of the profiler). */
+  public String getName() {
+    return name;
+  }
+
+  /** @return The decorated lock. */
+  public ReadWriteLock getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(" + name + ": " + delegate + ")";
+  }
+
+  /** A hold of the lock by the current thread (only recorded if the lock has been acquired while profiling was enabled). */
+  private static class Hold {
+
+    private final int epoch;
+    private final String callSite;
+    private final long waitNanos;
+    private final long acquiredNanos;
+    private final JacisTransactionHandle transaction;
+
+    private Hold(int epoch, String callSite, long waitNanos, long acquiredNanos, JacisTransactionHandle transaction) {
+      this.epoch = epoch;
+      this.callSite = callSite;
+      this.waitNanos = waitNanos;
+      this.acquiredNanos = acquiredNanos;
+      this.transaction = transaction;
+    }
+
+  } // END OF:  private static class Hold
+
+  private class ProfilingLock implements Lock {
+
+    private final Lock lock;
+    private final LockMode mode;
+    private final AtomicInteger waiting;
+    /** The holds of the current thread (a stack since the locks are reentrant and released in reverse order) */
+    private final ThreadLocal<ArrayDeque<Hold>> holds = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private ProfilingLock(Lock lock, LockMode mode, AtomicInteger waiting) {
+      this.lock = lock;
+      this.mode = mode;
+      this.waiting = waiting;
+    }
+
+    @Override
+    public void lock() {
+      if (!profiler.isEnabled()) {
+        lock.lock();
+        return;
+      }
+      int epoch = profiler.getEpoch();
+      String callSite = JacisLockProfiler.determineCallSite();
+      profiler.recordQueueLengths(name, waitingReaders.get(), waitingWriters.get());
+      long startNanos = System.nanoTime();
+      waiting.incrementAndGet();
+      try {
+        lock.lock();
+      } finally {
+        waiting.decrementAndGet();
+      }
+      long acquiredNanos = System.nanoTime();
+      holds.get().push(new Hold(epoch, callSite, acquiredNanos - startNanos, acquiredNanos, profiler.getBoundTransaction()));
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+      if (!profiler.isEnabled()) {
+        lock.lockInterruptibly();
+        return;
+      }
+      int epoch = profiler.getEpoch();
+      String callSite = JacisLockProfiler.determineCallSite();
+      profiler.recordQueueLengths(name, waitingReaders.get(), waitingWriters.get());
+      long startNanos = System.nanoTime();
+      waiting.incrementAndGet();
+      try {
+        lock.lockInterruptibly();
+      } finally {
+        waiting.decrementAndGet();
+      }
+      long acquiredNanos = System.nanoTime();
+      holds.get().push(new Hold(epoch, callSite, acquiredNanos - startNanos, acquiredNanos, profiler.getBoundTransaction()));
+    }
+
+    @Override
+    public boolean tryLock() {
+      boolean locked = lock.tryLock();
+      if (locked && profiler.isEnabled()) {
+        holds.get().push(new Hold(profiler.getEpoch(), JacisLockProfiler.determineCallSite(), 0, System.nanoTime(), profiler.getBoundTransaction()));
+      }
+      return locked;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+      if (!profiler.isEnabled()) {
+        return lock.tryLock(time, unit);
+      }
+      int epoch = profiler.getEpoch();
+      String callSite = JacisLockProfiler.determineCallSite();
+      long startNanos = System.nanoTime();
+      boolean locked;
+      waiting.incrementAndGet();
+      try {
+        locked = lock.tryLock(time, unit);
+      } finally {
+        waiting.decrementAndGet();
+      }
+      if (locked) {
+        long acquiredNanos = System.nanoTime();
+        holds.get().push(new Hold(epoch, callSite, acquiredNanos - startNanos, acquiredNanos, profiler.getBoundTransaction()));
+      }
+      return locked;
+    }
+
+    @Override
+    public void unlock() {
+      if (profiler.isEnabled()) {
+        ArrayDeque<Hold> threadHolds = holds.get();
+        int epoch = profiler.getEpoch();
+        while (!threadHolds.isEmpty() && threadHolds.peek().epoch != epoch) { // holds from before the profiler was disabled last time
+          threadHolds.pop();
+        }
+        Hold hold = threadHolds.poll(); // null if the lock was acquired before the profiler was enabled
+        if (hold != null) {
+          profiler.recordHold(name, mode, hold.callSite, hold.waitNanos, System.nanoTime() - hold.acquiredNanos, hold.transaction);
+        }
+      }
+      lock.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+      return lock.newCondition();
+    }
+
+  } // END OF:  private class ProfilingLock
+
+}
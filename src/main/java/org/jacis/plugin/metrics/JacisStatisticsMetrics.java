@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jacis.container.JacisContainer.StoreIdentifier;
+import org.jacis.plugin.objectadapter.JacisObjectAdapter;
+
+/**
+ * Dependency free implementation of the {@link JacisMetrics} keeping the statistics in memory.
+ *
+ * Durations and sizes are recorded in histograms ({@link JacisHistogram}), counts in striped counters ({@link LongAdder}).
+ * The statistics can be accessed by the getter methods, as a map of named values ({@link #getStatistics()})
+ * or by JMX after registering the metrics as MBean ({@link #registerMBean(String)}).
+ *
+ * @author Jan Wiemer
+ */
+public class JacisStatisticsMetrics implements JacisMetrics, JacisMetricsMXBean {
+
+  /** Histograms of the durations of the transaction demarcation phases (in nanoseconds) */
+  private final Map<TxDemarcationPhase, JacisHistogram> txDemarcationDurations = new EnumMap<>(TxDemarcationPhase.class);
+  /** Histogram of the time waiting for the transaction demarcation lock (in nanoseconds) */
+  private final JacisHistogram demarcationLockWaits = new JacisHistogram();
+  /** The statistics of the stores */
+  private final Map<StoreIdentifier, StoreStatistics> storeStatistics = new ConcurrentHashMap<>();
+
+  public JacisStatisticsMetrics() {
+    for (TxDemarcationPhase phase : TxDemarcationPhase.values()) {
+      txDemarcationDurations.put(phase, new JacisHistogram());
+    }
+  }
+
+  @Override
+  public void recordTxDemarcation(TxDemarcationPhase phase, long durationNanos) {
+    txDemarcationDurations.get(phase).record(durationNanos);
+  }
+
+  @Override
+  public void recordDemarcationLockWait(long waitNanos) {
+    demarcationLockWaits.record(waitNanos);
+  }
+
+  @Override
+  public JacisStoreMetrics getStoreMetrics(StoreIdentifier storeIdentifier, JacisObjectAdapter<?, ?> objectAdapter) {
+    StoreStatistics statistics = new StoreStatistics(storeIdentifier, objectAdapter.getClass().getSimpleName());
+    storeStatistics.put(storeIdentifier, statistics); // a store created again for the same identifier starts with new statistics
+    return statistics;
+  }
+
+  /**
+   * @param phase The phase of the transaction demarcation.
+   * @return The histogram of the durations of the passed transaction demarcation phase (in nanoseconds).
+   */
+  public JacisHistogram getTxDemarcationDurations(TxDemarcationPhase phase) {
+    return txDemarcationDurations.get(phase);
+  }
+
+  /** @return The histogram of the time waiting for the transaction demarcation lock (in nanoseconds). */
+  public JacisHistogram getDemarcationLockWaits() {
+    return demarcationLockWaits;
+  }
+
+  /**
+   * @param storeIdentifier The identifier of the store.
+   * @return The statistics of the passed store (null if no statistics are recorded for the store).
+   */
+  public StoreStatistics getStoreStatistics(StoreIdentifier storeIdentifier) {
+    return storeStatistics.get(storeIdentifier);
+  }
+
+  /** @return The statistics of all stores. */
+  public Collection<StoreStatistics> getAllStoreStatistics() {
+    return Collections.unmodifiableCollection(storeStatistics.values());
+  }
+
+  /**
+   * Returns all statistics as a map of named values (sorted by name), e.g. to export them to a monitoring system.
+   * The names for the histograms have the suffixes `.count`, `.mean`, `.p50`, `.p99` and `.max`.
+   * The names for the store statistics are prefixed by `store.<key type>-><value type>`.
+   *
+   * @return All statistics as map of named values.
+   */
+  @Override
+  public Map<String, Long> getStatistics() {
+    Map<String, Long> res = new TreeMap<>();
+    for (TxDemarcationPhase phase : TxDemarcationPhase.values()) {
+      addHistogram(res, phase.name().toLowerCase() + ".nanos", txDemarcationDurations.get(phase));
+    }
+    addHistogram(res, "demarcationLockWait.nanos", demarcationLockWaits);
+    for (StoreStatistics statistics : storeStatistics.values()) {
+      String prefix = "store." + statistics.getStoreIdentifier().toShortString() + ".";
+      addHistogram(res, prefix + "storeLockWait.nanos", statistics.getStoreLockWaits());
+      addHistogram(res, prefix + "txViewSize", statistics.getTxViewSizes());
+      res.put(prefix + "staleObjects", statistics.getNumberOfStaleObjects());
+      for (JacisStoreMetrics.CloneOperation operation : JacisStoreMetrics.CloneOperation.values()) {
+        String clonePrefix = prefix + "clone." + statistics.getObjectAdapterName() + "." + operation.name().toLowerCase();
+        res.put(clonePrefix + ".count", statistics.getNumberOfClones(operation));
+        res.put(clonePrefix + ".nanos", statistics.getCloneNanos(operation));
+      }
+    }
+    return res;
+  }
+
+  private void addHistogram(Map<String, Long> res, String name, JacisHistogram histogram) {
+    res.put(name + ".count", histogram.getCount());
+    res.put(name + ".mean", Math.round(histogram.getMean()));
+    res.put(name + ".p50", histogram.getValueAtPercentile(50));
+    res.put(name + ".p99", histogram.getValueAtPercentile(99));
+    res.put(name + ".max", histogram.getMax());
+  }
+
+  @Override
+  public void reset() {
+    txDemarcationDurations.values().forEach(JacisHistogram::reset);
+    demarcationLockWaits.reset();
+    storeStatistics.values().forEach(StoreStatistics::reset);
+  }
+
+  /**
+   * Registers the metrics as MBean (type {@link JacisMetricsMXBean}) at the platform MBean server.
+   * The object name is `org.jacis:type=JacisMetrics,name=<name>`.
+   *
+   * @param name The name of the metrics (e.g. the name of the container the metrics are registered at).
+   * @return The object name the MBean is registered with.
+   */
+  public ObjectName registerMBean(String name) {
+    try {
+      ObjectName objectName = new ObjectName("org.jacis:type=JacisMetrics,name=" + ObjectName.quote(name));
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      mBeanServer.registerMBean(this, objectName);
+      return objectName;
+    } catch (JMException e) {
+      throw new IllegalStateException("Failed to register the metrics " + name + " as MBean!", e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(commit=" + txDemarcationDurations.get(TxDemarcationPhase.COMMIT) + ", lockWait=" + demarcationLockWaits + ")";
+  }
+
+  /** The statistics of a single store. */
+  public static class StoreStatistics implements JacisStoreMetrics {
+
+    private final StoreIdentifier storeIdentifier;
+    private final String objectAdapterName;
+    private final JacisHistogram storeLockWaits = new JacisHistogram();
+    private final JacisHistogram txViewSizes = new JacisHistogram();
+    private final LongAdder staleObjects = new LongAdder();
+    private final LongAdder[] cloneCounts = new LongAdder[CloneOperation.values().length];
+    private final LongAdder[] cloneNanos = new LongAdder[CloneOperation.values().length];
+
+    StoreStatistics(StoreIdentifier storeIdentifier, String objectAdapterName) {
+      this.storeIdentifier = storeIdentifier;
+      this.objectAdapterName = objectAdapterName;
+      for (int i = 0; i < cloneCounts.length; i++) {
+        cloneCounts[i] = new LongAdder();
+        cloneNanos[i] = new LongAdder();
+      }
+    }
+
+    @Override
+    public void recordStoreLockWait(long waitNanos) {
+      storeLockWaits.record(waitNanos);
+    }
+
+    @Override
+    public void recordClone(CloneOperation operation, long durationNanos) {
+      cloneCounts[operation.ordinal()].increment();
+      cloneNanos[operation.ordinal()].add(durationNanos);
+    }
+
+    @Override
+    public void recordTxViewSize(int numberOfEntries) {
+      txViewSizes.record(numberOfEntries);
+    }
+
+    @Override
+    public void recordStaleObject() {
+      staleObjects.increment();
+    }
+
+    /** @return The identifier of the store. */
+    public StoreIdentifier getStoreIdentifier() {
+      return storeIdentifier;
+    }
+
+    /** @return The (simple class) name of the object adapter of the store. */
+    public String getObjectAdapterName() {
+      return objectAdapterName;
+    }
+
+    /** @return The histogram of the time waiting for the store access lock (in nanoseconds). */
+    public JacisHistogram getStoreLockWaits() {
+      return storeLockWaits;
+    }
+
+    /** @return The histogram of the number of entries in the transactional views of the committed or rolled back transactions. */
+    public JacisHistogram getTxViewSizes() {
+      return txViewSizes;
+    }
+
+    /** @return The number of conflicts detected on prepare / commit (causing a {@link org.jacis.exception.JacisStaleObjectException}). */
+    public long getNumberOfStaleObjects() {
+      return staleObjects.sum();
+    }
+
+    /** @return The rate of the transactions on the store failing due to a conflict (stale objects per committed or rolled back transaction). */
+    public double getStaleObjectRate() {
+      long n = txViewSizes.getCount();
+      return n == 0 ? 0 : (double) staleObjects.sum() / n;
+    }
+
+    /**
+     * @param operation The clone operation.
+     * @return The number of clones done by the object adapter for the passed operation.
+     */
+    public long getNumberOfClones(CloneOperation operation) {
+      return cloneCounts[operation.ordinal()].sum();
+    }
+
+    /**
+     * @param operation The clone operation.
+     * @return The total time spent by the object adapter for the passed operation (in nanoseconds).
+     */
+    public long getCloneNanos(CloneOperation operation) {
+      return cloneNanos[operation.ordinal()].sum();
+    }
+
+    void reset() {
+      storeLockWaits.reset();
+      txViewSizes.reset();
+      staleObjects.reset();
+      for (int i = 0; i < cloneCounts.length; i++) {
+        cloneCounts[i].reset();
+        cloneNanos[i].reset();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "(" + storeIdentifier.toShortString() + ", staleObjects=" + getNumberOfStaleObjects() + ", txViewSizes=" + txViewSizes + ")";
+    }
+
+  } // END OF:  public static class StoreStatistics
+
+}
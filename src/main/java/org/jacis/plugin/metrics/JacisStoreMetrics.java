@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.metrics;
+
+/**
+ * Recording the metrics of a single store (see {@link JacisMetrics#getStoreMetrics}).
+ * As for the {@link JacisMetrics} the record methods have to be thread safe and cheap.
+ *
+ * @author Jan Wiemer
+ */
+public interface JacisStoreMetrics {
+
+  /** The operations of the object adapter copying objects between the committed values and the transactional views. */
+  enum CloneOperation {
+    /** see {@link org.jacis.plugin.objectadapter.JacisObjectAdapter#cloneCommitted2WritableTxView} */
+    COMMITTED_TO_WRITABLE,
+    /** see {@link org.jacis.plugin.objectadapter.JacisObjectAdapter#cloneCommitted2ReadOnlyTxView} */
+    COMMITTED_TO_READ_ONLY,
+    /** see {@link org.jacis.plugin.objectadapter.JacisObjectAdapter#cloneTxView2ReadOnlyTxView} */
+    TX_VIEW_TO_READ_ONLY,
+    /** see {@link org.jacis.plugin.objectadapter.JacisObjectAdapter#cloneTxView2Committed} */
+    TX_VIEW_TO_COMMITTED
+  }
+
+  /**
+   * @return if metrics are recorded for the store. If not the store skips measuring the durations passed to the record methods.
+   */
+  default boolean isEnabled() {
+    return true;
+  }
+
+  /**
+   * Records the time waiting to acquire the store access lock.
+   *
+   * @param waitNanos The time waiting for the lock in nanoseconds.
+   */
+  void recordStoreLockWait(long waitNanos);
+
+  /**
+   * Records a copy of an object done by the object adapter of the store.
+   *
+   * @param operation      The clone operation.
+   * @param durationNanos The duration in nanoseconds.
+   */
+  void recordClone(CloneOperation operation, long durationNanos);
+
+  /**
+   * Records the number of entries in the transactional view of a transaction committed or rolled back on the store.
+   *
+   * @param numberOfEntries The number of entries in the transactional view.
+   */
+  void recordTxViewSize(int numberOfEntries);
+
+  /** Records a conflict detected on prepare / commit causing a {@link org.jacis.exception.JacisStaleObjectException}. */
+  void recordStaleObject();
+
+}
@@ -67,4 +67,33 @@ public interface JacisObjectAdapter<TV, CV> {
    */
   TV cloneTxView2ReadOnlyTxView(TV value);
 
+  /**
+   * Provide access to a committed version of the object without copying it (if possible).
+   * The returned object is only used to evaluate a filter or projection (see {@link org.jacis.store.JacisStore#streamReadOnlyProjected}),
+   * it must neither be modified nor returned to the caller.
+   * Note that committed versions of the objects are never modified in place (a commit replaces them),
+   * therefore the returned object is consistent even if a commit occurs while it is accessed.
+   * The default implementation returns a read only transactional view (see {@link #cloneCommitted2ReadOnlyTxView(Object)}).
+   *
+   * @param value Committed version of the object.
+   * @return An object that can be read to evaluate a filter or projection for the passed committed object.
+   */
+  default TV accessCommittedUncloned(CV value) {
+    return cloneCommitted2ReadOnlyTxView(value);
+  }
+
+  /**
+   * Notify the adapter that a committed version of an object is no longer referred by the store.
+   * This is the case if the version has been replaced by a commit (and is not visible for any active snapshot any more)
+   * or if the store has been cleared. Adapters keeping resources for the committed versions (e.g. off-heap memory) can release them here.
+   * Note that readers accessing the store without locks may still access the released version concurrently (or afterwards).
+   * The default implementation does nothing.
+   *
+   * @param value Released committed version of the object.
+   * @param replacement Committed version replacing the released one (null if the object has been deleted or the store has been cleared).
+   */
+  default void releaseCommitted(CV value, CV replacement) {
+    // nothing to release
+  }
+
 }
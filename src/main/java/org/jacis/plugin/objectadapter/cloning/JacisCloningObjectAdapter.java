@@ -9,7 +9,9 @@ import org.jacis.plugin.objectadapter.JacisObjectAdapter;
 import org.jacis.plugin.readonly.DefaultJacisStoreEntryReadOnlyModeAdapter;
 import org.jacis.plugin.readonly.JacisStoreEntryReadOnlyModeAdapter;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 
 /**
@@ -20,6 +22,10 @@ import java.lang.reflect.Method;
  * Otherwise the object may be cloneable (overwrites the {@link Object#clone()} methods)
  * but does not implement the {@link JacisCloneable} interface.
  * In this case the {@link Object#clone()} method is called by reflection.
+ * The method handle for the clone method is looked up only once for each class (see {@link #CLONE_METHODS}).
+ * Alternatively, if the deep copy mode is switched on (see {@link #setUseDeepCopy(boolean)}), objects that are not
+ * instances of the {@link JacisCloneable} interface are copied by the {@link JacisDeepCopyCloner}.
+ * In this case the objects do not need to declare a clone method at all.
  * <p>
  * If a read only mode adapter is set (see {@link #readOnlyModeAdapter}) and this read only mode adapter is applicable
  * for the objects in the store this adapter is used to switch the objects between the read-only and read-write mode.
@@ -36,12 +42,22 @@ import java.lang.reflect.Method;
  */
 public class JacisCloningObjectAdapter<V> implements JacisObjectAdapter<V, V> {
 
+  /** Cached method handles (type: (Object)Object) for the clone methods of the classes not implementing the {@link JacisCloneable} interface */
+  private static final ClassValue<CloneMethod> CLONE_METHODS = new ClassValue<CloneMethod>() {
+    @Override
+    protected CloneMethod computeValue(Class<?> type) {
+      return new CloneMethod(type);
+    }
+  };
+
   /**
    * Read only mode adapter used to switch objects from writable to read only mode if required and supported
    */
   private final JacisStoreEntryReadOnlyModeAdapter<V> readOnlyModeAdapter;
   /** Flag indicating if the object adapter should throw an exception if a read only mode is required, but not supported.*/
   private boolean throwIfMissingReadOnlyModeDetected = false;
+  /** Flag indicating if objects not implementing the {@link JacisCloneable} interface are deep copied (instead of calling their clone method). */
+  private boolean useDeepCopy = false;
 
   /**
    * Create a cloning object adapter with the passed read only mode adapter.
@@ -69,6 +85,17 @@ public class JacisCloningObjectAdapter<V> implements JacisObjectAdapter<V, V> {
     return this;
   }
 
+  /**
+   * Set the flag indicating if objects not implementing the {@link JacisCloneable} interface are deep copied
+   * by the {@link JacisDeepCopyCloner} (instead of calling their clone method).
+   * @param useDeepCopy flag indicating if objects not implementing the {@link JacisCloneable} interface are deep copied.
+   * @return The current instance for method chaining
+   */
+  public JacisCloningObjectAdapter<V> setUseDeepCopy(boolean useDeepCopy) {
+    this.useDeepCopy = useDeepCopy;
+    return this;
+  }
+
   @Override
   public V cloneCommitted2WritableTxView(V value) {
     if (value == null) {
@@ -124,6 +151,11 @@ public class JacisCloningObjectAdapter<V> implements JacisObjectAdapter<V, V> {
     }
   }
 
+  @Override
+  public V accessCommittedUncloned(V value) {
+    return value; // the committed instance is only read (and never modified in place)
+  }
+
   @SuppressWarnings("unchecked")
   private V cloneValue(V value) {
     if (value == null) {
@@ -132,6 +164,8 @@ public class JacisCloningObjectAdapter<V> implements JacisObjectAdapter<V, V> {
     V clone;
     if (value instanceof JacisCloneable) {
       clone = ((JacisCloneable<V>) value).clone();
+    } else if (useDeepCopy) {
+      clone = JacisDeepCopyCloner.deepCopy(value);
     } else {
       clone = cloneByReflection(value);
     }
@@ -140,13 +174,16 @@ public class JacisCloningObjectAdapter<V> implements JacisObjectAdapter<V, V> {
 
   @SuppressWarnings("unchecked")
   private V cloneByReflection(V obj) {
+    CloneMethod cloneMethod = CLONE_METHODS.get(obj.getClass());
+    if (cloneMethod.handle == null) {
+      throw new IllegalArgumentException("Failed to clone object " + obj + "! " + cloneMethod.error.getMessage(), cloneMethod.error.getCause());
+    }
     try {
-      Method cloneMethod = obj.getClass().getDeclaredMethod("clone");
-      return (V) cloneMethod.invoke(obj);
-    } catch (NoSuchMethodException e) {
-      throw new IllegalArgumentException("Failed to clone object " + obj + "! No clone method declared: " + e, e);
-    } catch (SecurityException | IllegalAccessException | InvocationTargetException | IllegalArgumentException e) {
-      throw new IllegalArgumentException("Failed to clone object " + obj + "! Clone method not accessible: " + e, e);
+      return (V) cloneMethod.handle.invokeExact(obj);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalArgumentException("Failed to clone object " + obj + "! Clone method failed: " + e, e);
     }
   }
 
@@ -158,7 +195,44 @@ public class JacisCloningObjectAdapter<V> implements JacisObjectAdapter<V, V> {
 
   @Override
   public String toString() {
-    return getClass().getSimpleName() + "(readOnlyModeAdapter=" + readOnlyModeAdapter + ", throwIfMissingReadOnlyModeDetected=" + throwIfMissingReadOnlyModeDetected + ")";
+    return getClass().getSimpleName() + "(readOnlyModeAdapter=" + readOnlyModeAdapter + ", throwIfMissingReadOnlyModeDetected=" + throwIfMissingReadOnlyModeDetected + ", useDeepCopy=" + useDeepCopy + ")";
   }
 
+  /** The clone method of a class (or the reason why it can not be called) looked up once for each class. */
+  private static class CloneMethod {
+
+    /** method handle of the clone method, type: (Object)Object (null if the class declares no accessible clone method) */
+    private final MethodHandle handle;
+    /** the exception describing why the clone method can not be called (null if the method handle is available) */
+    private final Exception error;
+
+    CloneMethod(Class<?> type) {
+      MethodHandle cloneHandle = null;
+      Exception cloneError = null;
+      try {
+        cloneHandle = MethodHandles.lookup().unreflect(findCloneMethod(type)).asType(MethodType.methodType(Object.class, Object.class));
+      } catch (NoSuchMethodException e) {
+        cloneError = new IllegalArgumentException("No clone method declared: " + e, e);
+      } catch (SecurityException | IllegalAccessException | IllegalArgumentException e) {
+        cloneError = new IllegalArgumentException("Clone method not accessible: " + e, e);
+      }
+      this.handle = cloneHandle;
+      this.error = cloneError;
+    }
+
+    private static Method findCloneMethod(Class<?> type) throws NoSuchMethodException {
+      for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+        try {
+          Method cloneMethod = c.getDeclaredMethod("clone");
+          cloneMethod.setAccessible(true);
+          return cloneMethod;
+        } catch (NoSuchMethodException e) {
+          // check the super class
+        }
+      }
+      throw new NoSuchMethodException(type.getName() + ".clone()");
+    }
+
+  } // END OF:  private static class CloneMethod
+
 }
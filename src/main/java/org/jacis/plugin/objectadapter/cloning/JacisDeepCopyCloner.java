@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.objectadapter.cloning;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jacis.persistent.JacisPersistentMap;
+import org.jacis.persistent.JacisPersistentVector;
+
+/**
+ * Deep copy of plain objects (POJOs) that do not need to implement a clone method.
+ *
+ * For each class a copy plan is computed once (and cached, see {@link #COPY_PLANS}).
+ * The plan contains method handles for the no-argument constructor and for reading and writing each (non static) field.
+ * Copying an object creates a new instance and copies all fields:
+ *
+ * * primitive values and references to immutable objects (strings, boxed primitives, enums, big numbers, persistent collections ...) are simply copied;
+ * * arrays and the common collections and maps of the `java.util` package are copied with deeply copied elements;
+ * * other objects are deeply copied with their copy plan.
+ *
+ * Shared references and cycles inside the copied object graph are preserved.
+ * Objects of classes without no-argument constructor and other JDK classes (that are not known to be immutable) can not be copied.
+ *
+ * @author Jan Wiemer
+ */
+public class JacisDeepCopyCloner {
+
+  /** Cached copy plans for the classes */
+  private static final ClassValue<CopyPlan> COPY_PLANS = new ClassValue<CopyPlan>() {
+    @Override
+    protected CopyPlan computeValue(Class<?> type) {
+      return new CopyPlan(type);
+    }
+  };
+
+  /** Cached kind of copy for each class */
+  private static final ClassValue<CopyKind> COPY_KINDS = new ClassValue<CopyKind>() {
+    @Override
+    protected CopyKind computeValue(Class<?> type) {
+      if (isImmutable(type)) {
+        return CopyKind.IMMUTABLE;
+      } else if (type.isArray()) {
+        return CopyKind.ARRAY;
+      } else if (Collection.class.isAssignableFrom(type) && type.getName().startsWith("java.")) {
+        return CopyKind.COLLECTION;
+      } else if (Map.class.isAssignableFrom(type) && type.getName().startsWith("java.")) {
+        return CopyKind.MAP;
+      }
+      return CopyKind.OBJECT;
+    }
+  };
+
+  private enum CopyKind {
+    IMMUTABLE, ARRAY, COLLECTION, MAP, OBJECT
+  }
+
+  private static boolean isImmutable(Class<?> type) {
+    return type.isPrimitive() || type.isEnum() || Enum.class.isAssignableFrom(type) || type == String.class || type == Boolean.class //
+        || type == Character.class || Number.class.isAssignableFrom(type) && type.getName().startsWith("java.lang.") //
+        || type == BigDecimal.class || type == BigInteger.class || type == UUID.class || type == Locale.class || type == Class.class //
+        || type.getName().startsWith("java.time.") //
+        || type == JacisPersistentMap.class || type == JacisPersistentVector.class; // persistent collections are shared (their elements should be immutable)
+  }
+
+  /**
+   * Create a deep copy of the passed object.
+   *
+   * @param obj The object to copy
+   * @param <T> The type of the object
+   * @return A deep copy of the passed object
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T deepCopy(T obj) {
+    return (T) new JacisDeepCopyCloner().copy(obj);
+  }
+
+  /** Map of the objects already copied to their copies (to preserve shared references, created on demand) */
+  private IdentityHashMap<Object, Object> copies;
+
+  private JacisDeepCopyCloner() {
+    // instances only used for one copy
+  }
+
+  private Object copy(Object obj) {
+    if (obj == null) {
+      return null;
+    }
+    Class<?> type = obj.getClass();
+    CopyKind kind = COPY_KINDS.get(type);
+    if (kind == CopyKind.IMMUTABLE) {
+      return obj;
+    }
+    Object copy = copies == null ? null : copies.get(obj);
+    if (copy != null) {
+      return copy;
+    }
+    switch (kind) {
+      case ARRAY:
+        return copyArray(obj, type);
+      case COLLECTION:
+        return copyCollection((Collection<?>) obj);
+      case MAP:
+        return copyMap((Map<?, ?>) obj);
+      default:
+        return COPY_PLANS.get(type).copy(obj, this);
+    }
+  }
+
+  private void registerCopy(Object obj, Object copy) {
+    if (copies == null) {
+      copies = new IdentityHashMap<>(8);
+    }
+    copies.put(obj, copy);
+  }
+
+  private Object copyArray(Object array, Class<?> type) {
+    int length = Array.getLength(array);
+    if (type.getComponentType().isPrimitive()) {
+      Object copy = Array.newInstance(type.getComponentType(), length);
+      System.arraycopy(array, 0, copy, 0, length);
+      registerCopy(array, copy);
+      return copy;
+    }
+    Object[] orig = (Object[]) array;
+    Object[] copy = (Object[]) Array.newInstance(type.getComponentType(), length);
+    registerCopy(array, copy);
+    for (int i = 0; i < length; i++) {
+      copy[i] = copy(orig[i]);
+    }
+    return copy;
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private Object copyCollection(Collection<?> orig) {
+    Collection copy;
+    if (orig instanceof ArrayList) {
+      copy = new ArrayList<>(orig.size());
+    } else if (orig instanceof LinkedList) {
+      copy = new LinkedList<>();
+    } else if (orig instanceof LinkedHashSet) {
+      copy = new LinkedHashSet<>();
+    } else if (orig instanceof HashSet) {
+      copy = new HashSet<>();
+    } else if (orig instanceof TreeSet) {
+      copy = new TreeSet<>(((TreeSet) orig).comparator());
+    } else if (orig instanceof ArrayDeque) {
+      copy = new ArrayDeque<>(orig.size());
+    } else {
+      throw new IllegalArgumentException("Deep copy of collection " + orig.getClass().getName() + " not supported!");
+    }
+    registerCopy(orig, copy);
+    for (Object element : orig) {
+      copy.add(copy(element));
+    }
+    return copy;
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private Object copyMap(Map<?, ?> orig) {
+    Map copy;
+    if (orig instanceof LinkedHashMap) {
+      copy = new LinkedHashMap<>();
+    } else if (orig instanceof HashMap) {
+      copy = new HashMap<>();
+    } else if (orig instanceof TreeMap) {
+      copy = new TreeMap<>(((TreeMap) orig).comparator());
+    } else if (orig instanceof ConcurrentHashMap) {
+      copy = new ConcurrentHashMap<>();
+    } else {
+      throw new IllegalArgumentException("Deep copy of map " + orig.getClass().getName() + " not supported!");
+    }
+    registerCopy(orig, copy);
+    for (Map.Entry<?, ?> entry : orig.entrySet()) {
+      copy.put(copy(entry.getKey()), copy(entry.getValue()));
+    }
+    return copy;
+  }
+
+  /** Copy plan for the objects of a class (computed once for each class). */
+  private static final class CopyPlan {
+
+    private final Class<?> type;
+    /** method handle of the no-argument constructor, type: ()Object */
+    private final MethodHandle constructor;
+    /** method handles reading the fields, type: (Object)Object */
+    private final MethodHandle[] getters;
+    /** method handles writing the fields, type: (Object,Object)void */
+    private final MethodHandle[] setters;
+    /** flags if the value of the field has to be copied (otherwise it is primitive or immutable) */
+    private final boolean[] deep;
+    /** flag if the objects may be referred by the copied references (then the copy has to be registered) */
+    private final boolean hasDeepFields;
+
+    CopyPlan(Class<?> type) {
+      this.type = type;
+      if (type.getName().startsWith("java.") || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+        throw new IllegalArgumentException("Deep copy of " + type.getName() + " not supported!");
+      }
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      try {
+        Constructor<?> ctor = type.getDeclaredConstructor();
+        ctor.setAccessible(true);
+        this.constructor = lookup.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+        List<MethodHandle> getterList = new ArrayList<>();
+        List<MethodHandle> setterList = new ArrayList<>();
+        List<Boolean> deepList = new ArrayList<>();
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+          for (Field field : c.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+              continue;
+            }
+            field.setAccessible(true);
+            getterList.add(lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class)));
+            setterList.add(lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class)));
+            Class<?> fieldType = field.getType();
+            deepList.add(!fieldType.isPrimitive() && !(isImmutable(fieldType) && Modifier.isFinal(fieldType.getModifiers())));
+          }
+        }
+        this.getters = getterList.toArray(new MethodHandle[getterList.size()]);
+        this.setters = setterList.toArray(new MethodHandle[setterList.size()]);
+        this.deep = new boolean[deepList.size()];
+        boolean anyDeep = false;
+        for (int i = 0; i < deep.length; i++) {
+          deep[i] = deepList.get(i);
+          anyDeep |= deep[i];
+        }
+        this.hasDeepFields = anyDeep;
+      } catch (NoSuchMethodException e) {
+        throw new IllegalArgumentException("Deep copy of " + type.getName() + " not supported! No constructor without arguments declared.", e);
+      } catch (IllegalAccessException | RuntimeException e) {
+        throw new IllegalArgumentException("Deep copy of " + type.getName() + " not supported! Members not accessible: " + e, e);
+      }
+    }
+
+    Object copy(Object obj, JacisDeepCopyCloner cloner) {
+      try {
+        Object copy = constructor.invokeExact();
+        if (hasDeepFields) {
+          cloner.registerCopy(obj, copy);
+        }
+        for (int i = 0; i < getters.length; i++) {
+          Object value = getters[i].invokeExact(obj);
+          setters[i].invokeExact(copy, deep[i] ? cloner.copy(value) : value);
+        }
+        return copy;
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new IllegalArgumentException("Failed to copy object of " + type.getName() + "!", e);
+      }
+    }
+
+  } // END OF:  private static final class CopyPlan
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.objectadapter.copyonwrite;
+
+import java.util.function.UnaryOperator;
+
+import org.jacis.plugin.objectadapter.JacisObjectAdapter;
+import org.jacis.plugin.objectadapter.cloning.JacisCloneable;
+
+/**
+ * Implementation of the {@link org.jacis.plugin.objectadapter.JacisObjectAdapter} for values sharing their structure
+ * between the committed version and the transactional views (copy on write).
+ *
+ * The adapter is intended for values built from persistent (immutable) collections
+ * like the {@link org.jacis.persistent.JacisPersistentMap} and the {@link org.jacis.persistent.JacisPersistentVector}
+ * (and immutable objects in general). Copying such a value to or from a transactional view only needs a shallow copy
+ * (or no copy at all if the value itself is immutable). The copy refers to the same persistent collections as the original.
+ * A transaction modifying a collection of the value replaces the collection in its copy by a new version of the collection
+ * (e.g. `value.setItems(value.getItems().with(key, item))`). The new version shares all unchanged paths with the committed version.
+ * Therefore accessing a value and committing a modification only costs time proportional to the number of fields
+ * of the value and the modified paths, not to the size of the contained collections.
+ *
+ * The copy function passed to the constructor is used to create the shallow copies.
+ * For immutable values (created by {@link #forImmutableValues()}) no copy is created at all.
+ * Note that the adapter does not check if the values actually follow these rules.
+ * Mutable collections or objects referred by a value are shared between the committed version and the transactional views.
+ *
+ * @param <V> The object type (note that in this case the committed values and the values in the transactional view have the same type)
+ * @author Jan Wiemer
+ */
+public class JacisCopyOnWriteObjectAdapter<V> implements JacisObjectAdapter<V, V> {
+
+  /**
+   * Create an adapter for immutable values. The values are never copied.
+   * A transaction has to call the `update` method of the store with a new value to modify an object.
+   *
+   * @param <V> The object type
+   * @return An adapter for immutable values.
+   */
+  public static <V> JacisCopyOnWriteObjectAdapter<V> forImmutableValues() {
+    return new JacisCopyOnWriteObjectAdapter<>(UnaryOperator.identity());
+  }
+
+  /** Function creating a shallow copy of a value (sharing the referred persistent collections) */
+  private final UnaryOperator<V> shallowCopy;
+
+  /**
+   * Create a copy on write object adapter with the passed function to create a shallow copy of the values.
+   *
+   * @param shallowCopy Function creating a shallow copy of a value (sharing the referred persistent collections).
+   */
+  public JacisCopyOnWriteObjectAdapter(UnaryOperator<V> shallowCopy) {
+    this.shallowCopy = shallowCopy;
+  }
+
+  /**
+   * Create a copy on write object adapter using the {@link JacisCloneable#clone()} method to create a shallow copy of the values.
+   * The clone method of the values should create a shallow copy (as the default {@link Object#clone()} method does).
+   */
+  @SuppressWarnings("unchecked")
+  public JacisCopyOnWriteObjectAdapter() {
+    this(value -> {
+      if (value instanceof JacisCloneable) {
+        return ((JacisCloneable<V>) value).clone();
+      }
+      throw new IllegalArgumentException("Failed to copy object " + value + "! Object of class " + value.getClass().getName() + " not implementing " + JacisCloneable.class.getSimpleName());
+    });
+  }
+
+  private V copy(V value) {
+    return value == null ? null : shallowCopy.apply(value);
+  }
+
+  @Override
+  public V cloneCommitted2WritableTxView(V value) {
+    return copy(value);
+  }
+
+  @Override
+  public V cloneTxView2Committed(V value) {
+    return copy(value);
+  }
+
+  @Override
+  public V cloneCommitted2ReadOnlyTxView(V value) {
+    return copy(value);
+  }
+
+  @Override
+  public V cloneTxView2ReadOnlyTxView(V value) {
+    return copy(value);
+  }
+
+  @Override
+  public V accessCommittedUncloned(V value) {
+    return value; // the committed instance is only read (and never modified in place)
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+
+}
@@ -0,0 +1,764 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.objectadapter.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Compact binary codec for serializable objects used by the {@link JacisBinarySerializationObjectAdapter}.
+ *
+ * For each class the codec analyzes the serializable fields once and caches the result (see {@link #CLASS_CODECS}).
+ * The values of the fields are written one after another without any field names or class descriptors.
+ * The class name of a referenced object is only written if the class differs from the declared type of the field.
+ * Boxed primitives, {@link BigInteger}, {@link BigDecimal}, {@link Date} and the common collections of `java.util`
+ * ({@link ArrayList}, {@link LinkedList}, {@link HashSet}, {@link LinkedHashSet}, {@link HashMap}
+ * and {@link TreeSet} / {@link TreeMap} with natural ordering) are written with a compact encoding identified by a tag
+ * (the collections are written as the number of elements followed by the elements, each written by the codec).
+ * Other JDK classes (e.g. a {@link java.util.LinkedHashMap} possibly in access order) are written with Java serialization.
+ * Classes that customize Java serialization (by `writeObject`, `readObject`, `writeReplace`, `readResolve`,
+ * `serialPersistentFields` or by implementing {@link Externalizable}) and classes that can not be instantiated
+ * the same way Java serialization does are written with Java serialization (embedded in the binary format).
+ * Note that other than Java serialization the codec does not preserve shared references inside an object graph
+ * (a shared object is written once for each reference) and does not support cyclic object graphs.
+ *
+ * @author Jan Wiemer
+ */
+final class BinaryCodec {
+
+  /** Maximal nesting depth of objects (deeper object graphs are assumed to be cyclic) */
+  private static final int MAX_DEPTH = 1000;
+
+  private static final int TAG_NULL = 0;
+  private static final int TAG_DECLARED_CLASS = 1;
+  private static final int TAG_OTHER_CLASS = 2;
+  private static final int TAG_STRING = 3;
+  private static final int TAG_BOOLEAN = 4;
+  private static final int TAG_BYTE = 5;
+  private static final int TAG_SHORT = 6;
+  private static final int TAG_CHARACTER = 7;
+  private static final int TAG_INTEGER = 8;
+  private static final int TAG_LONG = 9;
+  private static final int TAG_FLOAT = 10;
+  private static final int TAG_DOUBLE = 11;
+  private static final int TAG_BIG_INTEGER = 12;
+  private static final int TAG_BIG_DECIMAL = 13;
+  private static final int TAG_DATE = 14;
+  private static final int TAG_ARRAY_LIST = 15;
+  private static final int TAG_LINKED_LIST = 16;
+  private static final int TAG_HASH_SET = 17;
+  private static final int TAG_LINKED_HASH_SET = 18;
+  private static final int TAG_TREE_SET = 19;
+  private static final int TAG_HASH_MAP = 20;
+  private static final int TAG_TREE_MAP = 21;
+
+  /** Tags of the JDK classes written with a compact encoding (only exactly these classes, not their sub classes) */
+  private static final Map<Class<?>, Integer> BUILTIN_TAGS = new HashMap<>();
+
+  static {
+    BUILTIN_TAGS.put(Boolean.class, TAG_BOOLEAN);
+    BUILTIN_TAGS.put(Byte.class, TAG_BYTE);
+    BUILTIN_TAGS.put(Short.class, TAG_SHORT);
+    BUILTIN_TAGS.put(Character.class, TAG_CHARACTER);
+    BUILTIN_TAGS.put(Integer.class, TAG_INTEGER);
+    BUILTIN_TAGS.put(Long.class, TAG_LONG);
+    BUILTIN_TAGS.put(Float.class, TAG_FLOAT);
+    BUILTIN_TAGS.put(Double.class, TAG_DOUBLE);
+    BUILTIN_TAGS.put(BigInteger.class, TAG_BIG_INTEGER);
+    BUILTIN_TAGS.put(BigDecimal.class, TAG_BIG_DECIMAL);
+    BUILTIN_TAGS.put(Date.class, TAG_DATE);
+    BUILTIN_TAGS.put(ArrayList.class, TAG_ARRAY_LIST);
+    BUILTIN_TAGS.put(LinkedList.class, TAG_LINKED_LIST);
+    BUILTIN_TAGS.put(HashSet.class, TAG_HASH_SET);
+    BUILTIN_TAGS.put(LinkedHashSet.class, TAG_LINKED_HASH_SET);
+    BUILTIN_TAGS.put(TreeSet.class, TAG_TREE_SET);
+    BUILTIN_TAGS.put(HashMap.class, TAG_HASH_MAP);
+    BUILTIN_TAGS.put(TreeMap.class, TAG_TREE_MAP);
+  }
+
+  /** Cached codecs for the classes */
+  private static final ClassValue<ClassCodec> CLASS_CODECS = new ClassValue<ClassCodec>() {
+    @Override
+    protected ClassCodec computeValue(Class<?> type) {
+      return new ClassCodec(type);
+    }
+  };
+  /** Cached classes for the class names written to the binary format */
+  private static final ConcurrentHashMap<String, Class<?>> CLASSES_BY_NAME = new ConcurrentHashMap<>();
+
+  private BinaryCodec() {
+    // no instances
+  }
+
+  static void writeObject(Output out, Class<?> declaredType, Object value, int depth) {
+    if (value == null) {
+      out.writeByte(TAG_NULL);
+      return;
+    } else if (depth > MAX_DEPTH) {
+      throw new IllegalArgumentException("Object graph too deep (maybe cyclic) at object of " + value.getClass());
+    }
+    Class<?> type = value.getClass();
+    Integer builtinTag = BUILTIN_TAGS.get(type);
+    if (builtinTag != null && !hasComparator(value)) {
+      out.writeByte(builtinTag);
+      writeBuiltin(out, builtinTag, value, depth);
+      return;
+    } else if (type == String.class && declaredType != String.class) {
+      out.writeByte(TAG_STRING);
+      out.writeString((String) value);
+      return;
+    } else if (type == declaredType) {
+      out.writeByte(TAG_DECLARED_CLASS);
+    } else {
+      out.writeByte(TAG_OTHER_CLASS);
+      out.writeString(type.getName());
+    }
+    CLASS_CODECS.get(type).write(out, value, depth);
+  }
+
+  static Object readObject(Input in, Class<?> declaredType, int depth) {
+    int tag = in.readByte();
+    switch (tag) {
+      case TAG_NULL:
+        return null;
+      case TAG_STRING:
+        return in.readString();
+      case TAG_DECLARED_CLASS:
+        return CLASS_CODECS.get(declaredType).read(in, depth);
+      case TAG_OTHER_CLASS:
+        return CLASS_CODECS.get(classForName(in.readString())).read(in, depth);
+      default:
+        if (tag < TAG_BOOLEAN || tag > TAG_TREE_MAP) {
+          throw new IllegalStateException("Illegal tag " + tag + " at position " + (in.pos - 1));
+        }
+        return readBuiltin(in, tag, depth);
+    }
+  }
+
+  //======================================================================================
+  // compact encoding of the JDK classes
+  //======================================================================================
+
+  private static boolean hasComparator(Object value) { // sorted collections are only written compact if they use the natural ordering
+    return value instanceof SortedSet && ((SortedSet<?>) value).comparator() != null //
+        || value instanceof SortedMap && ((SortedMap<?, ?>) value).comparator() != null;
+  }
+
+  private static void writeBuiltin(Output out, int tag, Object value, int depth) {
+    switch (tag) {
+      case TAG_BOOLEAN:
+        out.writeByte((Boolean) value ? 1 : 0);
+        break;
+      case TAG_BYTE:
+        out.writeByte((Byte) value);
+        break;
+      case TAG_SHORT:
+        out.writeVarLong((Short) value);
+        break;
+      case TAG_CHARACTER:
+        out.writeVarLong((Character) value);
+        break;
+      case TAG_INTEGER:
+        out.writeVarLong((Integer) value);
+        break;
+      case TAG_LONG:
+        out.writeVarLong((Long) value);
+        break;
+      case TAG_FLOAT:
+        out.writeFixed(Float.floatToRawIntBits((Float) value), 4);
+        break;
+      case TAG_DOUBLE:
+        out.writeFixed(Double.doubleToRawLongBits((Double) value), 8);
+        break;
+      case TAG_BIG_INTEGER:
+        out.writeBytes(((BigInteger) value).toByteArray());
+        break;
+      case TAG_BIG_DECIMAL:
+        BigDecimal decimal = (BigDecimal) value;
+        out.writeVarLong(decimal.scale());
+        out.writeBytes(decimal.unscaledValue().toByteArray());
+        break;
+      case TAG_DATE:
+        out.writeVarLong(((Date) value).getTime());
+        break;
+      case TAG_HASH_MAP:
+      case TAG_TREE_MAP:
+        Map<?, ?> map = (Map<?, ?>) value;
+        out.writeVarLong(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          writeObject(out, Object.class, entry.getKey(), depth + 1);
+          writeObject(out, Object.class, entry.getValue(), depth + 1);
+        }
+        break;
+      default: // collections
+        Collection<?> collection = (Collection<?>) value;
+        out.writeVarLong(collection.size());
+        for (Object element : collection) {
+          writeObject(out, Object.class, element, depth + 1);
+        }
+    }
+  }
+
+  private static Object readBuiltin(Input in, int tag, int depth) {
+    switch (tag) {
+      case TAG_BOOLEAN:
+        return in.readByte() != 0;
+      case TAG_BYTE:
+        return (byte) in.readByte();
+      case TAG_SHORT:
+        return (short) in.readVarLong();
+      case TAG_CHARACTER:
+        return (char) in.readVarLong();
+      case TAG_INTEGER:
+        return (int) in.readVarLong();
+      case TAG_LONG:
+        return in.readVarLong();
+      case TAG_FLOAT:
+        return Float.intBitsToFloat((int) in.readFixed(4));
+      case TAG_DOUBLE:
+        return Double.longBitsToDouble(in.readFixed(8));
+      case TAG_BIG_INTEGER:
+        return new BigInteger(in.readBytes());
+      case TAG_BIG_DECIMAL:
+        int scale = (int) in.readVarLong();
+        return new BigDecimal(new BigInteger(in.readBytes()), scale);
+      case TAG_DATE:
+        return new Date(in.readVarLong());
+      case TAG_ARRAY_LIST:
+        return readElements(in, ArrayList::new, depth);
+      case TAG_LINKED_LIST:
+        return readElements(in, size -> new LinkedList<>(), depth);
+      case TAG_HASH_SET:
+        return readElements(in, size -> new HashSet<>(hashCapacity(size)), depth);
+      case TAG_LINKED_HASH_SET:
+        return readElements(in, size -> new LinkedHashSet<>(hashCapacity(size)), depth);
+      case TAG_TREE_SET:
+        return readElements(in, size -> new TreeSet<>(), depth);
+      case TAG_HASH_MAP:
+        return readEntries(in, size -> new HashMap<>(hashCapacity(size)), depth);
+      default: // TAG_TREE_MAP
+        return readEntries(in, size -> new TreeMap<>(), depth);
+    }
+  }
+
+  private static Collection<Object> readElements(Input in, IntFunction<? extends Collection<Object>> factory, int depth) {
+    int size = (int) in.readVarLong();
+    Collection<Object> collection = factory.apply(size);
+    for (int i = 0; i < size; i++) {
+      collection.add(readObject(in, Object.class, depth + 1));
+    }
+    return collection;
+  }
+
+  private static Map<Object, Object> readEntries(Input in, IntFunction<? extends Map<Object, Object>> factory, int depth) {
+    int size = (int) in.readVarLong();
+    Map<Object, Object> map = factory.apply(size);
+    for (int i = 0; i < size; i++) {
+      Object key = readObject(in, Object.class, depth + 1);
+      map.put(key, readObject(in, Object.class, depth + 1));
+    }
+    return map;
+  }
+
+  private static int hashCapacity(int size) { // initial capacity of a hash based collection holding the passed number of elements without rehashing
+    return Math.max(size * 4 / 3 + 1, 16);
+  }
+
+  private static Class<?> classForName(String className) {
+    Class<?> type = CLASSES_BY_NAME.get(className);
+    if (type == null) {
+      try {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        type = Class.forName(className, false, classLoader != null ? classLoader : BinaryCodec.class.getClassLoader());
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("Class " + className + " not found!", e);
+      }
+      CLASSES_BY_NAME.putIfAbsent(className, type);
+    }
+    return type;
+  }
+
+  //======================================================================================
+  // codec for a class
+  //======================================================================================
+
+  /** Codec for the objects of one class (computed once for each class). */
+  private static final class ClassCodec {
+
+    private final Class<?> type;
+    /** Constructor creating new instances the same way Java serialization does (null if Java serialization is used) */
+    private final Constructor<?> instantiator;
+    /** Codecs for the serializable fields (null if Java serialization is used) */
+    private final FieldCodec[] fields;
+
+    ClassCodec(Class<?> type) {
+      this.type = type;
+      Constructor<?> ctor = null;
+      FieldCodec[] fieldCodecs = null;
+      if (isSchemaSupported(type)) {
+        try {
+          ctor = getSerializationConstructor(type);
+          fieldCodecs = getFieldCodecs(type);
+        } catch (RuntimeException e) { // e.g. fields not accessible -> use Java serialization
+          ctor = null;
+          fieldCodecs = null;
+        }
+      }
+      this.instantiator = fieldCodecs == null ? null : ctor;
+      this.fields = instantiator == null ? null : fieldCodecs;
+    }
+
+    void write(Output out, Object value, int depth) {
+      if (fields == null) {
+        out.writeBytes(javaSerialize(value));
+        return;
+      }
+      try {
+        for (FieldCodec field : fields) {
+          field.write(out, value, depth);
+        }
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Failed to access field of " + type + "!", e);
+      }
+    }
+
+    Object read(Input in, int depth) {
+      if (fields == null) {
+        return javaDeserialize(in.readBytes());
+      }
+      try {
+        Object value = instantiator.newInstance();
+        for (FieldCodec field : fields) {
+          field.read(in, value, depth);
+        }
+        return value;
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Failed to instantiate " + type + "!", e);
+      }
+    }
+
+    private static boolean isSchemaSupported(Class<?> type) {
+      if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type) || type.isArray() || type.isEnum() || type.isInterface()) {
+        return false;
+      } else if (Enum.class.isAssignableFrom(type) || type.getName().startsWith("java.")) { // enum constants with bodies, JDK classes usually customize serialization
+        return false;
+      }
+      for (Class<?> c = type; c != null && Serializable.class.isAssignableFrom(c); c = c.getSuperclass()) {
+        if (hasDeclaredMethod(c, "writeObject", ObjectOutputStream.class) || hasDeclaredMethod(c, "readObject", ObjectInputStream.class) //
+            || hasDeclaredMethod(c, "readObjectNoData") || hasDeclaredMethod(c, "writeReplace") || hasDeclaredMethod(c, "readResolve")) {
+          return false;
+        }
+        try {
+          c.getDeclaredField("serialPersistentFields");
+          return false;
+        } catch (NoSuchFieldException e) {
+          // ok, default serialization
+        }
+      }
+      return true;
+    }
+
+    private static boolean hasDeclaredMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+      try {
+        type.getDeclaredMethod(name, parameterTypes);
+        return true;
+      } catch (NoSuchMethodException e) {
+        return false;
+      }
+    }
+
+    /**
+     * Java serialization creates an object by calling the no argument constructor of the first non serializable super class
+     * (the fields of the serializable classes are not initialized by their constructors).
+     * The reflection factory of the JVM provides such constructors. If it is not available we fall back to Java serialization.
+     */
+    private static Constructor<?> getSerializationConstructor(Class<?> type) {
+      Class<?> nonSerializableSuperClass = type;
+      while (Serializable.class.isAssignableFrom(nonSerializableSuperClass)) {
+        nonSerializableSuperClass = nonSerializableSuperClass.getSuperclass();
+      }
+      try {
+        Constructor<?> superConstructor = nonSerializableSuperClass.getDeclaredConstructor();
+        if (Modifier.isPrivate(superConstructor.getModifiers())) {
+          return null;
+        }
+        Class<?> reflectionFactoryClass = Class.forName("sun.reflect.ReflectionFactory");
+        Object reflectionFactory = reflectionFactoryClass.getMethod("getReflectionFactory").invoke(null);
+        Method newConstructor = reflectionFactoryClass.getMethod("newConstructorForSerialization", Class.class, Constructor.class);
+        Constructor<?> constructor = (Constructor<?>) newConstructor.invoke(reflectionFactory, type, superConstructor);
+        if (constructor != null) {
+          constructor.setAccessible(true);
+        }
+        return constructor;
+      } catch (ReflectiveOperationException | LinkageError e) {
+        return null;
+      }
+    }
+
+    private static FieldCodec[] getFieldCodecs(Class<?> type) {
+      List<Class<?>> hierarchy = new ArrayList<>();
+      for (Class<?> c = type; c != null && Serializable.class.isAssignableFrom(c); c = c.getSuperclass()) {
+        hierarchy.add(0, c); // fields of the super classes first
+      }
+      List<FieldCodec> res = new ArrayList<>();
+      for (Class<?> c : hierarchy) {
+        Field[] declaredFields = c.getDeclaredFields();
+        Arrays.sort(declaredFields, Comparator.comparing(Field::getName));
+        for (Field field : declaredFields) {
+          int modifiers = field.getModifiers();
+          if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+            field.setAccessible(true);
+            res.add(new FieldCodec(field));
+          }
+        }
+      }
+      return res.toArray(new FieldCodec[res.size()]);
+    }
+
+    private static byte[] javaSerialize(Object value) {
+      try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+          oos.writeObject(value);
+        }
+        return bos.toByteArray();
+      } catch (IOException e) {
+        throw new IllegalStateException("Java serialization of " + value.getClass() + " failed!", e);
+      }
+    }
+
+    private static Object javaDeserialize(byte[] bytes) {
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+        return ois.readObject();
+      } catch (IOException | ClassNotFoundException e) {
+        throw new IllegalStateException("Java deserialization failed!", e);
+      }
+    }
+
+  } // END OF:  private static final class ClassCodec
+
+  //======================================================================================
+  // codec for a field
+  //======================================================================================
+
+  private enum FieldKind {
+    BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE, STRING, BYTE_ARRAY, ENUM, OBJECT
+  }
+
+  /** Codec for one field of a class. */
+  private static final class FieldCodec {
+
+    private final Field field;
+    private final FieldKind kind;
+    private final Class<?> type;
+    private final Object[] enumConstants;
+
+    FieldCodec(Field field) {
+      this.field = field;
+      this.type = field.getType();
+      this.kind = kindOf(type);
+      this.enumConstants = kind == FieldKind.ENUM ? type.getEnumConstants() : null;
+    }
+
+    private static FieldKind kindOf(Class<?> type) {
+      if (type == boolean.class) {
+        return FieldKind.BOOLEAN;
+      } else if (type == byte.class) {
+        return FieldKind.BYTE;
+      } else if (type == short.class) {
+        return FieldKind.SHORT;
+      } else if (type == char.class) {
+        return FieldKind.CHAR;
+      } else if (type == int.class) {
+        return FieldKind.INT;
+      } else if (type == long.class) {
+        return FieldKind.LONG;
+      } else if (type == float.class) {
+        return FieldKind.FLOAT;
+      } else if (type == double.class) {
+        return FieldKind.DOUBLE;
+      } else if (type == String.class) {
+        return FieldKind.STRING;
+      } else if (type == byte[].class) {
+        return FieldKind.BYTE_ARRAY;
+      } else if (type.isEnum()) {
+        return FieldKind.ENUM;
+      }
+      return FieldKind.OBJECT;
+    }
+
+    void write(Output out, Object target, int depth) throws IllegalAccessException {
+      switch (kind) {
+        case BOOLEAN:
+          out.writeByte(field.getBoolean(target) ? 1 : 0);
+          break;
+        case BYTE:
+          out.writeByte(field.getByte(target));
+          break;
+        case SHORT:
+          out.writeVarLong(field.getShort(target));
+          break;
+        case CHAR:
+          out.writeVarLong(field.getChar(target));
+          break;
+        case INT:
+          out.writeVarLong(field.getInt(target));
+          break;
+        case LONG:
+          out.writeVarLong(field.getLong(target));
+          break;
+        case FLOAT:
+          out.writeFixed(Float.floatToRawIntBits(field.getFloat(target)), 4);
+          break;
+        case DOUBLE:
+          out.writeFixed(Double.doubleToRawLongBits(field.getDouble(target)), 8);
+          break;
+        case STRING:
+          out.writeString((String) field.get(target));
+          break;
+        case BYTE_ARRAY:
+          out.writeBytes((byte[]) field.get(target));
+          break;
+        case ENUM:
+          Enum<?> enumValue = (Enum<?>) field.get(target);
+          out.writeVarLong(enumValue == null ? 0 : enumValue.ordinal() + 1);
+          break;
+        default:
+          writeObject(out, type, field.get(target), depth + 1);
+      }
+    }
+
+    void read(Input in, Object target, int depth) throws IllegalAccessException {
+      switch (kind) {
+        case BOOLEAN:
+          field.setBoolean(target, in.readByte() != 0);
+          break;
+        case BYTE:
+          field.setByte(target, (byte) in.readByte());
+          break;
+        case SHORT:
+          field.setShort(target, (short) in.readVarLong());
+          break;
+        case CHAR:
+          field.setChar(target, (char) in.readVarLong());
+          break;
+        case INT:
+          field.setInt(target, (int) in.readVarLong());
+          break;
+        case LONG:
+          field.setLong(target, in.readVarLong());
+          break;
+        case FLOAT:
+          field.setFloat(target, Float.intBitsToFloat((int) in.readFixed(4)));
+          break;
+        case DOUBLE:
+          field.setDouble(target, Double.longBitsToDouble(in.readFixed(8)));
+          break;
+        case STRING:
+          field.set(target, in.readString());
+          break;
+        case BYTE_ARRAY:
+          field.set(target, in.readBytes());
+          break;
+        case ENUM:
+          int ordinal = (int) in.readVarLong();
+          field.set(target, ordinal == 0 ? null : enumConstants[ordinal - 1]);
+          break;
+        default:
+          field.set(target, readObject(in, type, depth + 1));
+      }
+    }
+
+  } // END OF:  private static final class FieldCodec
+
+  //======================================================================================
+  // binary input and output
+  //======================================================================================
+
+  /** Growable output buffer (reused by one thread for several objects). */
+  static final class Output {
+
+    private byte[] buf;
+    private int pos;
+
+    Output(int initialSize) {
+      buf = new byte[initialSize];
+    }
+
+    void reset() {
+      pos = 0;
+    }
+
+    int size() {
+      return pos;
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buf, pos);
+    }
+
+    private void ensureCapacity(int additional) {
+      if (pos + additional > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + additional));
+      }
+    }
+
+    void writeByte(int b) {
+      ensureCapacity(1);
+      buf[pos++] = (byte) b;
+    }
+
+    void writeFixed(long value, int nBytes) {
+      ensureCapacity(nBytes);
+      for (int i = 0; i < nBytes; i++) {
+        buf[pos++] = (byte) (value >>> (8 * i));
+      }
+    }
+
+    void writeVarLong(long value) { // zig zag encoding (small negative values need few bytes as well)
+      writeUnsignedVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeUnsignedVarLong(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buf[pos++] = (byte) value;
+    }
+
+    void writeString(String str) {
+      if (str == null) {
+        writeUnsignedVarLong(0);
+        return;
+      }
+      int len = str.length();
+      writeUnsignedVarLong(len + 1L);
+      ensureCapacity(len);
+      for (int i = 0; i < len; i++) {
+        char c = str.charAt(i);
+        if (c < 0x80) {
+          buf[pos++] = (byte) c;
+        } else {
+          writeUnsignedVarLong(c);
+        }
+      }
+    }
+
+    void writeBytes(byte[] bytes) {
+      if (bytes == null) {
+        writeUnsignedVarLong(0);
+        return;
+      }
+      writeUnsignedVarLong(bytes.length + 1L);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buf, pos, bytes.length);
+      pos += bytes.length;
+    }
+
+  } // END OF:  static final class Output
+
+  /** Input reading from a byte array. */
+  static final class Input {
+
+    private final byte[] buf;
+    private int pos;
+
+    Input(byte[] buf) {
+      this.buf = buf;
+    }
+
+    int readByte() {
+      return buf[pos++];
+    }
+
+    long readFixed(int nBytes) {
+      long value = 0;
+      for (int i = 0; i < nBytes; i++) {
+        value |= (buf[pos++] & 0xFFL) << (8 * i);
+      }
+      return value;
+    }
+
+    long readVarLong() {
+      long value = readUnsignedVarLong();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readUnsignedVarLong() {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buf[pos++];
+        value |= (b & 0x7FL) << shift;
+        shift += 7;
+      } while (b < 0);
+      return value;
+    }
+
+    String readString() {
+      int len = (int) readUnsignedVarLong() - 1;
+      if (len < 0) {
+        return null;
+      }
+      char[] chars = new char[len];
+      for (int i = 0; i < len; i++) {
+        byte b = buf[pos];
+        if (b >= 0) {
+          chars[i] = (char) b;
+          pos++;
+        } else {
+          chars[i] = (char) readUnsignedVarLong();
+        }
+      }
+      return new String(chars);
+    }
+
+    byte[] readBytes() {
+      int len = (int) readUnsignedVarLong() - 1;
+      if (len < 0) {
+        return null;
+      }
+      byte[] bytes = Arrays.copyOfRange(buf, pos, pos + len);
+      pos += len;
+      return bytes;
+    }
+
+  } // END OF:  static final class Input
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.objectadapter.serialization;
+
+import java.io.Serializable;
+
+/**
+ * Generic implementation of the {@link org.jacis.plugin.objectadapter.JacisObjectAdapter} copying the objects
+ * to and from the transactional view by means of a compact binary serialization.
+ *
+ * Other than the {@link JacisJavaSerializationObjectAdapter} no class descriptors and field names are written.
+ * The serializable fields of a class are analyzed once and only their values are written (see {@link BinaryCodec}).
+ * The serialization uses a buffer reused by the thread, only the resulting byte array is allocated for each object.
+ * Classes customizing Java serialization (e.g. by `writeObject` / `readObject` methods) are serialized with Java serialization.
+ * Note that the binary serialization does not preserve shared references inside an object (a shared object is copied for each reference)
+ * and cyclic object graphs are not supported. Furthermore the bytes must only be deserialized by the same version of the classes.
+ *
+ * @param <TV> The object type (note that in this case the committed values and the values in the transactional view have the same type)
+ * @author Jan Wiemer
+ */
+public class JacisBinarySerializationObjectAdapter<TV extends Serializable> extends JacisSerializationObjectAdapter<TV> {
+
+  /** Initial size of the buffer for each thread */
+  private static final int INITIAL_BUFFER_SIZE = 256;
+  /** Maximal size of the buffer kept for each thread (larger buffers are discarded after use) */
+  private static final int MAX_KEPT_BUFFER_SIZE = 64 * 1024;
+
+  /** Buffer reused by each thread to serialize the objects */
+  private static final ThreadLocal<BinaryCodec.Output> OUTPUT_BUFFER = ThreadLocal.withInitial(() -> new BinaryCodec.Output(INITIAL_BUFFER_SIZE));
+
+  /** The class of the values (the class name is only written for objects of other classes, null means it is always written) */
+  private final Class<TV> valueClass;
+
+  /**
+   * Create a binary serialization object adapter for the passed value class.
+   * @param valueClass The class of the values (the class name is only written for objects of other classes, e.g. sub classes)
+   */
+  public JacisBinarySerializationObjectAdapter(Class<TV> valueClass) {
+    this.valueClass = valueClass;
+  }
+
+  /** Create a binary serialization object adapter writing the class name of each value. */
+  public JacisBinarySerializationObjectAdapter() {
+    this(null);
+  }
+
+  @Override
+  protected byte[] serialize(TV obj) {
+    if (obj == null) {
+      return null;
+    }
+    BinaryCodec.Output out = OUTPUT_BUFFER.get();
+    out.reset();
+    try {
+      BinaryCodec.writeObject(out, valueClass, obj, 0);
+      return out.toByteArray();
+    } catch (RuntimeException e) {
+      throw new RuntimeException("Serialization object to byte[] failed! Object: " + obj, e);
+    } finally {
+      if (out.capacity() > MAX_KEPT_BUFFER_SIZE) {
+        OUTPUT_BUFFER.remove();
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  protected TV deserialize(byte[] bytes) {
+    if (bytes == null) {
+      return null;
+    }
+    try {
+      return (TV) BinaryCodec.readObject(new BinaryCodec.Input(bytes), valueClass, 0);
+    } catch (RuntimeException e) {
+      throw new RuntimeException("Deserialization object from byte[] (" + bytes.length + " bytes) failed!", e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  protected TV deserialize(byte[] bytes, int length) {
+    try {
+      return (TV) BinaryCodec.readObject(new BinaryCodec.Input(bytes), valueClass, 0); // only the bytes of the object are read
+    } catch (RuntimeException e) {
+      throw new RuntimeException("Deserialization object from byte[] (" + length + " bytes) failed!", e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(" + (valueClass == null ? "-" : valueClass.getSimpleName()) + ")";
+  }
+
+}
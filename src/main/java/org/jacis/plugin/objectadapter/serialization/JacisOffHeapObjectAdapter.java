@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.objectadapter.serialization;
+
+import java.io.Serializable;
+
+import org.jacis.plugin.objectadapter.JacisObjectAdapter;
+
+/**
+ * Implementation of the {@link org.jacis.plugin.objectadapter.JacisObjectAdapter} storing the committed values serialized in off-heap memory.
+ *
+ * The objects are serialized by the passed serialization adapter (by default the {@link JacisBinarySerializationObjectAdapter}).
+ * The bytes are stored in off-heap slabs (direct byte buffers, see {@link OffHeapSlabAllocator}),
+ * the store of committed values only contains a small handle (see {@link JacisOffHeapValue}) for each value.
+ * This reduces the heap size and the work of the garbage collector for large stores.
+ * To deserialize a value the bytes are copied from the off-heap memory to a buffer reused by the thread.
+ * The memory of a value is freed as soon as the store releases it (after the value has been replaced by a commit and is not visible for any active snapshot).
+ * Readers holding the handle of a released value read the value replacing it instead (see {@link OffHeapSlabAllocator}).
+ * Note that each value still needs about 32 bytes of heap for its handle.
+ * Therefore the adapter reduces the heap only for values whose serialized form is larger than this.
+ *
+ * @param <TV> The object type in the transactional view
+ * @author Jan Wiemer
+ */
+public class JacisOffHeapObjectAdapter<TV extends Serializable> implements JacisObjectAdapter<TV, JacisOffHeapValue> {
+
+  /** Default size of the off-heap slabs (4 MB) */
+  public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+  /** Maximal size of the read buffer kept for each thread (larger buffers are discarded after use) */
+  private static final int MAX_KEPT_BUFFER_SIZE = 64 * 1024;
+
+  /** Buffer reused by each thread to read the bytes from the off-heap memory */
+  private static final ThreadLocal<byte[]> READ_BUFFER = ThreadLocal.withInitial(() -> new byte[256]);
+
+  /** The adapter used to serialize and deserialize the objects */
+  private final JacisSerializationObjectAdapter<TV> serializer;
+  /** The allocator for the off-heap memory */
+  private final OffHeapSlabAllocator allocator;
+
+  /**
+   * Create an off-heap object adapter.
+   * @param serializer The adapter used to serialize and deserialize the objects
+   * @param slabSize The size of the off-heap slabs (a power of two)
+   */
+  public JacisOffHeapObjectAdapter(JacisSerializationObjectAdapter<TV> serializer, int slabSize) {
+    this.serializer = serializer;
+    this.allocator = new OffHeapSlabAllocator(slabSize);
+  }
+
+  /**
+   * Create an off-heap object adapter using the binary serialization and the default slab size.
+   * @param valueClass The class of the values
+   */
+  public JacisOffHeapObjectAdapter(Class<TV> valueClass) {
+    this(new JacisBinarySerializationObjectAdapter<>(valueClass), DEFAULT_SLAB_SIZE);
+  }
+
+  @Override
+  public TV cloneCommitted2WritableTxView(JacisOffHeapValue value) {
+    return read(value);
+  }
+
+  @Override
+  public JacisOffHeapValue cloneTxView2Committed(TV value) {
+    if (value == null) {
+      return null;
+    }
+    return allocator.store(serializer.serialize(value));
+  }
+
+  @Override
+  public TV cloneCommitted2ReadOnlyTxView(JacisOffHeapValue value) {
+    return read(value);
+  }
+
+  @Override
+  public TV cloneTxView2ReadOnlyTxView(TV value) {
+    return serializer.cloneTxView2ReadOnlyTxView(value);
+  }
+
+  @Override
+  public void releaseCommitted(JacisOffHeapValue value, JacisOffHeapValue replacement) {
+    allocator.free(value, replacement);
+  }
+
+  private TV read(JacisOffHeapValue value) {
+    for (JacisOffHeapValue current = value; current != null; current = current.getReplacement()) { // released concurrently -> read the replacing value
+      byte[] buffer = READ_BUFFER.get();
+      if (buffer.length < current.length) {
+        buffer = new byte[Integer.highestOneBit(current.length) << 1];
+        if (buffer.length <= MAX_KEPT_BUFFER_SIZE) {
+          READ_BUFFER.set(buffer);
+        }
+      }
+      if (allocator.read(current, buffer)) {
+        return serializer.deserialize(buffer, current.length);
+      }
+    }
+    return null;
+  }
+
+  /** @return the number of off-heap bytes used by the committed values */
+  public long getUsedOffHeapBytes() {
+    return allocator.getUsedBytes();
+  }
+
+  /** @return the number of bytes allocated off-heap */
+  public long getAllocatedOffHeapBytes() {
+    return allocator.getAllocatedBytes();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(" + serializer + ")";
+  }
+
+}
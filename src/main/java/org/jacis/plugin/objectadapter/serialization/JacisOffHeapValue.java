@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.objectadapter.serialization;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Handle of a serialized committed value stored in off-heap memory (see {@link JacisOffHeapObjectAdapter}).
+ * The handle only stores the position of the bytes in the off-heap slabs.
+ * The memory is freed explicitly when the store releases the committed value (see {@link org.jacis.plugin.objectadapter.JacisObjectAdapter#releaseCommitted}).
+ * A released handle refers the handle of the value replacing it, readers still holding the released handle read the replacing value instead.
+ *
+ * @author Jan Wiemer
+ */
+public final class JacisOffHeapValue {
+
+  /** updater to atomically release the handle */
+  private static final AtomicReferenceFieldUpdater<JacisOffHeapValue, JacisOffHeapValue> REPLACED_BY_UPDATER = AtomicReferenceFieldUpdater.newUpdater(JacisOffHeapValue.class, JacisOffHeapValue.class, "replacedBy");
+  /** marks a released handle without a replacing value */
+  private static final JacisOffHeapValue NO_REPLACEMENT = new JacisOffHeapValue(-1, -1, 0);
+
+  /** index of the slab containing the bytes */
+  final int slab;
+  /** offset of the bytes in the slab */
+  final int offset;
+  /** number of bytes */
+  final int length;
+  /** the handle replacing this one after it has been released (null as long as the handle is not released) */
+  private volatile JacisOffHeapValue replacedBy;
+
+  JacisOffHeapValue(int slab, int offset, int length) {
+    this.slab = slab;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  boolean release(JacisOffHeapValue replacement) { // returns false if the handle has already been released
+    return REPLACED_BY_UPDATER.compareAndSet(this, null, replacement == null ? NO_REPLACEMENT : replacement);
+  }
+
+  boolean isReleased() {
+    return replacedBy != null;
+  }
+
+  /** @return the handle of the value replacing this one after it has been released (null if not released or released without replacement) */
+  JacisOffHeapValue getReplacement() {
+    JacisOffHeapValue replacement = replacedBy;
+    return replacement == NO_REPLACEMENT ? null : replacement;
+  }
+
+  /** @return the number of bytes of the serialized value */
+  public int getLength() {
+    return length;
+  }
+
+  @Override
+  public String toString() {
+    return "OffHeap(" + slab + ":" + offset + ", " + length + " bytes" + (isReleased() ? ", released" : "") + ")";
+  }
+
+}
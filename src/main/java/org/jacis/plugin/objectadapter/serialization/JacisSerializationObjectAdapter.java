@@ -7,6 +7,7 @@ package org.jacis.plugin.objectadapter.serialization;
 import org.jacis.plugin.objectadapter.JacisObjectAdapter;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * Abstract generic implementation of the {@link org.jacis.plugin.objectadapter.JacisObjectAdapter} copying the objects
@@ -54,6 +55,17 @@ public abstract class JacisSerializationObjectAdapter<TV extends Serializable> i
    */
   protected abstract TV deserialize(byte[] bytes);
 
+  /**
+   * De-serialize an object from the first bytes of the passed byte array.
+   * The default implementation copies the bytes if the array is longer, implementations should overwrite this if possible.
+   * @param bytes The bytes from which to de-serialize the object (may be longer than the serialized object).
+   * @param length The number of bytes of the serialized object.
+   * @return The de-serialized object.
+   */
+  protected TV deserialize(byte[] bytes, int length) {
+    return deserialize(bytes.length == length ? bytes : Arrays.copyOf(bytes, length));
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
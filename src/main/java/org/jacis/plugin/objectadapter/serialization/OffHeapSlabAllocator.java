@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.plugin.objectadapter.serialization;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Allocator for off-heap memory blocks used by the {@link JacisOffHeapObjectAdapter}.
+ *
+ * The memory is allocated in slabs (direct byte buffers). Each block has a size of a power of two (at least 16 bytes).
+ * Freed blocks are kept in a free list for each size and reused before new memory is taken from the current slab.
+ * Blocks larger than a slab get their own direct byte buffer (released when the block is freed).
+ * A block is freed explicitly when the committed value stored in it is released by the store (see {@link #free}).
+ * Readers access the blocks without locks, therefore a reader may still copy a block while it is freed and reused for another value.
+ * To detect this, each free invalidates the optimistic read stamps of a {@link StampedLock} before the block can be reused.
+ * A reader whose copy is not validated by its stamp retries with the read lock (blocking the free for the time of the copy).
+ * If the handle has been released meanwhile the read fails and the reader has to read the replacing value (see {@link JacisOffHeapValue#getReplacement()}).
+ *
+ * @author Jan Wiemer
+ */
+class OffHeapSlabAllocator {
+
+  private static final int MIN_BLOCK_SHIFT = 4;
+
+  /** size of a slab (a power of two) */
+  private final int slabSize;
+  /** the slabs (replaced by a copy when a slab is added; null for released slabs of large blocks) */
+  private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+  /** free lists (stack of encoded block positions) for each block size */
+  private final long[][] freeLists;
+  /** number of entries in the free lists for each block size */
+  private final int[] freeListSizes;
+  /** index of the slab new blocks are taken from (-1 if no slab has been allocated) */
+  private int currentSlab = -1;
+  /** offset of the free memory in the current slab */
+  private int currentOffset;
+  /** lock validating the lock free reads (each free acquires the write lock once before the block can be reused) */
+  private final StampedLock reuseLock = new StampedLock();
+  /** number of bytes used by the allocated blocks */
+  private long usedBytes;
+  /** number of bytes allocated off-heap */
+  private long allocatedBytes;
+
+  OffHeapSlabAllocator(int slabSize) {
+    if (Integer.bitCount(slabSize) != 1 || slabSize < (1 << MIN_BLOCK_SHIFT)) {
+      throw new IllegalArgumentException("Slab size must be a power of two (at least " + (1 << MIN_BLOCK_SHIFT) + ") but is " + slabSize + "!");
+    }
+    this.slabSize = slabSize;
+    int nSizes = Integer.numberOfTrailingZeros(slabSize) - MIN_BLOCK_SHIFT + 1;
+    this.freeLists = new long[nSizes][];
+    this.freeListSizes = new int[nSizes];
+    for (int i = 0; i < nSizes; i++) {
+      freeLists[i] = new long[16];
+    }
+  }
+
+  /**
+   * Store the passed bytes in off-heap memory.
+   *
+   * @param bytes the bytes to store
+   * @return the handle referring the stored bytes
+   */
+  JacisOffHeapValue store(byte[] bytes) {
+    JacisOffHeapValue handle = allocate(bytes.length);
+    ByteBuffer target = slabs[handle.slab].duplicate(); // the block is exclusively owned -> write without lock
+    target.position(handle.offset);
+    target.put(bytes);
+    return handle;
+  }
+
+  /**
+   * Read the bytes referred by the passed handle into the passed buffer (must be large enough).
+   *
+   * @param handle the handle referring the stored bytes
+   * @param target the buffer to read the bytes into
+   * @return if the bytes have been read (false if the handle has been released, the block may already be reused)
+   */
+  boolean read(JacisOffHeapValue handle, byte[] target) {
+    long stamp = reuseLock.tryOptimisticRead();
+    if (stamp != 0 && !handle.isReleased() && copyOptimistic(handle, target) && reuseLock.validate(stamp)) { // no block freed during the copy
+      return true;
+    }
+    stamp = reuseLock.readLock(); // blocks the reuse of the block while copying
+    try {
+      if (handle.isReleased()) {
+        return false;
+      }
+      copy(handle, target);
+      return true;
+    } finally {
+      reuseLock.unlockRead(stamp);
+    }
+  }
+
+  private boolean copyOptimistic(JacisOffHeapValue handle, byte[] target) {
+    try {
+      copy(handle, target);
+      return true;
+    } catch (RuntimeException e) { // the slab of a freed large block may already be released or replaced (the stamp is invalid anyway)
+      return false;
+    }
+  }
+
+  private void copy(JacisOffHeapValue handle, byte[] target) {
+    ByteBuffer source = slabs[handle.slab].duplicate();
+    source.position(handle.offset);
+    source.get(target, 0, handle.length);
+  }
+
+  /**
+   * Free the block referred by the passed handle.
+   * The handle is marked as released (referring the passed replacement) before the block can be reused.
+   * Freeing a handle twice has no effect.
+   *
+   * @param handle the handle referring the block to free
+   * @param replacement the handle replacing the freed one (null if there is no replacement)
+   */
+  void free(JacisOffHeapValue handle, JacisOffHeapValue replacement) {
+    if (!handle.release(replacement)) {
+      return;
+    }
+    reuseLock.unlockWrite(reuseLock.writeLock()); // invalidates the stamps of the optimistic readers, waits for the readers copying with the read lock
+    freeBlock(handle);
+  }
+
+  private synchronized JacisOffHeapValue allocate(int length) {
+    int blockSize = blockSize(length);
+    int slab;
+    int offset;
+    if (blockSize > slabSize) { // large block -> own buffer
+      slab = addSlab(ByteBuffer.allocateDirect(blockSize));
+      offset = 0;
+    } else {
+      int sizeClass = sizeClass(blockSize);
+      if (freeListSizes[sizeClass] > 0) {
+        long pos = freeLists[sizeClass][--freeListSizes[sizeClass]];
+        slab = (int) (pos >>> 32);
+        offset = (int) pos;
+      } else {
+        if (currentSlab < 0 || currentOffset + blockSize > slabSize) { // (rest of the current slab is wasted)
+          currentSlab = addSlab(ByteBuffer.allocateDirect(slabSize));
+          currentOffset = 0;
+        }
+        slab = currentSlab;
+        offset = currentOffset;
+        currentOffset += blockSize;
+      }
+    }
+    usedBytes += blockSize;
+    return new JacisOffHeapValue(slab, offset, length);
+  }
+
+  private int addSlab(ByteBuffer buffer) {
+    ByteBuffer[] oldSlabs = slabs;
+    for (int i = 0; i < oldSlabs.length; i++) {
+      if (oldSlabs[i] == null) { // reuse the index of a released large block
+        ByteBuffer[] newSlabs = oldSlabs.clone();
+        newSlabs[i] = buffer;
+        slabs = newSlabs;
+        allocatedBytes += buffer.capacity();
+        return i;
+      }
+    }
+    ByteBuffer[] newSlabs = Arrays.copyOf(oldSlabs, oldSlabs.length + 1);
+    newSlabs[oldSlabs.length] = buffer;
+    slabs = newSlabs;
+    allocatedBytes += buffer.capacity();
+    return oldSlabs.length;
+  }
+
+  private synchronized void freeBlock(JacisOffHeapValue handle) {
+    int blockSize = blockSize(handle.length);
+    usedBytes -= blockSize;
+    if (blockSize > slabSize) {
+      ByteBuffer[] newSlabs = slabs.clone();
+      allocatedBytes -= newSlabs[handle.slab].capacity();
+      newSlabs[handle.slab] = null; // the direct buffer is released by the garbage collector
+      slabs = newSlabs;
+    } else {
+      int sizeClass = sizeClass(blockSize);
+      if (freeListSizes[sizeClass] == freeLists[sizeClass].length) {
+        freeLists[sizeClass] = Arrays.copyOf(freeLists[sizeClass], freeListSizes[sizeClass] * 2);
+      }
+      freeLists[sizeClass][freeListSizes[sizeClass]++] = ((long) handle.slab << 32) | handle.offset;
+    }
+  }
+
+  private static int blockSize(int length) {
+    int size = Math.max(length, 1 << MIN_BLOCK_SHIFT);
+    int blockSize = Integer.highestOneBit(size);
+    return blockSize == size ? blockSize : blockSize << 1;
+  }
+
+  private static int sizeClass(int blockSize) {
+    return Integer.numberOfTrailingZeros(blockSize) - MIN_BLOCK_SHIFT;
+  }
+
+  /** @return the number of bytes used by the allocated blocks */
+  synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /** @return the number of bytes allocated off-heap */
+  synchronized long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+}
@@ -8,6 +8,7 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import org.jacis.container.JacisContainer;
 import org.jacis.container.JacisTransactionHandle;
@@ -64,6 +65,10 @@ public class JacisTransactionAdapterLocal implements JacisTransactionAdapter {
   }
 
   public JacisLocalTransaction startLocalTransaction(JacisContainer jacisContainer, String txDescription) {
+    return startLocalTransaction(jacisContainer, () -> txDescription);
+  }
+
+  public JacisLocalTransaction startLocalTransaction(JacisContainer jacisContainer, Supplier<String> txDescriptionSupplier) {
     JacisTransactionHandle tx = transaction.get();
     if (tx != null) {
       throw new JacisTransactionAlreadyStartedException("Transaction already started: " + tx);
@@ -71,7 +76,7 @@ public class JacisTransactionAdapterLocal implements JacisTransactionAdapter {
     long txNr = txSeq.incrementAndGet();
     String txId = "TX-" + txNr;
     JacisLocalTransaction localJacisTx = new JacisLocalTransaction(txId);
-    tx = new JacisTransactionHandle(txId, txDescription, localJacisTx);
+    tx = new JacisTransactionHandle(txId, txDescriptionSupplier, localJacisTx);
     transaction.set(tx);
     localJacisTx.associateWithJacisTransaction(tx, jacisContainer);
     txMap.put(localJacisTx, tx);
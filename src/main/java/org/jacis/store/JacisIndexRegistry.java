@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.jacis.container.JacisTransactionHandle;
+import org.jacis.exception.JacisUniqueIndexViolationException;
+import org.jacis.index.JacisIndex;
+import org.jacis.index.JacisNonUniqueIndex;
+import org.jacis.index.JacisSortedIndex;
+import org.jacis.index.JacisUniqueIndex;
+import org.jacis.plugin.JacisModificationListener;
+import org.jacis.store.JacisStoreImpl.KeyValuePair;
+
+/**
+ * Registry where secondary indexes can be registered for an object store.
+ *
+ * The indexes are maintained on the committed values of the store (on each commit the registry is notified as modification listener).
+ * The lookup methods of the registry merge the changes of the current transaction into the result.
+ * Therefore the result of a lookup is the same as the result of filtering all values of the store
+ * (as visible for the current transaction) by the index key.
+ * In stores with snapshot isolation (see {@link org.jacis.container.JacisObjectTypeSpec#setSnapshotIsolation(boolean)})
+ * the indexes track the latest committed values, therefore lookups inside a transaction reading as of a snapshot scan the values of the snapshot
+ * (the indexes are only used outside of transactions and for checking the unique indexes).
+ * The uniqueness of the unique indexes is checked when a transaction is prepared
+ * (see {@link JacisUniqueIndexViolationException}).
+ *
+ * @param <K> Key type of the store entry
+ * @param <TV> Value type of the store entry
+ * @author Jan Wiemer
+ */
+public class JacisIndexRegistry<K, TV> implements JacisModificationListener<K, TV> {
+
+  /** Reference to the JACIS store the index registry belongs to */
+  private final JacisStoreImpl<K, TV, ?> store;
+  /** Map assigning the indexes maintained by this registry to the index names */
+  private final Map<String, JacisIndex<?, K, TV>> indexMap = new ConcurrentHashMap<>();
+
+  JacisIndexRegistry(JacisStoreImpl<K, TV, ?> store) {
+    this.store = store;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true; // the indexes are based on concurrent maps
+  }
+
+  @Override
+  public void onModification(K key, TV oldValue, TV newValue, JacisTransactionHandle tx) {
+    for (JacisIndex<?, K, TV> index : indexMap.values()) {
+      index.trackModification(key, oldValue, newValue);
+    }
+  }
+
+  //======================================================================================
+  // creating indexes
+  //======================================================================================
+
+  /**
+   * Create and register a unique hash index.
+   *
+   * @param indexName The name of the index (unique for the store)
+   * @param indexKeyFunction Function computing the index key from a value
+   * @param <IK> Type of the index keys
+   * @return The created index
+   */
+  public <IK> JacisUniqueIndex<IK, K, TV> createUniqueIndex(String indexName, Function<TV, IK> indexKeyFunction) {
+    return registerIndex(new JacisUniqueIndex<>(indexName, indexKeyFunction));
+  }
+
+  /**
+   * Create and register a non unique hash index.
+   *
+   * @param indexName The name of the index (unique for the store)
+   * @param indexKeyFunction Function computing the index key from a value
+   * @param <IK> Type of the index keys
+   * @return The created index
+   */
+  public <IK> JacisNonUniqueIndex<IK, K, TV> createNonUniqueIndex(String indexName, Function<TV, IK> indexKeyFunction) {
+    return registerIndex(new JacisNonUniqueIndex<>(indexName, indexKeyFunction));
+  }
+
+  /**
+   * Create and register a sorted (non unique) index supporting range queries.
+   *
+   * @param indexName The name of the index (unique for the store)
+   * @param indexKeyFunction Function computing the index key from a value
+   * @param comparator Comparator defining the order of the index keys
+   * @param <IK> Type of the index keys
+   * @return The created index
+   */
+  public <IK> JacisSortedIndex<IK, K, TV> createSortedIndex(String indexName, Function<TV, IK> indexKeyFunction, Comparator<? super IK> comparator) {
+    return registerIndex(new JacisSortedIndex<>(indexName, indexKeyFunction, comparator));
+  }
+
+  /**
+   * Create and register a sorted (non unique) index supporting range queries on comparable index keys.
+   *
+   * @param indexName The name of the index (unique for the store)
+   * @param indexKeyFunction Function computing the index key from a value
+   * @param <IK> Type of the index keys
+   * @return The created index
+   */
+  public <IK extends Comparable<? super IK>> JacisSortedIndex<IK, K, TV> createSortedIndex(String indexName, Function<TV, IK> indexKeyFunction) {
+    return createSortedIndex(indexName, indexKeyFunction, Comparator.naturalOrder());
+  }
+
+  private <I extends JacisIndex<?, K, TV>> I registerIndex(I index) {
+    if (!store.getObjectTypeSpec().isTrackOriginalValueEnabled()) {
+      throw new UnsupportedOperationException("Indexes are only supported if original values are tracked, but they are not tracked for " + store + "! Trying to create index: " + index);
+    }
+    store.executeAtomic(() -> { // no commit may interleave while the index is initialized with the committed values
+      if (indexMap.containsKey(index.getName())) {
+        throw new IllegalArgumentException("Index " + index.getName() + " already registered for " + store + "!");
+      }
+      store.forEachCommittedValue((key, value) -> index.trackModification(key, null, value));
+      indexMap.put(index.getName(), index);
+    });
+    return index;
+  }
+
+  /**
+   * Remove the index with the passed name.
+   *
+   * @param indexName The name of the index
+   */
+  public void removeIndex(String indexName) {
+    indexMap.remove(indexName);
+  }
+
+  /**
+   * @param indexName The name of the index
+   * @return The index with the passed name (null if no such index is registered)
+   */
+  public JacisIndex<?, K, TV> getIndex(String indexName) {
+    return indexMap.get(indexName);
+  }
+
+  public Collection<JacisIndex<?, K, TV>> getAllIndexes() {
+    return indexMap.values();
+  }
+
+  public Set<String> getAllIndexNames() {
+    return indexMap.keySet();
+  }
+
+  void clearIndexes() {
+    indexMap.values().forEach(JacisIndex::clear);
+  }
+
+  //======================================================================================
+  // lookup methods
+  //======================================================================================
+
+  /**
+   * Lookup the value with the passed index key (the value is cloned to the transactional view).
+   *
+   * @param index The unique index (registered at this registry)
+   * @param indexKey The index key
+   * @param <IK> Type of the index keys
+   * @return The value with the passed index key (null if there is no such value)
+   */
+  public <IK> TV getUnique(JacisUniqueIndex<IK, K, TV> index, IK indexKey) {
+    K key = getUniqueKey(index, indexKey);
+    return key == null ? null : store.get(key);
+  }
+
+  /**
+   * Lookup the value with the passed index key (the value is returned in a read only mode).
+   *
+   * @param index The unique index (registered at this registry)
+   * @param indexKey The index key
+   * @param <IK> Type of the index keys
+   * @return The value with the passed index key (null if there is no such value)
+   */
+  public <IK> TV getUniqueReadOnly(JacisUniqueIndex<IK, K, TV> index, IK indexKey) {
+    K key = getUniqueKey(index, indexKey);
+    return key == null ? null : store.getReadOnly(key);
+  }
+
+  private <IK> K getUniqueKey(JacisUniqueIndex<IK, K, TV> index, IK indexKey) {
+    for (K key : getKeys(index, index.getCommittedPrimaryKeys(indexKey), ik -> Objects.equals(ik, indexKey))) {
+      if (Objects.equals(indexKey, index.getIndexKey(store.getReadOnly(key)))) { // the committed value may have been changed since the index lookup
+        return key;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Lookup all values with the passed index key (the values are cloned to the transactional view).
+   *
+   * @param index The index (registered at this registry)
+   * @param indexKey The index key
+   * @param <IK> Type of the index keys
+   * @return The values with the passed index key
+   */
+  public <IK> List<TV> getMulti(JacisIndex<IK, K, TV> index, IK indexKey) {
+    Predicate<IK> indexKeyPredicate = ik -> Objects.equals(ik, indexKey);
+    return getValues(index, getKeys(index, index.getCommittedPrimaryKeys(indexKey), indexKeyPredicate), indexKeyPredicate, false);
+  }
+
+  /**
+   * Lookup all values with the passed index key (the values are returned in a read only mode).
+   *
+   * @param index The index (registered at this registry)
+   * @param indexKey The index key
+   * @param <IK> Type of the index keys
+   * @return The values with the passed index key
+   */
+  public <IK> List<TV> getMultiReadOnly(JacisIndex<IK, K, TV> index, IK indexKey) {
+    Predicate<IK> indexKeyPredicate = ik -> Objects.equals(ik, indexKey);
+    return getValues(index, getKeys(index, index.getCommittedPrimaryKeys(indexKey), indexKeyPredicate), indexKeyPredicate, true);
+  }
+
+  /**
+   * Lookup all values with an index key in the passed range (the values are cloned to the transactional view).
+   * The values are returned in the order of the index keys.
+   *
+   * @param index The sorted index (registered at this registry)
+   * @param fromIndexKey The lower bound of the range (inclusive, null means unbounded)
+   * @param toIndexKey The upper bound of the range (exclusive, null means unbounded)
+   * @param <IK> Type of the index keys
+   * @return The values with an index key in the passed range
+   */
+  public <IK> List<TV> getRange(JacisSortedIndex<IK, K, TV> index, IK fromIndexKey, IK toIndexKey) {
+    return getSortedValues(index, fromIndexKey, toIndexKey, false);
+  }
+
+  /**
+   * Lookup all values with an index key in the passed range (the values are returned in a read only mode).
+   * The values are returned in the order of the index keys.
+   *
+   * @param index The sorted index (registered at this registry)
+   * @param fromIndexKey The lower bound of the range (inclusive, null means unbounded)
+   * @param toIndexKey The upper bound of the range (exclusive, null means unbounded)
+   * @param <IK> Type of the index keys
+   * @return The values with an index key in the passed range
+   */
+  public <IK> List<TV> getRangeReadOnly(JacisSortedIndex<IK, K, TV> index, IK fromIndexKey, IK toIndexKey) {
+    return getSortedValues(index, fromIndexKey, toIndexKey, true);
+  }
+
+  private <IK> List<TV> getSortedValues(JacisSortedIndex<IK, K, TV> index, IK fromIndexKey, IK toIndexKey, boolean readOnly) {
+    Collection<K> keys = getKeys(index, index.getCommittedPrimaryKeys(fromIndexKey, toIndexKey), ik -> index.isInRange(ik, fromIndexKey, toIndexKey));
+    List<KeyValuePair<K, IK>> sortedKeys = new ArrayList<>(keys.size());
+    for (K key : keys) {
+      IK indexKey = index.getIndexKey(store.getReadOnly(key));
+      if (index.isInRange(indexKey, fromIndexKey, toIndexKey)) { // the committed value may have been changed since the index lookup
+        sortedKeys.add(new KeyValuePair<>(key, indexKey));
+      }
+    }
+    Comparator<? super IK> comparator = index.getComparator();
+    sortedKeys.sort((e1, e2) -> comparator.compare(e1.getVal(), e2.getVal())); // entries of the TX view may be out of order
+    List<TV> res = new ArrayList<>(sortedKeys.size());
+    for (KeyValuePair<K, IK> entry : sortedKeys) {
+      res.add(readOnly ? store.getReadOnly(entry.getKey()) : store.get(entry.getKey()));
+    }
+    return res;
+  }
+
+  /**
+   * Get a page of the values with an index key in the passed range (the values are returned in a read only mode).
+   * The values are returned in the order of the index keys.
+   * The start of the range is sought in the sorted index (O(log n)), afterwards only the entries
+   * up to the end of the page are visited (O(offset + pageSize)).
+   * Therefore a cursor-style paging is possible by passing the index key of the last value of the previous page as lower bound
+   * (note that values with the same index key are contained in both pages in this case).
+   * The entries of the current transactional view are merged into the page.
+   *
+   * @param index The sorted index (registered at this registry)
+   * @param fromIndexKey The lower bound of the range (inclusive, null means unbounded)
+   * @param toIndexKey The upper bound of the range (exclusive, null means unbounded)
+   * @param offset The offset of the desired page in the range
+   * @param pageSize The size of the desired page
+   * @param <IK> Type of the index keys
+   * @return The page of the values with an index key in the passed range
+   */
+  public <IK> List<TV> getPageReadOnly(JacisSortedIndex<IK, K, TV> index, IK fromIndexKey, IK toIndexKey, long offset, int pageSize) {
+    if (isSnapshotRead()) { // the index tracks the latest committed values -> sort the values of the snapshot
+      List<TV> values = getSortedValues(index, fromIndexKey, toIndexKey, true);
+      int from = (int) Math.min(Math.max(0, offset), values.size());
+      int to = (int) Math.min(values.size(), from + (long) Math.max(0, pageSize));
+      return new ArrayList<>(values.subList(from, to));
+    }
+    JacisStoreTxView<K, TV, ?> txView = store.getTxView();
+    boolean hasTxEntries = txView != null && txView.getNumberOfEntries() > 0;
+    Comparator<? super IK> comparator = index.getComparator();
+    List<KeyValuePair<K, IK>> txEntries = new ArrayList<>();
+    if (hasTxEntries) {
+      for (StoreEntryTxView<K, TV, ?> entryTxView : txView.getAllEntryTxViews()) {
+        IK indexKey = index.getIndexKey(entryTxView.getValue());
+        if (index.isInRange(indexKey, fromIndexKey, toIndexKey)) {
+          txEntries.add(new KeyValuePair<>(entryTxView.getKey(), indexKey));
+        }
+      }
+      txEntries.sort((e1, e2) -> comparator.compare(e1.getVal(), e2.getVal()));
+    }
+    PageCollector<IK> page = new PageCollector<>(index, offset, pageSize);
+    int txIdx = 0;
+    for (Map.Entry<IK, Set<K>> indexEntry : index.getCommittedRange(fromIndexKey, toIndexKey).entrySet()) {
+      IK indexKey = indexEntry.getKey();
+      while (txIdx < txEntries.size() && comparator.compare(txEntries.get(txIdx).getVal(), indexKey) < 0 && !page.isFull()) {
+        page.add(txEntries.get(txIdx++));
+      }
+      for (K key : indexEntry.getValue()) {
+        if (page.isFull()) {
+          return page.values;
+        } else if (!hasTxEntries || txView.getEntryTxView(key) == null) { // entries of the TX view are merged separately
+          page.add(new KeyValuePair<>(key, indexKey));
+        }
+      }
+    }
+    while (txIdx < txEntries.size() && !page.isFull()) {
+      page.add(txEntries.get(txIdx++));
+    }
+    return page.values;
+  }
+
+  /** Helper class collecting the values of a page (skipping the values before the offset). */
+  private class PageCollector<IK> {
+
+    private final JacisIndex<IK, K, TV> index;
+    private final int pageSize;
+    private final List<TV> values;
+    private long toSkip;
+
+    PageCollector(JacisIndex<IK, K, TV> index, long offset, int pageSize) {
+      this.index = index;
+      this.pageSize = pageSize;
+      this.values = new ArrayList<>(Math.max(0, pageSize));
+      this.toSkip = offset;
+    }
+
+    boolean isFull() {
+      return values.size() >= pageSize;
+    }
+
+    void add(KeyValuePair<K, IK> entry) {
+      TV value = store.getReadOnly(entry.getKey());
+      if (value == null || !Objects.equals(entry.getVal(), index.getIndexKey(value))) {
+        return; // the committed value has been changed since the index lookup
+      } else if (toSkip > 0) {
+        toSkip--;
+      } else {
+        values.add(value);
+      }
+    }
+
+  } // END OF:  private class PageCollector
+
+  /**
+   * Compute the keys of the entries matching the index key predicate as visible for the current transaction.
+   * The committed keys found by the index are merged with the entries in the transactional view
+   * (the committed value of an entry may be modified in the transactional view).
+   */
+  private <IK> Collection<K> getKeys(JacisIndex<IK, K, TV> index, Collection<K> committedKeys, Predicate<IK> indexKeyPredicate) {
+    if (isSnapshotRead()) { // the index tracks the latest committed values, not the values of the snapshot
+      return store.getKeysReadOnly(value -> indexKeyPredicate.test(index.getIndexKey(value)));
+    }
+    JacisStoreTxView<K, TV, ?> txView = store.getTxView();
+    if (txView == null || txView.getNumberOfEntries() == 0) {
+      return committedKeys;
+    }
+    Set<K> res = new LinkedHashSet<>();
+    for (K key : committedKeys) {
+      StoreEntryTxView<K, TV, ?> entryTxView = txView.getEntryTxView(key);
+      if (entryTxView == null || indexKeyPredicate.test(index.getIndexKey(entryTxView.getValue()))) {
+        res.add(key);
+      }
+    }
+    for (StoreEntryTxView<K, TV, ?> entryTxView : txView.getAllEntryTxViews()) {
+      if (indexKeyPredicate.test(index.getIndexKey(entryTxView.getValue()))) {
+        res.add(entryTxView.getKey());
+      }
+    }
+    return res;
+  }
+
+  private boolean isSnapshotRead() { // inside a transaction reading a store with snapshot isolation as of its snapshot
+    return store.getObjectTypeSpec().isSnapshotIsolation() && store.getTxView() != null;
+  }
+
+  private <IK> List<TV> getValues(JacisIndex<IK, K, TV> index, Collection<K> keys, Predicate<IK> indexKeyPredicate, boolean readOnly) {
+    List<TV> res = new ArrayList<>(keys.size());
+    for (K key : keys) {
+      TV value = readOnly ? store.getReadOnly(key) : store.get(key);
+      if (value != null && indexKeyPredicate.test(index.getIndexKey(value))) { // the committed value may have been changed since the index lookup
+        res.add(value);
+      }
+    }
+    return res;
+  }
+
+  //======================================================================================
+  // checking unique indexes
+  //======================================================================================
+
+  /**
+   * Check if committing the passed transactional view violates a unique index.
+   * The index keys of the updated entries are reserved for the transaction (until {@link #releaseReservations(JacisStoreTxView)} is called).
+   * Note that the index keys are reserved before checking the committed entries.
+   * Since the reservations are released after the committed values are tracked by the index
+   * a concurrently committing transaction is always detected (either by the reservation or by the index).
+   */
+  void checkUniqueIndexesOnPrepare(JacisStoreTxView<K, TV, ?> txView) {
+    for (JacisIndex<?, K, TV> index : indexMap.values()) {
+      if (index.isUnique()) {
+        checkUniqueIndex((JacisUniqueIndex<?, K, TV>) index, txView);
+      }
+    }
+  }
+
+  private <IK> void checkUniqueIndex(JacisUniqueIndex<IK, K, TV> index, JacisStoreTxView<K, TV, ?> txView) {
+    Map<IK, K> indexKeysInTx = new HashMap<>();
+    for (StoreEntryTxView<K, TV, ?> entryTxView : txView.getAllEntryTxViews()) {
+      if (!entryTxView.isUpdated()) {
+        continue;
+      }
+      K key = entryTxView.getKey();
+      IK indexKey = index.getIndexKey(entryTxView.getValue());
+      if (indexKey == null) {
+        continue;
+      }
+      K otherKey = indexKeysInTx.put(indexKey, key);
+      if (otherKey != null) {
+        throw new JacisUniqueIndexViolationException(index.getName(), indexKey, "Unique index " + index.getName() + " violated by " + txView + ": index key " + indexKey + " used by " + key + " and " + otherKey + "!");
+      }
+      Object reservedBy = index.reserve(indexKey, txView);
+      if (reservedBy != null) {
+        throw new JacisUniqueIndexViolationException(index.getName(), indexKey, "Unique index " + index.getName() + " violated by " + txView + ": index key " + indexKey + " of " + key + " already used by the prepared " + reservedBy + "!");
+      }
+      K committedKey = index.getCommittedPrimaryKey(indexKey);
+      if (committedKey != null && !committedKey.equals(key)) {
+        StoreEntryTxView<K, TV, ?> committedKeyTxView = txView.getEntryTxView(committedKey);
+        boolean changedInTx = committedKeyTxView != null && committedKeyTxView.isUpdated() && !indexKey.equals(index.getIndexKey(committedKeyTxView.getValue()));
+        if (!changedInTx) {
+          throw new JacisUniqueIndexViolationException(index.getName(), indexKey, "Unique index " + index.getName() + " violated by " + txView + ": index key " + indexKey + " of " + key + " already used by the committed " + committedKey + "!");
+        }
+      }
+    }
+  }
+
+  void releaseReservations(JacisStoreTxView<K, TV, ?> txView) {
+    for (JacisIndex<?, K, TV> index : indexMap.values()) {
+      if (index.isUnique()) {
+        ((JacisUniqueIndex<?, K, TV>) index).releaseReservations(txView);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(" + indexMap.keySet() + ")";
+  }
+
+}
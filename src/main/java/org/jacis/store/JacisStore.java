@@ -64,6 +64,9 @@ public interface JacisStore<K, TV> {
   /** @return tte registry of tracked views for this store that are kept up to date on each commit automatically */
   TrackedViewRegistry<K, TV> getTrackedViewRegistry();
 
+  /** @return the registry of secondary indexes for this store that are kept up to date on each commit automatically */
+  JacisIndexRegistry<K, TV> getIndexRegistry();
+
   /**
    * Create a read only view of the current transaction context that can be used (read only) in a different thread.
    * This can be used to share one single transaction view in several threads.
@@ -201,6 +204,37 @@ public interface JacisStore<K, TV> {
    */
   Stream<TV> streamReadOnly(Predicate<TV> filter);
 
+  /**
+   * Returns a parallel stream of read only views for all objects (not 'null') currently stored in the store filtered by the passed filter.
+   * The stream has the same content as the stream returned by {@link #streamReadOnly(Predicate)},
+   * but it is split over the committed entries and can be consumed by multiple threads (e.g. the common fork join pool).
+   * The transactional view of the calling thread is captured when the stream is created.
+   * Note that the transactional view must not be modified (e.g. by updating objects) while the stream is consumed.
+   *
+   * @param filter a filter predicate deciding if an object should be contained in the resulting stream ('null' means all objects should be contained)
+   * @return a parallel stream of all objects (not 'null') currently stored in the store filtered by the passed filter.
+   */
+  Stream<TV> parallelStreamReadOnly(Predicate<TV> filter);
+
+  /**
+   * Returns a stream of projections for all objects (not 'null') currently stored in the store filtered by the passed filter.
+   * Note that the method operates on the committed values merged with the current transactional view (see class description).
+   * Other than {@link #streamReadOnly(Predicate)} the filter and the projection are evaluated on the committed objects
+   * without copying them (if supported by the object adapter, see {@link org.jacis.plugin.objectadapter.JacisObjectAdapter#accessCommittedUncloned}).
+   * Projections of immutable types (strings, primitive wrappers, big numbers and enums) are returned as they are.
+   * For all other projections (that may refer mutable parts of the committed object, e.g. a list or the object itself)
+   * the projection is evaluated again on a read only copy of the object and this result is returned.
+   * Therefore the projection has to be a function without side effects, and the filter and the projection must not modify the passed objects
+   * and must not keep references to them.
+   * Projections with the value 'null' are not contained in the stream.
+   *
+   * @param filter a filter predicate deciding if an object should be contained in the resulting stream ('null' means all objects should be contained)
+   * @param projection a function computing the projection of an object returned in the stream
+   * @param <P> The type of the projections
+   * @return a stream of projections for all objects (not 'null') currently stored in the store filtered by the passed filter.
+   */
+  <P> Stream<P> streamReadOnlyProjected(Predicate<TV> filter, Function<TV, P> projection);
+
   /**
    * Returns a list of all objects (not 'null') currently stored in the store.
    *
@@ -259,6 +293,8 @@ public interface JacisStore<K, TV> {
    * Helper method to get a paging access to the elements (read only versions) stored in the store.
    * First the elements are filtered and sorted according to the passed predicate and comparator,
    * afterwards the desired page is extracted according to the passed offset and page size.
+   * Only the first (offset + pageSize) elements are kept (in a bounded heap), the filtered list is not sorted completely.
+   * For large stores consider using a sorted index (see {@link JacisIndexRegistry#getPageReadOnly}).
    *
    * @param filter     a filter predicate deciding if an object should be contained in the paged date ('null' means all objects should be contained)
    * @param comparator a comparator to sort the object.
@@ -310,6 +346,7 @@ public interface JacisStore<K, TV> {
    * Refresh the object for the passed key from the committed values. Note that all earlier modifications in the current transaction are lost.
    * First the current transactional view (if updated or not) is discarded.
    * Afterwards a fresh copy of the current committed value is stored in the transactional view by calling the {@link #get(Object)} method.
+   * In snapshot isolation mode (see {@link JacisObjectTypeSpec#setSnapshotIsolation(boolean)}) the committed value visible for the snapshot of the transaction is used.
    *
    * @param key The key of the object to refresh.
    * @return the object for the passed key refreshed from the committed values. Note that all earlier modifications in the current transaction are lost.
@@ -395,6 +432,21 @@ public interface JacisStore<K, TV> {
    */
   <R> R computeAtomic(Supplier<R> atomicOperation);
 
+  /**
+   * Execute the passed operation (with return value) as an atomic operation trying to avoid locking the store.
+   * If the store supports optimistic reads (see {@link org.jacis.container.JacisLockStrategy#STAMPED}) the operation is first executed without locking.
+   * If a commit (or another writer) interleaved the result is discarded and the operation is executed again holding the lock
+   * (like {@link #computeAtomic(Supplier)}), otherwise the result is returned.
+   * Therefore *the operation may be executed more than once* and has to be a pure function:
+   * it must not have side effects (e.g. modifying objects or updating the store) and may only read the store.
+   * For all other stores (and for stores with entry level commit locking) the method behaves like {@link #computeAtomic(Supplier)}.
+   *
+   * @param atomicOperation The (side effect free) operation to execute atomically
+   * @param <R>             The return type of the operation
+   * @return The return value of the operation (of an execution no commit of another transaction interleaved)
+   */
+  <R> R computeAtomicOptimistic(Supplier<R> atomicOperation);
+
   /**
    * Execute the passed operation (without return value) as a global atomic operation (atomic over all stores).
    * The execution of global atomic operations can not overlap with the execution of a commit (changing the visible data) of another transaction (but normal operations on other transactions may overlap),
@@ -5,39 +5,48 @@
 package org.jacis.store;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.WeakHashMap;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.jacis.container.JacisContainer;
 import org.jacis.container.JacisContainer.StoreIdentifier;
 import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.container.JacisStampedReadWriteLock;
 import org.jacis.container.JacisTransactionHandle;
 import org.jacis.exception.JacisStaleObjectException;
 import org.jacis.exception.JacisTransactionAlreadyPreparedForCommitException;
 import org.jacis.plugin.JacisModificationListener;
+import org.jacis.plugin.metrics.JacisMeasuringObjectAdapter;
+import org.jacis.plugin.metrics.JacisProfilingReadWriteLock;
+import org.jacis.plugin.metrics.JacisStoreMetrics;
 import org.jacis.plugin.objectadapter.JacisObjectAdapter;
 
 /**
  * Storing a single type of objects.
  *
  * All operations checking or returning entries of the store operate on the committed values merged with the
- * current transactional view (obtained with the currently active transaction handle from the map {@link #txViewMap}).
+ * current transactional view (attached to the currently active transaction handle, all views are registered at the {@link #txViewRegistry}).
  * This means that first the transactional view is checked if it contains an entry for the desired key.
  * If so this entry is returned, otherwise the committed value from the core store (see {@link #store}) is returned.
  * Note that if an object is deleted in a transaction an entry with the value 'null' remains in the transactional view.
@@ -50,6 +59,9 @@ import org.jacis.plugin.objectadapter.JacisObjectAdapter;
  */
 public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransactionAdapter implements JacisStore<K, TV>, JacisStoreAdminInterface<K, TV, CV> {
 
+  /** Types of projections that can be returned without copying the projected object (they can not refer the committed object) */
+  private static final Set<Class<?>> IMMUTABLE_VALUE_TYPES = new HashSet<>(Arrays.asList(String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class));
+
   /** Reference to the JACIS container this store belongs to */
   private final JacisContainer container;
   /** The store identifier uniquely identifying this store inside the container */
@@ -58,14 +70,30 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
   private final JacisObjectTypeSpec<K, TV, CV> spec;
   /** The map containing the committed values of the objects (the core store) */
   private final ConcurrentHashMap<K, StoreEntry<K, TV, CV>> store = new ConcurrentHashMap<>();
-  /** A Map assigning each active transaction handle the transactional view on this store */
-  private final Map<JacisTransactionHandle, JacisStoreTxView<K, TV, CV>> txViewMap = Collections.synchronizedMap(new WeakHashMap<JacisTransactionHandle, JacisStoreTxView<K, TV, CV>>());
+  /** The registry of all transactional views on this store (the view for a transaction is attached to its transaction handle) */
+  private final StoreTxViewRegistry<K, TV, CV> txViewRegistry = new StoreTxViewRegistry<>(this::releaseCommittedEntry);
   /** Mutex / Lock to synchronize changes on the committed entries of the store (specially during internalCommit) */
   private final ReadWriteLock storeAccessLock;
+  /** Flag if prepare and commit only lock the touched entries (sharing the store lock) instead of exclusively locking the whole store */
+  private final boolean entryLevelCommitLocking;
+  /** Flag if transactions read the store as of their snapshot (multi-version concurrency control) */
+  private final boolean snapshotIsolation;
+  /** The committed entries keeping older versions for active snapshots (only in snapshot isolation mode, see {@link #reclaimVersions()}) */
+  private final Set<StoreEntry<K, TV, CV>> entriesWithOlderVersions = ConcurrentHashMap.newKeySet();
+  /** The oldest active snapshot of the container at the last reclamation of older versions */
+  private volatile long lastReclaimedSnapshot = -1;
+  /** The store lock if it supports optimistic reads (lock strategy {@link org.jacis.container.JacisLockStrategy#STAMPED}), otherwise null */
+  private final JacisStampedReadWriteLock optimisticLock;
   /** The object adapter defining how to copy objects from the committed view to a transactional view and back */
   private final JacisObjectAdapter<TV, CV> objectAdapter;
+  /** The metrics recording the performance of this store (obtained from the metrics of the container on creation) */
+  private final JacisStoreMetrics metrics;
+  /** Flag if metrics are recorded for this store (if not the lock waits and transactional view sizes are not measured) */
+  private final boolean metricsEnabled;
   /** The registry of tracked views for this store that are kept up to date on each commit automatically */
   private final TrackedViewRegistry<K, TV> trackedViewRegistry;
+  /** The registry of secondary indexes for this store that are kept up to date on each commit automatically */
+  private final JacisIndexRegistry<K, TV> indexRegistry;
   /** List of listeners notified on each modification on the committed values in the store */
   private final List<JacisModificationListener<K, TV>> modificationListeners = new CopyOnWriteArrayList<>();
 
@@ -73,10 +101,22 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
     this.container = container;
     this.storeIdentifier = storeIdentifier;
     this.spec = spec;
-    this.objectAdapter = spec.getObjectAdapter();
+    this.metrics = container.getMetrics().getStoreMetrics(storeIdentifier, spec.getObjectAdapter());
+    this.metricsEnabled = metrics.isEnabled();
+    this.objectAdapter = metricsEnabled ? new JacisMeasuringObjectAdapter<>(spec.getObjectAdapter(), metrics) : spec.getObjectAdapter();
     this.trackedViewRegistry = new TrackedViewRegistry<>(this, spec.isCheckViewsOnCommit());
-    this.storeAccessLock = spec.isSyncStoreOnContainerTransaction() ? container.getTransactionDemarcationLock() : new ReentrantReadWriteLock(true); // by default the store accesses are synced on the whole container TX
+    this.indexRegistry = new JacisIndexRegistry<>(this);
+    this.entryLevelCommitLocking = spec.isEntryLevelCommitLocking();
+    this.snapshotIsolation = spec.isSnapshotIsolation();
+    if (spec.isSyncStoreOnContainerTransaction() && !entryLevelCommitLocking) {
+      this.storeAccessLock = container.getTransactionDemarcationLock(); // by default the store accesses are synced on the whole container TX
+    } else {
+      this.storeAccessLock = new JacisProfilingReadWriteLock("storeAccessLock(" + storeIdentifier.toShortString() + ")", spec.getLockStrategy().createLock(), container.getLockProfiler());
+    }
+    ReadWriteLock accessLock = storeAccessLock instanceof JacisProfilingReadWriteLock ? ((JacisProfilingReadWriteLock) storeAccessLock).getDelegate() : storeAccessLock;
+    this.optimisticLock = accessLock instanceof JacisStampedReadWriteLock ? (JacisStampedReadWriteLock) accessLock : null;
     registerModificationListener(trackedViewRegistry);
+    registerModificationListener(indexRegistry);
   }
 
   @Override
@@ -123,6 +163,11 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
     return trackedViewRegistry;
   }
 
+  @Override
+  public JacisIndexRegistry<K, TV> getIndexRegistry() {
+    return indexRegistry;
+  }
+
   @Override
   public JacisReadOnlyTransactionContext createReadOnlyTransactionView(String withTxName) {
     JacisStoreTxView<K, TV, CV> originalTxView = getTxView(true);
@@ -144,17 +189,29 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
   }
 
   public boolean isInReadOnlyTransaction() {
-    JacisStoreTxView<K, TV, CV> txView = getTxView(false);
+    return isInReadOnlyTransaction(container.getCurrentTransaction(false));
+  }
+
+  public boolean isInReadOnlyTransaction(JacisTransactionHandle transaction) {
+    JacisStoreTxView<K, TV, CV> txView = getTxView(transaction, false);
     return txView != null && txView.isReadOnly();
   }
 
   public boolean isCommitPending() {
-    JacisStoreTxView<K, TV, CV> txView = getTxView(false);
+    return isCommitPending(container.getCurrentTransaction(false));
+  }
+
+  public boolean isCommitPending(JacisTransactionHandle transaction) {
+    JacisStoreTxView<K, TV, CV> txView = getTxView(transaction, false);
     return txView != null && txView.isCommitPending();
   }
 
   public boolean hasObjectsUpdatedInCurrentTxView() {
-    JacisStoreTxView<K, TV, CV> txView = getTxView(false);
+    return hasObjectsUpdatedInTxView(container.getCurrentTransaction(false));
+  }
+
+  public boolean hasObjectsUpdatedInTxView(JacisTransactionHandle transaction) {
+    JacisStoreTxView<K, TV, CV> txView = getTxView(transaction, false);
     return txView != null && txView.getNumberOfUpdatedEntries() > 0;
   }
 
@@ -171,7 +228,7 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
       return entryTxView.isNotNull();
     }
     StoreEntry<K, TV, CV> coreEntry = store.get(key);
-    return coreEntry != null && coreEntry.isNotNull();
+    return coreEntry != null && committedValue(coreEntry, txView) != null;
   }
 
   @Override
@@ -225,10 +282,15 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
     return keyStream().map(k -> get(k, txView)).filter(Objects::nonNull);
   }
 
+  /** @return a stream of all committed entries (including new entries with null value). The spliterator of the map splits the stream in a balanced way. */
+  private Stream<StoreEntry<K, TV, CV>> committedEntryStream(boolean parallel) {
+    return StreamSupport.stream(store.values().spliterator(), parallel);
+  }
+
   @Override
   public Stream<TV> streamReadOnly() {
     JacisStoreTxView<K, TV, CV> txView = getTxView();
-    return keyStream().map(k -> getReadOnly(k, txView)).filter(Objects::nonNull);
+    return committedEntryStream(false).map(e -> getReadOnly(e, txView)).filter(Objects::nonNull);
   }
 
   @Override
@@ -246,12 +308,25 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
   public Stream<TV> streamReadOnly(Predicate<TV> filter) {
     if (filter != null) {
       JacisStoreTxView<K, TV, CV> txView = getTxView();
-      return keyStream().map(k -> getReadOnly(k, txView)).filter(v -> v != null && filter.test(v));
+      return committedEntryStream(false).map(e -> getReadOnly(e, txView)).filter(v -> v != null && filter.test(v));
     } else {
       return streamReadOnly();
     }
   }
 
+  @Override
+  public Stream<TV> parallelStreamReadOnly(Predicate<TV> filter) {
+    JacisStoreTxView<K, TV, CV> txView = getTxView(); // captured in the calling thread (the worker threads have no transaction)
+    Stream<TV> stream = committedEntryStream(true).map(e -> getReadOnly(e, txView));
+    return filter != null ? stream.filter(v -> v != null && filter.test(v)) : stream.filter(Objects::nonNull);
+  }
+
+  @Override
+  public <P> Stream<P> streamReadOnlyProjected(Predicate<TV> filter, Function<TV, P> projection) {
+    JacisStoreTxView<K, TV, CV> txView = getTxView();
+    return committedEntryStream(false).map(e -> projectReadOnly(e, txView, filter, projection)).filter(Objects::nonNull);
+  }
+
   @Override
   public List<TV> getAll() {
     return getAll(null);
@@ -274,7 +349,7 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
 
   @Override
   public List<TV> getAllAtomic(Predicate<TV> filter) {
-    return computeAtomic(() -> getAll(filter));
+    return withLock(getAtomicOperationLock(), () -> getAll(filter)); // always locking (not optimistic) since the transactional views of the entries are created
   }
 
   @Override
@@ -284,12 +359,62 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
 
   @Override
   public List<TV> getPageReadOnly(Predicate<TV> filter, Comparator<TV> comparator, long offset, long pageSize) {
-    return streamReadOnly(filter).sorted(comparator).skip(offset).limit(pageSize).collect(Collectors.toList());
+    return selectPage(streamReadOnly(filter), comparator, offset, pageSize);
   }
 
   @Override
   public <PV> List<PV> getWrapperPageReadOnly(Function<TV, PV> wrapper, Predicate<PV> filter, Comparator<PV> comparator, long offset, long pageSize) {
-    return streamReadOnly().map(wrapper).filter(filter).sorted(comparator).skip(offset).limit(pageSize).collect(Collectors.toList());
+    Stream<PV> wrapped = streamReadOnly().map(wrapper);
+    return selectPage(filter == null ? wrapped : wrapped.filter(filter), comparator, offset, pageSize);
+  }
+
+  /**
+   * Select the page starting at the offset from the elements of the passed stream sorted by the comparator.
+   * Instead of sorting all elements only the first (offset + pageSize) elements are kept in a bounded heap
+   * (ordered with the greatest element on top, replaced if a smaller element is found).
+   * Elements equal regarding the comparator are ordered by their position in the stream (like the stable sort of the stream),
+   * therefore consecutive pages neither overlap nor skip elements.
+   */
+  private static <T> List<T> selectPage(Stream<T> stream, Comparator<T> comparator, long offset, long pageSize) {
+    long k = offset + pageSize;
+    if (pageSize <= 0) {
+      return new ArrayList<>();
+    } else if (k < 0 || k > Integer.MAX_VALUE / 2) { // page too far behind (or overflow) -> the heap would not be smaller than the sorted list
+      return stream.sorted(comparator).skip(offset).limit(pageSize).collect(Collectors.toList());
+    }
+    int heapSize = (int) k;
+    Comparator<PageElement<T>> order = Comparator.<PageElement<T>, T> comparing(e -> e.element, comparator).thenComparingLong(e -> e.position);
+    PriorityQueue<PageElement<T>> heap = new PriorityQueue<>(Math.min(heapSize, 1024) + 1, order.reversed());
+    long position = 0;
+    for (Iterator<T> it = stream.sequential().iterator(); it.hasNext(); position++) {
+      T element = it.next();
+      if (heap.size() < heapSize) {
+        heap.add(new PageElement<>(element, position));
+      } else if (comparator.compare(element, heap.peek().element) < 0) { // an equal element is behind the top element in the stream
+        heap.poll();
+        heap.add(new PageElement<>(element, position));
+      }
+    }
+    if (heap.size() <= offset) {
+      return new ArrayList<>();
+    }
+    List<T> res = new ArrayList<>(heap.size());
+    while (!heap.isEmpty()) {
+      res.add(heap.poll().element); // greatest first
+    }
+    Collections.reverse(res);
+    return new ArrayList<>(res.subList((int) offset, res.size()));
+  }
+
+  /** An element of a page together with its position in the stream the page is selected from. */
+  private static class PageElement<T> {
+    final T element;
+    final long position;
+
+    PageElement(T element, long position) {
+      this.element = element;
+      this.position = position;
+    }
   }
 
   @Override
@@ -409,19 +534,46 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
 
   @Override
   public void executeAtomic(Runnable atomicOperation) { // Execute an atomic operation for the current store. No internalCommit of any other TX and no other atomic action for this store will interleave.
-    withReadLock(runnableWrapper(atomicOperation));
+    withLock(getAtomicOperationLock(), runnableWrapper(atomicOperation));
   }
 
   @Override
   public <R> R computeAtomic(Supplier<R> atomicOperation) { // Execute an atomic operation for the current store. No internalCommit of any other TX and no other atomic action for this store will interleave.
-    return withReadLock(atomicOperation);
+    return withLock(getAtomicOperationLock(), atomicOperation);
+  }
+
+  @Override
+  public <R> R computeAtomicOptimistic(Supplier<R> atomicOperation) { // The operation may be executed more than once (only the result of an execution no commit interleaved is returned)
+    if (optimisticLock != null && !entryLevelCommitLocking) { // commits take the write lock -> try without locking and validate no commit interleaved
+      long stamp = optimisticLock.getStampedLock().tryOptimisticRead();
+      if (stamp != 0) {
+        try {
+          R res = atomicOperation.get();
+          if (optimisticLock.getStampedLock().validate(stamp)) {
+            return res;
+          }
+        } catch (RuntimeException e) {
+          if (optimisticLock.getStampedLock().validate(stamp)) {
+            throw e;
+          } // otherwise the exception may be caused by the interleaving commit -> execute again holding the lock
+        }
+      }
+    }
+    return withLock(getAtomicOperationLock(), atomicOperation);
   }
 
   public void executeGlobalAtomic(Runnable atomicOperation) { // Execute an global atomic operation. No prepare / commit / rollback  of any other TX and no other global atomic action for any store will interleave.
-    executeAtomic(() -> container.executeGlobalAtomic(atomicOperation));
+    if (container.isStoreLevelCommitLocking()) { // the container locks all stores (including this one) in the global lock order
+      container.executeGlobalAtomic(atomicOperation);
+    } else {
+      executeAtomic(() -> container.executeGlobalAtomic(atomicOperation));
+    }
   }
 
   public <R> R computeGlobalAtomic(Supplier<R> atomicOperation) { // Execute an global atomic operation for the current store. No prepare / commit / rollback of any other TX and no other global atomic action for any store will interleave.
+    if (container.isStoreLevelCommitLocking()) { // the container locks all stores (including this one) in the global lock order
+      return container.computeGlobalAtomic(atomicOperation);
+    }
     return computeAtomic(() -> container.computeGlobalAtomic(atomicOperation));
   }
 
@@ -458,11 +610,16 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
   public synchronized void clear() {
     storeAccessLock.writeLock().lock();// <======= **WRITE** LOCK =====
     try {
-      for (JacisStoreTxView<K, TV, CV> txCtx : txViewMap.values()) {
+      for (JacisStoreTxView<K, TV, CV> txCtx : txViewRegistry.getAll()) {
         txCtx.invalidate("store cleared");
       }
+      for (StoreEntry<K, TV, CV> entryCommitted : store.values()) {
+        entryCommitted.releaseAllVersions();
+      }
       store.clear();
+      entriesWithOlderVersions.clear();
       trackedViewRegistry.clearViews();
+      indexRegistry.clearIndexes();
     } finally {
       storeAccessLock.writeLock().unlock();// <======= **WRITE** UNLOCK =====
     }
@@ -474,22 +631,57 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
 
   @Override
   protected void internalPrepare(JacisTransactionHandle transaction) {
-    withWriteLock(runnableWrapper(() -> new StoreTxDemarcationExecutor().executePrepare(this, transaction)));
+    try {
+      withLock(getCommitLock(), runnableWrapper(() -> new StoreTxDemarcationExecutor().executePrepare(this, transaction)));
+    } catch (JacisStaleObjectException e) {
+      metrics.recordStaleObject();
+      throw e;
+    }
   }
 
   @Override
   protected void internalCommit(JacisTransactionHandle transaction) {
-    withWriteLock(runnableWrapper(() -> new StoreTxDemarcationExecutor().executeCommit(this, transaction)));
+    recordTxViewSize(transaction);
+    try {
+      withLock(getCommitLock(), runnableWrapper(() -> new StoreTxDemarcationExecutor().executeCommit(this, transaction)));
+    } catch (JacisStaleObjectException e) { // commit without prepare
+      metrics.recordStaleObject();
+      throw e;
+    }
   }
 
   @Override
   protected void internalRollback(JacisTransactionHandle transaction) {
-    withWriteLock(runnableWrapper(() -> new StoreTxDemarcationExecutor().executeRollback(this, transaction)));
+    recordTxViewSize(transaction);
+    withLock(getCommitLock(), runnableWrapper(() -> new StoreTxDemarcationExecutor().executeRollback(this, transaction)));
+  }
+
+  private void recordTxViewSize(JacisTransactionHandle transaction) {
+    if (metricsEnabled) {
+      JacisStoreTxView<K, TV, CV> txView = getTxView(transaction, false);
+      if (txView != null) {
+        metrics.recordTxViewSize(txView.getNumberOfEntries());
+      }
+    }
   }
 
   @Override
   protected void internalDestroy(JacisTransactionHandle transaction) {
-    withWriteLock(runnableWrapper(() -> new StoreTxDemarcationExecutor().executeDestroy(this, transaction)));
+    withLock(getCommitLock(), runnableWrapper(() -> new StoreTxDemarcationExecutor().executeDestroy(this, transaction)));
+  }
+
+  @Override
+  protected Lock getCommitLock() { // with entry level locking commits only share the store lock (the entries are locked individually)
+    return entryLevelCommitLocking ? storeAccessLock.readLock() : storeAccessLock.writeLock();
+  }
+
+  @Override
+  protected Lock getAtomicOperationLock() { // with entry level locking atomic operations exclusively lock the store to prevent interleaving commits
+    return entryLevelCommitLocking ? storeAccessLock.writeLock() : storeAccessLock.readLock();
+  }
+
+  boolean isEntryLevelCommitLocking() {
+    return entryLevelCommitLocking;
   }
 
   //======================================================================================
@@ -502,8 +694,57 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
       return entryTxView.getValue();
     } else {
       StoreEntry<K, TV, CV> committedEntry = getCommittedEntry(key);
-      return committedEntry == null ? null : objectAdapter.cloneCommitted2ReadOnlyTxView(committedEntry.getValue());
+      return committedEntry == null ? null : objectAdapter.cloneCommitted2ReadOnlyTxView(committedValue(committedEntry, txView));
+    }
+  }
+
+  List<K> getKeysReadOnly(Predicate<TV> filter) { // the keys of the values visible for the current transaction matching the filter (scanning the store)
+    JacisStoreTxView<K, TV, CV> txView = getTxView();
+    return committedEntryStream(false).filter(e -> {
+      TV value = getReadOnly(e, txView);
+      return value != null && filter.test(value);
+    }).map(StoreEntry::getKey).collect(Collectors.toList());
+  }
+
+  private CV committedValue(StoreEntry<K, TV, CV> committedEntry, JacisStoreTxView<K, TV, CV> txView) { // the committed value visible for the transaction
+    return txView == null || !snapshotIsolation ? committedEntry.getValue() : txView.getCommittedSnapshot(committedEntry).value;
+  }
+
+  void forEachCommittedValue(BiConsumer<K, TV> consumer) { // iterate the committed values (the caller has to prevent concurrent commits)
+    for (StoreEntry<K, TV, CV> committedEntry : store.values()) {
+      if (committedEntry.isNotNull()) {
+        consumer.accept(committedEntry.getKey(), objectAdapter.cloneCommitted2ReadOnlyTxView(committedEntry.getValue()));
+      }
+    }
+  }
+
+  private TV getReadOnly(StoreEntry<K, TV, CV> committedEntry, JacisStoreTxView<K, TV, CV> txView) { // avoids the lookup of the committed entry
+    StoreEntryTxView<K, TV, CV> entryTxView = txView == null || txView.getNumberOfEntries() == 0 ? null : txView.getEntryTxView(committedEntry.getKey());
+    if (entryTxView != null) {
+      return entryTxView.getValue();
+    }
+    return objectAdapter.cloneCommitted2ReadOnlyTxView(committedValue(committedEntry, txView));
+  }
+
+  @SuppressWarnings("unchecked")
+  private <P> P projectReadOnly(StoreEntry<K, TV, CV> committedEntry, JacisStoreTxView<K, TV, CV> txView, Predicate<TV> filter, Function<TV, P> projection) {
+    StoreEntryTxView<K, TV, CV> entryTxView = txView == null || txView.getNumberOfEntries() == 0 ? null : txView.getEntryTxView(committedEntry.getKey());
+    CV committedValue = entryTxView == null ? committedValue(committedEntry, txView) : null;
+    TV value = entryTxView != null ? entryTxView.getValue() : objectAdapter.accessCommittedUncloned(committedValue);
+    if (value == null || (filter != null && !filter.test(value))) {
+      return null;
+    }
+    P res = projection.apply(value);
+    if (entryTxView != null) { // the projection returned the object of the transactional view itself -> return a read only view
+      return res == value ? (P) objectAdapter.cloneTxView2ReadOnlyTxView(value) : res;
+    } else if (value != committedValue || isImmutableValue(res)) { // the projection can not refer the committed object
+      return res;
     }
+    return projection.apply(objectAdapter.cloneCommitted2ReadOnlyTxView(committedValue)); // the result may refer (mutable) parts of the committed object -> project a read only copy
+  }
+
+  private static boolean isImmutableValue(Object value) {
+    return value == null || value instanceof Enum || IMMUTABLE_VALUE_TYPES.contains(value.getClass());
   }
 
   public TV get(K key, JacisStoreTxView<K, TV, CV> txView) {
@@ -516,8 +757,22 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
 
   private StoreEntryTxView<K, TV, CV> getOrCreateEntryTxView(JacisStoreTxView<K, TV, CV> txView, K key) {
     StoreEntryTxView<K, TV, CV> entryTxView = txView.getEntryTxView(key);
-    if (entryTxView == null) {
-      entryTxView = withReadLock(() -> txView.createTxViewEntry(getOrCreateCommittedEntry(key)));
+    if (entryTxView == null && snapshotIsolation) { // the view reads as of its snapshot -> commits can not interfere
+      entryTxView = txView.createTxViewEntry(getOrCreateReferencedCommittedEntry(key, txView));
+    } else if (entryTxView == null) {
+      long stamp = optimisticLock == null ? 0 : optimisticLock.getStampedLock().tryOptimisticRead();
+      if (stamp == 0) {
+        entryTxView = withReadLock(() -> txView.createTxViewEntry(getOrCreateReferencedCommittedEntry(key, txView)));
+      } else {
+        StoreEntry<K, TV, CV> committedEntry = getOrCreateReferencedCommittedEntry(key, txView);
+        StoreEntryTxView<K, TV, CV> newEntryTxView = txView.newTxViewEntry(committedEntry); // not yet visible in the transactional view
+        if (optimisticLock.getStampedLock().validate(stamp)) {
+          entryTxView = txView.addTxViewEntry(newEntryTxView);
+        } else { // a writer interleaved (e.g. a commit or clearing the store) -> discard the copy and create the view holding the lock
+          releaseCommittedEntry(committedEntry);
+          entryTxView = withReadLock(() -> txView.createTxViewEntry(getOrCreateReferencedCommittedEntry(key, txView)));
+        }
+      }
     }
     return entryTxView;
   }
@@ -544,34 +799,76 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
     return committedEntry;
   }
 
-  void checkRemoveCommittedEntry(StoreEntry<K, TV, CV> entryCommitted, JacisStoreTxView<K, TV, CV> currTxView) {
-    if (entryCommitted.getValue() != null || entryCommitted.isLocked()) {
-      return; // cannot remove
+  private StoreEntry<K, TV, CV> getOrCreateReferencedCommittedEntry(K key, JacisStoreTxView<K, TV, CV> txView) {
+    while (true) {
+      StoreEntry<K, TV, CV> committedEntry = getOrCreateCommittedEntry(key);
+      if (txView.isReadOnly() || committedEntry.reference()) { // (writable) transactional views keep a reference to the committed entry
+        return committedEntry;
+      }
+      Thread.yield(); // entry concurrently removed (the removing thread has not yet removed it from the map)
     }
-    K key = entryCommitted.getKey();
-    Collection<JacisStoreTxView<K, TV, CV>> txs;
-    synchronized (txViewMap) {
-      txs = new ArrayList<>(txViewMap.values());
+  }
+
+  void releaseCommittedEntry(StoreEntry<K, TV, CV> entryCommitted) { // called if a transactional view no longer refers the entry
+    if (entryCommitted.release() == 0) {
+      removeIfObsolete(entryCommitted);
     }
-    for (JacisStoreTxView<K, TV, CV> txCtx : txs) {
-      if (txCtx.isReadOnly()) {
-        continue;
-      } else if (currTxView.getTransaction().equals(txCtx.getTransaction())) {
-        continue; // the current transaction referring a core entry can be ignored
-      }
-      if (txCtx.containsTxView(key)) {
-        return; // still referred by transaction
+  }
+
+  private void removeIfObsolete(StoreEntry<K, TV, CV> entryCommitted) {
+    if (entryCommitted.isNull() && !entryCommitted.hasOlderVersions() && !entryCommitted.isLocked() && entryCommitted.tryMarkRemoved()) {
+      store.remove(entryCommitted.getKey(), entryCommitted); // null, not referred by any TX and not visible for any snapshot -> can be removed
+    }
+  }
+
+  void registerOlderVersions(StoreEntry<K, TV, CV> entryCommitted) { // called on commit if the entry keeps older versions for active snapshots
+    entriesWithOlderVersions.add(entryCommitted);
+  }
+
+  /**
+   * Reclaim the older versions of the committed entries no longer visible for any active snapshot (only in snapshot isolation mode).
+   * Called by the container after a transaction on this store is finished (the oldest active snapshot may have changed).
+   * Deleted entries are removed from the store if they are no longer visible for any active snapshot.
+   */
+  public void reclaimVersions() {
+    long oldestSnapshot = container.getOldestActiveSnapshotSequence();
+    if (oldestSnapshot == lastReclaimedSnapshot || entriesWithOlderVersions.isEmpty()) {
+      return;
+    }
+    lastReclaimedSnapshot = oldestSnapshot;
+    for (Iterator<StoreEntry<K, TV, CV>> it = entriesWithOlderVersions.iterator(); it.hasNext();) {
+      StoreEntry<K, TV, CV> entryCommitted = it.next();
+      if (entryCommitted.trimVersions(oldestSnapshot)) {
+        it.remove();
+        if (entryCommitted.hasOlderVersions()) { // committed again meanwhile (possibly registered before it has been removed)
+          entriesWithOlderVersions.add(entryCommitted);
+        } else {
+          removeIfObsolete(entryCommitted);
+        }
       }
     }
-    store.remove(key);
+  }
+
+  /** @return The number of committed entries keeping older versions for active snapshots (only in snapshot isolation mode). */
+  public int getNumberOfEntriesWithOlderVersions() {
+    return entriesWithOlderVersions.size();
   }
 
   //======================================================================================
   // synchronized execution
   //======================================================================================
 
+  private <R> R withLock(Lock lock, Supplier<R> task) {
+    lock(lock);
+    try {
+      return task.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
   private <R> R withWriteLock(Supplier<R> task) {
-    storeAccessLock.writeLock().lock(); // <======= **WRITE** LOCK =====
+    lock(storeAccessLock.writeLock()); // <======= **WRITE** LOCK =====
     try {
       return task.get();
     } finally {
@@ -580,7 +877,7 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
   }
 
   private <R> R withReadLock(Supplier<R> task) {
-    storeAccessLock.readLock().lock(); // <======= **READ** LOCK =====
+    lock(storeAccessLock.readLock()); // <======= **READ** LOCK =====
     try {
       return task.get();
     } finally {
@@ -588,6 +885,16 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
     }
   }
 
+  private void lock(Lock lock) {
+    if (metricsEnabled) {
+      long startNanos = System.nanoTime();
+      lock.lock();
+      metrics.recordStoreLockWait(System.nanoTime() - startNanos);
+    } else {
+      lock.lock();
+    }
+  }
+
   private Supplier<Object> runnableWrapper(Runnable r) {
     return () -> {
       r.run();
@@ -600,6 +907,9 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
   //======================================================================================
 
   JacisStoreTxView<K, TV, CV> getTxView() {
+    if (snapshotIsolation) { // the view (and its snapshot) is already created on the first read access of a transaction
+      return getTxView(container.getCurrentTransaction(false), true);
+    }
     return getTxView(false);
   }
 
@@ -612,22 +922,29 @@ public class JacisStoreImpl<K, TV, CV> extends JacisContainer.JacisStoreTransact
     return getTxView(transaction, createIfAbsent);
   }
 
+  @SuppressWarnings("unchecked")
   JacisStoreTxView<K, TV, CV> getTxView(JacisTransactionHandle transaction, boolean createIfAbsent) {
-    JacisStoreTxView<K, TV, CV> txView = txViewMap.get(transaction);
+    if (transaction == null) {
+      return null;
+    }
+    JacisStoreTxView<K, TV, CV> txView = (JacisStoreTxView<K, TV, CV>) getTxViewAttachedTo(transaction);
     if (txView == null && createIfAbsent) {
       txView = new JacisStoreTxView<>(this, transaction);
-      txViewMap.put(transaction, txView);
+      attachTxView(transaction, txView);
+      txViewRegistry.register(txView);
     }
     return txView;
   }
 
   private void setTransactionContext(JacisStoreTxView<K, TV, CV> newTxContext) {
     JacisTransactionHandle transaction = container.getCurrentTransaction(true);
-    txViewMap.put(transaction, newTxContext);
+    attachTxView(transaction, newTxContext);
+    txViewRegistry.register(newTxContext);
   }
 
   void notifyTxViewDestroyed(JacisStoreTxView<K, TV, CV> txView) {
-    txViewMap.remove(txView.getTransaction());
+    detachTxView(txView.getTransaction(), txView);
+    txViewRegistry.deregister(txView);
   }
 
   //======================================================================================
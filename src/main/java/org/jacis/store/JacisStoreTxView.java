@@ -12,6 +12,7 @@ import java.util.function.Supplier;
 
 import org.jacis.container.JacisTransactionHandle;
 import org.jacis.trackedviews.TrackedView;
+import org.jacis.trackedviews.TrackedViewBase;
 
 /**
  * Representing the transactional view on the store entries for one transaction.
@@ -29,6 +30,8 @@ class JacisStoreTxView<K, TV, CV> implements JacisReadOnlyTransactionContext {
   private final JacisTransactionHandle tx;
   /** the creation timestamp in system milliseconds (timestamp usually set at first access returning a TX view) */
   private final long creationTimestamp;
+  /** the commit sequence number of the snapshot this view reads (-1 if the store is not in snapshot isolation mode) */
+  private final long snapshotSequence;
   /** the entries with an own view in this TX */
   private final Map<K, StoreEntryTxView<K, TV, CV>> storeTxView;
   /** the name of the TX if this is a read only snapshot (null <-> writable) */
@@ -55,6 +58,7 @@ class JacisStoreTxView<K, TV, CV> implements JacisReadOnlyTransactionContext {
     this.tx = transaction;
     this.readOnlyTxId = null;
     this.creationTimestamp = System.currentTimeMillis();
+    this.snapshotSequence = store.getObjectTypeSpec().isSnapshotIsolation() ? store.getContainer().getSnapshotSequence(transaction) : -1;
     this.storeTxView = new HashMap<>();
     this.trackedViews = new HashMap<>();
   }
@@ -64,6 +68,7 @@ class JacisStoreTxView<K, TV, CV> implements JacisReadOnlyTransactionContext {
     this.tx = orig.tx;
     this.readOnlyTxId = readOnlyTxId;
     this.creationTimestamp = orig.creationTimestamp;
+    this.snapshotSequence = orig.snapshotSequence;
     Map<K, StoreEntryTxView<K, TV, CV>> origCache = orig.storeTxView;
     Map<K, StoreEntryTxView<K, TV, CV>> readOnlyCache = new HashMap<>(origCache.size());
     for (Entry<K, StoreEntryTxView<K, TV, CV>> mapEntry : origCache.entrySet()) {
@@ -95,6 +100,14 @@ class JacisStoreTxView<K, TV, CV> implements JacisReadOnlyTransactionContext {
     return creationTimestamp;
   }
 
+  long getSnapshotSequence() {
+    return snapshotSequence;
+  }
+
+  StoreEntry.Snapshot<CV> getCommittedSnapshot(StoreEntry<K, TV, CV> committedEntry) { // the committed version visible for this view
+    return snapshotSequence < 0 ? committedEntry.getSnapshot() : committedEntry.getSnapshot(snapshotSequence);
+  }
+
   boolean isReadOnly() {
     return readOnlyTxId != null;
   }
@@ -141,7 +154,14 @@ class JacisStoreTxView<K, TV, CV> implements JacisReadOnlyTransactionContext {
   }
 
   StoreEntryTxView<K, TV, CV> createTxViewEntry(StoreEntry<K, TV, CV> committedEntry) {
-    StoreEntryTxView<K, TV, CV> entry = new StoreEntryTxView<>(committedEntry, store.getObjectTypeSpec().isTrackOriginalValueEnabled());
+    return addTxViewEntry(newTxViewEntry(committedEntry));
+  }
+
+  StoreEntryTxView<K, TV, CV> newTxViewEntry(StoreEntry<K, TV, CV> committedEntry) { // the entry is not added to this view
+    return new StoreEntryTxView<>(committedEntry, getCommittedSnapshot(committedEntry), store.getObjectTypeSpec().isTrackOriginalValueEnabled());
+  }
+
+  StoreEntryTxView<K, TV, CV> addTxViewEntry(StoreEntryTxView<K, TV, CV> entry) {
     storeTxView.put(entry.getKey(), entry);
     numberOfEntries = storeTxView.size();
     return entry;
@@ -157,7 +177,7 @@ class JacisStoreTxView<K, TV, CV> implements JacisReadOnlyTransactionContext {
         numberOfUpdatedEntries--; // removed an updated element
       }
       TV oldOrigValue = entryTxView.getOrigValue();
-      entryTxView.refreshFromCommitted();
+      entryTxView.refreshFromCommitted(getCommittedSnapshot(entryTxView.getCommittedEntry())); // in snapshot isolation mode the version visible for the snapshot
       TV newValue = entryTxView.getValue();
       for (TrackedViewTransactionLocal<K, TV> trackedView : trackedViews.values()) {
         trackedView.trackModification(oldOrigValue, newValue, entryTxView);
@@ -191,6 +211,11 @@ class JacisStoreTxView<K, TV, CV> implements JacisReadOnlyTransactionContext {
   }
 
   void destroy() {
+    if (!isReadOnly()) {
+      for (StoreEntryTxView<K, TV, CV> entryTxView : storeTxView.values()) {
+        store.releaseCommittedEntry(entryTxView.getCommittedEntry());
+      }
+    }
     storeTxView.clear();
     if (!isReadOnly()) {
       store.notifyTxViewDestroyed(this);
@@ -210,7 +235,7 @@ class JacisStoreTxView<K, TV, CV> implements JacisReadOnlyTransactionContext {
   }
 
   @SuppressWarnings("unchecked")
-  private <VT extends TrackedView<TV>> VT internalGetTrackedView(String internalViewKey, Supplier<VT> initialViewSupplier) {
+  private <VT extends TrackedViewBase<TV>> VT internalGetTrackedView(String internalViewKey, Supplier<VT> initialViewSupplier) {
     if (!this.trackedViews.containsKey(internalViewKey)) {
       VT view = initialViewSupplier.get();
       TrackedViewTransactionLocal<K, TV> local = new TrackedViewTransactionLocal<>(view);
@@ -223,7 +248,7 @@ class JacisStoreTxView<K, TV, CV> implements JacisReadOnlyTransactionContext {
     return (VT) this.trackedViews.get(internalViewKey).getTrackedView();
   }
 
-  <VT extends TrackedView<TV>> VT getTrackedView(String viewName, Supplier<VT> initialViewSupplier) {
+  <VT extends TrackedViewBase<TV>> VT getTrackedView(String viewName, Supplier<VT> initialViewSupplier) {
     return internalGetTrackedView("V:" + viewName, initialViewSupplier);
   }
 
@@ -52,6 +52,15 @@ public class JacisTransactionInfo implements Serializable {
     this.snapshotTimestampMs = snapshotTimestampMs;
   }
 
+  JacisTransactionInfo(String txId, String txDescription, Object externalTransaction, List<StoreTxInfo> storeTxInfos, long creationTimestampMs, long snapshotTimestampMs) { // from a recorded TX
+    this.txId = txId;
+    this.txDescription = txDescription;
+    this.externalTransaction = externalTransaction;
+    this.storeTxInfos = storeTxInfos;
+    this.creationTimestampMs = creationTimestampMs;
+    this.snapshotTimestampMs = snapshotTimestampMs;
+  }
+
   /** @return The id of the transaction*/
   public String getTxId() {
     return txId;
@@ -139,6 +148,16 @@ public class JacisTransactionInfo implements Serializable {
       invalidationReason = txView.getInvalidationReason();
     }
 
+    StoreTxInfo(StoreIdentifier storeIdentifier, int numberOfTxViewEntries, int numberOfUpdatedTxViewEntries, boolean commitPending, boolean committed, boolean rolledBack, String invalidationReason) { // from a recorded TX
+      this.storeIdentifier = storeIdentifier;
+      this.numberOfTxViewEntries = numberOfTxViewEntries;
+      this.numberOfUpdatedTxViewEntries = numberOfUpdatedTxViewEntries;
+      this.commitPending = commitPending;
+      this.committed = committed;
+      this.rolledBack = rolledBack;
+      this.invalidationReason = invalidationReason;
+    }
+
     public boolean isCommitPending() {
       return commitPending;
     }
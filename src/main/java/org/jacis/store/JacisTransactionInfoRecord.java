@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.jacis.container.JacisContainer.StoreIdentifier;
+import org.jacis.container.JacisTransactionHandle;
+
+/**
+ * = Reusable record of the state of a finished transaction.
+ *
+ * On each commit / rollback the container copies the data needed for the monitoring information of the transaction
+ * (the transaction id, the description, the timestamps and for each enlisted store the counters and flags of the transactional view)
+ * into a (per thread) reused instance of this class. The per store values are kept in reused arrays.
+ * The {@link JacisTransactionInfo} object is only created from this record
+ * if it is actually requested (see {@link org.jacis.container.JacisContainer#getLastFinishedTransactionInfo()}).
+ * This keeps the allocations for the monitoring information out of the commit path.
+ * The record keeps no references to the transaction handle or the (destroyed) transactional views.
+ * Instances of this class are not thread safe, they are intended to be used by one thread only.
+ *
+ * @author Jan Wiemer
+ */
+public class JacisTransactionInfoRecord {
+
+  /** The id of the recorded transaction (null if nothing is recorded) */
+  private String txId;
+  /** The description of the recorded transaction (if already computed) */
+  private String txDescription;
+  /** The supplier computing the description of the recorded transaction (if the description is not yet computed) */
+  private Supplier<String> txDescriptionSupplier;
+  /** A reference to the external (global) transaction of the recorded transaction */
+  private Object externalTransaction;
+  /** Creation timestamp of the recorded transaction in milliseconds (System.currentTimeMillis()) */
+  private long creationTimestampMs;
+  /** Snapshot timestamp of the recorded transaction in milliseconds (System.currentTimeMillis()) */
+  private long snapshotTimestampMs;
+  /** The number of recorded stores (only the first entries of the following reused arrays are valid) */
+  private int numberOfStores;
+  /** The identifiers of the stores enlisted in the recorded transaction */
+  private StoreIdentifier[] storeIdentifiers = new StoreIdentifier[8];
+  /** The number of entries of the transactional views of the stores (same order) */
+  private int[] numberOfTxViewEntries = new int[8];
+  /** The number of updated entries of the transactional views of the stores (same order) */
+  private int[] numberOfUpdatedTxViewEntries = new int[8];
+  /** The flags (see the FLAG_* constants) of the transactional views of the stores (same order) */
+  private int[] flags = new int[8];
+  /** The invalidation reasons of the transactional views of the stores (same order, null means valid) */
+  private String[] invalidationReasons = new String[8];
+  /** The transaction info created from this record (created on demand) */
+  private JacisTransactionInfo txInfo;
+
+  private static final int FLAG_COMMIT_PENDING = 1;
+  private static final int FLAG_COMMITTED = 2;
+  private static final int FLAG_ROLLED_BACK = 4;
+
+  /**
+   * Record the state of the passed transaction for the passed stores.
+   * Has to be called before the transactional views of the stores are destroyed.
+   *
+   * @param transaction The handle of the finished transaction
+   * @param enlistedStores The stores enlisted in the transaction
+   */
+  public void record(JacisTransactionHandle transaction, List<JacisStore<?, ?>> enlistedStores) {
+    clear();
+    int n = enlistedStores.size();
+    if (storeIdentifiers.length < n) {
+      int capacity = Math.max(n, 2 * storeIdentifiers.length);
+      storeIdentifiers = new StoreIdentifier[capacity];
+      numberOfTxViewEntries = new int[capacity];
+      numberOfUpdatedTxViewEntries = new int[capacity];
+      flags = new int[capacity];
+      invalidationReasons = new String[capacity];
+    }
+    for (JacisStore<?, ?> store : enlistedStores) {
+      JacisStoreImpl<?, ?, ?> storeImpl = (JacisStoreImpl<?, ?, ?>) store;
+      JacisStoreTxView<?, ?, ?> txView = storeImpl.getTxView(transaction, false);
+      if (txView != null) {
+        int i = numberOfStores++;
+        storeIdentifiers[i] = storeImpl.getStoreIdentifier();
+        numberOfTxViewEntries[i] = txView.getNumberOfEntries();
+        numberOfUpdatedTxViewEntries[i] = txView.getNumberOfUpdatedEntries();
+        flags[i] = (txView.isCommitPending() ? FLAG_COMMIT_PENDING : 0) | (txView.isCommitted() ? FLAG_COMMITTED : 0) | (txView.isRolledBack() ? FLAG_ROLLED_BACK : 0);
+        invalidationReasons[i] = txView.getInvalidationReason();
+      }
+    }
+    txDescriptionSupplier = transaction.getTxDescriptionSupplier(); // the description is only computed if the info is requested
+    txDescription = txDescriptionSupplier == null ? transaction.getTxDescription() : null;
+    txId = transaction.getTxId();
+    externalTransaction = transaction.getExternalTransaction();
+    creationTimestampMs = transaction.getCreationTimestampMs();
+    snapshotTimestampMs = System.currentTimeMillis();
+  }
+
+  /** Clear the record. */
+  public void clear() {
+    for (int i = 0; i < numberOfStores; i++) {
+      storeIdentifiers[i] = null;
+      invalidationReasons[i] = null;
+    }
+    numberOfStores = 0;
+    txId = null;
+    txDescription = null;
+    txDescriptionSupplier = null;
+    externalTransaction = null;
+    txInfo = null;
+  }
+
+  /** @return if a transaction is recorded. */
+  public boolean isEmpty() {
+    return txId == null;
+  }
+
+  /** @return The id of the recorded transaction (null if nothing is recorded). */
+  public String getTxId() {
+    return txId;
+  }
+
+  /** @return The transaction info for the recorded transaction (null if nothing is recorded). */
+  public JacisTransactionInfo getTransactionInfo() {
+    if (txInfo == null && txId != null) {
+      if (txDescriptionSupplier != null) {
+        txDescription = txDescriptionSupplier.get();
+        txDescriptionSupplier = null;
+      }
+      List<JacisTransactionInfo.StoreTxInfo> storeTxInfos = new ArrayList<>(numberOfStores);
+      for (int i = 0; i < numberOfStores; i++) {
+        storeTxInfos.add(new JacisTransactionInfo.StoreTxInfo(storeIdentifiers[i], numberOfTxViewEntries[i], numberOfUpdatedTxViewEntries[i], //
+            (flags[i] & FLAG_COMMIT_PENDING) != 0, (flags[i] & FLAG_COMMITTED) != 0, (flags[i] & FLAG_ROLLED_BACK) != 0, invalidationReasons[i]));
+      }
+      txInfo = new JacisTransactionInfo(txId, txDescription, externalTransaction, storeTxInfos, creationTimestampMs, snapshotTimestampMs);
+    }
+    return txInfo;
+  }
+
+}
@@ -4,6 +4,9 @@
 
 package org.jacis.store;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 /**
  * Representing a committed version of an entry in the store.
  *
@@ -14,61 +17,148 @@ package org.jacis.store;
  */
 class StoreEntry<K, TV, CV> {
 
+  /** updater to atomically set the transaction this entry is locked for */
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<StoreEntry, JacisStoreTxView> LOCKED_FOR_UPDATER = AtomicReferenceFieldUpdater.newUpdater(StoreEntry.class, JacisStoreTxView.class, "lockedFor");
+  /** updater to atomically replace the committed snapshot of this entry */
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<StoreEntry, Snapshot> SNAPSHOT_UPDATER = AtomicReferenceFieldUpdater.newUpdater(StoreEntry.class, Snapshot.class, "snapshot");
+  /** updater to atomically detach the older versions of a snapshot (only in snapshot isolation mode) */
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<Snapshot, Snapshot> PREVIOUS_UPDATER = AtomicReferenceFieldUpdater.newUpdater(Snapshot.class, Snapshot.class, "previous");
+  /** updater to atomically maintain the number of transactional views referring this entry */
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<StoreEntry> REF_COUNT_UPDATER = AtomicIntegerFieldUpdater.newUpdater(StoreEntry.class, "refCount");
+  /** reference count marking an entry removed from the store (it must not be referred any more) */
+  private static final int REMOVED = -1;
+  /** snapshot of an entry that has never been committed */
+  @SuppressWarnings("rawtypes")
+  private static final Snapshot INITIAL_SNAPSHOT = new Snapshot<>(null, 0, null, 0, null);
+
   /** reference to the main store */
   private final JacisStoreAdminInterface<K, TV, CV> store;
   /** the key of this entry */
   private final K key;
-  /** the current committed valued of this entry (visible to all transactions) (null if not existing / deleted) */
-  private CV value = null;
-  /** version counter will be increased when an updated view of the entry is committed (used for optimistic locking) */
-  private long version = 0;
-  /** id of the transaction that has committed the current version (for logging / debugging only) */
-  private String updatedBy = null;
+  /** the current committed snapshot (value, version and updating TX) of this entry (replaced as a whole on each commit, in snapshot isolation mode linked to the older versions) */
+  private volatile Snapshot<CV> snapshot;
   /** transaction this object is locked for (in the time between prepare and internalCommit) */
-  private JacisStoreTxView<K, TV, CV> lockedFor = null;
+  private volatile JacisStoreTxView<K, TV, CV> lockedFor = null;
+  /** number of (writable) transactional views referring this entry (-1 if the entry has been removed from the store) */
+  private volatile int refCount = 0;
 
+  @SuppressWarnings("unchecked")
   StoreEntry(JacisStoreAdminInterface<K, TV, CV> store, K key) {
     this.store = store;
     this.key = key;
+    this.snapshot = INITIAL_SNAPSHOT;
   }
 
   StoreEntry(JacisStoreAdminInterface<K, TV, CV> store, K key, TV value) { // only for the initial value
     this.store = store;
     this.key = key;
-    this.value = store.getObjectAdapter().cloneTxView2Committed(value);
+    this.snapshot = new Snapshot<>(store.getObjectAdapter().cloneTxView2Committed(value), 0, null, 0, null);
   }
 
-  @SuppressWarnings("ObjectEquality")
-  synchronized public void update(StoreEntryTxView<K, TV, CV> entryTxView, JacisStoreTxView<K, TV, CV> byTx) {
+  @SuppressWarnings({"ObjectEquality", "unchecked"})
+  public void update(StoreEntryTxView<K, TV, CV> entryTxView, JacisStoreTxView<K, TV, CV> byTx, long commitSequence) { // commit sequence 0: no older versions are kept
     TV txVal = entryTxView.getValue();
+    Snapshot<CV> current = snapshot;
+    CV newValue;
     if (txVal == null) { // deleted
-      value = null;
-    } else if (txVal != value) { // intentionally checked if both instances are different (and not used equals!)
-      value = store.getObjectAdapter().cloneTxView2Committed(txVal);
+      newValue = null;
+    } else if (txVal != current.value) { // intentionally checked if both instances are different (and not used equals!)
+      newValue = store.getObjectAdapter().cloneTxView2Committed(txVal);
+    } else {
+      newValue = current.value;
+    }
+    // the entry is locked for the updating TX, so usually the first CAS succeeds (the loop only guards against misuse)
+    while (!SNAPSHOT_UPDATER.compareAndSet(this, current, new Snapshot<>(newValue, current.version + 1, byTx.getTxId(), commitSequence, commitSequence > 0 ? current : null))) {
+      current = snapshot;
+    }
+    if (commitSequence == 0 && current.value != null && current.value != newValue) { // no older versions are kept -> the replaced version is no longer referred
+      store.getObjectAdapter().releaseCommitted(current.value, newValue);
     }
-    version++;
-    updatedBy = byTx.getTxId();
   }
 
-  synchronized void lockedFor(JacisStoreTxView<K, TV, CV> lockingTx) {
-    lockedFor = lockingTx;
+  boolean trimVersions(long oldestSnapshot) { // drop the versions not visible for any active snapshot, returns if no older versions are left
+    Snapshot<CV> s = snapshot;
+    while (s != null && s.commitSequence > oldestSnapshot) {
+      s = s.previous;
+    }
+    if (s != null) { // s is the version visible for the oldest snapshot -> all older versions are obsolete
+      releaseOlderVersions(s);
+    }
+    return snapshot.previous == null;
+  }
+
+  @SuppressWarnings("unchecked")
+  void releaseAllVersions() { // called when the store is cleared
+    Snapshot<CV> s = SNAPSHOT_UPDATER.getAndSet(this, INITIAL_SNAPSHOT);
+    releaseOlderVersions(s);
+    if (s.value != null) {
+      store.getObjectAdapter().releaseCommitted(s.value, null);
+    }
   }
 
-  synchronized void releaseLockedFor(JacisStoreTxView<K, TV, CV> releasingTx) {
-    if (releasingTx.equals(getLockedFor())) {
-      lockedFor = null;
+  @SuppressWarnings("unchecked")
+  private void releaseOlderVersions(Snapshot<CV> s) { // each link is detached atomically -> threads trimming concurrently never release a version twice
+    for (Snapshot<CV> older = PREVIOUS_UPDATER.getAndSet(s, null); older != null; s = older, older = PREVIOUS_UPDATER.getAndSet(s, null)) {
+      if (older.value != null && older.value != s.value) { // (subsequent versions may share the same value)
+        store.getObjectAdapter().releaseCommitted(older.value, s.value);
+      }
     }
   }
 
-  synchronized boolean isLocked() {
+  boolean hasOlderVersions() {
+    return snapshot.previous != null;
+  }
+
+  void lockedFor(JacisStoreTxView<K, TV, CV> lockingTx) {
+    lockedFor = lockingTx;
+  }
+
+  boolean tryLockFor(JacisStoreTxView<K, TV, CV> lockingTx) { // lock the entry if it is not locked by another TX
+    return LOCKED_FOR_UPDATER.compareAndSet(this, null, lockingTx) || lockedFor == lockingTx;
+  }
+
+  void releaseLockedFor(JacisStoreTxView<K, TV, CV> releasingTx) {
+    LOCKED_FOR_UPDATER.compareAndSet(this, releasingTx, null);
+  }
+
+  boolean isLocked() {
     return lockedFor != null;
   }
 
-  synchronized boolean isLockedForOtherThan(JacisStoreTxView<K, TV, CV> txView) {
+  boolean isLockedForOtherThan(JacisStoreTxView<K, TV, CV> txView) {
     JacisStoreTxView<K, TV, CV> lf = lockedFor;
     return lf != null && !lf.equals(txView);
   }
 
+  boolean reference() { // returns false if the entry has already been removed from the store
+    int count;
+    do {
+      count = refCount;
+      if (count == REMOVED) {
+        return false;
+      }
+    } while (!REF_COUNT_UPDATER.compareAndSet(this, count, count + 1));
+    return true;
+  }
+
+  int release() {
+    return REF_COUNT_UPDATER.decrementAndGet(this);
+  }
+
+  boolean tryMarkRemoved() { // only possible if the entry is null and not referred by any transaction
+    if (!REF_COUNT_UPDATER.compareAndSet(this, 0, REMOVED)) {
+      return false;
+    } else if (isNotNull() || isLocked()) { // committed meanwhile by a TX that referenced and released the entry again
+      refCount = 0;
+      return false;
+    }
+    return true;
+  }
+
   JacisStoreAdminInterface<K, TV, CV> getStore() {
     return store;
   }
@@ -77,27 +167,43 @@ class StoreEntry<K, TV, CV> {
     return key;
   }
 
-  synchronized CV getValue() {
-    return value;
+  Snapshot<CV> getSnapshot() { // value and version of the returned snapshot are always consistent
+    return snapshot;
   }
 
-  synchronized boolean isNull() {
-    return value == null;
+  Snapshot<CV> getSnapshot(long snapshotSequence) { // the version visible for the passed snapshot (the latest committed up to its commit sequence)
+    Snapshot<CV> s = snapshot;
+    while (s.commitSequence > snapshotSequence) {
+      Snapshot<CV> previous = s.previous;
+      if (previous == null) { // already reclaimed (only possible for read only views used after the end of their transaction) -> oldest kept version
+        break;
+      }
+      s = previous;
+    }
+    return s;
+  }
+
+  CV getValue() {
+    return snapshot.value;
+  }
+
+  boolean isNull() {
+    return snapshot.value == null;
   }
 
-  synchronized boolean isNotNull() {
-    return value != null;
+  boolean isNotNull() {
+    return snapshot.value != null;
   }
 
-  synchronized long getVersion() {
-    return version;
+  long getVersion() {
+    return snapshot.version;
   }
 
-  synchronized String getUpdatedByTxId() {
-    return updatedBy;
+  String getUpdatedByTxId() {
+    return snapshot.updatedBy;
   }
 
-  synchronized JacisStoreTxView<K, TV, CV> getLockedFor() {
+  JacisStoreTxView<K, TV, CV> getLockedFor() {
     return lockedFor;
   }
 
@@ -120,9 +226,10 @@ class StoreEntry<K, TV, CV> {
   }
 
   @Override
-  synchronized public String toString() {
+  public String toString() {
+    Snapshot<CV> s = snapshot;
     StringBuilder b = new StringBuilder();
-    b.append(key).append("->").append(value).append(" (v.").append(version).append(")");
+    b.append(key).append("->").append(s.value).append(" (v.").append(s.version).append(")");
     JacisStoreTxView<K, TV, CV> lf = lockedFor;
     if (lf != null) {
       b.append("lockedFor:").append(lf);
@@ -130,4 +237,32 @@ class StoreEntry<K, TV, CV> {
     return b.toString();
   }
 
+  /**
+   * Immutable snapshot of the committed state of an entry.
+   * The snapshot is replaced as a whole on each commit, therefore readers always see a value together with the matching version.
+   * For stores in snapshot isolation mode the snapshot refers to the previous version (the only mutable field, cleared when the older versions are reclaimed).
+   *
+   * @param <CV> Type of the objects as they are stored in the internal map of committed values.
+   */
+  static final class Snapshot<CV> {
+    /** the committed valued (visible to all transactions) (null if not existing / deleted) */
+    final CV value;
+    /** version counter will be increased when an updated view of the entry is committed (used for optimistic locking) */
+    final long version;
+    /** id of the transaction that has committed this version (for logging / debugging only) */
+    final String updatedBy;
+    /** the commit sequence number of the container the version has been committed with (0 if not in snapshot isolation mode) */
+    final long commitSequence;
+    /** the previous version (only kept in snapshot isolation mode as long as it is visible for an active snapshot) */
+    volatile Snapshot<CV> previous;
+
+    Snapshot(CV value, long version, String updatedBy, long commitSequence, Snapshot<CV> previous) {
+      this.value = value;
+      this.version = version;
+      this.updatedBy = updatedBy;
+      this.commitSequence = commitSequence;
+      this.previous = previous;
+    }
+  }
+
 }
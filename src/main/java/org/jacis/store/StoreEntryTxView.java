@@ -28,13 +28,14 @@ class StoreEntryTxView<K, TV, CV> {
   /** flag indicating if entry was updated in the current transaction (initially false) */
   private boolean updated = false;
 
-  StoreEntryTxView(StoreEntry<K, TV, CV> committedEntry, boolean trackOriginal) {
+  StoreEntryTxView(StoreEntry<K, TV, CV> committedEntry, StoreEntry.Snapshot<CV> committedSnapshot, boolean trackOriginal) { // value and version of the snapshot are consistent (the entry may be committed concurrently)
     this.committedEntry = committedEntry;
     JacisObjectAdapter<TV, CV> ca = committedEntry.getStore().getObjectAdapter();
-    this.txValue = ca.cloneCommitted2WritableTxView(committedEntry.getValue());
-    this.origVersion = committedEntry.getVersion();
+    CV committedValue = committedSnapshot.value;
+    this.origVersion = committedSnapshot.version;
+    this.txValue = ca.cloneCommitted2WritableTxView(committedValue);
     if (trackOriginal) {
-      origValue = ca.cloneCommitted2WritableTxView(committedEntry.getValue());
+      origValue = ca.cloneCommitted2WritableTxView(committedValue);
     } else {
       origValue = null;
     }
@@ -53,12 +54,13 @@ class StoreEntryTxView<K, TV, CV> {
     this.updated = true;
   }
 
-  void refreshFromCommitted() {
+  void refreshFromCommitted(StoreEntry.Snapshot<CV> committedSnapshot) { // value and version of the snapshot are consistent (the entry may be committed concurrently)
     JacisObjectAdapter<TV, CV> ca = committedEntry.getStore().getObjectAdapter();
-    this.txValue = ca.cloneCommitted2WritableTxView(committedEntry.getValue());
-    this.origVersion = committedEntry.getVersion();
+    CV committedValue = committedSnapshot.value;
+    this.origVersion = committedSnapshot.version;
+    this.txValue = ca.cloneCommitted2WritableTxView(committedValue);
     if (origValue != null) {
-      origValue = ca.cloneCommitted2WritableTxView(committedEntry.getValue());
+      origValue = ca.cloneCommitted2WritableTxView(committedValue);
     } else {
       origValue = null;
     }
@@ -4,9 +4,15 @@
 
 package org.jacis.store;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
 import org.jacis.container.JacisTransactionHandle;
 import org.jacis.exception.JacisModificationListenerException;
 import org.jacis.exception.JacisTrackedViewModificationException;
+import org.jacis.plugin.JacisBatchModificationListener;
+import org.jacis.plugin.JacisBatchModificationListener.Modification;
 import org.jacis.plugin.JacisModificationListener;
 import org.jacis.plugin.dirtycheck.JacisDirtyCheck;
 import org.slf4j.Logger;
@@ -58,7 +64,9 @@ class StoreTxDemarcationExecutor {
     executeDirtyCheck(store, txView);
     logger.trace("prepare {} on {} by Thread {}", txView, this, Thread.currentThread().getName());
     txView.startCommitPhase();
-    if (txView.getNumberOfUpdatedEntries() > 0) {
+    if (txView.getNumberOfUpdatedEntries() > 0 && store.isEntryLevelCommitLocking()) {
+      lockUpdatedEntries(txView);
+    } else if (txView.getNumberOfUpdatedEntries() > 0) {
       for (StoreEntryTxView<K, TV, CV> entryTxView : txView.getAllEntryTxViews()) {
         StoreEntry<K, TV, CV> entryCommitted = entryTxView.getCommittedEntry();
         if (entryTxView.isUpdated()) {
@@ -67,6 +75,28 @@ class StoreTxDemarcationExecutor {
         }
       }
     }
+    if (txView.getNumberOfUpdatedEntries() > 0) {
+      store.getIndexRegistry().checkUniqueIndexesOnPrepare(txView); // the entries are locked -> no other TX can change them concurrently
+    }
+  }
+
+  private <K, TV, CV> void lockUpdatedEntries(JacisStoreTxView<K, TV, CV> txView) {
+    // the store is not locked exclusively -> lock the updated entries in a defined order (by the hash code of the keys)
+    List<StoreEntryTxView<K, TV, CV>> updatedEntries = new ArrayList<>(txView.getNumberOfUpdatedEntries());
+    for (StoreEntryTxView<K, TV, CV> entryTxView : txView.getAllEntryTxViews()) {
+      if (entryTxView.isUpdated()) {
+        updatedEntries.add(entryTxView);
+      }
+    }
+    updatedEntries.sort(Comparator.comparingInt(e -> e.getKey().hashCode()));
+    for (StoreEntryTxView<K, TV, CV> entryTxView : updatedEntries) {
+      StoreEntry<K, TV, CV> entryCommitted = entryTxView.getCommittedEntry();
+      entryTxView.assertNotStale(txView);
+      while (!entryCommitted.tryLockFor(txView)) {
+        entryTxView.assertNotStale(txView); // locked by another TX -> stale (if the lock has been released meanwhile retry)
+      }
+      entryTxView.assertNotStale(txView); // the entry may have been committed by another TX before it was locked
+    }
   }
 
   <K, TV, CV> void executeCommit(JacisStoreImpl<K, TV, CV> store, JacisTransactionHandle transaction) {
@@ -87,6 +117,11 @@ class StoreTxDemarcationExecutor {
       logger.trace("internalCommit {} on {} by Thread {}", txView, store, Thread.currentThread().getName());
     }
     RuntimeException toThrow = null;
+    List<JacisBatchModificationListener<K, TV>> batchListeners = getBatchModificationListeners(store);
+    List<Modification<K, TV>> modifications = batchListeners.isEmpty() ? null : new ArrayList<>(txView.getNumberOfUpdatedEntries());
+    boolean keepVersions = store.getObjectTypeSpec().isSnapshotIsolation() && txView.getNumberOfUpdatedEntries() > 0;
+    long commitSequence = keepVersions ? store.getContainer().getCommitSequence(transaction) : 0; // the older versions are kept for the active snapshots
+    long oldestSnapshot = keepVersions ? store.getContainer().getOldestActiveSnapshotSequence() : 0;
     try {
       for (StoreEntryTxView<K, TV, CV> entryTxView : txView.getAllEntryTxViews()) {
         K key = entryTxView.getKey();
@@ -104,12 +139,28 @@ class StoreTxDemarcationExecutor {
               toThrow.addSuppressed(e);
             }
           }
-          entryCommitted.update(entryTxView, txView);
+          if (modifications != null) {
+            modifications.add(new Modification<>(key, entryTxView.getOrigValue(), entryTxView.getValue()));
+          }
+          entryCommitted.update(entryTxView, txView, commitSequence);
+          if (keepVersions && !entryCommitted.trimVersions(oldestSnapshot)) {
+            store.registerOlderVersions(entryCommitted);
+          }
+        }
+      }
+      if (modifications != null && !modifications.isEmpty()) {
+        RuntimeException batchException = notifyBatchModificationListeners(store, batchListeners, modifications, txView.getTransaction());
+        if (toThrow == null) {
+          toThrow = batchException;
+        } else if (batchException != null) {
+          toThrow.addSuppressed(batchException);
         }
-        entryCommitted.releaseLockedFor(txView);
-        store.checkRemoveCommittedEntry(entryCommitted, txView);
       }
     } finally { // even if exceptions occur TX view has to be destroyed! See https://github.com/JanWiemer/jacis/issues/8
+      for (StoreEntryTxView<K, TV, CV> entryTxView : txView.getAllEntryTxViews()) { // released after the batch listeners are notified (no other TX can commit the same keys before)
+        entryTxView.getCommittedEntry().releaseLockedFor(txView);
+      }
+      store.getIndexRegistry().releaseReservations(txView); // the committed values are already tracked by the indexes
       txView.afterCommit();
     }
     if (toThrow != null) {
@@ -138,8 +189,8 @@ class StoreTxDemarcationExecutor {
           logger.trace("... rollback {}, Store: {}", store.getObjectInfo(key), this);
         }
         entryCommitted.releaseLockedFor(txView);
-        store.checkRemoveCommittedEntry(entryCommitted, txView);
       }
+      store.getIndexRegistry().releaseReservations(txView);
     }
     txView.afterRollback();
   }
@@ -155,9 +206,18 @@ class StoreTxDemarcationExecutor {
     assert store.getObjectTypeSpec().isTrackOriginalValueEnabled() : "Tracking modification is only possible if original value is tracked";
     RuntimeException toThrow = null;
     for (JacisModificationListener<K, TV> listener : store.getModificationListeners()) {
+      if (listener instanceof JacisBatchModificationListener) {
+        continue; // notified once with all modifications of the transaction
+      }
       RuntimeException modificationException = null;
       try {
-        listener.onModification(key, oldValue, newValue, tx);
+        if (store.isEntryLevelCommitLocking() && !listener.isThreadSafe()) { // commits of different TXs may run in parallel
+          synchronized (listener) {
+            listener.onModification(key, oldValue, newValue, tx);
+          }
+        } else {
+          listener.onModification(key, oldValue, newValue, tx);
+        }
       } catch (JacisTrackedViewModificationException e) {
         modificationException = e;
       } catch (Exception e) {
@@ -176,4 +236,43 @@ class StoreTxDemarcationExecutor {
     }
   }
 
+  @SuppressWarnings("unchecked")
+  private <K, TV, CV> List<JacisBatchModificationListener<K, TV>> getBatchModificationListeners(JacisStoreImpl<K, TV, CV> store) {
+    List<JacisBatchModificationListener<K, TV>> res = new ArrayList<>(1);
+    for (JacisModificationListener<K, TV> listener : store.getModificationListeners()) {
+      if (listener instanceof JacisBatchModificationListener) {
+        res.add((JacisBatchModificationListener<K, TV>) listener);
+      }
+    }
+    return res;
+  }
+
+  private <K, TV, CV> RuntimeException notifyBatchModificationListeners(JacisStoreImpl<K, TV, CV> store, List<JacisBatchModificationListener<K, TV>> listeners, List<Modification<K, TV>> modifications, JacisTransactionHandle tx) {
+    RuntimeException toThrow = null;
+    for (JacisBatchModificationListener<K, TV> listener : listeners) {
+      RuntimeException modificationException = null;
+      try {
+        if (store.isEntryLevelCommitLocking() && !listener.isThreadSafe()) { // commits of different TXs may run in parallel
+          synchronized (listener) {
+            listener.onModifications(modifications, tx);
+          }
+        } else {
+          listener.onModifications(modifications, tx);
+        }
+      } catch (JacisTrackedViewModificationException | JacisModificationListenerException e) {
+        modificationException = e;
+      } catch (Exception e) {
+        modificationException = new JacisModificationListenerException(store, listener, tx, null, null, null, e);
+      }
+      if (modificationException != null) {
+        if (toThrow == null) {
+          toThrow = modificationException;
+        } else {
+          toThrow.addSuppressed(modificationException);
+        }
+      }
+    }
+    return toThrow;
+  }
+
 }
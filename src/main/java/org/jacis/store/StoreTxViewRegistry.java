@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.store;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Registry of all transactional views of a store.
+ *
+ * The registry is only used to enumerate the transactional views for administrative purposes (e.g. to invalidate them when the store is cleared).
+ * The lookup of the transactional view for a transaction is done using the transaction handle the view is attached to.
+ * The registry only keeps weak references to the views. Therefore views of transactions that are never completed
+ * (and whose handles are no longer referenced) can be garbage collected. The references of collected views are purged on registration and deregistration.
+ * Since such views are never destroyed the committed entries they refer are released when their references are purged.
+ *
+ * @param <K> Key type of the store entry
+ * @param <TV> Type of the objects in the transaction view. This is the type visible from the outside.
+ * @param <CV> Type of the objects as they are stored in the internal map of committed values. This type is not visible from the outside.
+ * @author Jan Wiemer
+ */
+class StoreTxViewRegistry<K, TV, CV> {
+
+  /** weak references to the registered transactional views */
+  private final Set<TxViewReference<K, TV, CV>> txViews = ConcurrentHashMap.newKeySet();
+  /** queue of the references to transactional views already garbage collected */
+  private final ReferenceQueue<JacisStoreTxView<K, TV, CV>> collectedTxViews = new ReferenceQueue<>();
+  /** callback releasing a committed entry no longer referred by a (collected) transactional view */
+  private final Consumer<StoreEntry<K, TV, CV>> entryReleaser;
+
+  StoreTxViewRegistry(Consumer<StoreEntry<K, TV, CV>> entryReleaser) {
+    this.entryReleaser = entryReleaser;
+  }
+
+  void register(JacisStoreTxView<K, TV, CV> txView) {
+    purgeCollected();
+    txViews.add(new TxViewReference<>(txView, collectedTxViews));
+  }
+
+  void deregister(JacisStoreTxView<K, TV, CV> txView) {
+    txViews.remove(new TxViewReference<>(txView, null));
+    purgeCollected();
+  }
+
+  List<JacisStoreTxView<K, TV, CV>> getAll() { // weakly consistent snapshot of the currently registered views
+    List<JacisStoreTxView<K, TV, CV>> res = new ArrayList<>(txViews.size());
+    for (TxViewReference<K, TV, CV> ref : txViews) {
+      JacisStoreTxView<K, TV, CV> txView = ref.get();
+      if (txView != null) {
+        res.add(txView);
+      }
+    }
+    return res;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void purgeCollected() {
+    Reference<? extends JacisStoreTxView<K, TV, CV>> ref;
+    while ((ref = collectedTxViews.poll()) != null) {
+      if (txViews.remove(ref)) { // the transaction of the view has never been completed (otherwise the view would have been deregistered)
+        for (StoreEntryTxView<K, TV, CV> entryTxView : ((TxViewReference<K, TV, CV>) ref).entryTxViews) {
+          entryReleaser.accept(entryTxView.getCommittedEntry());
+        }
+      }
+    }
+  }
+
+  /**
+   * Weak reference to a transactional view compared by the identity of the referred view.
+   * The reference keeps the entries of a writable view (not referring the view itself) to release the committed entries they refer after the view is collected.
+   */
+  private static class TxViewReference<K, TV, CV> extends WeakReference<JacisStoreTxView<K, TV, CV>> {
+
+    private final int hash;
+    private final Collection<StoreEntryTxView<K, TV, CV>> entryTxViews;
+
+    TxViewReference(JacisStoreTxView<K, TV, CV> txView, ReferenceQueue<JacisStoreTxView<K, TV, CV>> queue) {
+      super(txView, queue);
+      this.hash = System.identityHashCode(txView);
+      this.entryTxViews = queue == null || txView.isReadOnly() ? Collections.emptyList() : txView.getAllEntryTxViews(); // read only views do not refer the committed entries
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof TxViewReference)) {
+        return false;
+      }
+      Object referent = get();
+      return referent != null && referent == ((TxViewReference<?, ?, ?>) obj).get();
+    }
+
+  } // END OF:  private static class TxViewReference
+
+}
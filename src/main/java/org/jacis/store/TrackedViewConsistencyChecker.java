@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jacis.container.JacisTransactionHandle;
+import org.jacis.plugin.JacisBatchModificationListener;
+import org.jacis.trackedviews.TrackedViewBase;
+import org.jacis.trackedviews.TrackedViewDriftListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background checker validating the tracked views of a store against the committed values.
+ *
+ * Unlike the check configured by {@link org.jacis.container.JacisObjectTypeSpec#setCheckViewsOnCommit(boolean)}
+ * the check is not executed on the committing thread after each commit. Instead it is executed by a background thread
+ * periodically (see {@link #scheduleChecks(long, TimeUnit)}) and / or after every n-th commit modifying the store (see {@link #checkEveryNthCommit(int)}).
+ * For each check a consistent snapshot of the committed values and of the tracked views is taken atomically
+ * (no commit interleaves, see {@link JacisStore#computeAtomic(java.util.function.Supplier)}).
+ * The (possibly expensive) {@link TrackedViewBase#checkView(List)} methods are called on this snapshot outside the atomic operation.
+ * Detected inconsistencies are reported to the registered drift listeners (see {@link #registerDriftListener(TrackedViewDriftListener)})
+ * instead of throwing an exception. If a check is still running when the next check is triggered the new check is skipped.
+ *
+ * @param <K> Key type of the store entry
+ * @param <TV> Value type of the store entry
+ * @author Jan Wiemer
+ */
+public class TrackedViewConsistencyChecker<K, TV> implements JacisBatchModificationListener<K, TV> {
+
+  private static final Logger log = LoggerFactory.getLogger(TrackedViewConsistencyChecker.class);
+
+  /** Reference to the JACIS store whose views are checked */
+  private final JacisStoreImpl<K, TV, ?> store;
+  /** The registry of the checked views */
+  private final TrackedViewRegistry<K, TV> viewRegistry;
+  /** The listeners notified on detected inconsistencies */
+  private final List<TrackedViewDriftListener<TV>> driftListeners = new CopyOnWriteArrayList<>();
+  /** Flag indicating if a check is currently executed (or scheduled) */
+  private final AtomicBoolean checkPending = new AtomicBoolean(false);
+  /** Number of commits modifying the store (only counted if checks after every n-th commit are configured) */
+  private final AtomicLong commitCount = new AtomicLong();
+  /** Number of executed checks */
+  private final AtomicLong checkCount = new AtomicLong();
+  /** Number of detected inconsistencies */
+  private final AtomicLong driftCount = new AtomicLong();
+  /** The executor running the checks (created on demand) */
+  private ScheduledExecutorService executor;
+  /** A check is triggered after every n-th commit (0 means no checks triggered by commits) */
+  private volatile int everyNthCommit = 0;
+
+  TrackedViewConsistencyChecker(JacisStoreImpl<K, TV, ?> store, TrackedViewRegistry<K, TV> viewRegistry) {
+    this.store = store;
+    this.viewRegistry = viewRegistry;
+  }
+
+  /**
+   * Register a listener notified on detected inconsistencies.
+   *
+   * @param listener The listener notified on detected inconsistencies
+   * @return The current instance for method chaining
+   */
+  public TrackedViewConsistencyChecker<K, TV> registerDriftListener(TrackedViewDriftListener<TV> listener) {
+    driftListeners.add(listener);
+    return this;
+  }
+
+  /**
+   * Schedule a check of all views with the passed period.
+   *
+   * @param period The period between two checks
+   * @param unit The time unit of the period
+   * @return The current instance for method chaining
+   */
+  public synchronized TrackedViewConsistencyChecker<K, TV> scheduleChecks(long period, TimeUnit unit) {
+    getExecutor().scheduleAtFixedRate(this::triggerCheck, period, period, unit);
+    return this;
+  }
+
+  /**
+   * Trigger a check of all views after every n-th commit modifying the store.
+   *
+   * @param n The number of commits between two checks (0 to switch off checks triggered by commits)
+   * @return The current instance for method chaining
+   */
+  public synchronized TrackedViewConsistencyChecker<K, TV> checkEveryNthCommit(int n) {
+    if (n > 0 && everyNthCommit == 0) {
+      store.registerModificationListener(this);
+    } else if (n <= 0 && everyNthCommit > 0) {
+      store.getModificationListeners().remove(this);
+    }
+    everyNthCommit = Math.max(0, n);
+    return this;
+  }
+
+  /** Stop the background checks (the checker can be restarted by configuring new checks). */
+  public synchronized void stop() {
+    checkEveryNthCommit(0);
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private synchronized ScheduledExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "JacisViewChecker[" + store.getStoreIdentifier().toShortString() + "]");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return executor;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  @Override
+  public void onModification(K key, TV oldValue, TV newValue, JacisTransactionHandle tx) {
+    // checks are only triggered by committed transactions (see onModifications)
+  }
+
+  @Override
+  public void onModifications(List<Modification<K, TV>> modifications, JacisTransactionHandle tx) {
+    int n = everyNthCommit;
+    if (n > 0 && commitCount.incrementAndGet() % n == 0) {
+      triggerCheck();
+    }
+  }
+
+  private void triggerCheck() {
+    if (checkPending.compareAndSet(false, true)) {
+      try {
+        getExecutor().execute(() -> {
+          try {
+            checkNow();
+          } finally {
+            checkPending.set(false);
+          }
+        });
+      } catch (RuntimeException e) { // e.g. the executor has been stopped
+        checkPending.set(false);
+        log.debug("failed to trigger check of the tracked views of {}: {}", store, e);
+      }
+    }
+  }
+
+  /**
+   * Check all views in the current thread against a consistent snapshot of the committed values.
+   * Inconsistencies are reported to the drift listeners.
+   *
+   * @return The number of views that failed the check
+   */
+  public int checkNow() {
+    List<TV> values = new ArrayList<>(store.size());
+    Map<String, TrackedViewBase<TV>> viewSnapshots = store.computeAtomic(() -> {
+      store.forEachCommittedValue((k, v) -> values.add(v));
+      return viewRegistry.cloneAllViews();
+    });
+    checkCount.incrementAndGet();
+    int failed = 0;
+    for (Map.Entry<String, TrackedViewBase<TV>> viewEntry : viewSnapshots.entrySet()) {
+      try {
+        viewEntry.getValue().checkView(values);
+      } catch (Exception | AssertionError e) {
+        failed++;
+        driftCount.incrementAndGet();
+        log.warn("Tracked view {} of {} drifted from the committed values: {}", viewEntry.getKey(), store, e.toString());
+        for (TrackedViewDriftListener<TV> listener : driftListeners) {
+          try {
+            listener.onDrift(viewEntry.getKey(), viewEntry.getValue(), e);
+          } catch (RuntimeException listenerException) {
+            log.error("Drift listener {} failed: {}", listener, listenerException, listenerException);
+          }
+        }
+      }
+    }
+    return failed;
+  }
+
+  /** @return The number of executed checks. */
+  public long getNumberOfChecks() {
+    return checkCount.get();
+  }
+
+  /** @return The number of detected inconsistencies (one for each failed view in a check). */
+  public long getNumberOfDrifts() {
+    return driftCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(" + store + ", checks=" + checkCount + ", drifts=" + driftCount + ")";
+  }
+
+}
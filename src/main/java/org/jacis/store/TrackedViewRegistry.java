@@ -4,6 +4,7 @@
 
 package org.jacis.store;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -11,34 +12,57 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Supplier;
 
 import org.jacis.container.JacisContainer;
 import org.jacis.container.JacisTransactionHandle;
 import org.jacis.exception.JacisTrackedViewModificationException;
-import org.jacis.plugin.JacisModificationListener;
+import org.jacis.plugin.JacisBatchModificationListener;
 import org.jacis.plugin.JacisTransactionListener;
 import org.jacis.plugin.JacisTransactionListenerAdapter;
 import org.jacis.trackedviews.TrackedView;
+import org.jacis.trackedviews.TrackedViewBase;
 import org.jacis.trackedviews.TrackedViewClustered;
+import org.jacis.trackedviews.TrackedViewKeyed;
 
 /**
  * Registry where tracked views can be registered for an object store.
  *
+ * The registry is notified once per committed transaction with all its modifications.
+ * If there is enough work (number of registered views multiplied by the number of modifications, see {@link #setParallelUpdateThreshold(int)})
+ * the modifications are tracked at the different views in parallel using a fork join pool (see {@link #setForkJoinPool(ForkJoinPool)}).
+ * Each view is updated by a single task, unless it declares to be thread safe (see {@link TrackedViewBase#isThreadSafe()}).
+ * The modifications for thread safe views are split into chunks tracked by several tasks at once.
+ *
  * @param <K> Key type of the store entry
  * @param <TV> Value type of the store entry
  * @author Jan Wiemer
  */
 @SuppressWarnings("unused")
-public class TrackedViewRegistry<K, TV> implements JacisModificationListener<K, TV> {
+public class TrackedViewRegistry<K, TV> implements JacisBatchModificationListener<K, TV> {
+
+  /** Default for the minimal number of (view, modification) pairs tracked on commit to update the views in parallel */
+  public static final int DEFAULT_PARALLEL_UPDATE_THRESHOLD = 4096;
+  /** Minimal number of modifications tracked by one task at a thread safe view */
+  private static final int MIN_MODIFICATIONS_PER_TASK = 1024;
 
   /** Reference to the JACIS store the tracked view registry belongs to */
   private final JacisStoreImpl<K, TV, ?> store;
   /** Map assigning the tracked views maintained by this registry to the view classes */
-  private final Map<String, TrackedView<TV>> viewMap = new HashMap<>();
+  private final Map<String, TrackedViewBase<TV>> viewMap = new ConcurrentHashMap<>();
+  /** Minimal number of (view, modification) pairs tracked on commit to update the views in parallel */
+  private volatile int parallelUpdateThreshold = DEFAULT_PARALLEL_UPDATE_THRESHOLD;
+  /** The fork join pool used to update the views in parallel */
+  private volatile ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+  /** The checker validating the views in the background (on demand) */
+  private final TrackedViewConsistencyChecker<K, TV> consistencyChecker;
 
   TrackedViewRegistry(JacisStoreImpl<K, TV, ?> store, boolean checkConsistencyAfterCommit) {
     this.store = store;
+    this.consistencyChecker = new TrackedViewConsistencyChecker<>(store, this);
     if (checkConsistencyAfterCommit) {
       JacisTransactionListener txListener = new JacisTransactionListenerAdapter() {
 
@@ -52,8 +76,31 @@ public class TrackedViewRegistry<K, TV> implements JacisModificationListener<K,
     }
   }
 
+  /**
+   * Set the minimal number of (view, modification) pairs tracked on commit to update the views in parallel.
+   * Commits with less work update the views sequentially in the committing thread.
+   *
+   * @param parallelUpdateThreshold The minimal number of (view, modification) pairs to update the views in parallel (Integer.MAX_VALUE to switch off parallel updates)
+   * @return The current instance for method chaining
+   */
+  public TrackedViewRegistry<K, TV> setParallelUpdateThreshold(int parallelUpdateThreshold) {
+    this.parallelUpdateThreshold = parallelUpdateThreshold;
+    return this;
+  }
+
+  /**
+   * Set the fork join pool used to update the views in parallel (default is the common pool).
+   *
+   * @param forkJoinPool The fork join pool used to update the views in parallel
+   * @return The current instance for method chaining
+   */
+  public TrackedViewRegistry<K, TV> setForkJoinPool(ForkJoinPool forkJoinPool) {
+    this.forkJoinPool = Objects.requireNonNull(forkJoinPool, "fork join pool must not be null");
+    return this;
+  }
+
   /** cached value if all views are thread safe */
-  private Boolean threadSafe;
+  private volatile Boolean threadSafe;
 
   @Override
   public boolean isThreadSafe() {
@@ -70,47 +117,121 @@ public class TrackedViewRegistry<K, TV> implements JacisModificationListener<K,
   @Override
   public void onModification(K key, TV oldValue, TV newValue, JacisTransactionHandle tx) {
     JacisTrackedViewModificationException toThrow = null;
-    for (TrackedView<TV> view : viewMap.values()) {
-      try {
-        view.trackModification(oldValue, newValue);
-      } catch (Exception e) {
-        JacisTrackedViewModificationException trackModificationException = new JacisTrackedViewModificationException(store, view, tx, key, oldValue, newValue, e);
-        if (toThrow == null) {
-          toThrow = trackModificationException;
-        } else {
-          toThrow.addSuppressed(trackModificationException);
+    for (TrackedViewBase<TV> view : viewMap.values()) {
+      toThrow = merge(toThrow, trackModification(view, key, oldValue, newValue, tx));
+    }
+    if (toThrow != null) {
+      throw toThrow;
+    }
+  }
+
+  @Override
+  public void onModifications(List<Modification<K, TV>> modifications, JacisTransactionHandle tx) {
+    List<TrackedViewBase<TV>> views = new ArrayList<>(viewMap.values());
+    if (views.isEmpty() || modifications.isEmpty()) {
+      return;
+    }
+    JacisTrackedViewModificationException toThrow = null;
+    if ((long) views.size() * modifications.size() < parallelUpdateThreshold || views.size() == 1 && !views.get(0).isThreadSafe()) {
+      for (TrackedViewBase<TV> view : views) {
+        toThrow = merge(toThrow, trackModifications(view, modifications, 0, modifications.size(), tx));
+      }
+    } else {
+      List<ForkJoinTask<JacisTrackedViewModificationException>> tasks = new ArrayList<>();
+      for (TrackedViewBase<TV> view : views) {
+        int chunks = view.isThreadSafe() ? Math.max(1, Math.min(forkJoinPool.getParallelism(), modifications.size() / MIN_MODIFICATIONS_PER_TASK)) : 1;
+        int chunkSize = (modifications.size() - 1) / chunks + 1;
+        for (int from = 0; from < modifications.size(); from += chunkSize) {
+          int start = from;
+          int end = Math.min(modifications.size(), from + chunkSize);
+          tasks.add(forkJoinPool.submit(() -> trackModifications(view, modifications, start, end, tx)));
         }
       }
+      for (ForkJoinTask<JacisTrackedViewModificationException> task : tasks) {
+        toThrow = merge(toThrow, task.join());
+      }
     }
     if (toThrow != null) {
       throw toThrow;
     }
   }
 
-  public <VT extends TrackedView<TV>> void reinitializeView(String viewName) {
+  private JacisTrackedViewModificationException trackModifications(TrackedViewBase<TV> view, List<Modification<K, TV>> modifications, int from, int to, JacisTransactionHandle tx) {
+    JacisTrackedViewModificationException toThrow = null;
+    for (int i = from; i < to; i++) {
+      Modification<K, TV> modification = modifications.get(i);
+      toThrow = merge(toThrow, trackModification(view, modification.getKey(), modification.getOldValue(), modification.getNewValue(), tx));
+    }
+    return toThrow;
+  }
+
+  @SuppressWarnings("unchecked")
+  private JacisTrackedViewModificationException trackModification(TrackedViewBase<TV> view, K key, TV oldValue, TV newValue, JacisTransactionHandle tx) {
+    try {
+      if (view instanceof TrackedViewKeyed) {
+        ((TrackedViewKeyed<K, TV, ?>) view).trackModification(key, oldValue, newValue);
+      } else {
+        ((TrackedView<TV>) view).trackModification(oldValue, newValue);
+      }
+      return null;
+    } catch (Exception e) {
+      return new JacisTrackedViewModificationException(store, view, tx, key, oldValue, newValue, e);
+    }
+  }
+
+  private JacisTrackedViewModificationException merge(JacisTrackedViewModificationException toThrow, JacisTrackedViewModificationException exception) {
+    if (toThrow == null) {
+      return exception;
+    } else if (exception != null) {
+      toThrow.addSuppressed(exception);
+    }
+    return toThrow;
+  }
+
+  public <VT extends TrackedViewBase<TV>> void reinitializeView(String viewName) {
     store.executeAtomic(() -> initTrackedView(getView(viewName)));
   }
 
-  private void initTrackedView(TrackedView<TV> view) {
+  @SuppressWarnings("unchecked")
+  private void initTrackedView(TrackedViewBase<TV> view) {
     view.clear();
+    if (view instanceof TrackedViewKeyed) {
+      TrackedViewKeyed<K, TV, ?> keyedView = (TrackedViewKeyed<K, TV, ?>) view;
+      store.forEachCommittedValue((key, val) -> keyedView.trackModification(key, null, val));
+      return;
+    }
+    TrackedView<TV> unkeyedView = (TrackedView<TV>) view;
     for (TV val : store.getAllReadOnly(null)) {
-      view.trackModification(null, val);
+      unkeyedView.trackModification(null, val);
     }
   }
 
   private void checkTrackedViewsAfterCommit() {
     List<TV> values = store.getAllReadOnly(null);
-    for (TrackedView<TV> view : viewMap.values()) {
+    for (TrackedViewBase<TV> view : viewMap.values()) {
       view.checkView(values);
     }
   }
 
   void clearViews() {
-    viewMap.values().forEach(TrackedView::clear);
+    viewMap.values().forEach(TrackedViewBase::clear);
     clearThreadSafeCache();
   }
 
-  public Collection<TrackedView<TV>> getAllViews() {
+  /**
+   * @return The checker to validate the views in the background (scheduled periodically or after every n-th commit).
+   */
+  public TrackedViewConsistencyChecker<K, TV> getConsistencyChecker() {
+    return consistencyChecker;
+  }
+
+  Map<String, TrackedViewBase<TV>> cloneAllViews() { // the caller has to prevent concurrent commits
+    Map<String, TrackedViewBase<TV>> res = new HashMap<>();
+    viewMap.forEach((name, view) -> res.put(name, view.clone()));
+    return res;
+  }
+
+  public Collection<TrackedViewBase<TV>> getAllViews() {
     return viewMap.values();
   }
 
@@ -118,7 +239,7 @@ public class TrackedViewRegistry<K, TV> implements JacisModificationListener<K,
     return viewMap.keySet();
   }
 
-  public void registerTrackedView(String viewName, TrackedView<TV> view) {
+  public void registerTrackedView(String viewName, TrackedViewBase<TV> view) {
     if (!store.getObjectTypeSpec().isTrackOriginalValueEnabled()) {
       throw new IllegalStateException("Registering tracked views is only possible if the store is keeping track of the original values of a transactional view.");
     }
@@ -131,7 +252,7 @@ public class TrackedViewRegistry<K, TV> implements JacisModificationListener<K,
     return viewMap.containsKey(viewName);
   }
 
-  public <VT extends TrackedView<TV>> VT getView(String viewName) {
+  public <VT extends TrackedViewBase<TV>> VT getView(String viewName) {
     JacisStoreTxView<K, TV, ?> internelTxView = store.getTxView();
     if (internelTxView == null) { // view is created outside a transaction -> we can not and do not need to track any modification in any transaction
       return store.computeAtomic(() -> getAndCloneView(viewName));
@@ -141,7 +262,7 @@ public class TrackedViewRegistry<K, TV> implements JacisModificationListener<K,
   }
 
   @SuppressWarnings("unchecked")
-  private <VT extends TrackedView<TV>> VT getAndCloneView(String viewName) {
+  private <VT extends TrackedViewBase<TV>> VT getAndCloneView(String viewName) {
     VT view = (VT) viewMap.get(viewName);
     if (view == null) {
       throw new IllegalArgumentException("No tracked view with name " + viewName + " registered! All registered views: " + viewMap.keySet());
@@ -150,14 +271,14 @@ public class TrackedViewRegistry<K, TV> implements JacisModificationListener<K,
   }
 
   @SuppressWarnings("unchecked")
-  public <VT extends TrackedView<TV>> VT getLifeView(String viewName) {
+  public <VT extends TrackedViewBase<TV>> VT getLifeView(String viewName) {
     return store.computeAtomic(() -> (VT) viewMap.get(viewName));
   }
 
   @SuppressWarnings("unchecked")
   public <SVK> Collection<SVK> getSubViewKeys(String viewName) {
     return store.computeAtomic(() -> {
-      TrackedView<TV> view = viewMap.get(viewName);
+      TrackedViewBase<TV> view = viewMap.get(viewName);
       if (view == null) {
         throw new IllegalArgumentException("No tracked view with name " + viewName + " registered! All registered views: " + viewMap.keySet());
       } else if (!TrackedViewClustered.class.isInstance(view)) {
@@ -175,7 +296,7 @@ public class TrackedViewRegistry<K, TV> implements JacisModificationListener<K,
       return store.computeAtomic(() -> getAndCloneSubView(viewName, subviewKey));
     }
     if (internalTxView.containsTrackedView(viewName)) { // whole view already tracked at the TX view -> we do not need to clone the sub-view again
-      TrackedView<TV> view = internalTxView.getTrackedView(viewName, null);
+      TrackedViewBase<TV> view = internalTxView.getTrackedView(viewName, null);
       if (!TrackedViewClustered.class.isInstance(view)) {
         throw new IllegalArgumentException("The view registered for the name " + viewName + " is no instance of " + TrackedViewClustered.class + "! view: " + view);
       }
@@ -189,7 +310,7 @@ public class TrackedViewRegistry<K, TV> implements JacisModificationListener<K,
 
   @SuppressWarnings("unchecked")
   private <VT extends TrackedView<TV>, VK> VT getAndCloneSubView(String viewName, VK subviewKey) {
-    TrackedView<TV> view = viewMap.get(viewName);
+    TrackedViewBase<TV> view = viewMap.get(viewName);
     if (view == null) {
       throw new IllegalArgumentException("No tracked view with name " + viewName + " registered! All registered views: " + viewMap.keySet());
     } else if (!TrackedViewClustered.class.isInstance(view)) {
@@ -206,26 +327,26 @@ public class TrackedViewRegistry<K, TV> implements JacisModificationListener<K,
     return "VIEW:" + viewClass.getName();
   }
 
-  public void registerTrackedView(TrackedView<TV> view) {
+  public void registerTrackedView(TrackedViewBase<TV> view) {
     registerTrackedView(getDefaultNameForViewClass(view.getClass()), view);
   }
 
   @SuppressWarnings("unchecked")
-  public Set<Class<? extends TrackedView<TV>>> getAllViewClasses() {
-    Set<Class<? extends TrackedView<TV>>> res = new HashSet<>();
-    viewMap.values().stream().forEach(v -> res.add((Class<? extends TrackedView<TV>>) v.getClass()));
+  public Set<Class<? extends TrackedViewBase<TV>>> getAllViewClasses() {
+    Set<Class<? extends TrackedViewBase<TV>>> res = new HashSet<>();
+    viewMap.values().stream().forEach(v -> res.add((Class<? extends TrackedViewBase<TV>>) v.getClass()));
     return res;
   }
 
-  public boolean containsView(Class<? extends TrackedView<TV>> viewType) {
+  public boolean containsView(Class<? extends TrackedViewBase<TV>> viewType) {
     return getAllViewClasses().contains(viewType);
   }
 
-  public <VT extends TrackedView<TV>> VT getView(Class<VT> viewType) {
+  public <VT extends TrackedViewBase<TV>> VT getView(Class<VT> viewType) {
     return getView(getDefaultNameForViewClass(viewType));
   }
 
-  public <VT extends TrackedView<TV>> VT getLifeView(Class<VT> viewType) {
+  public <VT extends TrackedViewBase<TV>> VT getLifeView(Class<VT> viewType) {
     return getLifeView(getDefaultNameForViewClass(viewType));
   }
 
@@ -237,7 +358,7 @@ public class TrackedViewRegistry<K, TV> implements JacisModificationListener<K,
     return getSubView(getDefaultNameForViewClass(viewType), subviewKey);
   }
 
-  public <VT extends TrackedView<TV>> void reinitializeView(Class<VT> viewType) {
+  public <VT extends TrackedViewBase<TV>> void reinitializeView(Class<VT> viewType) {
     store.executeAtomic(() -> initTrackedView(getView(viewType)));
   }
 
@@ -5,6 +5,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.jacis.trackedviews.TrackedView;
+import org.jacis.trackedviews.TrackedViewBase;
+import org.jacis.trackedviews.TrackedViewKeyed;
 
 /**
  * Wrapper class for a tracked view in order to keep track of the modifications done in the transaction in which the view snapshot has been taken.
@@ -13,6 +15,8 @@ import org.jacis.trackedviews.TrackedView;
  * * inside this transaction after the snapshot is taken (in the method {@link JacisStoreTxView#updateValue(StoreEntryTxView, Object)})
  * Therefore if you need the view multiple times inside a transaction (with some modifications between the accesses), you do not need to clone the view again.
  * Note that each update will track the modification from the previous update to this update.
+ * For keyed views (see {@link TrackedViewKeyed}) only the last contribution of each modified entry is kept
+ * (instead of a copy of the last updated value).
  * 
  * @param <K> Key type of the store entry
  * @param <TV> Type of the objects in the transaction view. This is the type visible from the outside.
@@ -20,23 +24,38 @@ import org.jacis.trackedviews.TrackedView;
 class TrackedViewTransactionLocal<K, TV> {
 
   /** reference to the tracked view itself */
-  final private TrackedView<TV> trackedView;
+  final private TrackedViewBase<TV> trackedView;
   /** map containing all objects modified during this transaction (containing always the last updated value) */
   final private Map<K, TV> lastUpdatedEntries = new HashMap<>();
+  /** map containing the last contribution of all objects modified during this transaction (only used for keyed views) */
+  final private Map<K, Object> lastContributions = new HashMap<>();
 
-  TrackedViewTransactionLocal(TrackedView<TV> trackedView) {
+  TrackedViewTransactionLocal(TrackedViewBase<TV> trackedView) {
     this.trackedView = trackedView;
   }
 
+  @SuppressWarnings("unchecked")
   void trackModification(TV origValue, TV value, StoreEntryTxView<K, TV, ?> entry) {
+    if (trackedView instanceof TrackedViewKeyed) {
+      trackKeyedModification(origValue, value, entry.getKey());
+      return;
+    }
     TV lastUpdatedValue = lastUpdatedEntries.get(entry.getKey());
-    trackedView.trackModification(lastUpdatedValue == null ? origValue : lastUpdatedValue, value);
-    @SuppressWarnings("unchecked")
-    TV clone = (TV) entry.getCommittedEntry().getStore().getObjectAdapter().cloneTxView2Committed(value);
+    ((TrackedView<TV>) trackedView).trackModification(lastUpdatedValue == null ? origValue : lastUpdatedValue, value);
+    TV clone = entry.getCommittedEntry().getStore().getObjectAdapter().cloneTxView2ReadOnlyTxView(value); // (a committed version would have to be released again)
     lastUpdatedEntries.put(entry.getKey(), clone);
   }
 
-  TrackedView<TV> getTrackedView() {
+  @SuppressWarnings("unchecked")
+  private void trackKeyedModification(TV origValue, TV value, K key) {
+    TrackedViewKeyed<K, TV, Object> keyedView = (TrackedViewKeyed<K, TV, Object>) trackedView;
+    Object lastContribution = lastContributions.containsKey(key) ? lastContributions.get(key) : keyedView.getContribution(key, origValue);
+    Object contribution = keyedView.getContribution(key, value);
+    keyedView.trackContributionChange(key, lastContribution, contribution);
+    lastContributions.put(key, contribution);
+  }
+
+  TrackedViewBase<TV> getTrackedView() {
     return trackedView;
   }
 }
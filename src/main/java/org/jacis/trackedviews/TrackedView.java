@@ -4,10 +4,7 @@
 
 package org.jacis.trackedviews;
 
-import java.util.List;
-
 import org.jacis.plugin.objectadapter.cloning.JacisCloneable;
-import org.jacis.store.JacisStoreImpl;
 
 /**
  * A tracked view can be registered at a JACIS store to automatically keep a view (typically some accumulated values) up to date.
@@ -21,7 +18,7 @@ import org.jacis.store.JacisStoreImpl;
  * @param <V> The type of the original values (from the store)
  * @author Jan Wiemer
  */
-public interface TrackedView<V> extends JacisCloneable<TrackedView<V>> {
+public interface TrackedView<V> extends TrackedViewBase<V>, JacisCloneable<TrackedView<V>> {
 
   /**
    * Track modification of the passed object.
@@ -35,31 +32,4 @@ public interface TrackedView<V> extends JacisCloneable<TrackedView<V>> {
    */
   void trackModification(V oldValue, V newValue);
 
-  /**
-   * The implementation of this method should check the consistency of the tracked view.
-   * The method is called after executing a commit is finished.
-   * Note that the method is only called if this is specified in the specification of the store
-   * (see {@link org.jacis.container.JacisObjectTypeSpec#checkViewsOnCommit} (default is 'false')).
-   * The method gets all committed values as parameter.
-   * Usually the implementation goes through all these values and calculates the expected values of
-   * the tracked view on these values. If these values differ from the actually tracked values the
-   * method should throw an exception.
-   * @param values all committed values stored in the store (after the just finished commit)
-   */
-  void checkView(List<V> values);
-
-  /**
-   * Clear the tracked view.
-   * After executing this method the view should reflect the state where no committed values are stored.
-   * The method is only called by the {@link JacisStoreImpl#clear()} method.
-   */
-  void clear();
-
-  /**
-   * @return if the implementation of the view is thread safe. Default is <code>false</code>. Overwrite this method to declare a view to be thread safe.
-   */
-  default boolean isThreadSafe() {
-    return false;
-  }
-
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.trackedviews;
+
+import java.util.List;
+
+import org.jacis.store.JacisStoreImpl;
+
+/**
+ * Common base of all views that can be registered at the tracked view registry of a JACIS store.
+ * The registry dispatches the tracked modifications depending on the kind of the view:
+ *
+ * * a {@link TrackedView} gets the old and the new value of each modified entry;
+ * * a {@link TrackedViewKeyed} gets the key of each modified entry together with the old and the new contribution of the entry.
+ *
+ * @param <V> The type of the original values (from the store)
+ * @author Jan Wiemer
+ */
+public interface TrackedViewBase<V> extends Cloneable {
+
+  /** @return A clone of this view (used as snapshot of the view) */
+  TrackedViewBase<V> clone();
+
+  /**
+   * The implementation of this method should check the consistency of the tracked view.
+   * The method is called after executing a commit is finished.
+   * Note that the method is only called if this is specified in the specification of the store
+   * (see {@link org.jacis.container.JacisObjectTypeSpec#checkViewsOnCommit} (default is 'false')).
+   * The method gets all committed values as parameter.
+   * Usually the implementation goes through all these values and calculates the expected values of
+   * the tracked view on these values. If these values differ from the actually tracked values the
+   * method should throw an exception.
+   * @param values all committed values stored in the store (after the just finished commit)
+   */
+  void checkView(List<V> values);
+
+  /**
+   * Clear the tracked view.
+   * After executing this method the view should reflect the state where no committed values are stored.
+   * The method is only called by the {@link JacisStoreImpl#clear()} method.
+   */
+  void clear();
+
+  /**
+   * @return if the implementation of the view is thread safe. Default is <code>false</code>. Overwrite this method to declare a view to be thread safe.
+   */
+  default boolean isThreadSafe() {
+    return false;
+  }
+
+}
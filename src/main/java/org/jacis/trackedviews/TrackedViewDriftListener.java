@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.trackedviews;
+
+/**
+ * Listener notified if a background consistency check detects that a tracked view drifted from the values in the store
+ * (see {@link org.jacis.store.TrackedViewConsistencyChecker}).
+ *
+ * @param <V> The type of the original values (from the store)
+ * @author Jan Wiemer
+ */
+@FunctionalInterface
+public interface TrackedViewDriftListener<V> {
+
+  /**
+   * Callback method called (in the thread executing the check) if the check of a tracked view failed.
+   *
+   * @param viewName The name of the view
+   * @param viewSnapshot The snapshot of the view that has been checked
+   * @param problem The exception thrown by the {@link TrackedViewBase#checkView(java.util.List)} method of the view
+   */
+  void onDrift(String viewName, TrackedViewBase<V> viewSnapshot, Throwable problem);
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.trackedviews;
+
+import org.jacis.plugin.objectadapter.cloning.JacisCloneable;
+
+/**
+ * A tracked view maintained by the changes of compact per-key contributions instead of the old and new values.
+ *
+ * For each entry of the store the view computes a contribution (see {@link #getContribution(Object, Object)}),
+ * e.g. the single attribute of the value the view accumulates.
+ * A modification of an entry is tracked by passing the old and the new contribution of the entry to the view
+ * (see {@link #trackContributionChange(Object, Object, Object)}).
+ * Since the contributions are computed immediately when the modification is tracked the store does not need to keep
+ * a copy of the last updated value for each entry modified inside a transaction.
+ * Instead the transaction local snapshot of the view only keeps the last contribution of each modified entry.
+ * Therefore the contributions should be small and immutable (e.g. a number or a small immutable value object)
+ * and must not refer to the (mutable) value passed to compute it.
+ * Since a modification can only be tracked together with the key of the entry a keyed view is no {@link TrackedView}
+ * (e.g. it can not be used as sub view of a {@link TrackedViewClustered}).
+ * The registry of the store dispatches the modifications to the keyed views (see {@link #trackModification(Object, Object, Object)}).
+ *
+ * @param <K> The type of the keys of the store
+ * @param <V> The type of the original values (from the store)
+ * @param <C> The type of the contribution of a single entry to the view
+ * @author Jan Wiemer
+ */
+public interface TrackedViewKeyed<K, V, C> extends TrackedViewBase<V>, JacisCloneable<TrackedViewKeyed<K, V, C>> {
+
+  /**
+   * Compute the contribution of the passed entry to the view.
+   * The method is also called for entries that do not exist (the value is <code>null</code> in this case).
+   *
+   * @param key The key of the entry
+   * @param value The value of the entry (<code>null</code> if the entry does not exist)
+   * @return the contribution of the entry to the view (may be <code>null</code>)
+   */
+  C getContribution(K key, V value);
+
+  /**
+   * Track the change of the contribution of an entry.
+   * Note that the method is called for every modification, even if old and new contribution are equal.
+   *
+   * @param key The key of the modified entry
+   * @param oldContribution the contribution of the entry before the modification
+   * @param newContribution the contribution of the entry after the modification
+   */
+  void trackContributionChange(K key, C oldContribution, C newContribution);
+
+  /**
+   * Track the modification of the passed entry by tracking the change of its contribution.
+   *
+   * @param key The key of the modified entry
+   * @param oldValue the old value of the entry
+   * @param newValue the new value of the entry
+   */
+  default void trackModification(K key, V oldValue, V newValue) {
+    trackContributionChange(key, getContribution(key, oldValue), getContribution(key, newValue));
+  }
+
+}
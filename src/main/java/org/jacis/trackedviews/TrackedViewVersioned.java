@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.trackedviews;
+
+/**
+ * Base class for tracked views keeping their state in an immutable (persistent) object.
+ *
+ * The state of the view (e.g. a {@link org.jacis.persistent.JacisPersistentMap} or an immutable value object)
+ * is never modified. Instead tracking a modification computes a new version of the state
+ * (see {@link #computeNextState(Object, Object, Object)}) typically sharing most of its structure with the previous version.
+ * Therefore taking a snapshot of the view (done by the store for each transaction accessing the view, see {@link #clone()})
+ * only captures the reference to the current state and takes constant time independent of the size of the view.
+ *
+ * @param <V> The type of the original values (from the store)
+ * @param <S> The type of the (immutable) state of the view
+ * @author Jan Wiemer
+ */
+public abstract class TrackedViewVersioned<V, S> implements TrackedView<V> {
+
+  /** The state of the empty view (the view is reset to this state when cleared) */
+  private final S emptyState;
+  /** The current (immutable) state of the view */
+  private S state;
+  /** The version of the state (incremented whenever the state changes) */
+  private long version;
+
+  /**
+   * Create a versioned tracked view with the passed state of the empty view.
+   *
+   * @param emptyState The state of the empty view
+   */
+  protected TrackedViewVersioned(S emptyState) {
+    this(emptyState, emptyState);
+  }
+
+  /**
+   * Create a versioned tracked view with the passed state of the empty view and the passed initial state.
+   *
+   * @param emptyState The state of the empty view
+   * @param initialState The initial state of the view
+   */
+  protected TrackedViewVersioned(S emptyState, S initialState) {
+    this.emptyState = emptyState;
+    this.state = initialState;
+  }
+
+  /**
+   * Compute the next version of the state reflecting the passed modification.
+   * The passed state must not be modified. If the modification does not affect the view the passed state can be returned.
+   *
+   * @param currentState The current state of the view (must not be modified)
+   * @param oldValue the old value of the modified object (<code>null</code> if the object is created)
+   * @param newValue the new value of the modified object (<code>null</code> if the object is removed)
+   * @return The next version of the state
+   */
+  protected abstract S computeNextState(S currentState, V oldValue, V newValue);
+
+  @Override
+  public final void trackModification(V oldValue, V newValue) {
+    S nextState = computeNextState(state, oldValue, newValue);
+    if (nextState != state) {
+      state = nextState;
+      version++;
+    }
+  }
+
+  /** @return The current (immutable) state of the view. */
+  public S getState() {
+    return state;
+  }
+
+  /** @return The version of the state (incremented whenever the state changes). */
+  public long getVersion() {
+    return version;
+  }
+
+  @Override
+  public void clear() {
+    state = emptyState;
+    version++;
+  }
+
+  /**
+   * Create a snapshot of the view. Since the state is immutable the snapshot shares the state with this view.
+   * Subclasses with additional (mutable) fields have to overwrite this method to copy them.
+   *
+   * @return A snapshot of the view
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public TrackedViewVersioned<V, S> clone() {
+    try {
+      return (TrackedViewVersioned<V, S>) super.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new InternalError("Could not clone " + this.getClass().getName());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(version=" + version + ", state=" + state + ")";
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.trackedviews;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import org.jacis.persistent.JacisPersistentMap;
+
+/**
+ * Base class for clustered tracked views keeping the states of their sub views in a persistent map.
+ *
+ * Each object of the store is assigned to (at most) one sub view (see {@link #getSubViewKey(Object)}).
+ * The state of each sub view is immutable and tracking a modification computes the next version of the state
+ * of the affected sub views (see {@link #computeNextSubViewState(Object, Object, Object)}).
+ * The states of all sub views are stored in a {@link JacisPersistentMap}. Tracking a modification
+ * creates a new version of the map only copying the path to the modified sub views.
+ * Therefore taking a snapshot of the whole view as well as of a single sub view takes constant time
+ * independent of the number of sub views.
+ *
+ * @param <V> The type of the original values (from the store)
+ * @param <SVK> The key type for the sub views
+ * @param <S> The type of the (immutable) state of a sub view
+ * @author Jan Wiemer
+ */
+public abstract class TrackedViewVersionedClustered<V, SVK, S> extends TrackedViewVersioned<V, JacisPersistentMap<SVK, S>>
+    implements TrackedViewClustered<V, SVK, TrackedViewVersionedClustered.SubView<V, SVK, S>> {
+
+  /** The state of an empty sub view */
+  private final S emptySubViewState;
+
+  /**
+   * Create a versioned clustered tracked view with the passed state of an empty sub view.
+   *
+   * @param emptySubViewState The state of an empty sub view
+   */
+  protected TrackedViewVersionedClustered(S emptySubViewState) {
+    super(JacisPersistentMap.empty());
+    this.emptySubViewState = emptySubViewState;
+  }
+
+  /**
+   * @param value A value from the store (not <code>null</code>)
+   * @return The key of the sub view the passed value is assigned to (<code>null</code> if the value is not assigned to any sub view).
+   */
+  protected abstract SVK getSubViewKey(V value);
+
+  /**
+   * Compute the next version of the state of a sub view reflecting the passed modification.
+   * The old and the new value passed to this method are always assigned to the sub view (otherwise <code>null</code> is passed).
+   * The passed state must not be modified.
+   *
+   * @param currentState The current state of the sub view (must not be modified)
+   * @param oldValue the old value of the modified object (<code>null</code> if the object is created or newly assigned to the sub view)
+   * @param newValue the new value of the modified object (<code>null</code> if the object is removed or no longer assigned to the sub view)
+   * @return The next version of the state of the sub view
+   */
+  protected abstract S computeNextSubViewState(S currentState, V oldValue, V newValue);
+
+  @Override
+  protected JacisPersistentMap<SVK, S> computeNextState(JacisPersistentMap<SVK, S> currentState, V oldValue, V newValue) {
+    SVK oldKey = oldValue == null ? null : getSubViewKey(oldValue);
+    SVK newKey = newValue == null ? null : getSubViewKey(newValue);
+    JacisPersistentMap<SVK, S> nextState = currentState;
+    if (oldKey != null && Objects.equals(oldKey, newKey)) {
+      nextState = nextState.with(oldKey, computeNextSubViewState(nextState.getOrDefault(oldKey, emptySubViewState), oldValue, newValue));
+    } else {
+      if (oldKey != null) {
+        nextState = nextState.with(oldKey, computeNextSubViewState(nextState.getOrDefault(oldKey, emptySubViewState), oldValue, null));
+      }
+      if (newKey != null) {
+        nextState = nextState.with(newKey, computeNextSubViewState(nextState.getOrDefault(newKey, emptySubViewState), null, newValue));
+      }
+    }
+    return nextState;
+  }
+
+  /**
+   * Return a sub view capturing the current state of the sub view for the passed key.
+   * The returned sub view is independent of this view, modifications tracked afterwards at this view are not visible at the returned sub view.
+   *
+   * @param key The key for the desired sub view
+   * @return A sub view capturing the current state of the sub view for the passed key (with an empty state if no object is assigned to the key).
+   */
+  @Override
+  public SubView<V, SVK, S> getSubView(SVK key) {
+    return new SubView<>(this, key, getState().getOrDefault(key, emptySubViewState));
+  }
+
+  @Override
+  public Collection<SVK> getSubViewKeys() {
+    return getState().keySet();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public TrackedViewVersionedClustered<V, SVK, S> clone() {
+    return (TrackedViewVersionedClustered<V, SVK, S>) super.clone();
+  }
+
+  /**
+   * A sub view of a versioned clustered tracked view.
+   * The sub view only tracks modifications of objects assigned to it.
+   *
+   * @param <V> The type of the original values (from the store)
+   * @param <SVK> The key type for the sub views
+   * @param <S> The type of the (immutable) state of a sub view
+   */
+  public static class SubView<V, SVK, S> extends TrackedViewVersioned<V, S> {
+
+    /** The clustered view the sub view belongs to (providing the functions to assign values and compute states) */
+    private final TrackedViewVersionedClustered<V, SVK, S> clusteredView;
+    /** The key of the sub view */
+    private final SVK key;
+
+    SubView(TrackedViewVersionedClustered<V, SVK, S> clusteredView, SVK key, S state) {
+      super(clusteredView.emptySubViewState, state);
+      this.clusteredView = clusteredView;
+      this.key = key;
+    }
+
+    /** @return The key of the sub view */
+    public SVK getKey() {
+      return key;
+    }
+
+    @Override
+    protected S computeNextState(S currentState, V oldValue, V newValue) {
+      V relevantOld = oldValue != null && Objects.equals(key, clusteredView.getSubViewKey(oldValue)) ? oldValue : null;
+      V relevantNew = newValue != null && Objects.equals(key, clusteredView.getSubViewKey(newValue)) ? newValue : null;
+      if (relevantOld == null && relevantNew == null) {
+        return currentState;
+      }
+      return clusteredView.computeNextSubViewState(currentState, relevantOld, relevantNew);
+    }
+
+    @Override
+    public void checkView(List<V> values) {
+      // the consistency is checked by the clustered view
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public SubView<V, SVK, S> clone() {
+      return (SubView<V, SVK, S>) super.clone();
+    }
+
+  } // END OF:  public static class SubView
+
+}
@@ -5,6 +5,7 @@
 package org.jacis;
 
 import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisTransactionDescriptionMode;
 import org.jacis.container.JacisTransactionHandle;
 import org.jacis.exception.JacisNoTransactionException;
 import org.jacis.exception.JacisTransactionAlreadyStartedException;
@@ -157,4 +158,27 @@ public class JacisContainerLocalTxTest {
     });
   }
 
+  @Test()
+  public void testTransactionDescriptionModes() {
+    JacisContainer container = new JacisContainer();
+    container.setTransactionDescriptionMode(JacisTransactionDescriptionMode.EAGER);
+    container.withLocalTx(() -> assertTrue(container.getCurrentTransaction(false).getTxDescription().contains(JacisContainerLocalTxTest.class.getName())));
+    container.setTransactionDescriptionMode(JacisTransactionDescriptionMode.NONE);
+    container.withLocalTx(() -> assertEquals("-", container.getCurrentTransaction(false).getTxDescription()));
+    container.setTransactionDescriptionMode(JacisTransactionDescriptionMode.THREAD_NAME);
+    container.withLocalTx(() -> assertEquals(Thread.currentThread().getName(), container.getCurrentTransaction(false).getTxDescription()));
+    container.setTransactionDescriptionMode(JacisTransactionDescriptionMode.SAMPLED).setTransactionDescriptionSampleRate(3);
+    int described = 0;
+    for (int i = 0; i < 9; i++) {
+      JacisLocalTransaction tx = container.beginLocalTransaction();
+      if (tx.getTxDescription().contains(JacisContainerLocalTxTest.class.getName())) {
+        described++;
+      } else {
+        assertEquals("-", tx.getTxDescription());
+      }
+      tx.commit();
+    }
+    assertEquals(3, described);
+  }
+
 }
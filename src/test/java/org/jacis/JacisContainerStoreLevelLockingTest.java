@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.exception.JacisStaleObjectException;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.store.JacisStore;
+import org.jacis.testhelper.TestObject;
+import org.jacis.testhelper.TestObjectWithoutReadOnlyMode;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class JacisContainerStoreLevelLockingTest {
+
+  private static final Logger log = LoggerFactory.getLogger(JacisContainerStoreLevelLockingTest.class);
+
+  private static final int NUMBER_OF_KEYS = 5;
+  private static final long INITIAL_VALUE = 1000;
+
+  private JacisContainer createContainer() {
+    JacisContainer container = new JacisContainer().setStoreLevelCommitLocking(true);
+    container.createStore(new JacisObjectTypeSpec<>(String.class, TestObject.class, new JacisCloningObjectAdapter<TestObject>()).setSyncStoreOnContainerTransaction(false));
+    container.createStore(new JacisObjectTypeSpec<>(String.class, TestObjectWithoutReadOnlyMode.class, new JacisCloningObjectAdapter<TestObjectWithoutReadOnlyMode>()).setSyncStoreOnContainerTransaction(false));
+    JacisStore<String, TestObject> storeA = container.getStore(String.class, TestObject.class);
+    JacisStore<String, TestObjectWithoutReadOnlyMode> storeB = container.getStore(String.class, TestObjectWithoutReadOnlyMode.class);
+    container.withLocalTx(() -> {
+      for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+        storeA.update("A" + i, new TestObject("A" + i, INITIAL_VALUE));
+        storeB.update("B" + i, new TestObjectWithoutReadOnlyMode("B" + i, INITIAL_VALUE));
+      }
+    });
+    return container;
+  }
+
+  private long sum(JacisContainer container) {
+    JacisStore<String, TestObject> storeA = container.getStore(String.class, TestObject.class);
+    JacisStore<String, TestObjectWithoutReadOnlyMode> storeB = container.getStore(String.class, TestObjectWithoutReadOnlyMode.class);
+    return storeA.streamReadOnly().mapToLong(TestObject::getValue).sum() + storeB.streamReadOnly().mapToLong(TestObjectWithoutReadOnlyMode::getValue).sum();
+  }
+
+  @Test
+  public void testCommitTouchingBothStores() {
+    JacisContainer container = createContainer();
+    JacisStore<String, TestObject> storeA = container.getStore(String.class, TestObject.class);
+    JacisStore<String, TestObjectWithoutReadOnlyMode> storeB = container.getStore(String.class, TestObjectWithoutReadOnlyMode.class);
+    container.withLocalTx(() -> {
+      storeA.update("A0", storeA.get("A0").setValue(INITIAL_VALUE - 10));
+      storeB.update("B0", storeB.get("B0").setValue(INITIAL_VALUE + 10));
+    });
+    assertEquals(INITIAL_VALUE - 10, storeA.getReadOnly("A0").getValue());
+    assertEquals(INITIAL_VALUE + 10, storeB.getReadOnly("B0").getValue());
+    assertEquals(2 * NUMBER_OF_KEYS * INITIAL_VALUE, sum(container));
+  }
+
+  @Test
+  public void testGlobalAtomicConsistentWithParallelCommits() throws InterruptedException {
+    JacisContainer container = createContainer();
+    JacisStore<String, TestObject> storeA = container.getStore(String.class, TestObject.class);
+    JacisStore<String, TestObjectWithoutReadOnlyMode> storeB = container.getStore(String.class, TestObjectWithoutReadOnlyMode.class);
+    long expectedSum = 2 * NUMBER_OF_KEYS * INITIAL_VALUE;
+    int numberOfThreads = 4;
+    int transfersPerThread = 200;
+    AtomicBoolean finished = new AtomicBoolean(false);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numberOfThreads; t++) {
+      int threadIdx = t;
+      threads.add(new Thread("TransferThread-" + t) {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < transfersPerThread; i++) {
+              String keyA = "A" + ((threadIdx + i) % NUMBER_OF_KEYS);
+              String keyB = "B" + ((threadIdx * 3 + i) % NUMBER_OF_KEYS);
+              boolean done = false;
+              while (!done) {
+                try {
+                  container.withLocalTx(() -> {
+                    storeA.update(keyA, storeA.get(keyA).setValue(storeA.get(keyA).getValue() - 1));
+                    storeB.update(keyB, storeB.get(keyB).setValue(storeB.get(keyB).getValue() + 1));
+                  });
+                  done = true;
+                } catch (JacisStaleObjectException e) {
+                  // retry
+                }
+              }
+            }
+          } catch (Throwable e) {
+            failure.set(e);
+          }
+        }
+      });
+    }
+    Thread checker = new Thread("CheckerThread") {
+      @Override
+      public void run() {
+        int checks = 0;
+        while (!finished.get()) {
+          long sum = container.computeGlobalAtomic(() -> sum(container));
+          if (sum != expectedSum) {
+            failure.set(new AssertionError("Inconsistent sum " + sum + " (expected " + expectedSum + ") in global atomic operation!"));
+            return;
+          }
+          checks++;
+        }
+        log.info("checked sum {} times during parallel commits", checks);
+      }
+    };
+    checker.start();
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    finished.set(true);
+    checker.join();
+    if (failure.get() != null) {
+      throw new AssertionError("Failure in thread: " + failure.get(), failure.get());
+    }
+    assertEquals(expectedSum, sum(container));
+    long sumA = storeA.streamReadOnly().mapToLong(TestObject::getValue).sum();
+    assertEquals(NUMBER_OF_KEYS * INITIAL_VALUE - numberOfThreads * transfersPerThread, sumA);
+    assertTrue(container.isStoreLevelCommitLocking());
+  }
+
+}
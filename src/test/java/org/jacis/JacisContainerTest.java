@@ -4,18 +4,25 @@
 
 package org.jacis;
 
+import java.lang.ref.WeakReference;
+
 import org.jacis.container.JacisContainer;
 import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.container.JacisTransactionHandle;
 import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.txadapter.local.JacisLocalTransaction;
 import org.jacis.store.JacisStore;
 import org.jacis.store.JacisStoreAdminInterface;
+import org.jacis.store.JacisTransactionInfo;
 import org.jacis.testhelper.TestObject;
+import org.jacis.testhelper.TestObjectWithoutReadOnlyMode;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class JacisContainerTest {
 
@@ -54,4 +61,36 @@ public class JacisContainerTest {
     assertNotNull(store);
   }
 
+  @Test
+  public void testOnlyTouchedStoresEnlistedInTransaction() {
+    JacisContainer container = new JacisContainer();
+    container.createStore(new JacisObjectTypeSpec<>(String.class, TestObject.class, new JacisCloningObjectAdapter<>()));
+    container.createStore(new JacisObjectTypeSpec<>(String.class, TestObjectWithoutReadOnlyMode.class, new JacisCloningObjectAdapter<>()));
+    JacisStore<String, TestObject> store = container.getStore(String.class, TestObject.class);
+    container.withLocalTx(() -> store.update("obj-1", new TestObject("obj-1", 1)));
+    JacisTransactionInfo txInfo = container.getLastFinishedTransactionInfo();
+    assertEquals(1, txInfo.getStoreTxInfos().size());
+    assertEquals(1, store.getReadOnly("obj-1").getValue());
+  }
+
+  @Test
+  public void testLastFinishedTransactionInfoKeepsNoReferenceToTheTransaction() {
+    JacisContainer container = new JacisContainer();
+    container.createStore(new JacisObjectTypeSpec<>(String.class, TestObject.class, new JacisCloningObjectAdapter<>()));
+    JacisStore<String, TestObject> store = container.getStore(String.class, TestObject.class);
+    JacisLocalTransaction tx = container.beginLocalTransaction();
+    store.update("obj-1", new TestObject("obj-1", 1));
+    store.get("obj-2");
+    WeakReference<JacisTransactionHandle> handleRef = new WeakReference<>(container.getCurrentTransaction(false));
+    tx.commit();
+    for (int i = 0; i < 100 && handleRef.get() != null; i++) {
+      System.gc();
+    }
+    assertNull(handleRef.get());
+    JacisTransactionInfo txInfo = container.getLastFinishedTransactionInfo();
+    assertEquals(1, txInfo.getStoreTxInfos().size());
+    assertEquals(1, txInfo.getStoreTxInfos().get(0).getNumberOfUpdatedTxViewEntries());
+    assertEquals(store.getStoreIdentifier(), txInfo.getStoreTxInfos().get(0).getStoreIdentifier());
+  }
+
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.container.JacisTransactionHandle;
+import org.jacis.exception.JacisStaleObjectException;
+import org.jacis.plugin.JacisBatchModificationListener;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.txadapter.local.JacisLocalTransaction;
+import org.jacis.store.JacisStore;
+import org.jacis.testhelper.TestObject;
+import org.jacis.testhelper.TrackedTestView;
+import org.junit.Test;
+
+public class JacisStoreEntryLevelLockingTest {
+
+  private static final int NUMBER_OF_KEYS = 4;
+
+  private JacisStore<String, TestObject> createStore(JacisContainer container) {
+    JacisObjectTypeSpec<String, TestObject, TestObject> spec = new JacisObjectTypeSpec<>(String.class, TestObject.class, new JacisCloningObjectAdapter<TestObject>());
+    container.createStore(spec.setEntryLevelCommitLocking(true));
+    JacisStore<String, TestObject> store = container.getStore(String.class, TestObject.class);
+    store.getTrackedViewRegistry().registerTrackedView(new TrackedTestView());
+    container.withLocalTx(() -> {
+      for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+        store.update("K" + i, new TestObject("K" + i, 0));
+      }
+    });
+    return store;
+  }
+
+  @Test
+  public void testConflictingPrepareDetectedAsStale() throws InterruptedException {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container);
+    JacisLocalTransaction tx1 = container.beginLocalTransaction("tx1");
+    store.update("K0", store.get("K0").setValue(1));
+    tx1.prepare();
+    AtomicReference<Throwable> tx2Exception = new AtomicReference<>();
+    Thread otherThread = new Thread(() -> {
+      try {
+        container.withLocalTx(() -> store.update("K0", store.get("K0").setValue(2)));
+      } catch (Throwable e) {
+        tx2Exception.set(e);
+      }
+    });
+    otherThread.start();
+    otherThread.join();
+    tx1.commit();
+    assertTrue("prepare should detect the entry locked by the other prepared TX, but got: " + tx2Exception.get(), tx2Exception.get() instanceof JacisStaleObjectException);
+    assertEquals(1, store.getReadOnly("K0").getValue());
+  }
+
+  @Test
+  public void testEntriesOfCommitBecomeVisibleOneByOne() throws InterruptedException {
+    JacisContainer container = new JacisContainer().setStoreLevelCommitLocking(true);
+    JacisStore<String, TestObject> store = createStore(container);
+    List<String> committedKeys = new CopyOnWriteArrayList<>();
+    CountDownLatch halfCommitted = new CountDownLatch(1);
+    CountDownLatch continueCommit = new CountDownLatch(1);
+    store.registerModificationListener((key, oldValue, newValue, tx) -> {
+      committedKeys.add(key);
+      if (committedKeys.size() == 2) { // called before the second entry is written back
+        halfCommitted.countDown();
+        try {
+          continueCommit.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    Thread committer = new Thread(() -> container.withLocalTx(() -> {
+      store.update("K0", store.get("K0").setValue(1));
+      store.update("K1", store.get("K1").setValue(1));
+    }));
+    committer.start();
+    assertTrue(halfCommitted.await(10, TimeUnit.SECONDS));
+    String first = committedKeys.get(0);
+    String second = committedKeys.get(1);
+    container.withLocalTx(() -> { // not blocked by the commit -> sees the first entry committed and the second not
+      assertEquals(1, store.get(first).getValue());
+      assertEquals(0, store.get(second).getValue());
+    });
+    AtomicReference<String> atomicRead = new AtomicReference<>();
+    Thread atomicReader = new Thread(() -> atomicRead.set(store.computeAtomic(() -> store.getReadOnly(first).getValue() + "/" + store.getReadOnly(second).getValue())));
+    atomicReader.start();
+    atomicReader.join(200);
+    assertTrue("atomic operation should wait for the pending commit", atomicReader.isAlive());
+    continueCommit.countDown();
+    committer.join();
+    atomicReader.join();
+    assertEquals("1/1", atomicRead.get());
+  }
+
+  @Test
+  public void testEntriesLockedWhileBatchListenersAreNotified() {
+    JacisContainer container = new JacisContainer().setStoreLevelCommitLocking(true);
+    JacisStore<String, TestObject> store = createStore(container);
+    List<String> notifications = new CopyOnWriteArrayList<>();
+    AtomicReference<Throwable> otherTxException = new AtomicReference<>();
+    store.registerModificationListener(new JacisBatchModificationListener<String, TestObject>() {
+      @Override
+      public void onModification(String key, TestObject oldValue, TestObject newValue, JacisTransactionHandle tx) {
+        // only called outside a transaction
+      }
+
+      @Override
+      public boolean isThreadSafe() {
+        return true; // not synchronized -> the other TX is not blocked by the running notification
+      }
+
+      @Override
+      public void onModifications(List<Modification<String, TestObject>> modifications, JacisTransactionHandle tx) {
+        for (Modification<String, TestObject> modification : modifications) {
+          notifications.add(modification.getKey() + ":" + modification.getNewValue().getValue());
+        }
+        if (notifications.size() == 1) { // the other TX must not commit the same key before this notification is complete
+          Thread otherThread = new Thread(() -> {
+            try {
+              container.withLocalTx(() -> store.update("K0", store.get("K0").setValue(2)));
+            } catch (Throwable e) {
+              otherTxException.set(e);
+            }
+          });
+          otherThread.start();
+          try {
+            otherThread.join();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    });
+    container.withLocalTx(() -> store.update("K0", store.get("K0").setValue(1)));
+    assertTrue("the entry should still be locked by the committing TX, but got: " + otherTxException.get(), otherTxException.get() instanceof JacisStaleObjectException);
+    assertEquals(Collections.singletonList("K0:1"), notifications);
+    assertEquals(1, store.getReadOnly("K0").getValue());
+  }
+
+  @Test
+  public void testRemovedEntryGarbageCollected() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container);
+    container.withLocalTx(() -> store.remove("K0"));
+    assertNull(store.getReadOnly("K0"));
+    assertEquals(NUMBER_OF_KEYS - 1, store.size());
+    assertEquals(NUMBER_OF_KEYS - 1, store.getTrackedViewRegistry().getView(TrackedTestView.class).getCount());
+  }
+
+  @Test
+  public void testParallelIncrements() throws InterruptedException {
+    JacisContainer container = new JacisContainer().setStoreLevelCommitLocking(true);
+    JacisStore<String, TestObject> store = createStore(container);
+    int numberOfThreads = 4;
+    int incrementsPerThread = 250;
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numberOfThreads; t++) {
+      int threadIdx = t;
+      threads.add(new Thread("IncrementThread-" + t) {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < incrementsPerThread; i++) {
+              String key = "K" + (i % 2 == 0 ? threadIdx : (threadIdx + i) % NUMBER_OF_KEYS); // disjoint and overlapping keys
+              boolean done = false;
+              while (!done) {
+                try {
+                  container.withLocalTx(() -> store.update(key, store.get(key).setValue(store.get(key).getValue() + 1)));
+                  done = true;
+                } catch (JacisStaleObjectException e) {
+                  // retry
+                }
+              }
+            }
+          } catch (Throwable e) {
+            failure.set(e);
+          }
+        }
+      });
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError("Failure in thread: " + failure.get(), failure.get());
+    }
+    long sum = store.streamReadOnly().mapToLong(TestObject::getValue).sum();
+    assertEquals(numberOfThreads * incrementsPerThread, sum);
+    assertEquals(sum, store.getTrackedViewRegistry().getView(TrackedTestView.class).getSum());
+  }
+
+}
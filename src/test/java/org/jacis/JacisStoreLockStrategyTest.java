@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisLockStrategy;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.container.JacisStampedReadWriteLock;
+import org.jacis.exception.JacisStaleObjectException;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.txadapter.local.JacisTransactionAdapterLocal;
+import org.jacis.store.JacisStore;
+import org.jacis.testhelper.TestObject;
+import org.junit.Test;
+
+public class JacisStoreLockStrategyTest {
+
+  private static final int NUMBER_OF_KEYS = 5;
+  private static final long INITIAL_VALUE = 1000;
+
+  private JacisStore<String, TestObject> createStore(JacisContainer container, JacisLockStrategy lockStrategy, boolean entryLevelCommitLocking) {
+    JacisObjectTypeSpec<String, TestObject, TestObject> spec = new JacisObjectTypeSpec<>(String.class, TestObject.class, new JacisCloningObjectAdapter<TestObject>());
+    spec.setSyncStoreOnContainerTransaction(false).setEntryLevelCommitLocking(entryLevelCommitLocking).setLockStrategy(lockStrategy);
+    JacisStore<String, TestObject> store = container.createStore(spec).getStore();
+    container.withLocalTx(() -> {
+      for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+        store.update("K" + i, new TestObject("K" + i, INITIAL_VALUE));
+      }
+    });
+    return store;
+  }
+
+  @Test
+  public void testStampedLockReentrant() {
+    JacisStampedReadWriteLock lock = new JacisStampedReadWriteLock();
+    lock.readLock().lock();
+    lock.readLock().lock();
+    lock.readLock().unlock();
+    try {
+      lock.writeLock().lock();
+      fail("upgrading the read lock should not be supported");
+    } catch (IllegalMonitorStateException e) {
+      // expected
+    }
+    lock.readLock().unlock();
+    assertFalse(lock.getStampedLock().isReadLocked());
+    lock.writeLock().lock();
+    lock.writeLock().lock();
+    lock.readLock().lock(); // read lock acquired while holding the write lock
+    lock.writeLock().unlock();
+    assertTrue(lock.isWriteLockedByCurrentThread());
+    lock.writeLock().unlock(); // downgrade to the read lock
+    assertFalse(lock.isWriteLockedByCurrentThread());
+    assertTrue(lock.getStampedLock().isReadLocked());
+    lock.readLock().unlock();
+    assertFalse(lock.getStampedLock().isReadLocked());
+    assertTrue(lock.writeLock().tryLock());
+    lock.writeLock().unlock();
+  }
+
+  @Test
+  public void testComputeAtomicConsistentWithParallelCommitsFair() throws InterruptedException {
+    checkComputeAtomicConsistentWithParallelCommits(JacisLockStrategy.FAIR, false);
+  }
+
+  @Test
+  public void testComputeAtomicConsistentWithParallelCommitsNonFair() throws InterruptedException {
+    checkComputeAtomicConsistentWithParallelCommits(JacisLockStrategy.NON_FAIR, false);
+  }
+
+  @Test
+  public void testComputeAtomicConsistentWithParallelCommitsStamped() throws InterruptedException {
+    checkComputeAtomicConsistentWithParallelCommits(JacisLockStrategy.STAMPED, false);
+  }
+
+  @Test
+  public void testComputeAtomicConsistentWithParallelCommitsStampedEntryLevel() throws InterruptedException {
+    checkComputeAtomicConsistentWithParallelCommits(JacisLockStrategy.STAMPED, true);
+  }
+
+  @Test
+  public void testStampedAtomicOperationAccessingEntries() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container, JacisLockStrategy.STAMPED, true);
+    container.withLocalTx(() -> store.executeAtomic(() -> store.update("K0", store.get("K0").setValue(1)))); // the store is write locked while the entry is accessed
+    assertEquals(1, store.getReadOnly("K0").getValue());
+    container.withLocalTx(() -> assertEquals(INITIAL_VALUE, store.computeAtomic(() -> store.get("K1").getValue()).longValue()));
+  }
+
+  @Test
+  public void testStampedTransactionDemarcationLock() {
+    JacisContainer container = new JacisContainer(new JacisTransactionAdapterLocal(), JacisLockStrategy.STAMPED);
+    JacisObjectTypeSpec<String, TestObject, TestObject> spec = new JacisObjectTypeSpec<>(String.class, TestObject.class, new JacisCloningObjectAdapter<TestObject>());
+    JacisStore<String, TestObject> store = container.createStore(spec).getStore();
+    container.withLocalTx(() -> store.update("K0", new TestObject("K0", 1)));
+    container.withLocalTx(() -> store.update("K0", store.get("K0").setValue(store.get("K0").getValue() + 1)));
+    assertEquals(2L, store.computeAtomic(() -> store.getReadOnly("K0").getValue()).longValue());
+    assertEquals(2L, container.computeGlobalAtomic(() -> store.getReadOnly("K0").getValue()).longValue());
+    assertEquals(JacisLockStrategy.FAIR, store.getObjectTypeSpec().getLockStrategy());
+  }
+
+  @Test
+  public void testStampedAtomicOperationsWithInterleavingCommit() throws InterruptedException {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container, JacisLockStrategy.STAMPED, false);
+    AtomicInteger accumulations = new AtomicInteger();
+    AtomicReference<Thread> committer = new AtomicReference<>();
+    long sum = store.accumulateAtomic(new AtomicLong(), (s, o) -> {
+      if (accumulations.incrementAndGet() == 1) { // the commit has to wait for the atomic operation
+        committer.set(incrementInOtherThread(container, store, 100));
+      }
+      s.addAndGet(o.getValue());
+    }).get();
+    committer.get().join();
+    assertEquals(NUMBER_OF_KEYS, accumulations.get()); // executed exactly once
+    assertEquals(NUMBER_OF_KEYS * INITIAL_VALUE, sum);
+    AtomicInteger executions = new AtomicInteger();
+    long optimisticSum = store.computeAtomicOptimistic(() -> {
+      if (executions.incrementAndGet() == 1) { // the commit is executed while the operation runs without lock
+        incrementInOtherThread(container, store, 0);
+      }
+      return store.streamReadOnly().mapToLong(TestObject::getValue).sum();
+    });
+    assertEquals(2, executions.get()); // executed again holding the lock
+    assertEquals(NUMBER_OF_KEYS * INITIAL_VALUE + 2, optimisticSum);
+  }
+
+  private Thread incrementInOtherThread(JacisContainer container, JacisStore<String, TestObject> store, long maxWaitMs) {
+    Thread thread = new Thread(() -> container.withLocalTx(() -> store.update("K0", store.get("K0").setValue(store.get("K0").getValue() + 1))));
+    thread.start();
+    try {
+      thread.join(maxWaitMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return thread;
+  }
+
+  private void checkComputeAtomicConsistentWithParallelCommits(JacisLockStrategy lockStrategy, boolean entryLevelCommitLocking) throws InterruptedException {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container, lockStrategy, entryLevelCommitLocking);
+    long expectedSum = NUMBER_OF_KEYS * INITIAL_VALUE;
+    int numberOfThreads = 3;
+    int transfersPerThread = 200;
+    AtomicBoolean finished = new AtomicBoolean(false);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numberOfThreads; t++) {
+      int threadIdx = t;
+      threads.add(new Thread("TransferThread-" + t) {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < transfersPerThread; i++) {
+              String from = "K" + ((threadIdx + i) % NUMBER_OF_KEYS);
+              String to = "K" + ((threadIdx + i + 1) % NUMBER_OF_KEYS);
+              boolean done = false;
+              while (!done) {
+                try {
+                  container.withLocalTx(() -> {
+                    store.update(from, store.get(from).setValue(store.get(from).getValue() - 1));
+                    store.update(to, store.get(to).setValue(store.get(to).getValue() + 1));
+                  });
+                  done = true;
+                } catch (JacisStaleObjectException e) {
+                  // retry
+                }
+              }
+            }
+          } catch (Throwable e) {
+            failure.set(e);
+          }
+        }
+      });
+    }
+    Thread checker = new Thread("CheckerThread") {
+      @Override
+      public void run() {
+        while (!finished.get()) {
+          long sum = store.computeAtomic(() -> store.streamReadOnly().mapToLong(TestObject::getValue).sum());
+          long optimisticSum = store.computeAtomicOptimistic(() -> store.streamReadOnly().mapToLong(TestObject::getValue).sum());
+          if (sum != expectedSum || optimisticSum != expectedSum) {
+            failure.set(new AssertionError("Inconsistent sums " + sum + " / " + optimisticSum + " (expected " + expectedSum + ") in atomic operations with lock strategy " + lockStrategy + "!"));
+            return;
+          }
+        }
+      }
+    };
+    checker.start();
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    finished.set(true);
+    checker.join();
+    if (failure.get() != null) {
+      throw new AssertionError("Failure in thread: " + failure.get(), failure.get());
+    }
+    assertEquals(expectedSum, store.streamReadOnly().mapToLong(TestObject::getValue).sum());
+  }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.exception.JacisStaleObjectException;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.txadapter.local.JacisLocalTransaction;
+import org.jacis.store.JacisStore;
+import org.jacis.store.JacisStoreImpl;
+import org.jacis.testhelper.JacisTestHelper;
+import org.jacis.testhelper.TestObject;
+import org.jacis.testhelper.TestObjectWithoutReadOnlyMode;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class JacisStoreSnapshotIsolationTest {
+
+  private static final Logger log = LoggerFactory.getLogger(JacisStoreSnapshotIsolationTest.class);
+
+  private static final int NUMBER_OF_KEYS = 5;
+  private static final long INITIAL_VALUE = 1000;
+
+  private JacisContainer createContainer() {
+    JacisContainer container = new JacisContainer();
+    container.createStore(new JacisObjectTypeSpec<>(String.class, TestObject.class, new JacisCloningObjectAdapter<TestObject>()).setSnapshotIsolation(true));
+    container.createStore(new JacisObjectTypeSpec<>(String.class, TestObjectWithoutReadOnlyMode.class, new JacisCloningObjectAdapter<TestObjectWithoutReadOnlyMode>()).setSnapshotIsolation(true));
+    JacisStore<String, TestObject> storeA = container.getStore(String.class, TestObject.class);
+    JacisStore<String, TestObjectWithoutReadOnlyMode> storeB = container.getStore(String.class, TestObjectWithoutReadOnlyMode.class);
+    container.withLocalTx(() -> {
+      for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+        storeA.update("A" + i, new TestObject("A" + i, INITIAL_VALUE));
+        storeB.update("B" + i, new TestObjectWithoutReadOnlyMode("B" + i, INITIAL_VALUE));
+      }
+    });
+    return container;
+  }
+
+  private void runInOtherThread(Runnable task) throws InterruptedException {
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      try {
+        task.run();
+      } catch (Throwable e) {
+        failure.set(e);
+      }
+    });
+    thread.start();
+    thread.join();
+    if (failure.get() != null) {
+      throw new AssertionError("Failure in other thread: " + failure.get(), failure.get());
+    }
+  }
+
+  @Test
+  public void testReadsAsOfSnapshot() throws InterruptedException {
+    JacisContainer container = createContainer();
+    JacisStore<String, TestObject> store = container.getStore(String.class, TestObject.class);
+    JacisLocalTransaction tx = container.beginLocalTransaction("reader");
+    assertEquals(INITIAL_VALUE, store.getReadOnly("A0").getValue()); // first access takes the snapshot
+    runInOtherThread(() -> container.withLocalTx(() -> {
+      store.update("A0", store.get("A0").setValue(1));
+      store.update("A1", store.get("A1").setValue(2));
+      store.update("A9", new TestObject("A9", 3));
+    }));
+    assertEquals(INITIAL_VALUE, store.getReadOnly("A0").getValue());
+    assertEquals(INITIAL_VALUE, store.get("A1").getValue()); // not touched before the commit
+    assertNull(store.getReadOnly("A9"));
+    assertFalse(store.containsKey("A9"));
+    assertEquals(NUMBER_OF_KEYS * INITIAL_VALUE, store.streamReadOnly().mapToLong(TestObject::getValue).sum());
+    tx.commit();
+    container.withLocalTx(() -> {
+      assertEquals(1, store.getReadOnly("A0").getValue());
+      assertEquals(2, store.get("A1").getValue());
+      assertEquals(3, store.getReadOnly("A9").getValue());
+    });
+    assertEquals(0, container.getNumberOfActiveSnapshots());
+  }
+
+  @Test
+  public void testUpdateOfEntryCommittedAfterSnapshotIsStale() throws InterruptedException {
+    JacisContainer container = createContainer();
+    JacisStore<String, TestObject> store = container.getStore(String.class, TestObject.class);
+    JacisLocalTransaction tx = container.beginLocalTransaction("writer");
+    assertEquals(INITIAL_VALUE, store.getReadOnly("A0").getValue());
+    runInOtherThread(() -> container.withLocalTx(() -> store.update("A0", store.get("A0").setValue(1))));
+    TestObject obj = store.get("A0"); // read as of the snapshot
+    assertEquals(INITIAL_VALUE, obj.getValue());
+    store.update("A0", obj.setValue(2));
+    try {
+      tx.commit();
+      fail("update of an entry committed after the snapshot should be detected as stale");
+    } catch (JacisStaleObjectException e) {
+      tx.rollback();
+    }
+    assertEquals(1, store.getReadOnly("A0").getValue());
+    assertEquals(0, container.getNumberOfActiveSnapshots());
+  }
+
+  @Test
+  public void testRefreshReadsAsOfSnapshot() throws InterruptedException {
+    JacisContainer container = createContainer();
+    JacisStore<String, TestObject> store = container.getStore(String.class, TestObject.class);
+    JacisLocalTransaction tx = container.beginLocalTransaction("reader");
+    store.update("A0", store.get("A0").setValue(1));
+    runInOtherThread(() -> container.withLocalTx(() -> store.update("A0", store.get("A0").setValue(2))));
+    assertEquals(INITIAL_VALUE, store.refresh("A0").getValue()); // the version visible for the snapshot (repeatable read)
+    assertEquals(INITIAL_VALUE, store.getReadOnly("A0").getValue());
+    tx.commit();
+    container.withLocalTx(() -> assertEquals(2, store.refresh("A0").getValue()));
+    assertEquals(0, container.getNumberOfActiveSnapshots());
+  }
+
+  @Test
+  public void testFailedCommitIsPublished() throws InterruptedException {
+    JacisContainer container = createContainer();
+    JacisStore<String, TestObject> store = container.getStore(String.class, TestObject.class);
+    store.registerModificationListener((key, oldValue, newValue, tx) -> {
+      if ("A9".equals(key)) {
+        throw new IllegalStateException("modification listener failed for " + key);
+      }
+    });
+    long lastCommitSequence = container.getLastCommitSequence();
+    try {
+      container.withLocalTx(() -> store.update("A9", new TestObject("A9", 1)));
+      fail("commit should fail if the modification listener fails");
+    } catch (RuntimeException e) {
+      log.info("commit failed as expected: {}", "" + e);
+    }
+    assertEquals(lastCommitSequence + 1, container.getLastCommitSequence()); // the sequence of the failed commit has been published
+    runInOtherThread(() -> container.withLocalTx(() -> store.update("A0", store.get("A0").setValue(1)))); // does not wait for the failed commit
+    assertEquals(lastCommitSequence + 2, container.getLastCommitSequence());
+    container.withLocalTx(() -> assertEquals(1, store.getReadOnly("A0").getValue()));
+    assertEquals(0, container.getNumberOfActiveSnapshots());
+  }
+
+  @Test
+  public void testOlderVersionsReclaimed() throws InterruptedException {
+    JacisContainer container = createContainer();
+    JacisStore<String, TestObject> store = container.getStore(String.class, TestObject.class);
+    JacisStoreImpl<?, ?, ?> storeImpl = (JacisStoreImpl<?, ?, ?>) store;
+    JacisLocalTransaction tx = container.beginLocalTransaction("reader");
+    assertEquals(INITIAL_VALUE, store.getReadOnly("A0").getValue());
+    for (int i = 1; i <= 3; i++) {
+      int value = i;
+      runInOtherThread(() -> container.withLocalTx(() -> store.update("A1", store.get("A1").setValue(value))));
+    }
+    runInOtherThread(() -> container.withLocalTx(() -> store.remove("A0")));
+    assertEquals(1, container.getNumberOfActiveSnapshots());
+    assertEquals(2, storeImpl.getNumberOfEntriesWithOlderVersions());
+    assertEquals(NUMBER_OF_KEYS, store.size()); // the deleted entry is still visible for the snapshot
+    assertEquals(INITIAL_VALUE, store.getReadOnly("A0").getValue());
+    assertEquals(INITIAL_VALUE, store.getReadOnly("A1").getValue());
+    tx.commit();
+    assertEquals(0, container.getNumberOfActiveSnapshots());
+    assertEquals(0, storeImpl.getNumberOfEntriesWithOlderVersions());
+    assertEquals(NUMBER_OF_KEYS - 1, store.size());
+    assertNull(store.getReadOnly("A0"));
+    assertEquals(3, store.getReadOnly("A1").getValue());
+  }
+
+  @Test
+  public void testSnapshotOfAbandonedTransactionDeregistered() {
+    JacisTestHelper testHelper = new JacisTestHelper();
+    JacisStore<String, TestObject> store = testHelper.createTestStoreWithSnapshotIsolation();
+    JacisContainer container = store.getContainer();
+    JacisStoreImpl<?, ?, ?> storeImpl = (JacisStoreImpl<?, ?, ?>) store;
+    container.withLocalTx(() -> store.update("A0", new TestObject("A0", 0)));
+    container.beginLocalTransaction();
+    assertEquals(0, store.getReadOnly("A0").getValue()); // the abandoned TX registers its snapshot
+    testHelper.abandonTx();
+    for (int i = 1; i <= 3; i++) {
+      int value = i;
+      container.withLocalTx(() -> store.update("A0", store.get("A0").setValue(value)));
+    }
+    assertEquals(1, container.getNumberOfActiveSnapshots()); // still registered for the abandoned TX
+    assertEquals(1, storeImpl.getNumberOfEntriesWithOlderVersions());
+    for (int i = 0; i < 100 && container.getNumberOfActiveSnapshots() > 0; i++) {
+      System.gc();
+    }
+    assertEquals(0, container.getNumberOfActiveSnapshots());
+    container.withLocalTx(() -> store.update("A0", store.get("A0").setValue(4))); // the older versions are reclaimed on the next commit
+    assertEquals(0, storeImpl.getNumberOfEntriesWithOlderVersions());
+    container.withLocalTx(() -> assertEquals(4, store.getReadOnly("A0").getValue()));
+  }
+
+  @Test
+  public void testConsistentSnapshotDuringParallelCommits() throws InterruptedException {
+    JacisContainer container = createContainer();
+    JacisStore<String, TestObject> storeA = container.getStore(String.class, TestObject.class);
+    JacisStore<String, TestObjectWithoutReadOnlyMode> storeB = container.getStore(String.class, TestObjectWithoutReadOnlyMode.class);
+    long expectedSum = 2 * NUMBER_OF_KEYS * INITIAL_VALUE;
+    int numberOfThreads = 3;
+    int transfersPerThread = 200;
+    AtomicBoolean finished = new AtomicBoolean(false);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numberOfThreads; t++) {
+      int threadIdx = t;
+      threads.add(new Thread("TransferThread-" + t) {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < transfersPerThread; i++) {
+              String keyA = "A" + ((threadIdx + i) % NUMBER_OF_KEYS);
+              String keyB = "B" + ((threadIdx * 3 + i) % NUMBER_OF_KEYS);
+              boolean done = false;
+              while (!done) {
+                try {
+                  container.withLocalTx(() -> {
+                    storeA.update(keyA, storeA.get(keyA).setValue(storeA.get(keyA).getValue() - 1));
+                    storeB.update(keyB, storeB.get(keyB).setValue(storeB.get(keyB).getValue() + 1));
+                  });
+                  done = true;
+                } catch (JacisStaleObjectException e) {
+                  // retry
+                }
+              }
+            }
+          } catch (Throwable e) {
+            failure.set(e);
+          }
+        }
+      });
+    }
+    Thread reader = new Thread("ReaderThread") {
+      @Override
+      public void run() {
+        int checks = 0;
+        while (!finished.get()) {
+          container.withLocalTx(() -> { // no atomic operation needed, the reporting TX reads both stores as of its snapshot
+            for (int i = 0; i < 3; i++) {
+              long sum = storeA.streamReadOnly().mapToLong(TestObject::getValue).sum() + storeB.streamReadOnly().mapToLong(TestObjectWithoutReadOnlyMode::getValue).sum();
+              if (sum != expectedSum) {
+                failure.set(new AssertionError("Inconsistent sum " + sum + " (expected " + expectedSum + ") in snapshot!"));
+              }
+              Thread.yield();
+            }
+          });
+          checks++;
+        }
+        log.info("checked sum {} times during parallel commits", checks);
+      }
+    };
+    reader.start();
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    finished.set(true);
+    reader.join();
+    if (failure.get() != null) {
+      throw new AssertionError("Failure in thread: " + failure.get(), failure.get());
+    }
+    assertEquals(NUMBER_OF_KEYS * INITIAL_VALUE - numberOfThreads * transfersPerThread, storeA.streamReadOnly().mapToLong(TestObject::getValue).sum());
+    assertTrue(container.getLastCommitSequence() > numberOfThreads * transfersPerThread);
+    assertEquals(0, container.getNumberOfActiveSnapshots());
+    assertEquals(0, ((JacisStoreImpl<?, ?, ?>) storeA).getNumberOfEntriesWithOlderVersions());
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.cloning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.objectadapter.cloning.JacisDeepCopyCloner;
+import org.jacis.store.JacisStore;
+import org.junit.Test;
+
+public class JacisCloningObjectAdapterTest {
+
+  @Test
+  public void testCloneByCachedCloneMethod() {
+    JacisCloningObjectAdapter<PlainCloneableObject> adapter = new JacisCloningObjectAdapter<>();
+    PlainCloneableObject orig = new PlainCloneableObject();
+    orig.name = "obj-1";
+    for (int i = 0; i < 3; i++) {
+      PlainCloneableObject clone = adapter.cloneCommitted2WritableTxView(orig);
+      assertNotSame(orig, clone);
+      assertEquals("obj-1", clone.name);
+    }
+    SubClassedCloneableObject sub = new SubClassedCloneableObject(); // clone method declared in the super class
+    sub.name = "obj-2";
+    PlainCloneableObject subClone = adapter.cloneCommitted2WritableTxView(sub);
+    assertNotSame(sub, subClone);
+    assertTrue(subClone instanceof SubClassedCloneableObject);
+    assertEquals("obj-2", subClone.name);
+  }
+
+  @Test
+  public void testCloneWithoutCloneMethodFails() {
+    JacisCloningObjectAdapter<PlainObject> adapter = new JacisCloningObjectAdapter<>();
+    for (int i = 0; i < 2; i++) { // the lookup failure is cached as well
+      try {
+        adapter.cloneCommitted2WritableTxView(new PlainObject());
+        fail("cloning an object without clone method should fail");
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("No clone method declared"));
+      }
+    }
+  }
+
+  @Test
+  public void testDeepCopy() {
+    PlainObject orig = new PlainObject();
+    orig.name = "obj-1";
+    orig.value = 42;
+    orig.values = new int[] { 1, 2, 3 };
+    orig.children.add(new PlainObject());
+    orig.children.add(orig.children.get(0)); // shared reference
+    orig.children.get(0).parent = orig; // cycle
+    orig.attributes.put("b", 2L);
+    orig.attributes.put("a", 1L);
+    PlainObject copy = JacisDeepCopyCloner.deepCopy(orig);
+    assertNotSame(orig, copy);
+    assertEquals("obj-1", copy.name);
+    assertEquals(42, copy.value);
+    assertNotSame(orig.values, copy.values);
+    assertEquals(3, copy.values[2]);
+    assertNotSame(orig.children, copy.children);
+    assertNotSame(orig.children.get(0), copy.children.get(0));
+    assertSame(copy.children.get(0), copy.children.get(1));
+    assertSame(copy, copy.children.get(0).parent);
+    assertNotSame(orig.attributes, copy.attributes);
+    assertTrue(copy.attributes instanceof TreeMap);
+    assertEquals(orig.attributes, copy.attributes);
+  }
+
+  @Test
+  public void testStoreWithDeepCopyMode() {
+    JacisContainer container = new JacisContainer();
+    JacisCloningObjectAdapter<PlainObject> adapter = new JacisCloningObjectAdapter<PlainObject>().setUseDeepCopy(true);
+    JacisStore<String, PlainObject> store = container.createStore(new JacisObjectTypeSpec<>(String.class, PlainObject.class, adapter)).getStore();
+    PlainObject obj = new PlainObject();
+    obj.name = "obj-1";
+    obj.children.add(new PlainObject());
+    container.withLocalTx(() -> store.update(obj.name, obj));
+    obj.children.clear(); // modifying the original must not affect the committed value
+    assertEquals(1, store.getReadOnly("obj-1").children.size());
+    container.withLocalTx(() -> {
+      PlainObject txObj = store.get("obj-1");
+      txObj.value = 7;
+      store.update("obj-1", txObj);
+    });
+    assertEquals(7, store.getReadOnly("obj-1").value);
+  }
+
+  public static class PlainObject {
+    private String name;
+    private long value;
+    private int[] values;
+    private PlainObject parent;
+    private final List<PlainObject> children = new ArrayList<>();
+    private final Map<String, Long> attributes = new TreeMap<>();
+  }
+
+  public static class PlainCloneableObject implements Cloneable {
+    String name;
+
+    @Override
+    public PlainCloneableObject clone() {
+      try {
+        return (PlainCloneableObject) super.clone();
+      } catch (CloneNotSupportedException e) {
+        throw new InternalError("Could not clone " + this.getClass().getName());
+      }
+    }
+  }
+
+  public static class SubClassedCloneableObject extends PlainCloneableObject {
+    // clone method inherited
+  }
+
+}
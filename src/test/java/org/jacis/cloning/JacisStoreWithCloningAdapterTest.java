@@ -9,8 +9,13 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
 import org.jacis.container.JacisTransactionHandle;
 import org.jacis.exception.ReadOnlyException;
 import org.jacis.exception.ReadOnlyModeNotSupportedException;
@@ -251,4 +256,41 @@ public class JacisStoreWithCloningAdapterTest {
     });
   }
 
+  @Test
+  public void testStreamReadOnlyProjectedWithoutCloning() {
+    AtomicInteger clones = new AtomicInteger();
+    JacisCloningObjectAdapter<TestObjectWithoutReadOnlyMode> objectAdapter = new JacisCloningObjectAdapter<TestObjectWithoutReadOnlyMode>() {
+
+      @Override
+      public TestObjectWithoutReadOnlyMode cloneCommitted2ReadOnlyTxView(TestObjectWithoutReadOnlyMode value) {
+        clones.incrementAndGet();
+        return super.cloneCommitted2ReadOnlyTxView(value);
+      }
+
+    };
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObjectWithoutReadOnlyMode> store = container.createStore(new JacisObjectTypeSpec<>(String.class, TestObjectWithoutReadOnlyMode.class, objectAdapter)).getStore();
+    container.withLocalTx(() -> {
+      for (int i = 0; i < 100; i++) {
+        store.update("obj-" + i, new TestObjectWithoutReadOnlyMode("obj-" + i, i));
+      }
+    });
+    container.withLocalTx(() -> {
+      store.update("obj-1", store.get("obj-1").setValue(1000));
+      clones.set(0);
+      List<String> names = store.streamReadOnlyProjected(o -> o.getValue() >= 90, TestObjectWithoutReadOnlyMode::getName).collect(Collectors.toList());
+      assertEquals(11, names.size());
+      assertTrue(names.contains("obj-1"));
+      assertEquals(0, clones.get());
+      List<TestObjectWithoutReadOnlyMode> objects = store.streamReadOnlyProjected(o -> o.getValue() >= 98, o -> o).collect(Collectors.toList());
+      assertEquals(3, objects.size());
+      assertEquals(2, clones.get()); // only the returned committed objects are cloned
+      objects.forEach(o -> o.setValue(-1));
+      List<List<TestObjectWithoutReadOnlyMode>> wrapped = store.streamReadOnlyProjected(o -> o.getValue() >= 98 && o.getValue() < 100, o -> Collections.singletonList(o)).collect(Collectors.toList());
+      assertEquals(4, clones.get()); // the projection refers the committed object -> projected from a copy
+      wrapped.forEach(l -> l.get(0).setValue(-1));
+    });
+    assertEquals(0, store.streamReadOnlyProjected(o -> o.getValue() < 0, o -> o).count());
+  }
+
 }
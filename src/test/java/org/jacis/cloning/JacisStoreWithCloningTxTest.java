@@ -4,6 +4,13 @@
 
 package org.jacis.cloning;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import org.jacis.container.JacisTransactionHandle;
 import org.jacis.exception.JacisStaleObjectException;
 import org.jacis.plugin.txadapter.local.JacisLocalTransaction;
@@ -228,4 +235,109 @@ public class JacisStoreWithCloningTxTest {
     }
   }
 
+  @Test
+  public void testDeletedEntryRemovedAfterLastReferringTransaction() {
+    String testObjectName = "obj-1";
+    JacisTestHelper testHelper = new JacisTestHelper();
+    JacisStore<String, TestObject> store = testHelper.createTestStoreWithCloning();
+    store.getContainer().withLocalTx(() -> {
+      store.update(testObjectName, new TestObject(testObjectName, 1));
+    });
+    JacisLocalTransaction readingTx = store.getContainer().beginLocalTransaction();
+    assertNotNull(store.get(testObjectName)); // the reading TX refers the committed entry
+    JacisTransactionHandle readingTxHandle = testHelper.suspendTx();
+    store.getContainer().withLocalTx(() -> {
+      store.remove(testObjectName);
+    });
+    assertEquals(1, store.size()); // still referred by the reading TX
+    testHelper.resumeTx(readingTxHandle);
+    assertTrue(store.isStale(testObjectName));
+    readingTx.commit();
+    assertEquals(0, store.size());
+  }
+
+  @Test
+  public void testDeletedEntryRemovedAfterReferringTransactionAbandoned() {
+    String testObjectName = "obj-1";
+    JacisTestHelper testHelper = new JacisTestHelper();
+    JacisStore<String, TestObject> store = testHelper.createTestStoreWithCloning();
+    store.getContainer().withLocalTx(() -> {
+      store.update(testObjectName, new TestObject(testObjectName, 1));
+    });
+    store.getContainer().beginLocalTransaction();
+    assertNotNull(store.get(testObjectName)); // the abandoned TX refers the committed entry
+    testHelper.abandonTx();
+    store.getContainer().withLocalTx(() -> {
+      store.remove(testObjectName);
+    });
+    assertEquals(1, store.size()); // still referred by the abandoned TX
+    for (int i = 0; i < 100 && store.size() > 0; i++) {
+      System.gc();
+      store.getContainer().withLocalTx(() -> {
+        store.get("obj-2"); // the views of collected transactions are purged when other views are registered
+      });
+    }
+    assertEquals(0, store.size());
+  }
+
+  @Test
+  public void testParallelStreamReadOnlyMergesTxView() {
+    JacisTestHelper testHelper = new JacisTestHelper();
+    JacisStore<String, TestObject> store = testHelper.createTestStoreWithCloning();
+    store.getContainer().withLocalTx(() -> {
+      for (int i = 0; i < 1000; i++) {
+        store.update("obj-" + i, new TestObject("obj-" + i, i));
+      }
+    });
+    store.getContainer().withLocalTx(() -> {
+      store.update("obj-1", store.get("obj-1").setValue(2000));
+      store.remove("obj-2");
+      store.update("obj-new", new TestObject("obj-new", 3000));
+      long expectedSum = store.streamReadOnly().mapToLong(TestObject::getValue).sum();
+      assertEquals(expectedSum, store.parallelStreamReadOnly(null).mapToLong(TestObject::getValue).sum());
+      assertEquals(1000, store.parallelStreamReadOnly(null).count());
+      assertEquals(2, store.parallelStreamReadOnly(o -> o.getValue() >= 2000).count());
+    });
+    assertEquals(1000, store.parallelStreamReadOnly(null).count());
+    assertEquals(2000, store.parallelStreamReadOnly(o -> o.getName().equals("obj-1")).findAny().get().getValue());
+  }
+
+  @Test
+  public void testGetPageReadOnly() {
+    JacisTestHelper testHelper = new JacisTestHelper();
+    JacisStore<String, TestObject> store = testHelper.createTestStoreWithCloning();
+    store.getContainer().withLocalTx(() -> {
+      for (int i = 0; i < 100; i++) {
+        store.update("obj-" + i, new TestObject("obj-" + i, (i * 37) % 100));
+      }
+    });
+    Comparator<TestObject> byValue = Comparator.comparingLong(TestObject::getValue);
+    for (long offset : new long[] { 0, 10, 95, 100 }) {
+      List<TestObject> expected = store.streamReadOnly(o -> o.getValue() % 2 == 0).sorted(byValue).skip(offset).limit(10).collect(Collectors.toList());
+      assertEquals(expected, store.getPageReadOnly(o -> o.getValue() % 2 == 0, byValue, offset, 10));
+    }
+    List<Long> page = store.getWrapperPageReadOnly(TestObject::getValue, null, Comparator.reverseOrder(), 5, 3);
+    assertEquals(Arrays.asList(94L, 93L, 92L), page);
+  }
+
+  @Test
+  public void testGetPageReadOnlyWithDuplicateSortKeys() {
+    JacisTestHelper testHelper = new JacisTestHelper();
+    JacisStore<String, TestObject> store = testHelper.createTestStoreWithCloning();
+    store.getContainer().withLocalTx(() -> {
+      for (int i = 0; i < 100; i++) {
+        store.update("obj-" + i, new TestObject("obj-" + i, i % 7));
+      }
+    });
+    Comparator<TestObject> byValue = Comparator.comparingLong(TestObject::getValue);
+    Set<String> pagedNames = new HashSet<>();
+    for (long offset = 0; offset < 100; offset += 8) {
+      List<String> expected = store.streamReadOnly().sorted(byValue).skip(offset).limit(8).map(TestObject::getName).collect(Collectors.toList());
+      List<String> page = store.getPageReadOnly(null, byValue, offset, 8).stream().map(TestObject::getName).collect(Collectors.toList());
+      assertEquals(expected, page);
+      pagedNames.addAll(page);
+    }
+    assertEquals(100, pagedNames.size()); // no entry skipped or contained in two pages
+  }
+
 }
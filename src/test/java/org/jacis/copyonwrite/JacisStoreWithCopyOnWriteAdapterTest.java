@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.copyonwrite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.persistent.JacisPersistentMap;
+import org.jacis.plugin.objectadapter.cloning.JacisCloneable;
+import org.jacis.plugin.objectadapter.copyonwrite.JacisCopyOnWriteObjectAdapter;
+import org.jacis.plugin.txadapter.local.JacisLocalTransaction;
+import org.jacis.store.JacisStore;
+import org.junit.Test;
+
+public class JacisStoreWithCopyOnWriteAdapterTest {
+
+  private JacisStore<String, Catalog> createStore(JacisContainer container) {
+    JacisObjectTypeSpec<String, Catalog, Catalog> spec = new JacisObjectTypeSpec<>(String.class, Catalog.class, new JacisCopyOnWriteObjectAdapter<Catalog>());
+    return container.createStore(spec).getStore();
+  }
+
+  @Test
+  public void testTxViewSharesStructureWithCommittedValue() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, Catalog> store = createStore(container);
+    container.withLocalTx(() -> {
+      Catalog catalog = new Catalog("cat");
+      for (int i = 0; i < 1000; i++) {
+        catalog.setItems(catalog.getItems().with("item-" + i, (long) i));
+      }
+      store.update("cat", catalog);
+    });
+    JacisPersistentMap<String, Long> committedItems = store.getReadOnly("cat").getItems();
+    JacisLocalTransaction tx = container.beginLocalTransaction();
+    Catalog txCatalog = store.get("cat");
+    assertSame(committedItems, txCatalog.getItems());
+    txCatalog.setItems(txCatalog.getItems().with("item-0", -1L).without("item-1"));
+    store.update("cat", txCatalog);
+    tx.commit();
+    Catalog committed = store.getReadOnly("cat");
+    assertNotSame(committedItems, committed.getItems());
+    assertEquals(Long.valueOf(-1), committed.getItems().get("item-0"));
+    assertNull(committed.getItems().get("item-1"));
+    assertEquals(999, committed.getItems().size());
+    assertEquals(1000, committedItems.size()); // old version unchanged
+  }
+
+  @Test
+  public void testRollbackKeepsCommittedValue() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, Catalog> store = createStore(container);
+    container.withLocalTx(() -> store.update("cat", new Catalog("cat").setItems(JacisPersistentMap.<String, Long> empty().with("a", 1L))));
+    JacisLocalTransaction tx = container.beginLocalTransaction();
+    Catalog txCatalog = store.get("cat");
+    store.update("cat", txCatalog.setItems(txCatalog.getItems().with("a", 2L)));
+    tx.rollback();
+    assertEquals(Long.valueOf(1), store.getReadOnly("cat").getItems().get("a"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testImmutableValues() {
+    JacisContainer container = new JacisContainer();
+    Class<JacisPersistentMap<String, Long>> valueClass = (Class<JacisPersistentMap<String, Long>>) (Class<?>) JacisPersistentMap.class;
+    JacisObjectTypeSpec<String, JacisPersistentMap<String, Long>, JacisPersistentMap<String, Long>> spec = new JacisObjectTypeSpec<>(String.class, valueClass,
+        JacisCopyOnWriteObjectAdapter.forImmutableValues());
+    JacisStore<String, JacisPersistentMap<String, Long>> store = container.createStore(spec).getStore();
+    container.withLocalTx(() -> store.update("m", JacisPersistentMap.<String, Long> empty().with("a", 1L)));
+    JacisPersistentMap<String, Long> committed = store.getReadOnly("m");
+    container.withLocalTx(() -> {
+      assertSame(committed, store.get("m"));
+      store.update("m", store.get("m").with("b", 2L));
+    });
+    assertEquals(2, store.getReadOnly("m").size());
+    assertEquals(1, committed.size());
+  }
+
+  public static class Catalog implements JacisCloneable<Catalog> {
+
+    private final String name;
+    private JacisPersistentMap<String, Long> items = JacisPersistentMap.empty();
+
+    public Catalog(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public JacisPersistentMap<String, Long> getItems() {
+      return items;
+    }
+
+    public Catalog setItems(JacisPersistentMap<String, Long> items) {
+      this.items = items;
+      return this;
+    }
+
+    @Override
+    public Catalog clone() {
+      try {
+        return (Catalog) super.clone(); // shallow copy sharing the persistent map
+      } catch (CloneNotSupportedException e) {
+        throw new InternalError("Could not clone " + this.getClass().getName());
+      }
+    }
+  }
+
+}
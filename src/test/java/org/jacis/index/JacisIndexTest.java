@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.exception.JacisUniqueIndexViolationException;
+import org.jacis.store.JacisIndexRegistry;
+import org.jacis.store.JacisStore;
+import org.jacis.testhelper.JacisTestHelper;
+import org.jacis.testhelper.TestObject;
+import org.junit.Test;
+
+public class JacisIndexTest {
+
+  private JacisStore<String, TestObject> createStore(JacisContainer container) {
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning(container);
+    container.withLocalTx(() -> {
+      store.update("A", new TestObject("A", 1).setStrValue("a"));
+      store.update("B", new TestObject("B", 2).setStrValue("b"));
+      store.update("C", new TestObject("C", 2).setStrValue("c"));
+    });
+    return store;
+  }
+
+  private static List<String> names(List<TestObject> objects) {
+    return objects.stream().map(TestObject::getName).sorted().collect(Collectors.toList());
+  }
+
+  @Test
+  public void testIndexInitializedWithCommittedValues() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container);
+    JacisIndexRegistry<String, TestObject> registry = store.getIndexRegistry();
+    JacisUniqueIndex<String, String, TestObject> byStr = registry.createUniqueIndex("byStr", TestObject::getStrValue);
+    JacisNonUniqueIndex<Long, String, TestObject> byValue = registry.createNonUniqueIndex("byValue", TestObject::getValue);
+    assertEquals("B", registry.getUniqueReadOnly(byStr, "b").getName());
+    assertNull(registry.getUniqueReadOnly(byStr, "x"));
+    assertEquals(names(store.getAllReadOnly(o -> o.getValue() == 2)), names(registry.getMultiReadOnly(byValue, 2L)));
+  }
+
+  @Test
+  public void testIndexMaintainedOnCommit() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container);
+    JacisIndexRegistry<String, TestObject> registry = store.getIndexRegistry();
+    JacisNonUniqueIndex<Long, String, TestObject> byValue = registry.createNonUniqueIndex("byValue", TestObject::getValue);
+    container.withLocalTx(() -> {
+      store.update("A", store.get("A").setValue(2));
+      store.remove("B");
+      store.update("D", new TestObject("D", 1));
+    });
+    assertEquals(names(store.getAllReadOnly(o -> o.getValue() == 2)), names(registry.getMultiReadOnly(byValue, 2L)));
+    assertEquals(names(store.getAllReadOnly(o -> o.getValue() == 1)), names(registry.getMultiReadOnly(byValue, 1L)));
+    store.clear();
+    assertTrue(byValue.getCommittedPrimaryKeys(2L).isEmpty());
+  }
+
+  @Test
+  public void testLookupMergesTransactionalChanges() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container);
+    JacisIndexRegistry<String, TestObject> registry = store.getIndexRegistry();
+    JacisNonUniqueIndex<Long, String, TestObject> byValue = registry.createNonUniqueIndex("byValue", TestObject::getValue);
+    container.withLocalTx(() -> {
+      store.update("A", store.get("A").setValue(2));
+      store.update("C", store.get("C").setValue(3));
+      store.update("D", new TestObject("D", 2));
+      assertEquals(names(store.getAllReadOnly(o -> o.getValue() == 2)), names(registry.getMultiReadOnly(byValue, 2L)));
+      assertEquals(names(store.getAllReadOnly(o -> o.getValue() == 2)), names(registry.getMulti(byValue, 2L)));
+      assertEquals(names(store.getAllReadOnly(o -> o.getValue() == 3)), names(registry.getMultiReadOnly(byValue, 3L)));
+      assertTrue(registry.getMultiReadOnly(byValue, 1L).isEmpty());
+    });
+  }
+
+  @Test
+  public void testSortedIndexRange() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container);
+    JacisIndexRegistry<String, TestObject> registry = store.getIndexRegistry();
+    JacisSortedIndex<Long, String, TestObject> byValue = registry.createSortedIndex("byValue", TestObject::getValue);
+    container.withLocalTx(() -> {
+      store.update("D", new TestObject("D", 0));
+      store.update("E", new TestObject("E", 5));
+      List<TestObject> range = registry.getRangeReadOnly(byValue, 1L, 5L);
+      assertEquals(3, range.size());
+      assertEquals("A", range.get(0).getName());
+      assertEquals(0, registry.getRange(byValue, null, 1L).get(0).getValue());
+      assertEquals(5, registry.getRangeReadOnly(byValue, 3L, null).get(0).getValue());
+    });
+  }
+
+  @Test
+  public void testLookupInSnapshot() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithSnapshotIsolation(container);
+    container.withLocalTx(() -> {
+      store.update("A", new TestObject("A", 1).setStrValue("a"));
+      store.update("B", new TestObject("B", 2).setStrValue("b"));
+      store.update("C", new TestObject("C", 2).setStrValue("c"));
+    });
+    JacisIndexRegistry<String, TestObject> registry = store.getIndexRegistry();
+    JacisUniqueIndex<String, String, TestObject> byStr = registry.createUniqueIndex("byStr", TestObject::getStrValue);
+    JacisSortedIndex<Long, String, TestObject> byValue = registry.createSortedIndex("byValue", TestObject::getValue);
+    container.withLocalTx(() -> {
+      assertEquals(1, store.getReadOnly("A").getValue()); // takes the snapshot
+      Thread otherThread = new Thread(() -> container.withLocalTx(() -> {
+        store.update("A", store.get("A").setValue(3).setStrValue("x"));
+        store.update("B", store.get("B").setValue(0));
+      }));
+      otherThread.start();
+      try {
+        otherThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      assertEquals("A", registry.getUniqueReadOnly(byStr, "a").getName()); // the values of the snapshot (not the latest committed values)
+      assertNull(registry.getUniqueReadOnly(byStr, "x"));
+      assertEquals(Arrays.asList("B", "C"), names(registry.getMultiReadOnly(byValue, 2L)));
+      assertTrue(registry.getMultiReadOnly(byValue, 3L).isEmpty());
+      assertEquals(Arrays.asList("A", "B", "C"), names(registry.getRangeReadOnly(byValue, 1L, 3L)));
+      assertEquals("A", registry.getPageReadOnly(byValue, null, null, 0, 1).get(0).getName());
+      assertEquals(2, registry.getPageReadOnly(byValue, 1L, null, 1, 5).size());
+    });
+    assertEquals(Arrays.asList("A"), names(registry.getMultiReadOnly(byValue, 3L))); // outside of a transaction the latest committed values
+    assertEquals("A", registry.getUniqueReadOnly(byStr, "x").getName());
+  }
+
+  @Test
+  public void testUniqueIndexViolation() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container);
+    JacisIndexRegistry<String, TestObject> registry = store.getIndexRegistry();
+    JacisUniqueIndex<String, String, TestObject> byStr = registry.createUniqueIndex("byStr", TestObject::getStrValue);
+    try {
+      container.withLocalTx(() -> store.update("D", new TestObject("D", 4).setStrValue("a")));
+      fail("unique index violation expected");
+    } catch (JacisUniqueIndexViolationException e) {
+      assertEquals("byStr", e.getIndexName());
+      assertEquals("a", e.getIndexKey());
+    }
+    assertNull(store.getReadOnly("D"));
+    container.withLocalTx(() -> { // swapping the index keys inside one transaction is allowed
+      store.update("A", store.get("A").setStrValue("b"));
+      store.update("B", store.get("B").setStrValue("a"));
+    });
+    assertEquals("B", registry.getUniqueReadOnly(byStr, "a").getName());
+    assertEquals("A", registry.getUniqueReadOnly(byStr, "b").getName());
+    container.withLocalTx(() -> store.update("D", new TestObject("D", 4).setStrValue("d"))); // reservations released
+    assertEquals("D", registry.getUniqueReadOnly(byStr, "d").getName());
+  }
+
+  @Test
+  public void testSortedIndexPaging() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning(container);
+    container.withLocalTx(() -> {
+      for (int i = 0; i < 50; i++) {
+        store.update("obj-" + i, new TestObject("obj-" + i, i));
+      }
+    });
+    JacisIndexRegistry<String, TestObject> registry = store.getIndexRegistry();
+    JacisSortedIndex<Long, String, TestObject> byValue = registry.createSortedIndex("byValue", TestObject::getValue);
+    List<TestObject> page = registry.getPageReadOnly(byValue, 10L, null, 5, 3);
+    assertEquals(Arrays.asList(15L, 16L, 17L), page.stream().map(TestObject::getValue).collect(Collectors.toList()));
+    container.withLocalTx(() -> {
+      store.update("obj-16", store.get("obj-16").setValue(100)); // moved behind the range
+      store.update("obj-new", new TestObject("obj-new", 15)); // additional entry with equal index key
+      List<Long> values = registry.getPageReadOnly(byValue, 10L, 20L, 5, 4).stream().map(TestObject::getValue).collect(Collectors.toList());
+      assertEquals(Arrays.asList(15L, 15L, 17L, 18L), values);
+      assertEquals(Arrays.asList(100L), registry.getPageReadOnly(byValue, 50L, null, 0, 10).stream().map(TestObject::getValue).collect(Collectors.toList()));
+    });
+  }
+
+}
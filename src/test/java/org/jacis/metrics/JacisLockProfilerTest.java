@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.container.JacisTransactionHandle;
+import org.jacis.plugin.JacisTransactionListenerAdapter;
+import org.jacis.plugin.metrics.JacisLockProfiler;
+import org.jacis.plugin.metrics.JacisLockProfiler.CallSiteStatistics;
+import org.jacis.plugin.metrics.JacisLockProfiler.LockHold;
+import org.jacis.plugin.metrics.JacisLockProfiler.LockMode;
+import org.jacis.plugin.metrics.JacisLockProfiler.QueueStatistics;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.txadapter.local.JacisLocalTransaction;
+import org.jacis.store.JacisStore;
+import org.jacis.testhelper.JacisTestHelper;
+import org.jacis.testhelper.TestObject;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class JacisLockProfilerTest {
+
+  private static final Logger log = LoggerFactory.getLogger(JacisLockProfilerTest.class);
+
+  private static final long SLOW_COMMIT_MS = 100;
+
+  private CallSiteStatistics findCallSite(JacisLockProfiler profiler, String lockName, LockMode mode, String callSite) {
+    for (CallSiteStatistics statistics : profiler.getCallSiteStatistics()) {
+      if (statistics.getLockName().equals(lockName) && statistics.getMode() == mode && statistics.getCallSite().equals(callSite)) {
+        return statistics;
+      }
+    }
+    return null;
+  }
+
+  private void commitUpdate(JacisContainer container, JacisStore<String, TestObject> store, String txDescription, String key) {
+    JacisLocalTransaction tx = container.beginLocalTransaction(txDescription);
+    store.update(key, new TestObject(key, 1));
+    tx.commit();
+  }
+
+  private void awaitWaitingForLock(Thread thread) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (thread.getState() != Thread.State.WAITING) {
+      assertTrue(thread.getName() + " does not wait for the lock (state: " + thread.getState() + ")", System.currentTimeMillis() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning(container);
+    container.withLocalTx(() -> store.update("K0", new TestObject("K0", 0)));
+    assertFalse(container.isLockProfiling());
+    assertTrue(container.getLockProfiler().getCallSiteStatistics().isEmpty());
+    assertTrue(container.getLockProfilingReport().startsWith("=== JACIS lock profile"));
+  }
+
+  @Test
+  public void testCallSitesRecorded() {
+    JacisContainer container = new JacisContainer().setLockProfiling(true);
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning(container);
+    for (int i = 0; i < 10; i++) {
+      int idx = i;
+      container.withLocalTx(() -> store.update("K" + idx, new TestObject("K" + idx, idx)));
+    }
+    JacisLockProfiler profiler = container.getLockProfiler();
+    CallSiteStatistics commits = findCallSite(profiler, "transactionDemarcationLock", LockMode.WRITE, "JacisContainer.internalCommit");
+    assertTrue("no statistics for the commits in " + profiler.getCallSiteStatistics(), commits != null);
+    assertEquals(10, commits.getHolds().getCount());
+    CallSiteStatistics entryViews = findCallSite(profiler, "transactionDemarcationLock", LockMode.READ, "JacisStoreImpl.getOrCreateEntryTxView");
+    assertTrue("no statistics for the creation of the entry views in " + profiler.getCallSiteStatistics(), entryViews != null);
+    assertEquals(10, entryViews.getWaits().getCount());
+    container.setLockProfiling(false);
+    container.withLocalTx(() -> store.update("K0", new TestObject("K0", 42)));
+    assertEquals(10, commits.getHolds().getCount());
+    profiler.reset();
+    assertTrue(profiler.getCallSiteStatistics().isEmpty());
+  }
+
+  @Test
+  public void testStoreAccessLockProfiled() {
+    JacisContainer container = new JacisContainer().setLockProfiling(true);
+    JacisObjectTypeSpec<String, TestObject, TestObject> spec = new JacisObjectTypeSpec<>(String.class, TestObject.class, new JacisCloningObjectAdapter<TestObject>());
+    JacisStore<String, TestObject> store = container.createStore(spec.setSyncStoreOnContainerTransaction(false)).getStore();
+    container.withLocalTx(() -> store.update("K0", new TestObject("K0", 0)));
+    assertEquals(42, (long) store.computeAtomic(() -> 42L));
+    JacisLockProfiler profiler = container.getLockProfiler();
+    assertTrue(findCallSite(profiler, "storeAccessLock(String->TestObject)", LockMode.WRITE, "JacisStoreImpl.internalCommit") != null);
+    assertTrue(findCallSite(profiler, "storeAccessLock(String->TestObject)", LockMode.READ, "JacisStoreImpl.computeAtomic") != null);
+  }
+
+  @Test
+  public void testLongestHoldsAndQueueLengths() throws InterruptedException {
+    JacisContainer container = new JacisContainer().setLockProfiling(true);
+    CountDownLatch slowCommitStarted = new CountDownLatch(1);
+    CountDownLatch othersWaiting = new CountDownLatch(1);
+    container.registerTransactionListener(new JacisTransactionListenerAdapter() {
+      @Override
+      public void beforeCommit(JacisContainer container, JacisTransactionHandle tx) {
+        if (tx.getTxDescription().startsWith("slow")) {
+          slowCommitStarted.countDown();
+          try {
+            othersWaiting.await(); // holding the write lock of the commit
+            Thread.sleep(SLOW_COMMIT_MS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    });
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning(container);
+    container.withLocalTx(() -> store.update("K0", new TestObject("K0", 0)));
+    CountDownLatch writerUpdated = new CountDownLatch(1);
+    CountDownLatch commitWriter = new CountDownLatch(1);
+    Thread writer = new Thread(() -> { // already accessed its entry, waits for the write lock to commit
+      JacisLocalTransaction tx = container.beginLocalTransaction("fastTx-writer");
+      store.update("K1", new TestObject("K1", 1));
+      writerUpdated.countDown();
+      try {
+        commitWriter.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      tx.commit();
+    }, "Committer-writer");
+    Thread slow = new Thread(() -> commitUpdate(container, store, "slowTx", "K0"), "Committer-slow");
+    List<Thread> readers = new ArrayList<>(); // wait for the read lock to access their entries
+    for (int t = 2; t < 4; t++) {
+      String key = "K" + t;
+      readers.add(new Thread(() -> commitUpdate(container, store, "fastTx-" + key, key), "Committer-" + t));
+    }
+    writer.start();
+    writerUpdated.await();
+    slow.start();
+    slowCommitStarted.await();
+    commitWriter.countDown();
+    awaitWaitingForLock(writer);
+    for (Thread reader : readers) {
+      reader.start();
+      awaitWaitingForLock(reader);
+    }
+    othersWaiting.countDown();
+    slow.join();
+    writer.join();
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    JacisLockProfiler profiler = container.getLockProfiler();
+    log.info("{}", container.getLockProfilingReport());
+    LockHold longestHold = profiler.getLongestHolds().get(0);
+    assertTrue("longest hold " + longestHold + " should be the slow TX", longestHold.getTxDescription().contains("slowTx"));
+    assertTrue(longestHold.getHoldNanos() >= SLOW_COMMIT_MS * 1000 * 1000);
+    assertEquals("transactionDemarcationLock", longestHold.getLockName());
+    assertEquals(LockMode.WRITE, longestHold.getMode());
+    QueueStatistics queue = profiler.getQueueStatistics().get(0);
+    assertEquals("transactionDemarcationLock", queue.getLockName());
+    assertTrue("expected a waiting writer in " + queue.getWaitingWriters(), queue.getWaitingWriters().getMax() >= 1);
+    CallSiteStatistics mostWaiting = profiler.getCallSiteStatistics().get(0); // the other TXs already wait for the read lock to access the entries
+    assertEquals("JacisStoreImpl.getOrCreateEntryTxView", mostWaiting.getCallSite());
+    assertEquals(LockMode.READ, mostWaiting.getMode());
+    assertTrue(mostWaiting.getWaits().getMax() >= SLOW_COMMIT_MS / 2 * 1000 * 1000);
+  }
+
+  @Test
+  public void testHoldsAcquiredWhileDisabledIgnored() {
+    JacisContainer container = new JacisContainer();
+    Lock lock = container.getTransactionDemarcationLock().writeLock();
+    JacisLockProfiler profiler = container.getLockProfiler();
+    lock.lock();
+    container.setLockProfiling(true);
+    lock.unlock(); // acquired before enabling the profiler
+    container.setLockProfiling(true);
+    lock.lock();
+    container.setLockProfiling(false);
+    container.setLockProfiling(true);
+    lock.unlock(); // acquired before the profiler was disabled
+    assertTrue(profiler.getCallSiteStatistics().isEmpty());
+    lock.lock();
+    lock.unlock();
+    assertEquals(1, profiler.getCallSiteStatistics().size());
+    assertEquals("JacisLockProfilerTest.testHoldsAcquiredWhileDisabledIgnored", profiler.getCallSiteStatistics().get(0).getCallSite());
+  }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.exception.JacisStaleObjectException;
+import org.jacis.plugin.metrics.JacisHistogram;
+import org.jacis.plugin.metrics.JacisMeasuringObjectAdapter;
+import org.jacis.plugin.metrics.JacisMetrics.TxDemarcationPhase;
+import org.jacis.plugin.metrics.JacisNoOpMetrics;
+import org.jacis.plugin.metrics.JacisStatisticsMetrics;
+import org.jacis.plugin.metrics.JacisStatisticsMetrics.StoreStatistics;
+import org.jacis.plugin.metrics.JacisStoreMetrics.CloneOperation;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.txadapter.local.JacisLocalTransaction;
+import org.jacis.store.JacisStore;
+import org.jacis.testhelper.JacisTestHelper;
+import org.jacis.testhelper.TestObject;
+import org.junit.Test;
+
+public class JacisMetricsTest {
+
+  @Test
+  public void testHistogram() {
+    JacisHistogram histogram = new JacisHistogram();
+    assertEquals(0, histogram.getValueAtPercentile(50));
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(500500, histogram.getSum());
+    assertEquals(1000, histogram.getMax());
+    assertEquals(500.5, histogram.getMean(), 0.001);
+    long p50 = histogram.getValueAtPercentile(50);
+    assertTrue("p50 " + p50 + " should be about 500", p50 >= 500 && p50 <= 500 * 9 / 8);
+    long p99 = histogram.getValueAtPercentile(99);
+    assertTrue("p99 " + p99 + " should be about 990", p99 >= 990 && p99 <= 1000);
+    assertEquals(1000, histogram.getValueAtPercentile(100));
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+  }
+
+  @Test
+  public void testHistogramLargeValues() {
+    JacisHistogram histogram = new JacisHistogram();
+    histogram.record(Long.MAX_VALUE);
+    histogram.record(-5);
+    assertEquals(2, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(50));
+    assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testNoMetricsByDefault() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning(container);
+    assertSame(JacisNoOpMetrics.INSTANCE, container.getMetrics());
+    assertTrue(store.getObjectAdapter() instanceof JacisCloningObjectAdapter);
+  }
+
+  @Test
+  public void testCommitAndRollbackRecorded() {
+    JacisStatisticsMetrics metrics = new JacisStatisticsMetrics();
+    JacisContainer container = new JacisContainer().setMetrics(metrics);
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning(container);
+    assertTrue(store.getObjectAdapter() instanceof JacisMeasuringObjectAdapter);
+    for (int i = 0; i < 10; i++) {
+      int idx = i;
+      container.withLocalTx(() -> {
+        store.update("A" + idx, new TestObject("A" + idx, idx));
+        store.update("B" + idx, new TestObject("B" + idx, idx));
+      });
+    }
+    JacisLocalTransaction tx = container.beginLocalTransaction("rollback");
+    store.update("A0", store.get("A0").setValue(42));
+    tx.rollback();
+    assertEquals(0, store.getReadOnly("A0").getValue());
+    assertEquals(10, metrics.getTxDemarcationDurations(TxDemarcationPhase.PREPARE).getCount());
+    assertEquals(10, metrics.getTxDemarcationDurations(TxDemarcationPhase.COMMIT).getCount());
+    assertEquals(1, metrics.getTxDemarcationDurations(TxDemarcationPhase.ROLLBACK).getCount());
+    assertTrue(metrics.getDemarcationLockWaits().getCount() >= 21);
+    StoreStatistics storeStatistics = metrics.getStoreStatistics(store.getStoreIdentifier());
+    assertEquals("JacisCloningObjectAdapter", storeStatistics.getObjectAdapterName());
+    assertEquals(11, storeStatistics.getTxViewSizes().getCount());
+    assertEquals(2, storeStatistics.getTxViewSizes().getMax());
+    assertEquals(20, storeStatistics.getNumberOfClones(CloneOperation.TX_VIEW_TO_COMMITTED));
+    assertTrue(storeStatistics.getNumberOfClones(CloneOperation.COMMITTED_TO_WRITABLE) > 0);
+    assertTrue(storeStatistics.getNumberOfClones(CloneOperation.COMMITTED_TO_READ_ONLY) > 0);
+    assertTrue(storeStatistics.getStoreLockWaits().getCount() > 0);
+    assertEquals(0, storeStatistics.getNumberOfStaleObjects());
+    Map<String, Long> statistics = metrics.getStatistics();
+    assertEquals(Long.valueOf(10), statistics.get("commit.nanos.count"));
+    assertEquals(Long.valueOf(20), statistics.get("store.String->TestObject.clone.JacisCloningObjectAdapter.tx_view_to_committed.count"));
+    metrics.reset();
+    assertEquals(0, metrics.getTxDemarcationDurations(TxDemarcationPhase.COMMIT).getCount());
+    assertEquals(0, storeStatistics.getNumberOfClones(CloneOperation.TX_VIEW_TO_COMMITTED));
+  }
+
+  @Test
+  public void testStaleObjectRecorded() throws InterruptedException {
+    JacisStatisticsMetrics metrics = new JacisStatisticsMetrics();
+    JacisContainer container = new JacisContainer().setMetrics(metrics);
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning(container);
+    container.withLocalTx(() -> store.update("K0", new TestObject("K0", 0)));
+    JacisLocalTransaction tx1 = container.beginLocalTransaction("tx1");
+    store.update("K0", store.get("K0").setValue(1));
+    tx1.prepare();
+    AtomicReference<Throwable> tx2Exception = new AtomicReference<>();
+    Thread otherThread = new Thread(() -> {
+      try {
+        container.withLocalTx(() -> store.update("K0", store.get("K0").setValue(2)));
+      } catch (Throwable e) {
+        tx2Exception.set(e);
+      }
+    });
+    otherThread.start();
+    otherThread.join();
+    tx1.commit();
+    assertTrue("expected stale object exception but got: " + tx2Exception.get(), tx2Exception.get() instanceof JacisStaleObjectException);
+    StoreStatistics storeStatistics = metrics.getStoreStatistics(store.getStoreIdentifier());
+    assertEquals(1, storeStatistics.getNumberOfStaleObjects());
+    assertEquals(1.0 / 3, storeStatistics.getStaleObjectRate(), 0.001); // three transactions (one rolled back due to the conflict)
+  }
+
+  @Test
+  public void testRegisterMBean() throws Exception {
+    JacisStatisticsMetrics metrics = new JacisStatisticsMetrics();
+    JacisContainer container = new JacisContainer().setMetrics(metrics);
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning(container);
+    container.withLocalTx(() -> store.update("K0", new TestObject("K0", 0)));
+    ObjectName objectName = metrics.registerMBean("JacisMetricsTest");
+    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    try {
+      assertTrue(mBeanServer.isRegistered(objectName));
+      assertTrue(mBeanServer.getAttribute(objectName, "Statistics") != null);
+      mBeanServer.invoke(objectName, "reset", new Object[0], new String[0]);
+      assertEquals(0, metrics.getTxDemarcationDurations(TxDemarcationPhase.COMMIT).getCount());
+    } finally {
+      mBeanServer.unregisterMBean(objectName);
+    }
+  }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class JacisPersistentCollectionsTest {
+
+  @Test
+  public void testMapAgainstHashMap() {
+    Random random = new Random(4711);
+    Map<Integer, String> expected = new HashMap<>();
+    JacisPersistentMap<Integer, String> map = JacisPersistentMap.empty();
+    for (int i = 0; i < 20000; i++) {
+      int key = random.nextInt(5000);
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        map = map.without(key);
+      } else {
+        expected.put(key, "v" + i);
+        map = map.with(key, "v" + i);
+      }
+      assertEquals(expected.size(), map.size());
+    }
+    assertEquals(expected, map);
+    assertEquals(map, expected);
+    assertEquals(expected.hashCode(), map.hashCode());
+    for (int key = 0; key < 5000; key++) {
+      assertEquals(expected.get(key), map.get(key));
+      assertEquals(expected.containsKey(key), map.containsKey(key));
+    }
+    for (Integer key : expected.keySet()) {
+      map = map.without(key);
+    }
+    assertTrue(map.isEmpty());
+    assertEquals(0, map.entrySet().size());
+  }
+
+  @Test
+  public void testMapVersionsShareStructure() {
+    JacisPersistentMap<String, Integer> v1 = JacisPersistentMap.<String, Integer> empty().with("a", 1).with("b", 2);
+    JacisPersistentMap<String, Integer> v2 = v1.with("a", 10).without("b").with("c", 3);
+    assertEquals(2, v1.size());
+    assertEquals(Integer.valueOf(1), v1.get("a"));
+    assertEquals(Integer.valueOf(2), v1.get("b"));
+    assertEquals(2, v2.size());
+    assertEquals(Integer.valueOf(10), v2.get("a"));
+    assertNull(v2.get("b"));
+    assertSame(v1, v1.without("x"));
+    Integer one = v1.get("a");
+    assertSame(v1, v1.with("a", one));
+  }
+
+  @Test
+  public void testMapHashCollisions() {
+    JacisPersistentMap<CollidingKey, Integer> map = JacisPersistentMap.empty();
+    for (int i = 0; i < 10; i++) {
+      map = map.with(new CollidingKey(i), i);
+    }
+    map = map.with(null, -1);
+    assertEquals(11, map.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Integer.valueOf(i), map.get(new CollidingKey(i)));
+    }
+    assertEquals(Integer.valueOf(-1), map.get(null));
+    for (int i = 0; i < 9; i++) {
+      map = map.without(new CollidingKey(i));
+    }
+    assertEquals(2, map.size());
+    assertEquals(Integer.valueOf(9), map.get(new CollidingKey(9)));
+    assertFalse(map.containsKey(new CollidingKey(0)));
+  }
+
+  @Test
+  public void testVectorAgainstArrayList() {
+    Random random = new Random(4711);
+    List<Integer> expected = new ArrayList<>();
+    JacisPersistentVector<Integer> vector = JacisPersistentVector.empty();
+    for (int i = 0; i < 40000; i++) {
+      int op = random.nextInt(10);
+      if (op < 6 || expected.isEmpty()) {
+        expected.add(i);
+        vector = vector.append(i);
+      } else if (op < 9) {
+        int idx = random.nextInt(expected.size());
+        expected.set(idx, -i);
+        vector = vector.with(idx, -i);
+      } else {
+        expected.remove(expected.size() - 1);
+        vector = vector.withoutLast();
+      }
+    }
+    assertEquals(expected, vector);
+    assertEquals(vector, expected);
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), vector.get(i));
+    }
+    while (!vector.isEmpty()) {
+      expected.remove(expected.size() - 1);
+      vector = vector.withoutLast();
+      if (vector.size() % 1000 == 0) {
+        assertEquals(expected, vector);
+      }
+    }
+  }
+
+  @Test
+  public void testVectorVersionsShareStructure() {
+    JacisPersistentVector<Integer> v1 = JacisPersistentVector.empty();
+    for (int i = 0; i < 100; i++) {
+      v1 = v1.append(i);
+    }
+    JacisPersistentVector<Integer> v2 = v1.with(5, -5).withoutLast();
+    assertEquals(100, v1.size());
+    assertEquals(Integer.valueOf(5), v1.get(5));
+    assertEquals(99, v2.size());
+    assertEquals(Integer.valueOf(-5), v2.get(5));
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    JacisPersistentMap<String, Integer> map = JacisPersistentMap.<String, Integer> empty().with("a", 1).with("b", 2);
+    JacisPersistentVector<String> vector = JacisPersistentVector.from(Arrays.asList("x", "y", "z"));
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(map);
+      oos.writeObject(vector);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+      assertEquals(map, ois.readObject());
+      assertEquals(vector, ois.readObject());
+    }
+  }
+
+  private static class CollidingKey {
+    private final int id;
+
+    CollidingKey(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public int hashCode() {
+      return 42;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof CollidingKey && ((CollidingKey) obj).id == id;
+    }
+  }
+
+}
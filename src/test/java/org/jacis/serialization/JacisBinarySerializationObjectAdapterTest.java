@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.jacis.plugin.objectadapter.serialization.JacisBinarySerializationObjectAdapter;
+import org.jacis.plugin.objectadapter.serialization.JacisJavaSerializationObjectAdapter;
+import org.jacis.store.JacisStore;
+import org.jacis.testhelper.JacisTestHelper;
+import org.jacis.testhelper.TestObject;
+import org.junit.Test;
+
+public class JacisBinarySerializationObjectAdapterTest {
+
+  public static class Detail implements Serializable {
+    private static final long serialVersionUID = 1L;
+    int count;
+    String text;
+    Detail next;
+  }
+
+  public static class SpecialDetail extends Detail {
+    private static final long serialVersionUID = 1L;
+    double factor;
+  }
+
+  public static class ComplexObject implements Serializable {
+    private static final long serialVersionUID = 1L;
+    boolean flag;
+    byte b;
+    short s;
+    char c;
+    int i;
+    long l;
+    float f;
+    double d;
+    Integer boxed;
+    String str;
+    byte[] bytes;
+    TimeUnit unit;
+    Object any;
+    Detail detail;
+    List<String> list;
+    BigDecimal decimal;
+    transient String notSerialized = "transient";
+  }
+
+  @Test
+  public void testRoundTrip() {
+    ComplexObject obj = new ComplexObject();
+    obj.flag = true;
+    obj.b = -3;
+    obj.s = Short.MIN_VALUE;
+    obj.c = '\u20AC'; // euro sign
+    obj.i = -1;
+    obj.l = Long.MAX_VALUE;
+    obj.f = 1.5f;
+    obj.d = -0.25;
+    obj.boxed = 42;
+    obj.str = "a\u00E4\u20AC\uD83D\uDE00z"; // umlaut, euro sign and a supplementary character (surrogate pair)
+    obj.bytes = new byte[] { 1, 2, 3 };
+    obj.unit = TimeUnit.SECONDS;
+    obj.any = "any string";
+    SpecialDetail detail = new SpecialDetail();
+    detail.count = 7;
+    detail.factor = 2.5;
+    detail.next = new Detail();
+    detail.next.text = "next";
+    obj.detail = detail;
+    obj.list = new ArrayList<>(Arrays.asList("x", null, "y"));
+    obj.decimal = new BigDecimal("123.456");
+    JacisBinarySerializationObjectAdapter<ComplexObject> adapter = new JacisBinarySerializationObjectAdapter<>(ComplexObject.class);
+    ComplexObject copy = adapter.cloneCommitted2WritableTxView(adapter.cloneTxView2Committed(obj));
+    assertNotSame(obj, copy);
+    assertEquals(obj.flag, copy.flag);
+    assertEquals(obj.b, copy.b);
+    assertEquals(obj.s, copy.s);
+    assertEquals(obj.c, copy.c);
+    assertEquals(obj.i, copy.i);
+    assertEquals(obj.l, copy.l);
+    assertEquals(obj.f, copy.f, 0);
+    assertEquals(obj.d, copy.d, 0);
+    assertEquals(obj.boxed, copy.boxed);
+    assertEquals(obj.str, copy.str);
+    assertArrayEquals(obj.bytes, copy.bytes);
+    assertEquals(obj.unit, copy.unit);
+    assertEquals(obj.any, copy.any);
+    assertTrue(copy.detail instanceof SpecialDetail);
+    assertEquals(7, copy.detail.count);
+    assertEquals(2.5, ((SpecialDetail) copy.detail).factor, 0);
+    assertEquals("next", copy.detail.next.text);
+    assertNull(copy.detail.next.next);
+    assertEquals(obj.list, copy.list);
+    assertEquals(obj.decimal, copy.decimal);
+    assertNull(copy.notSerialized);
+    assertNull(adapter.cloneTxView2Committed(null));
+  }
+
+  @Test
+  public void testMoreCompactThanJavaSerialization() {
+    TestObject obj = new TestObject("obj-1", 1).setStrValue("value");
+    byte[] binary = new JacisBinarySerializationObjectAdapter<>(TestObject.class).cloneTxView2Committed(obj);
+    byte[] java = new JacisJavaSerializationObjectAdapter<TestObject>().cloneTxView2Committed(obj);
+    assertTrue(binary.length + " bytes (binary) vs. " + java.length + " bytes (java)", binary.length * 4 < java.length);
+    assertEquals(obj, new JacisBinarySerializationObjectAdapter<TestObject>().cloneCommitted2ReadOnlyTxView(new JacisBinarySerializationObjectAdapter<TestObject>().cloneTxView2Committed(obj)));
+  }
+
+  public static class ObjectWithJdkTypes implements Serializable {
+    private static final long serialVersionUID = 1L;
+    Boolean flag;
+    Byte b;
+    Short s;
+    Character c;
+    Integer i;
+    Long l;
+    Float f;
+    Double d;
+    BigInteger bigInteger;
+    BigDecimal decimal;
+    Date date;
+    List<Object> list;
+    LinkedList<Integer> linkedList;
+    Set<String> set;
+    LinkedHashSet<Long> linkedSet;
+    TreeSet<String> sortedSet;
+    Map<String, Detail> map;
+    TreeMap<Integer, String> sortedMap;
+    TreeMap<String, Integer> reverseSortedMap;
+  }
+
+  @Test
+  public void testJdkTypesWrittenCompact() {
+    ObjectWithJdkTypes obj = new ObjectWithJdkTypes();
+    obj.flag = Boolean.TRUE;
+    obj.b = (byte) -7;
+    obj.s = Short.MIN_VALUE;
+    obj.c = '\u20AC';
+    obj.i = -42;
+    obj.l = Long.MAX_VALUE;
+    obj.f = 1.5f;
+    obj.d = -0.25;
+    obj.bigInteger = new BigInteger("-123456789012345678901234567890");
+    obj.decimal = new BigDecimal("-123.4500");
+    obj.date = new Date(1234567890123L);
+    obj.list = new ArrayList<>(Arrays.asList(1, 2L, "three", null, new ArrayList<>(Arrays.asList(4.0, 'c'))));
+    obj.linkedList = new LinkedList<>(Arrays.asList(3, 1, 2));
+    obj.set = new HashSet<>(Arrays.asList("x", "y", "z"));
+    obj.linkedSet = new LinkedHashSet<>(Arrays.asList(3L, 1L, 2L));
+    obj.sortedSet = new TreeSet<>(Arrays.asList("b", "a", "c"));
+    obj.map = new HashMap<>();
+    Detail detail = new Detail();
+    detail.count = 5;
+    obj.map.put("detail", detail);
+    obj.map.put("none", null);
+    obj.sortedMap = new TreeMap<>();
+    obj.sortedMap.put(2, "two");
+    obj.sortedMap.put(1, "one");
+    obj.reverseSortedMap = new TreeMap<>(Collections.reverseOrder()); // written with Java serialization (the comparator has to be kept)
+    obj.reverseSortedMap.put("a", 1);
+    obj.reverseSortedMap.put("b", 2);
+    JacisBinarySerializationObjectAdapter<ObjectWithJdkTypes> adapter = new JacisBinarySerializationObjectAdapter<>(ObjectWithJdkTypes.class);
+    ObjectWithJdkTypes copy = adapter.cloneCommitted2WritableTxView(adapter.cloneTxView2Committed(obj));
+    assertEquals(obj.flag, copy.flag);
+    assertEquals(obj.b, copy.b);
+    assertEquals(obj.s, copy.s);
+    assertEquals(obj.c, copy.c);
+    assertEquals(obj.i, copy.i);
+    assertEquals(obj.l, copy.l);
+    assertEquals(obj.f, copy.f);
+    assertEquals(obj.d, copy.d);
+    assertEquals(obj.bigInteger, copy.bigInteger);
+    assertEquals(obj.decimal, copy.decimal);
+    assertEquals(4, copy.decimal.scale());
+    assertEquals(obj.date, copy.date);
+    assertEquals(obj.list, copy.list);
+    assertEquals(obj.linkedList, copy.linkedList);
+    assertEquals(LinkedList.class, copy.linkedList.getClass());
+    assertEquals(obj.set, copy.set);
+    assertEquals(new ArrayList<>(obj.linkedSet), new ArrayList<>(copy.linkedSet));
+    assertEquals(obj.sortedSet, copy.sortedSet);
+    assertEquals(2, copy.map.size());
+    assertEquals(5, copy.map.get("detail").count);
+    assertTrue(copy.map.containsKey("none"));
+    assertEquals(obj.sortedMap, copy.sortedMap);
+    assertEquals(Arrays.asList("b", "a"), new ArrayList<>(copy.reverseSortedMap.keySet()));
+  }
+
+  @Test
+  public void testBoxedValuesAndCollectionsWithoutJavaSerialization() {
+    ObjectWithJdkTypes obj = new ObjectWithJdkTypes();
+    obj.i = 1;
+    obj.l = 2L;
+    obj.list = new ArrayList<>(Arrays.asList(1, 2, 3));
+    obj.map = new HashMap<>();
+    obj.map.put("a", null);
+    byte[] bytes = new JacisBinarySerializationObjectAdapter<>(ObjectWithJdkTypes.class).cloneTxView2Committed(obj);
+    assertTrue(bytes.length + " bytes", bytes.length < 40); // a single embedded Java serialized object would need more than 40 bytes
+  }
+
+  @Test
+  public void testStoreWithBinarySerialization() {
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithBinarySerialization();
+    store.getContainer().withLocalTx(() -> store.update("obj-1", new TestObject("obj-1", 1).setStrValue("A")));
+    store.getContainer().withLocalTx(() -> store.update("obj-1", store.get("obj-1").setValue(2)));
+    TestObject obj = store.getReadOnly("obj-1");
+    assertEquals(2, obj.getValue());
+    assertEquals("A", obj.getStrValue());
+  }
+
+}
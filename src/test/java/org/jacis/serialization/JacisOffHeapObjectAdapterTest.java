@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.plugin.objectadapter.serialization.JacisJavaSerializationObjectAdapter;
+import org.jacis.plugin.objectadapter.serialization.JacisOffHeapObjectAdapter;
+import org.jacis.plugin.objectadapter.serialization.JacisOffHeapValue;
+import org.jacis.plugin.txadapter.local.JacisLocalTransaction;
+import org.jacis.store.JacisStore;
+import org.jacis.testhelper.TestObject;
+import org.junit.Test;
+
+public class JacisOffHeapObjectAdapterTest {
+
+  private JacisStore<String, TestObject> createStore(JacisOffHeapObjectAdapter<TestObject> objectAdapter) {
+    JacisContainer container = new JacisContainer();
+    JacisObjectTypeSpec<String, TestObject, JacisOffHeapValue> spec = new JacisObjectTypeSpec<>(String.class, TestObject.class, objectAdapter);
+    return container.createStore(spec).getStore();
+  }
+
+  private void initValues(JacisStore<String, TestObject> store, int numberOfValues) {
+    store.getContainer().withLocalTx(() -> {
+      for (int i = 0; i < numberOfValues; i++) {
+        store.update("obj-" + i, new TestObject("obj-" + i, i));
+      }
+    });
+  }
+
+  @Test
+  public void testStoreWithOffHeapValues() {
+    JacisOffHeapObjectAdapter<TestObject> objectAdapter = new JacisOffHeapObjectAdapter<>(TestObject.class);
+    JacisStore<String, TestObject> store = createStore(objectAdapter);
+    store.getContainer().withLocalTx(() -> {
+      for (int i = 0; i < 100; i++) {
+        store.update("obj-" + i, new TestObject("obj-" + i, i).setStrValue("value-" + i));
+      }
+    });
+    store.getContainer().withLocalTx(() -> {
+      store.update("obj-1", store.get("obj-1").setValue(1000));
+      store.remove("obj-2");
+    });
+    assertEquals(1000, store.getReadOnly("obj-1").getValue());
+    assertEquals("value-3", store.getReadOnly("obj-3").getStrValue());
+    assertNull(store.getReadOnly("obj-2"));
+    assertEquals(99, store.getAllReadOnly().size());
+    assertTrue(objectAdapter.getUsedOffHeapBytes() > 0);
+  }
+
+  @Test
+  public void testLargeValuesWithJavaSerialization() {
+    JacisOffHeapObjectAdapter<TestObject> objectAdapter = new JacisOffHeapObjectAdapter<>(new JacisJavaSerializationObjectAdapter<>(), 64);
+    JacisStore<String, TestObject> store = createStore(objectAdapter);
+    StringBuilder large = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      large.append(i);
+    }
+    store.getContainer().withLocalTx(() -> store.update("large", new TestObject("large", 1).setStrValue(large.toString())));
+    store.getContainer().withLocalTx(() -> store.update("small", new TestObject("small", 2)));
+    assertEquals(large.toString(), store.getReadOnly("large").getStrValue());
+    assertEquals(2, store.getReadOnly("small").getValue());
+  }
+
+  @Test
+  public void testMemoryOfReplacedValuesFreed() {
+    JacisOffHeapObjectAdapter<TestObject> objectAdapter = new JacisOffHeapObjectAdapter<>(TestObject.class);
+    JacisStore<String, TestObject> store = createStore(objectAdapter);
+    initValues(store, 1000);
+    long usedBytes = objectAdapter.getUsedOffHeapBytes();
+    for (int run = 0; run < 5; run++) {
+      store.getContainer().withLocalTx(() -> store.streamReadOnly().forEach(o -> store.update(o.getName(), store.get(o.getName()).setValue(o.getValue() + 1))));
+      assertEquals(usedBytes, objectAdapter.getUsedOffHeapBytes()); // freed on commit
+    }
+    long allocatedBytes = objectAdapter.getAllocatedOffHeapBytes();
+    store.getContainer().withLocalTx(() -> store.streamReadOnly().forEach(o -> store.update(o.getName(), store.get(o.getName()).setValue(0))));
+    assertEquals(allocatedBytes, objectAdapter.getAllocatedOffHeapBytes()); // freed blocks reused
+    assertEquals(0, store.getReadOnly("obj-0").getValue());
+  }
+
+  @Test
+  public void testMemoryOfDeletedValuesFreed() {
+    JacisOffHeapObjectAdapter<TestObject> objectAdapter = new JacisOffHeapObjectAdapter<>(TestObject.class);
+    JacisStore<String, TestObject> store = createStore(objectAdapter);
+    initValues(store, 100);
+    store.getContainer().withLocalTx(() -> {
+      for (int i = 0; i < 100; i++) {
+        store.remove("obj-" + i);
+      }
+    });
+    assertEquals(0, objectAdapter.getUsedOffHeapBytes());
+    initValues(store, 100);
+    assertTrue(objectAdapter.getUsedOffHeapBytes() > 0);
+    store.getContainer().clearAllStores();
+    assertEquals(0, objectAdapter.getUsedOffHeapBytes());
+  }
+
+  @Test
+  public void testVersionsOfSnapshotsFreedWhenReclaimed() throws InterruptedException {
+    JacisOffHeapObjectAdapter<TestObject> objectAdapter = new JacisOffHeapObjectAdapter<>(TestObject.class);
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = container.createStore(new JacisObjectTypeSpec<>(String.class, TestObject.class, objectAdapter).setSnapshotIsolation(true)).getStore();
+    initValues(store, 10);
+    long usedBytes = objectAdapter.getUsedOffHeapBytes();
+    JacisLocalTransaction tx = container.beginLocalTransaction();
+    assertEquals(1, store.getReadOnly("obj-1").getValue()); // registers the snapshot
+    Thread updater = new Thread(() -> container.withLocalTx(() -> store.update("obj-1", store.get("obj-1").setValue(100))));
+    updater.start();
+    updater.join();
+    assertEquals(1, store.getReadOnly("obj-1").getValue()); // the older version is still visible for the snapshot
+    assertTrue(objectAdapter.getUsedOffHeapBytes() > usedBytes);
+    tx.commit();
+    assertEquals(usedBytes, objectAdapter.getUsedOffHeapBytes());
+    assertEquals(100, store.getReadOnly("obj-1").getValue());
+  }
+
+  @Test
+  public void testConcurrentReadsWhileValuesAreReplaced() throws InterruptedException {
+    JacisOffHeapObjectAdapter<TestObject> objectAdapter = new JacisOffHeapObjectAdapter<>(TestObject.class);
+    JacisStore<String, TestObject> store = createStore(objectAdapter);
+    initValues(store, 10);
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicReference<String> failure = new AtomicReference<>();
+    Thread reader = new Thread(() -> {
+      while (running.get() && failure.get() == null) {
+        for (int i = 0; i < 10; i++) {
+          TestObject value = store.getReadOnly("obj-" + i);
+          if (value == null || !("obj-" + i).equals(value.getName())) { // a reused block would contain the value of another key
+            failure.set("obj-" + i + " -> " + value);
+          }
+        }
+      }
+    });
+    reader.start();
+    for (int run = 0; run < 1000 && failure.get() == null; run++) {
+      initValues(store, 10); // (the freed blocks are reused for the other keys)
+    }
+    running.set(false);
+    reader.join();
+    assertNull(failure.get());
+  }
+
+  @Test
+  public void testReadReleasedValue() {
+    JacisOffHeapObjectAdapter<TestObject> objectAdapter = new JacisOffHeapObjectAdapter<>(TestObject.class);
+    JacisOffHeapValue value1 = objectAdapter.cloneTxView2Committed(new TestObject("obj-1", 1));
+    JacisOffHeapValue value2 = objectAdapter.cloneTxView2Committed(new TestObject("obj-1", 2));
+    objectAdapter.releaseCommitted(value1, value2);
+    objectAdapter.cloneTxView2Committed(new TestObject("obj-3", 3)); // reuses the freed block
+    assertEquals(2, objectAdapter.cloneCommitted2ReadOnlyTxView(value1).getValue()); // a reader still holding the released value reads the replacement
+    objectAdapter.releaseCommitted(value2, null);
+    assertNull(objectAdapter.cloneCommitted2ReadOnlyTxView(value1));
+    long usedBytes = objectAdapter.getUsedOffHeapBytes();
+    objectAdapter.releaseCommitted(value2, null); // freeing twice has no effect
+    assertEquals(usedBytes, objectAdapter.getUsedOffHeapBytes());
+  }
+
+}
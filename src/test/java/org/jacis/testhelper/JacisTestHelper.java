@@ -10,6 +10,7 @@ import org.jacis.container.JacisTransactionHandle;
 import org.jacis.exception.JacisNoTransactionException;
 import org.jacis.exception.JacisTransactionAlreadyStartedException;
 import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.objectadapter.serialization.JacisBinarySerializationObjectAdapter;
 import org.jacis.plugin.objectadapter.serialization.JacisJavaSerializationObjectAdapter;
 import org.jacis.plugin.objectadapter.serialization.JacisSerializationObjectAdapter;
 import org.jacis.plugin.txadapter.local.JacisTransactionAdapterLocal;
@@ -33,6 +34,18 @@ public class JacisTestHelper {
     return container.getStore(String.class, TestObject.class);
   }
 
+  public JacisStore<String, TestObject> createTestStoreWithSnapshotIsolation() {
+    testTxAdapter = new TestTxAdapter();
+    JacisContainer container = new JacisContainer(testTxAdapter);
+    return createTestStoreWithSnapshotIsolation(container);
+  }
+
+  public JacisStore<String, TestObject> createTestStoreWithSnapshotIsolation(JacisContainer container) {
+    JacisCloningObjectAdapter<TestObject> serializationAdapter = new JacisCloningObjectAdapter<>();
+    JacisObjectTypeSpec<String, TestObject, TestObject> objectTypeSpec = new JacisObjectTypeSpec<>(String.class, TestObject.class, serializationAdapter).setSnapshotIsolation(true);
+    return container.createStore(objectTypeSpec).getStore();
+  }
+
   public JacisStore<String, TestObjectWithoutReadOnlyMode> createTestStoreWithCloningAndWithoutReadonlyMode() {
     testTxAdapter = new TestTxAdapter();
     JacisContainer container = new JacisContainer(testTxAdapter);
@@ -58,6 +71,14 @@ public class JacisTestHelper {
     return container.createStore(objectTypeSpec).getStore();
   }
 
+  public JacisStore<String, TestObject> createTestStoreWithBinarySerialization() {
+    testTxAdapter = new TestTxAdapter();
+    JacisContainer container = new JacisContainer(testTxAdapter);
+    JacisSerializationObjectAdapter<TestObject> serializationAdapter = new JacisBinarySerializationObjectAdapter<>(TestObject.class);
+    JacisObjectTypeSpec<String, TestObject, byte[]> objectTypeSpec = new JacisObjectTypeSpec<>(String.class, TestObject.class, serializationAdapter);
+    return container.createStore(objectTypeSpec).getStore();
+  }
+
   public JacisTransactionHandle suspendTx() {
     return testTxAdapter.suspendTx();
   }
@@ -66,6 +87,10 @@ public class JacisTestHelper {
     testTxAdapter.resumeTx(tx);
   }
 
+  public void abandonTx() {
+    testTxAdapter.disjoinCurrentTransaction(); // neither committed nor rolled back, the handle is no longer referenced
+  }
+
   public long getRandBetween(long min, long max) {
     return max <= min ? min : min + Math.round((max - min) * Math.random());
   }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.testhelper;
+
+import java.util.List;
+
+import org.jacis.trackedviews.TrackedViewKeyed;
+
+/**
+ * Keyed test tracked view (counting the objects and summing up their values).
+ * The contribution of an object is its value (null for non existing objects).
+ *
+ * @author Jan Wiemer
+ */
+public class TrackedTestViewKeyed implements TrackedViewKeyed<String, TestObject, Long> {
+
+  private int count = 0;
+  private long sum = 0;
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public TrackedViewKeyed<String, TestObject, Long> clone() {
+    try {
+      return (TrackedViewKeyed<String, TestObject, Long>) super.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new RuntimeException("clone murks");
+    }
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public long getSum() {
+    return sum;
+  }
+
+  @Override
+  public void clear() {
+    count = 0;
+    sum = 0;
+  }
+
+  @Override
+  public Long getContribution(String key, TestObject value) {
+    return value == null ? null : value.getValue();
+  }
+
+  @Override
+  public void trackContributionChange(String key, Long oldContribution, Long newContribution) {
+    sum += (newContribution == null ? 0 : newContribution) - (oldContribution == null ? 0 : oldContribution);
+    if (oldContribution == null && newContribution != null) {
+      count++;
+    } else if (oldContribution != null && newContribution == null) {
+      count--;
+    }
+  }
+
+  @Override
+  public void checkView(List<TestObject> values) {
+    if (count != values.stream().filter(v -> v != null).count()) {
+      throw new RuntimeException("View expects " + count + " values but we have: " + values.size() + "! Values: " + values);
+    }
+    long checkSum = values.stream().mapToLong(v -> v == null ? 0 : v.getValue()).sum();
+    if (sum != checkSum) {
+      throw new RuntimeException("View expects sum " + sum + " values but we have: " + checkSum + "! Values: " + values);
+    }
+  }
+
+}
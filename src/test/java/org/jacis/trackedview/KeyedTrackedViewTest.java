@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.trackedview;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.container.JacisObjectTypeSpec;
+import org.jacis.plugin.objectadapter.cloning.JacisCloningObjectAdapter;
+import org.jacis.plugin.txadapter.local.JacisLocalTransaction;
+import org.jacis.store.JacisStore;
+import org.jacis.testhelper.TestObject;
+import org.jacis.testhelper.TrackedTestView;
+import org.jacis.testhelper.TrackedTestViewKeyed;
+import org.junit.Test;
+
+public class KeyedTrackedViewTest {
+
+  private final AtomicInteger txView2CommittedClones = new AtomicInteger();
+
+  private JacisStore<String, TestObject> createStore(JacisContainer container) {
+    JacisCloningObjectAdapter<TestObject> adapter = new JacisCloningObjectAdapter<TestObject>() {
+      @Override
+      public TestObject cloneTxView2Committed(TestObject value) {
+        txView2CommittedClones.incrementAndGet();
+        return super.cloneTxView2Committed(value);
+      }
+    };
+    JacisStore<String, TestObject> store = container.createStore(new JacisObjectTypeSpec<>(String.class, TestObject.class, adapter).setCheckViewsOnCommit(true)).getStore();
+    container.withLocalTx(() -> {
+      for (int i = 0; i < 10; i++) {
+        store.update("obj-" + i, new TestObject("obj-" + i, i));
+      }
+    });
+    store.getTrackedViewRegistry().registerTrackedView(new TrackedTestViewKeyed());
+    return store;
+  }
+
+  private TrackedTestViewKeyed getView(JacisStore<String, TestObject> store) {
+    return store.getTrackedViewRegistry().getView(TrackedTestViewKeyed.class);
+  }
+
+  @Test
+  public void testInitAndCommittedModifications() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container);
+    assertEquals(10, getView(store).getCount());
+    assertEquals(45, getView(store).getSum());
+    container.withLocalTx(() -> {
+      store.update("obj-0", store.get("obj-0").setValue(100));
+      store.remove("obj-1");
+      store.update("obj-new", new TestObject("obj-new", 5));
+    });
+    assertEquals(10, getView(store).getCount());
+    assertEquals(45 + 100 - 1 + 5, getView(store).getSum());
+  }
+
+  @Test
+  public void testModificationTrackingInTransactionWithoutCloning() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container);
+    JacisLocalTransaction tx = container.beginLocalTransaction();
+    assertEquals(45, getView(store).getSum()); // the transaction now tracks its modifications at the view snapshot
+    int clonesBefore = txView2CommittedClones.get();
+    TestObject obj = store.get("obj-5");
+    obj.setValue(3);
+    store.update("obj-5", obj);
+    assertEquals(43, getView(store).getSum());
+    obj.setValue(4); // modified in place after the update
+    store.update("obj-5", obj);
+    assertEquals(44, getView(store).getSum());
+    store.remove("obj-5");
+    assertEquals(40, getView(store).getSum());
+    assertEquals(9, getView(store).getCount());
+    assertEquals(clonesBefore, txView2CommittedClones.get()); // no copy of the updated values for the view
+    tx.rollback();
+    assertEquals(45, getView(store).getSum());
+    assertEquals(10, getView(store).getCount());
+  }
+
+  @Test
+  public void testKeyedAndUnkeyedViewsInOneRegistry() {
+    JacisContainer container = new JacisContainer();
+    JacisStore<String, TestObject> store = createStore(container);
+    store.getTrackedViewRegistry().registerTrackedView(new TrackedTestView());
+    container.withLocalTx(() -> {
+      store.update("obj-0", store.get("obj-0").setValue(100));
+      store.remove("obj-1");
+      assertEquals(45 + 100 - 1, getView(store).getSum());
+      assertEquals(45 + 100 - 1, store.getTrackedViewRegistry().getView(TrackedTestView.class).getSum());
+    });
+    store.getTrackedViewRegistry().reinitializeView(TrackedTestViewKeyed.class);
+    assertEquals(9, getView(store).getCount());
+    assertEquals(45 + 100 - 1, getView(store).getSum());
+    assertEquals(0, store.getTrackedViewRegistry().getConsistencyChecker().checkNow()); // checks the keyed and the unkeyed view
+  }
+
+}
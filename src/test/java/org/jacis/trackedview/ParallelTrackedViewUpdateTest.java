@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.trackedview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.exception.JacisTrackedViewModificationException;
+import org.jacis.store.JacisStore;
+import org.jacis.testhelper.JacisTestHelper;
+import org.jacis.testhelper.TestObject;
+import org.jacis.testhelper.TrackedTestView;
+import org.jacis.trackedviews.TrackedView;
+import org.junit.Test;
+
+public class ParallelTrackedViewUpdateTest {
+
+  private static final int NUMBER_OF_OBJECTS = 5000;
+
+  @Test
+  public void testParallelUpdateOfViews() {
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    store.getTrackedViewRegistry().setParallelUpdateThreshold(1).setForkJoinPool(pool);
+    for (int v = 0; v < 3; v++) {
+      store.getTrackedViewRegistry().registerTrackedView("view-" + v, new TrackedTestView());
+    }
+    ThreadSafeSumView threadSafeView = new ThreadSafeSumView();
+    store.getTrackedViewRegistry().registerTrackedView("thread-safe", threadSafeView);
+    JacisContainer container = store.getContainer();
+    container.withLocalTx(() -> {
+      for (int i = 0; i < NUMBER_OF_OBJECTS; i++) {
+        store.update("obj-" + i, new TestObject("obj-" + i, i));
+      }
+    });
+    container.withLocalTx(() -> {
+      for (int i = 0; i < NUMBER_OF_OBJECTS; i += 2) {
+        store.update("obj-" + i, store.get("obj-" + i).setValue(0));
+      }
+    });
+    long expectedSum = store.streamReadOnly().mapToLong(TestObject::getValue).sum();
+    for (int v = 0; v < 3; v++) {
+      TrackedTestView view = store.getTrackedViewRegistry().getView("view-" + v);
+      assertEquals(NUMBER_OF_OBJECTS, view.getCount());
+      assertEquals(expectedSum, view.getSum());
+    }
+    assertEquals(expectedSum, threadSafeView.sum.sum());
+    assertEquals(NUMBER_OF_OBJECTS, threadSafeView.count.get());
+    assertTrue("thread safe view should be updated by several threads: " + threadSafeView.threads, threadSafeView.threads.size() > 1 || pool.getParallelism() == 1);
+    pool.shutdown();
+  }
+
+  @Test
+  public void testFailingViewDoesNotAffectOtherViews() {
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning();
+    store.getTrackedViewRegistry().setParallelUpdateThreshold(1);
+    store.getTrackedViewRegistry().registerTrackedView("view", new TrackedTestView());
+    store.getTrackedViewRegistry().registerTrackedView("failing", new FailingView());
+    try {
+      store.getContainer().withLocalTx(() -> {
+        store.update("obj-1", new TestObject("obj-1", 1));
+        store.update("fail", new TestObject("fail", 2));
+      });
+      fail("tracking the modification at the failing view should throw an exception");
+    } catch (JacisTrackedViewModificationException e) {
+      assertEquals("fail", e.getKey());
+    }
+    assertEquals(3, store.getTrackedViewRegistry().<TrackedTestView> getView("view").getSum());
+    assertEquals(2, store.size());
+  }
+
+  public static class ThreadSafeSumView implements TrackedView<TestObject> {
+
+    private final LongAdder sum = new LongAdder();
+    private final AtomicInteger count = new AtomicInteger();
+    private final Set<String> threads = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch otherThreadStarted = new CountDownLatch(1);
+    private final AtomicBoolean firstModification = new AtomicBoolean(true);
+
+    @Override
+    public boolean isThreadSafe() {
+      return true;
+    }
+
+    @Override
+    public void trackModification(TestObject oldValue, TestObject newValue) {
+      if (threads.add(Thread.currentThread().getName()) && threads.size() > 1) {
+        otherThreadStarted.countDown();
+      }
+      if (firstModification.compareAndSet(true, false)) { // give the other workers the chance to take the remaining chunks (even on a single CPU)
+        try {
+          otherThreadStarted.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      sum.add((newValue == null ? 0 : newValue.getValue()) - (oldValue == null ? 0 : oldValue.getValue()));
+      count.addAndGet((newValue == null ? 0 : 1) - (oldValue == null ? 0 : 1));
+    }
+
+    @Override
+    public void checkView(List<TestObject> values) {
+      // not checked
+    }
+
+    @Override
+    public void clear() {
+      sum.reset();
+      count.set(0);
+    }
+
+    @Override
+    public TrackedView<TestObject> clone() {
+      return this; // only used as life view
+    }
+  }
+
+  public static class FailingView extends TrackedTestView {
+
+    @Override
+    public void trackModification(TestObject oldValue, TestObject newValue) {
+      if (newValue != null && "fail".equals(newValue.getName())) {
+        throw new IllegalStateException("failing view");
+      }
+      super.trackModification(oldValue, newValue);
+    }
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.trackedview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jacis.store.JacisStore;
+import org.jacis.store.TrackedViewConsistencyChecker;
+import org.jacis.testhelper.JacisTestHelper;
+import org.jacis.testhelper.TestObject;
+import org.jacis.testhelper.TrackedTestView;
+import org.junit.Test;
+
+public class TrackedViewConsistencyCheckerTest {
+
+  private JacisStore<String, TestObject> createStore() {
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning();
+    store.getTrackedViewRegistry().registerTrackedView("correct", new TrackedTestView());
+    store.getTrackedViewRegistry().registerTrackedView("buggy", new BuggyView());
+    return store;
+  }
+
+  private void commitObject(JacisStore<String, TestObject> store, String name) {
+    store.getContainer().withLocalTx(() -> store.update(name, new TestObject(name, 1)));
+  }
+
+  @Test
+  public void testCheckNow() {
+    JacisStore<String, TestObject> store = createStore();
+    TrackedViewConsistencyChecker<String, TestObject> checker = store.getTrackedViewRegistry().getConsistencyChecker();
+    commitObject(store, "obj-1");
+    assertEquals(0, checker.checkNow());
+    commitObject(store, "ignored"); // no exception on the committing thread
+    assertEquals(1, checker.checkNow());
+    assertEquals(2, checker.getNumberOfChecks());
+    assertEquals(1, checker.getNumberOfDrifts());
+  }
+
+  @Test
+  public void testCheckEveryNthCommit() throws InterruptedException {
+    JacisStore<String, TestObject> store = createStore();
+    BlockingQueue<String> drifts = new LinkedBlockingQueue<>();
+    TrackedViewConsistencyChecker<String, TestObject> checker = store.getTrackedViewRegistry().getConsistencyChecker();
+    checker.registerDriftListener((viewName, view, problem) -> drifts.add(viewName)).checkEveryNthCommit(2);
+    commitObject(store, "obj-1");
+    commitObject(store, "obj-2");
+    assertNull(drifts.poll(200, TimeUnit.MILLISECONDS)); // second commit checked but no drift
+    commitObject(store, "ignored");
+    commitObject(store, "obj-3");
+    assertEquals("buggy", drifts.poll(5, TimeUnit.SECONDS));
+    checker.stop();
+  }
+
+  @Test
+  public void testScheduledCheck() throws InterruptedException {
+    JacisStore<String, TestObject> store = createStore();
+    BlockingQueue<String> drifts = new LinkedBlockingQueue<>();
+    TrackedViewConsistencyChecker<String, TestObject> checker = store.getTrackedViewRegistry().getConsistencyChecker();
+    checker.registerDriftListener((viewName, view, problem) -> drifts.add(viewName)).scheduleChecks(20, TimeUnit.MILLISECONDS);
+    commitObject(store, "ignored");
+    assertNotNull(drifts.poll(5, TimeUnit.SECONDS));
+    checker.stop();
+  }
+
+  /** View ignoring the object with the name 'ignored' */
+  public static class BuggyView extends TrackedTestView {
+
+    @Override
+    public void trackModification(TestObject oldValue, TestObject newValue) {
+      if (newValue == null || !"ignored".equals(newValue.getName())) {
+        super.trackModification(oldValue, newValue);
+      }
+    }
+  }
+
+}
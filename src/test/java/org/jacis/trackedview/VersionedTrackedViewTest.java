@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017. Jan Wiemer
+ */
+
+package org.jacis.trackedview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.jacis.container.JacisContainer;
+import org.jacis.store.JacisStore;
+import org.jacis.testhelper.JacisTestHelper;
+import org.jacis.testhelper.TestObject;
+import org.jacis.trackedviews.TrackedViewVersioned;
+import org.jacis.trackedviews.TrackedViewVersionedClustered;
+import org.junit.Test;
+
+public class VersionedTrackedViewTest {
+
+  private JacisStore<String, TestObject> createStore() {
+    JacisStore<String, TestObject> store = new JacisTestHelper().createTestStoreWithCloning();
+    store.getContainer().withLocalTx(() -> {
+      store.update("A1", new TestObject("A1", 1));
+      store.update("A2", new TestObject("A2", 2));
+      store.update("B1", new TestObject("B1", 10));
+    });
+    store.getTrackedViewRegistry().registerTrackedView("sum", new SumView());
+    store.getTrackedViewRegistry().registerTrackedView("clustered", new SumByPrefixView());
+    return store;
+  }
+
+  @Test
+  public void testSnapshotSharesState() {
+    JacisStore<String, TestObject> store = createStore();
+    SumView lifeView = store.getTrackedViewRegistry().getLifeView("sum");
+    SumView snapshot = store.getTrackedViewRegistry().getView("sum");
+    assertNotSame(lifeView, snapshot);
+    assertSame(lifeView.getState(), snapshot.getState());
+    assertEquals(Long.valueOf(13), snapshot.getState());
+    long version = snapshot.getVersion();
+    store.getContainer().withLocalTx(() -> store.update("A1", store.get("A1").setValue(5)));
+    assertEquals(Long.valueOf(13), snapshot.getState()); // the snapshot is not affected by later commits
+    assertEquals(version, snapshot.getVersion());
+    SumView newSnapshot = store.getTrackedViewRegistry().getView("sum");
+    assertEquals(Long.valueOf(17), newSnapshot.getState());
+    assertTrue(newSnapshot.getVersion() > version);
+  }
+
+  @Test
+  public void testTransactionLocalModifications() {
+    JacisStore<String, TestObject> store = createStore();
+    JacisContainer container = store.getContainer();
+    container.withLocalTx(() -> {
+      store.update("A2", store.get("A2").setValue(20));
+      SumView view = store.getTrackedViewRegistry().getView("sum");
+      assertEquals(Long.valueOf(31), view.getState());
+      store.remove("B1");
+      assertEquals(Long.valueOf(21), view.getState());
+      TrackedViewVersionedClustered.SubView<TestObject, String, Long> subView = store.getTrackedViewRegistry().getSubView("clustered", "A");
+      assertEquals(Long.valueOf(21), subView.getState());
+    });
+    SumView view = store.getTrackedViewRegistry().getView("sum");
+    assertEquals(Long.valueOf(21), view.getState());
+  }
+
+  @Test
+  public void testClusteredView() {
+    JacisStore<String, TestObject> store = createStore();
+    JacisContainer container = store.getContainer();
+    SumByPrefixView lifeView = store.getTrackedViewRegistry().getLifeView("clustered");
+    assertEquals(2, lifeView.getSubViewKeys().size());
+    TrackedViewVersionedClustered.SubView<TestObject, String, Long> subViewA = store.getTrackedViewRegistry().getSubView("clustered", "A");
+    assertEquals(Long.valueOf(3), subViewA.getState());
+    container.withLocalTx(() -> {
+      store.update("A1", store.get("A1").setValue(100)); // not relevant for sub view B
+      TrackedViewVersionedClustered.SubView<TestObject, String, Long> subViewB = store.getTrackedViewRegistry().getSubView("clustered", "B");
+      assertEquals(Long.valueOf(10), subViewB.getState());
+      store.update("B2", new TestObject("B2", 5));
+      assertEquals(Long.valueOf(15), subViewB.getState());
+    });
+    SumByPrefixView snapshot = store.getTrackedViewRegistry().getView("clustered");
+    assertEquals(Long.valueOf(102), snapshot.getSubView("A").getState());
+    assertEquals(Long.valueOf(15), snapshot.getSubView("B").getState());
+    assertEquals(Long.valueOf(3), subViewA.getState()); // old snapshot unchanged
+    assertEquals(Long.valueOf(0), snapshot.getSubView("C").getState());
+  }
+
+  public static class SumView extends TrackedViewVersioned<TestObject, Long> {
+
+    public SumView() {
+      super(0L);
+    }
+
+    @Override
+    protected Long computeNextState(Long currentState, TestObject oldValue, TestObject newValue) {
+      return currentState + (newValue == null ? 0 : newValue.getValue()) - (oldValue == null ? 0 : oldValue.getValue());
+    }
+
+    @Override
+    public void checkView(List<TestObject> values) {
+      long sum = values.stream().mapToLong(TestObject::getValue).sum();
+      if (sum != getState()) {
+        throw new IllegalStateException("View expects sum " + getState() + " but the values sum up to " + sum);
+      }
+    }
+  }
+
+  public static class SumByPrefixView extends TrackedViewVersionedClustered<TestObject, String, Long> {
+
+    public SumByPrefixView() {
+      super(0L);
+    }
+
+    @Override
+    protected String getSubViewKey(TestObject value) {
+      return value.getName().substring(0, 1);
+    }
+
+    @Override
+    protected Long computeNextSubViewState(Long currentState, TestObject oldValue, TestObject newValue) {
+      return currentState + (newValue == null ? 0 : newValue.getValue()) - (oldValue == null ? 0 : oldValue.getValue());
+    }
+
+    @Override
+    public void checkView(List<TestObject> values) {
+      // not checked
+    }
+  }
+
+}